@@ -429,6 +429,11 @@ public class Agent {
     return (StatsDClientManager) statsDClientManagerMethod.invoke(null);
   }
 
+  /** @return null when profiling starts before the agent classloader has been created */
+  private static synchronized StatsDClientManager profilingStatsDClientManager() throws Exception {
+    return AGENT_CLASSLOADER == null ? null : statsDClientManager();
+  }
+
   private static void startProfilingAgent(final URL bootstrapURL, final boolean isStartingFirst) {
     final ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
     try {
@@ -436,8 +441,9 @@ public class Agent {
       Thread.currentThread().setContextClassLoader(classLoader);
       final Class<?> profilingAgentClass =
           classLoader.loadClass("com.datadog.profiling.agent.ProfilingAgent");
-      final Method profilingInstallerMethod = profilingAgentClass.getMethod("run", Boolean.TYPE);
-      profilingInstallerMethod.invoke(null, isStartingFirst);
+      final Method profilingInstallerMethod =
+          profilingAgentClass.getMethod("run", Boolean.TYPE, StatsDClientManager.class);
+      profilingInstallerMethod.invoke(null, isStartingFirst, profilingStatsDClientManager());
     } catch (final ClassFormatError e) {
       /*
       Profiling is compiled for Java8. Loading it on Java7 results in ClassFormatError
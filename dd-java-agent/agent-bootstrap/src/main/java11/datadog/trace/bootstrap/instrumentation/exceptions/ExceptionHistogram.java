@@ -1,8 +1,12 @@
 package datadog.trace.bootstrap.instrumentation.exceptions;
 
 import datadog.trace.api.Config;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 import jdk.jfr.EventType;
@@ -16,6 +20,9 @@ import org.slf4j.LoggerFactory;
  * created since the last {@linkplain ExceptionHistogram#emit()} call (or creating a new {@linkplain
  * ExceptionHistogram} instance if {@linkplain ExceptionHistogram#emit()} hasn't been called yet).
  * <br>
+ * Each exception type is counted by a counter attached to its class, so recording an exception
+ * neither allocates nor takes a lock; the type names are only resolved when the counts are emitted.
+ * <br>
  * An {@linkplain ExceptionHistogram} instance is registered with JFR to call {@linkplain
  * ExceptionHistogram#emit()} method at chunk end, as specified in {@linkplain ExceptionCountEvent}
  * class. This callback will then emit a number of {@linkplain ExceptionCountEvent} events.
@@ -26,7 +33,16 @@ public class ExceptionHistogram {
 
   static final String CLIPPED_ENTRY_TYPE_NAME = "TOO-MANY-EXCEPTIONS";
 
-  private final Map<String, AtomicLong> histogram = new ConcurrentHashMap<>();
+  private final ClassValue<TypeCounter> counters =
+      new ClassValue<TypeCounter>() {
+        @Override
+        protected TypeCounter computeValue(final Class<?> type) {
+          return new TypeCounter(type);
+        }
+      };
+  // the counters of the types recorded since the last emit, the only ones emit() looks at
+  private final Map<Class<?>, TypeCounter> histogram = new ConcurrentHashMap<>();
+  private final AtomicLong clipped = new AtomicLong();
   private final int maxTopItems;
   private final int maxSize;
   private final EventType exceptionCountEventType;
@@ -45,6 +61,11 @@ public class ExceptionHistogram {
     FlightRecorder.removePeriodicEvent(eventHook);
   }
 
+  /** @return {@literal true} if the exception counts are recorded */
+  boolean isEnabled() {
+    return exceptionCountEventType.isEnabled();
+  }
+
   /**
    * Record a new exception instance
    *
@@ -53,30 +74,47 @@ public class ExceptionHistogram {
    *     false} otherwise
    */
   public boolean record(final Throwable exception) {
-    if (exception == null) {
+    if (exception == null || !exceptionCountEventType.isEnabled()) {
       return false;
     }
-    return record(exception.getClass().getName());
+    return record(exception.getClass());
   }
 
-  private boolean record(String typeName) {
-    if (!exceptionCountEventType.isEnabled()) {
-      return false;
-    }
-    if (!histogram.containsKey(typeName) && histogram.size() >= maxSize) {
-      log.debug("Histogram is too big, skipping adding new entry: {}", typeName);
-      // Overwrite type name to limit total number of entries in the histogram
-      typeName = CLIPPED_ENTRY_TYPE_NAME;
-    }
-
-    long count = histogram.computeIfAbsent(typeName, k -> new AtomicLong()).getAndIncrement();
-
+  private boolean record(final Class<?> type) {
+    final TypeCounter counter = counters.get(type);
     /*
      * This is supposed to signal that a particular exception type was seen the first time in a particular time span.
      * !ATTENTION! This will work on best-effort basis - namely all overflowing exception which are recorded
      * as 'TOO-MANY-EXCEPTIONS' will receive only one common 'first hit'.
      */
-    return count == 0;
+    final boolean firstHit = counter.getAndIncrement() == 0;
+    // checked after counting, so that emit() either sees the count or lets this thread register it
+    if (counter.registered.get() || register(counter)) {
+      return firstHit;
+    }
+    return clip(counter);
+  }
+
+  private boolean register(final TypeCounter counter) {
+    if (histogram.size() >= maxSize) {
+      return false;
+    }
+    if (counter.registered.compareAndSet(false, true)) {
+      histogram.put(counter.type, counter);
+    }
+    return true;
+  }
+
+  /** Moves the count of a type which doesn't fit in the histogram to the clipped entry */
+  private boolean clip(final TypeCounter counter) {
+    final long count = counter.getAndSet(0);
+    if (count == 0) {
+      return false;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Histogram is too big, skipping adding new entry: {}", counter.type.getName());
+    }
+    return clipped.getAndAdd(count) == 0;
   }
 
   private void emit() {
@@ -87,12 +125,22 @@ public class ExceptionHistogram {
     doEmit();
   }
 
+  /** Must not be called concurrently, JFR calls it from a single thread */
   void doEmit() {
+    final List<Pair<String, Long>> counts = new ArrayList<>(histogram.size() + 1);
+    for (final TypeCounter counter : histogram.values()) {
+      final long count = counter.getAndSet(0);
+      if (count != 0) {
+        counts.add(Pair.of(counter.type.getName(), count));
+      }
+    }
+    final long clippedCount = clipped.getAndSet(0);
+    if (clippedCount != 0) {
+      counts.add(Pair.of(CLIPPED_ENTRY_TYPE_NAME, clippedCount));
+    }
+
     Stream<Pair<String, Long>> items =
-        histogram.entrySet().stream()
-            .map(e -> Pair.of(e.getKey(), e.getValue().getAndSet(0)))
-            .filter(p -> p.getValue() != 0)
-            .sorted((l1, l2) -> Long.compare(l2.getValue(), l1.getValue()));
+        counts.stream().sorted((l1, l2) -> Long.compare(l2.getValue(), l1.getValue()));
 
     if (maxTopItems > 0) {
       items = items.limit(maxTopItems);
@@ -102,7 +150,18 @@ public class ExceptionHistogram {
 
     // Stream is 'materialized' by `forEach` call above so we have to do clean up after that
     // Otherwise we would keep entries for one extra iteration
-    histogram.entrySet().removeIf(e -> e.getValue().get() == 0L);
+    final Iterator<TypeCounter> it = histogram.values().iterator();
+    while (it.hasNext()) {
+      final TypeCounter counter = it.next();
+      if (counter.get() == 0) {
+        it.remove();
+        counter.registered.set(false);
+        // an exception recorded meanwhile may have seen the counter still registered
+        if (counter.get() != 0 && !register(counter)) {
+          clip(counter);
+        }
+      }
+    }
   }
 
   // important that this is non-final and package private; allows concurrency tests
@@ -117,6 +176,15 @@ public class ExceptionHistogram {
     }
   }
 
+  static final class TypeCounter extends AtomicLong {
+    final Class<?> type;
+    final AtomicBoolean registered = new AtomicBoolean();
+
+    TypeCounter(final Class<?> type) {
+      this.type = type;
+    }
+  }
+
   static class Pair<K, V> {
 
     final K key;
@@ -1,5 +1,7 @@
 package datadog.trace.bootstrap.instrumentation.exceptions;
 
+import static datadog.trace.util.AgentThreadFactory.AGENT_THREAD_GROUP;
+
 import datadog.trace.api.Config;
 
 /**
@@ -21,21 +23,47 @@ public final class ExceptionProfiling {
 
   private final ExceptionHistogram histogram;
   private final ExceptionSampler sampler;
+  private final boolean excludeAgentThreads;
 
   private ExceptionProfiling(final Config config) {
-    this(new ExceptionSampler(config), new ExceptionHistogram(config));
+    this(
+        new ExceptionSampler(config),
+        new ExceptionHistogram(config),
+        config.isProfilingExcludeAgentThreads());
   }
 
-  ExceptionProfiling(final ExceptionSampler sampler, final ExceptionHistogram histogram) {
+  ExceptionProfiling(
+      final ExceptionSampler sampler,
+      final ExceptionHistogram histogram,
+      final boolean excludeAgentThreads) {
     this.sampler = sampler;
     this.histogram = histogram;
+    this.excludeAgentThreads = excludeAgentThreads;
+  }
+
+  /**
+   * @return {@literal false} if neither the exception counts nor the exception samples are
+   *     recorded, so exceptions need not be processed at all
+   */
+  public boolean isEnabled() {
+    return histogram.isEnabled() || sampler.isEnabled();
   }
 
   public ExceptionSampleEvent process(final Throwable t) {
+    /*
+     * Sample first: it is mostly a thread local countdown, so during exception storms it is cheaper
+     * than the checks below. A sample taken on an excluded thread is lost, which is rare enough.
+     */
+    final boolean sampled = sampler.sample();
+
+    // Exclude internal agent threads from exception profiling.
+    if (excludeAgentThreads && AGENT_THREAD_GROUP.equals(Thread.currentThread().getThreadGroup())) {
+      return null;
+    }
+
     // always record the exception in histogram
     final boolean firstHit = histogram.record(t);
 
-    final boolean sampled = sampler.sample();
     if (firstHit || sampled) {
       return new ExceptionSampleEvent(t, sampled, firstHit);
     }
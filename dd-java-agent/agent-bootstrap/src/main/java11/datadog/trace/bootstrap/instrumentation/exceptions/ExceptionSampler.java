@@ -6,6 +6,17 @@ import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import jdk.jfr.EventType;
 
+/**
+ * Samples the exceptions to emit {@linkplain ExceptionSampleEvent} for. Each thread counts down the
+ * exceptions to skip before the next one picked with the sampling probability, so that most
+ * exceptions are skipped without touching any shared state. The countdown is drawn again whenever
+ * the sampling window rolls, and once the samples budget of a window is spent every exception is
+ * skipped until it rolls.
+ *
+ * <p>The skipped exceptions are counted by each thread and added to the sampler when the thread
+ * picks its next exception, or sees the window roll, so the rate of exceptions the sampling
+ * probability is computed from may lag behind by one countdown per thread.
+ */
 final class ExceptionSampler {
   /*
    * Fixed 0.5 second sampling window.
@@ -14,15 +25,26 @@ final class ExceptionSampler {
    */
   private static final Duration SAMPLING_WINDOW = Duration.of(500, ChronoUnit.MILLIS);
 
+  private static final class Countdown {
+    long window = -1;
+    int remaining;
+    long skipped;
+  }
+
   private final AdaptiveSampler sampler;
   private final EventType exceptionSampleType;
+  private final ThreadLocal<Countdown> countdowns = ThreadLocal.withInitial(Countdown::new);
 
   ExceptionSampler(final Config config) {
     this(SAMPLING_WINDOW, getSamplesPerWindow(config), samplingWindowsPerRecording(config));
   }
 
   ExceptionSampler(final Duration windowDuration, final int samplesPerWindow, final int lookback) {
-    sampler = new AdaptiveSampler(windowDuration, samplesPerWindow, lookback);
+    this(new AdaptiveSampler(windowDuration, samplesPerWindow, lookback));
+  }
+
+  ExceptionSampler(final AdaptiveSampler sampler) {
+    this.sampler = sampler;
     exceptionSampleType = EventType.getEventType(ExceptionSampleEvent.class);
   }
 
@@ -43,7 +65,35 @@ final class ExceptionSampler {
     return config.getProfilingExceptionSampleLimit() / samplingWindowsPerRecording(config);
   }
 
+  boolean isEnabled() {
+    return exceptionSampleType.isEnabled();
+  }
+
   boolean sample() {
-    return exceptionSampleType.isEnabled() && sampler.sample();
+    if (!exceptionSampleType.isEnabled()) {
+      return false;
+    }
+    final Countdown countdown = countdowns.get();
+    final long window = sampler.getWindow();
+    if (countdown.window != window) {
+      // the probability may have changed with the window
+      sampler.skip(countdown.skipped);
+      countdown.skipped = 0;
+      countdown.remaining = sampler.nextSampleGap();
+      countdown.window = window;
+    }
+    if (countdown.remaining > 0) {
+      countdown.remaining--;
+      countdown.skipped++;
+      return false;
+    }
+    if (sampler.isBudgetSpent()) {
+      countdown.skipped++;
+      return false;
+    }
+    final boolean sampled = sampler.sampleAfter(countdown.skipped);
+    countdown.skipped = 0;
+    countdown.remaining = sampler.nextSampleGap();
+    return sampled;
   }
 }
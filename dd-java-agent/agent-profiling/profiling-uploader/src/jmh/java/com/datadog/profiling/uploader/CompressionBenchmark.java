@@ -0,0 +1,81 @@
+package com.datadog.profiling.uploader;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compresses a recorded JFR file with each codec and level the uploads can use. The time per
+ * operation is the CPU cost of compressing one recording; the size it was compressed to is printed
+ * at the end of each trial.
+ *
+ * <p>Pass {@code -p recording=/path/to/recording.jfr} to compress another recording than the one
+ * the tests upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+public class CompressionBenchmark {
+
+  @Param({"src/test/resources/test-recording.jfr"})
+  String recording;
+
+  @Param({"LZ4", "GZIP", "ZSTD-1", "ZSTD-3", "ZSTD-6", "ZSTD-9"})
+  String codec;
+
+  byte[] data;
+  CompressingRequestBody.OutputStreamMappingFunction compressor;
+
+  @Setup(Level.Trial)
+  public void init() throws IOException {
+    data = Files.readAllBytes(Paths.get(recording));
+    String[] parts = codec.split("-");
+    CompressionType type = CompressionType.valueOf(parts[0]);
+    if (type == CompressionType.ZSTD && !CompressingRequestBody.isZstdAvailable()) {
+      throw new IllegalStateException("ZSTD is not available on this platform");
+    }
+    compressor =
+        CompressingRequestBody.getOutputStreamMapper(
+            type, parts.length > 1 ? Integer.parseInt(parts[1]) : 0);
+  }
+
+  @TearDown(Level.Trial)
+  public void printRatio() throws IOException {
+    long compressed = compress();
+    System.out.printf(
+        "%n%s compressed %d bytes to %d, a ratio of %.2f%n",
+        codec, data.length, compressed, (double) data.length / compressed);
+  }
+
+  @Benchmark
+  public long compress() throws IOException {
+    ByteCountingOutputStream counting = new ByteCountingOutputStream(NullOutputStream.INSTANCE);
+    try (OutputStream out = compressor.apply(counting)) {
+      out.write(data);
+    }
+    return counting.getWrittenBytes();
+  }
+
+  static final class NullOutputStream extends OutputStream {
+    static final NullOutputStream INSTANCE = new NullOutputStream();
+
+    @Override
+    public void write(int b) {}
+
+    @Override
+    public void write(byte[] b, int off, int len) {}
+  }
+}
@@ -0,0 +1,182 @@
+package com.datadog.profiling.uploader;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the codec and level each upload is compressed with, trading compression ratio for CPU
+ * time. Every upload measures the CPU time spent compressing its recording and the ratio reached:
+ * the next upload moves to a cheaper step when the last one went over the CPU budget, and to a step
+ * compressing better when the last one used less than a quarter of it - unless that step was seen
+ * not to compress noticeably better.
+ *
+ * <p>Only the CPU time of the compressing thread is measured. When the JVM can't measure it, every
+ * upload is compressed with the step halfway up, since the elapsed time would count the waits for
+ * the network too.
+ */
+final class AdaptiveCompression {
+  private static final Logger log = LoggerFactory.getLogger(AdaptiveCompression.class);
+
+  /** A codec and level uploads can be compressed with */
+  static final class Step {
+    final CompressionType type;
+    final int level;
+
+    Step(final CompressionType type, final int level) {
+      this.type = type;
+      this.level = level;
+    }
+
+    @Override
+    public String toString() {
+      return level == 0 ? type.name() : type.name() + "-" + level;
+    }
+  }
+
+  // from the cheapest step to the one compressing best
+  static final Step[] ZSTD_STEPS = {
+    new Step(CompressionType.LZ4, 0),
+    new Step(CompressionType.ZSTD, 1),
+    new Step(CompressionType.ZSTD, 3),
+    new Step(CompressionType.ZSTD, 6),
+    new Step(CompressionType.ZSTD, 9)
+  };
+  static final Step[] FALLBACK_STEPS = {
+    new Step(CompressionType.LZ4, 0), new Step(CompressionType.GZIP, 0)
+  };
+
+  // a step compressing less than this much better is not worth its CPU time
+  static final double MIN_RATIO_GAIN = 1.05;
+
+  private final Step[] steps;
+  private final long cpuBudgetNanos;
+  private final boolean adapting;
+  // the last compression ratio reached with each step, or 0 if never used
+  private final double[] ratios;
+  private int current;
+
+  /**
+   * @param cpuBudgetPercent the percentage of one CPU compressing may use
+   * @param uploadPeriodSeconds the time between uploads, in seconds
+   */
+  AdaptiveCompression(final double cpuBudgetPercent, final int uploadPeriodSeconds) {
+    this(
+        CompressingRequestBody.isZstdAvailable() ? ZSTD_STEPS : FALLBACK_STEPS,
+        (long) (cpuBudgetPercent / 100 * TimeUnit.SECONDS.toNanos(uploadPeriodSeconds)),
+        ThreadCpuTime.THREAD_MX_BEAN != null);
+    if (!adapting) {
+      log.debug("Thread CPU time is not available, compressing every upload with {}", select());
+    }
+  }
+
+  AdaptiveCompression(@Nonnull final Step[] steps, final long cpuBudgetNanos) {
+    this(steps, cpuBudgetNanos, true);
+  }
+
+  AdaptiveCompression(
+      @Nonnull final Step[] steps, final long cpuBudgetNanos, final boolean adapting) {
+    this.steps = steps;
+    this.cpuBudgetNanos = cpuBudgetNanos;
+    this.adapting = adapting;
+    this.ratios = new double[steps.length];
+    this.current = steps.length / 2;
+  }
+
+  /**
+   * @return the CPU time of the current thread, in nanoseconds, to measure compressing with, or
+   *     {@literal null} when not adapting
+   */
+  @Nullable
+  LongSupplier cpuClock() {
+    return adapting ? AdaptiveCompression::threadCpuNanos : null;
+  }
+
+  /** @return the step to compress the next upload with */
+  synchronized Step select() {
+    return steps[current];
+  }
+
+  /**
+   * Records how an upload compressed, to pick the step of the next uploads.
+   *
+   * @param step the step the upload was compressed with
+   * @param readBytes the size of the recording
+   * @param writtenBytes the size of the recording compressed
+   * @param cpuNanos the CPU time spent compressing the recording
+   */
+  synchronized void record(
+      @Nonnull final Step step,
+      final long readBytes,
+      final long writtenBytes,
+      final long cpuNanos) {
+    if (!adapting || readBytes <= 0 || writtenBytes <= 0) {
+      return;
+    }
+    final int index = indexOf(step);
+    if (index < 0) {
+      return;
+    }
+    ratios[index] = (double) readBytes / writtenBytes;
+    if (index != current) {
+      // uploads overlapped, the step was changed already
+      return;
+    }
+    if (cpuNanos > cpuBudgetNanos) {
+      if (current > 0) {
+        --current;
+      }
+    } else if (cpuNanos < cpuBudgetNanos / 4 && current < steps.length - 1) {
+      final double better = ratios[current + 1];
+      if (better == 0 || better >= ratios[current] * MIN_RATIO_GAIN) {
+        ++current;
+      }
+    }
+    if (current != index) {
+      log.debug(
+          "Compressing with {} instead of {}, which compressed {} bytes to {} in {} ms of CPU",
+          steps[current],
+          step,
+          readBytes,
+          writtenBytes,
+          TimeUnit.NANOSECONDS.toMillis(cpuNanos));
+    }
+  }
+
+  private int indexOf(final Step step) {
+    for (int i = 0; i < steps.length; ++i) {
+      if (steps[i] == step) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static long threadCpuNanos() {
+    return ThreadCpuTime.THREAD_MX_BEAN.getCurrentThreadCpuTime();
+  }
+
+  // not loading JMX unless compression is adaptive
+  private static final class ThreadCpuTime {
+    @Nullable static final ThreadMXBean THREAD_MX_BEAN = threadMXBean();
+
+    @Nullable
+    private static ThreadMXBean threadMXBean() {
+      try {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean.isCurrentThreadCpuTimeSupported()
+            && threadMXBean.isThreadCpuTimeEnabled()) {
+          return threadMXBean;
+        }
+      } catch (final Throwable ignored) {
+        // compress without adapting
+      }
+      return null;
+    }
+  }
+}
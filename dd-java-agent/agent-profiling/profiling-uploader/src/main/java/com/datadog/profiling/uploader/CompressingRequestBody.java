@@ -1,10 +1,13 @@
 package com.datadog.profiling.uploader;
 
 import com.datadog.profiling.controller.RecordingInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.github.luben.zstd.util.Native;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.function.LongSupplier;
 import java.util.zip.GZIPOutputStream;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -15,12 +18,20 @@ import okio.BufferedSink;
 import okio.Okio;
 import okio.Source;
 import org.openjdk.jmc.common.io.IOToolkit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A specialized {@linkplain RequestBody} subclass performing on-the fly compression of the uploaded
  * data.
+ *
+ * <p>When given a {@linkplain Spool} the compressed data is also spooled as it is written, so that
+ * writing the body again - when the request is retried - resends the spooled bytes instead of
+ * reading and compressing the recording again.
  */
 final class CompressingRequestBody extends RequestBody {
+  private static final Logger log = LoggerFactory.getLogger(CompressingRequestBody.class);
+
   static final class MissingInputException extends IOException {
     public MissingInputException(String message) {
       super(message);
@@ -73,14 +84,25 @@ final class CompressingRequestBody extends RequestBody {
   // JMC's IOToolkit hides this from us...
   private static final int ZIP_MAGIC[] = new int[] {80, 75, 3, 4};
   private static final int GZ_MAGIC[] = new int[] {31, 139};
+  // https://tools.ietf.org/html/rfc8878#section-3.1.1
+  private static final int[] ZSTD_MAGIC = new int[] {0x28, 0xB5, 0x2F, 0xFD};
+
+  /** The level used for ZSTD unless given another, also zstd's own default */
+  static final int DEFAULT_ZSTD_LEVEL = 3;
 
   private final InputStreamSupplier inputStreamSupplier;
   private final OutputStreamMappingFunction outputStreamMapper;
   private final RetryPolicy retryPolicy;
   private final RetryBackoff retryBackoff;
+  @Nullable private final Spool spool;
+  @Nullable private final LongSupplier cpuClock;
 
   private long readBytes = 0;
   private long writtenBytes = 0;
+  private long compressionCpuNanos = 0;
+  private boolean passedThrough = false;
+  private int writes = 0;
+  private boolean compressionMeasured = false;
 
   /**
    * Create a new instance configured with 1 retry and constant 10ms backoff delay.
@@ -90,7 +112,44 @@ final class CompressingRequestBody extends RequestBody {
    */
   CompressingRequestBody(
       @Nonnull CompressionType compressionType, @Nonnull InputStreamSupplier inputStreamSupplier) {
-    this(compressionType, inputStreamSupplier, r -> r <= 1, r -> 10);
+    this(compressionType, 0, inputStreamSupplier, r -> r <= 1, r -> 10, null, null);
+  }
+
+  /**
+   * Create a new instance configured with 1 retry and constant 10ms backoff delay, spooling the
+   * compressed data.
+   *
+   * @param compressionType {@linkplain CompressionType} value
+   * @param inputStreamSupplier supplier of the data input stream
+   * @param spool {@linkplain Spool} holding the compressed data, or {@literal null} to compress the
+   *     data again each time the body is written
+   */
+  CompressingRequestBody(
+      @Nonnull CompressionType compressionType,
+      @Nonnull InputStreamSupplier inputStreamSupplier,
+      @Nullable Spool spool) {
+    this(compressionType, 0, inputStreamSupplier, r -> r <= 1, r -> 10, spool, null);
+  }
+
+  /**
+   * Create a new instance configured with 1 retry and constant 10ms backoff delay, spooling the
+   * compressed data and measuring the CPU time spent compressing it.
+   *
+   * @param compressionType {@linkplain CompressionType} value
+   * @param level the compression level, or 0 for the default level of the codec
+   * @param inputStreamSupplier supplier of the data input stream
+   * @param spool {@linkplain Spool} holding the compressed data, or {@literal null} to compress the
+   *     data again each time the body is written
+   * @param cpuClock the CPU time of the current thread, in nanoseconds, or {@literal null} not to
+   *     measure the CPU time spent compressing
+   */
+  CompressingRequestBody(
+      @Nonnull CompressionType compressionType,
+      int level,
+      @Nonnull InputStreamSupplier inputStreamSupplier,
+      @Nullable Spool spool,
+      @Nullable LongSupplier cpuClock) {
+    this(compressionType, level, inputStreamSupplier, r -> r <= 1, r -> 10, spool, cpuClock);
   }
 
   /**
@@ -104,26 +163,36 @@ final class CompressingRequestBody extends RequestBody {
       @Nonnull CompressionType compressionType,
       @Nonnull InputStreamSupplier inputStreamSupplier,
       @Nonnull RetryPolicy retryPolicy) {
-    this(compressionType, inputStreamSupplier, retryPolicy, r -> 10);
+    this(compressionType, 0, inputStreamSupplier, retryPolicy, r -> 10, null, null);
   }
 
   /**
    * Create a new instance.
    *
    * @param compressionType {@linkplain CompressionType} value
+   * @param level the compression level, or 0 for the default level of the codec
    * @param inputStreamSupplier supplier of the data input stream
    * @param retryPolicy {@linkplain RetryPolicy} instance
    * @param retryBackoff {@linkplain RetryBackoff} instance
+   * @param spool {@linkplain Spool} holding the compressed data, or {@literal null} to compress the
+   *     data again each time the body is written
+   * @param cpuClock the CPU time of the current thread, in nanoseconds, or {@literal null} not to
+   *     measure the CPU time spent compressing
    */
   CompressingRequestBody(
       @Nonnull CompressionType compressionType,
+      int level,
       @Nonnull InputStreamSupplier inputStreamSupplier,
       @Nonnull RetryPolicy retryPolicy,
-      @Nonnull RetryBackoff retryBackoff) {
+      @Nonnull RetryBackoff retryBackoff,
+      @Nullable Spool spool,
+      @Nullable LongSupplier cpuClock) {
     this.inputStreamSupplier = inputStreamSupplier;
-    this.outputStreamMapper = getOutputStreamMapper(compressionType);
+    this.outputStreamMapper = getOutputStreamMapper(compressionType, level);
     this.retryPolicy = retryPolicy;
     this.retryBackoff = retryBackoff;
+    this.spool = spool;
+    this.cpuClock = cpuClock;
   }
 
   @Override
@@ -140,6 +209,17 @@ final class CompressingRequestBody extends RequestBody {
 
   @Override
   public void writeTo(BufferedSink bufferedSink) throws IOException {
+    // only the first write is measured, later ones are retries of the request
+    final boolean firstWrite = writes++ == 0;
+    if (spool != null && spool.isComplete()) {
+      // the request is retried, resend the data compressed the first time
+      ByteCountingOutputStream outputStream =
+          new ByteCountingOutputStream(bufferedSink.outputStream());
+      spool.writeTo(outputStream);
+      outputStream.flush();
+      writtenBytes = outputStream.getWrittenBytes();
+      return;
+    }
     Throwable lastException = null;
     boolean shouldRetry = false;
     int retry = 1;
@@ -166,10 +246,24 @@ final class CompressingRequestBody extends RequestBody {
         lastException = null;
         try {
           ByteCountingOutputStream outputStream =
-              new ByteCountingOutputStream(bufferedSink.outputStream());
-          attemptWrite(inputStream, outputStream);
+              new ByteCountingOutputStream(
+                  spool == null
+                      ? bufferedSink.outputStream()
+                      : new SpoolingOutputStream(bufferedSink.outputStream(), spool));
+          if (spool != null) {
+            // discard whatever an earlier attempt spooled
+            spool.reset();
+          }
+          final long cpuNanos = attemptWrite(inputStream, outputStream);
+          if (firstWrite && cpuClock != null && !passedThrough) {
+            compressionCpuNanos = cpuNanos;
+            compressionMeasured = true;
+          }
           readBytes = inputStream.getReadBytes();
           writtenBytes = outputStream.getWrittenBytes();
+          if (spool != null) {
+            spool.complete();
+          }
         } catch (Throwable t) {
           // Only the failures while obtaining the input stream are retriable.
           // Any failure during reading that input stream must make this write to fail as well.
@@ -212,32 +306,68 @@ final class CompressingRequestBody extends RequestBody {
     return writtenBytes;
   }
 
-  private void attemptWrite(@Nonnull InputStream inputStream, @Nonnull OutputStream outputStream)
+  /** @return the CPU time spent compressing the data, if measured */
+  long getCompressionCpuNanos() {
+    return compressionCpuNanos;
+  }
+
+  /**
+   * @return {@literal true} if the first write of the body completed compressing the data, while
+   *     measuring the CPU time it took
+   */
+  boolean isCompressionMeasured() {
+    return compressionMeasured;
+  }
+
+  /** @return {@literal true} if the data was compressed already, so it was not compressed again */
+  boolean isPassedThrough() {
+    return passedThrough;
+  }
+
+  /**
+   * @return the CPU time spent compressing, excluding reading the recording and writing to the
+   *     sink, or 0 if not measured
+   */
+  private long attemptWrite(@Nonnull InputStream inputStream, @Nonnull OutputStream outputStream)
       throws IOException {
-    try (OutputStream sinkStream =
-        isCompressed(inputStream)
-            ? new BufferedOutputStream(outputStream) {
-              @Override
-              public void close() throws IOException {
-                // Do not propagate close; call 'flush()' instead.
-                // Compression streams must be 'closed' because they finalize the
-                // compression
-                // in that method.
-                flush();
-              }
+    passedThrough = isCompressed(inputStream);
+    CpuTimingOutputStream compressing = null;
+    CpuTimingOutputStream writing = null;
+    OutputStream sinkStream;
+    if (passedThrough) {
+      sinkStream =
+          new BufferedOutputStream(outputStream) {
+            @Override
+            public void close() throws IOException {
+              // Do not propagate close; call 'flush()' instead.
+              // Compression streams must be 'closed' because they finalize the
+              // compression
+              // in that method.
+              flush();
+            }
+          };
+    } else {
+      OutputStream target =
+          new BufferedOutputStream(outputStream) {
+            @Override
+            public void close() throws IOException {
+              // Do not propagate close; call 'flush()' instead.
+              // Compression streams must be 'closed' because they finalize the
+              // compression in that method.
+              flush();
             }
-            : new BufferedOutputStream(
-                outputStreamMapper.apply(
-                    new BufferedOutputStream(outputStream) {
-                      @Override
-                      public void close() throws IOException {
-                        // Do not propagate close; call 'flush()' instead.
-                        // Compression streams must be 'closed' because they finalize the
-                        // compression in that method.
-                        flush();
-                      }
-                    }))) {
-      BufferedSink sink = Okio.buffer(Okio.sink(sinkStream));
+          };
+      if (cpuClock != null) {
+        // the compressor writes to the sink as it goes, its time is taken out of the total
+        target = writing = new CpuTimingOutputStream(target, cpuClock);
+      }
+      sinkStream = new BufferedOutputStream(outputStreamMapper.apply(target));
+      if (cpuClock != null) {
+        sinkStream = compressing = new CpuTimingOutputStream(sinkStream, cpuClock);
+      }
+    }
+    try (OutputStream stream = sinkStream) {
+      BufferedSink sink = Okio.buffer(Okio.sink(stream));
       try (Source source = Okio.buffer(Okio.source(inputStream))) {
         sink.writeAll(source);
       }
@@ -245,6 +375,7 @@ final class CompressingRequestBody extends RequestBody {
       sink.emit();
       sink.flush();
     }
+    return compressing == null ? 0 : compressing.cpuNanos - writing.cpuNanos;
   }
 
   /**
@@ -256,7 +387,7 @@ final class CompressingRequestBody extends RequestBody {
    */
   static boolean isCompressed(@Nonnull final InputStream is) throws IOException {
     checkMarkSupported(is);
-    return isGzip(is) || isLz4(is) || isZip(is);
+    return isGzip(is) || isLz4(is) || isZstd(is) || isZip(is);
   }
 
   /**
@@ -310,16 +441,122 @@ final class CompressingRequestBody extends RequestBody {
     }
   }
 
+  /**
+   * Check whether the stream represents ZSTD data
+   *
+   * @param is input stream; must support {@linkplain InputStream#mark(int)}
+   * @return {@literal true} if the stream represents ZSTD data
+   * @throws IOException
+   */
+  static boolean isZstd(@Nonnull final InputStream is) throws IOException {
+    checkMarkSupported(is);
+    is.mark(ZSTD_MAGIC.length);
+    try {
+      return IOToolkit.hasMagic(is, ZSTD_MAGIC);
+    } finally {
+      is.reset();
+    }
+  }
+
   private static void checkMarkSupported(@Nonnull final InputStream is) throws IOException {
     if (!is.markSupported()) {
       throw new IOException("Can not check headers on streams not supporting mark() method");
     }
   }
 
-  private static OutputStreamMappingFunction getOutputStreamMapper(
-      @Nonnull CompressionType compressionType) {
-    // currently only gzip and off are supported
-    // this needs to be updated once more compression types are added
+  /** Writes the data out to the sink, spooling it as well */
+  private static final class SpoolingOutputStream extends OutputStream {
+    private final OutputStream sink;
+    private final Spool spool;
+
+    SpoolingOutputStream(final OutputStream sink, final Spool spool) {
+      this.sink = sink;
+      this.spool = spool;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      sink.write(b);
+      spool.write(b);
+    }
+
+    @Override
+    public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+      sink.write(b, off, len);
+      spool.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      sink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      sink.close();
+    }
+  }
+
+  /** Accumulates the CPU time spent writing to the stream it wraps */
+  private static final class CpuTimingOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final LongSupplier cpuClock;
+    long cpuNanos;
+
+    CpuTimingOutputStream(final OutputStream out, final LongSupplier cpuClock) {
+      this.out = out;
+      this.cpuClock = cpuClock;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      final long start = cpuClock.getAsLong();
+      try {
+        out.write(b);
+      } finally {
+        cpuNanos += cpuClock.getAsLong() - start;
+      }
+    }
+
+    @Override
+    public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+      final long start = cpuClock.getAsLong();
+      try {
+        out.write(b, off, len);
+      } finally {
+        cpuNanos += cpuClock.getAsLong() - start;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      final long start = cpuClock.getAsLong();
+      try {
+        out.flush();
+      } finally {
+        cpuNanos += cpuClock.getAsLong() - start;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      final long start = cpuClock.getAsLong();
+      try {
+        out.close();
+      } finally {
+        cpuNanos += cpuClock.getAsLong() - start;
+      }
+    }
+  }
+
+  /**
+   * @param compressionType {@linkplain CompressionType} value; adaptive compression must be
+   *     resolved to a codec before
+   * @param level the compression level of ZSTD, or 0 for its default level
+   * @return the function wrapping an output stream into the compressing stream
+   */
+  static OutputStreamMappingFunction getOutputStreamMapper(
+      @Nonnull CompressionType compressionType, int level) {
     switch (compressionType) {
       case GZIP:
         {
@@ -329,8 +566,17 @@ final class CompressingRequestBody extends RequestBody {
         {
           return out -> out;
         }
+      case ZSTD:
+        {
+          if (isZstdAvailable()) {
+            final int zstdLevel = level == 0 ? DEFAULT_ZSTD_LEVEL : level;
+            return out -> new ZstdOutputStream(out, zstdLevel);
+          }
+          return CompressingRequestBody::toLz4Stream;
+        }
       case ON:
       case LZ4:
+      case ADAPTIVE:
       default:
         {
           return CompressingRequestBody::toLz4Stream;
@@ -338,6 +584,25 @@ final class CompressingRequestBody extends RequestBody {
     }
   }
 
+  /** @return {@literal true} if the native library of ZSTD loads on this platform */
+  static boolean isZstdAvailable() {
+    return ZstdSupport.AVAILABLE;
+  }
+
+  private static final class ZstdSupport {
+    static final boolean AVAILABLE = load();
+
+    private static boolean load() {
+      try {
+        Native.load();
+        return true;
+      } catch (final Throwable e) {
+        log.warn("ZSTD compression is not available, using LZ4 instead: {}", e.toString());
+        return false;
+      }
+    }
+  }
+
   private static OutputStream toLz4Stream(@Nonnull OutputStream os) throws IOException {
     return new LZ4FrameOutputStream(
         os,
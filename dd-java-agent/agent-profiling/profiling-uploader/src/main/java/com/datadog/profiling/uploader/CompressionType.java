@@ -11,7 +11,11 @@ enum CompressionType {
   /** Lower compression ratio with less CPU overhead * */
   LZ4,
   /** Better compression ratio for the price of higher CPU usage * */
-  GZIP;
+  GZIP,
+  /** Better compression ratio than GZIP for less CPU usage, falling back to LZ4 if unavailable */
+  ZSTD,
+  /** Picks the codec and level with the best compression ratio fitting a CPU budget */
+  ADAPTIVE;
 
   private static final Logger log = LoggerFactory.getLogger(CompressionType.class);
 
@@ -29,6 +33,10 @@ enum CompressionType {
         return LZ4;
       case "gzip":
         return GZIP;
+      case "zstd":
+        return ZSTD;
+      case "adaptive":
+        return ADAPTIVE;
       default:
         log.warn("Unrecognizable compression type: {}. Defaulting to 'on'.", type);
         return ON;
@@ -23,6 +23,7 @@ import com.datadog.profiling.uploader.util.PidHelper;
 import datadog.common.container.ContainerInfo;
 import datadog.trace.api.Config;
 import datadog.trace.api.IOLogger;
+import datadog.trace.api.StatsDClient;
 import datadog.trace.util.AgentProxySelector;
 import datadog.trace.util.AgentThreadFactory;
 import java.io.IOException;
@@ -38,8 +39,10 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.ConnectionPool;
@@ -79,7 +82,6 @@ public final class ProfileUploader {
   static final String DATADOG_META_LANG = "Datadog-Meta-Lang";
 
   static final int MAX_RUNNING_REQUESTS = 10;
-  static final int MAX_ENQUEUED_REQUESTS = 20;
 
   static final String PROFILE_FORMAT = "jfr";
   static final String PROFILE_TYPE_PREFIX = "jfr-";
@@ -149,6 +151,7 @@ public final class ProfileUploader {
     }
   }
 
+  private final StatsDClient statsd;
   private final ExecutorService okHttpExecutorService;
   private final OkHttpClient client;
   private final Callback responseCallback;
@@ -159,9 +162,28 @@ public final class ProfileUploader {
   private final int terminationTimeout;
   private final List<String> tags;
   private final CompressionType compressionType;
+  // null unless the compression is adaptive
+  @Nullable private final AdaptiveCompression adaptiveCompression;
+  private final int maxQueuedRecordings;
+  // null when compressed recordings are not spooled
+  @Nullable private final SpoolBuffers spoolBuffers;
+
+  // recordings not uploaded because too many were queued already
+  private final AtomicLong droppedRecordings = new AtomicLong();
+  // recordings uploaded without spooling, because too many bytes were in flight
+  private final AtomicLong unspooledRecordings = new AtomicLong();
 
   public ProfileUploader(final Config config) throws IOException {
-    this(config, new IOLogger(log), ContainerInfo.get().getContainerId(), TERMINATION_TIMEOUT);
+    this(config, StatsDClient.NO_OP);
+  }
+
+  public ProfileUploader(final Config config, final StatsDClient statsd) throws IOException {
+    this(
+        config,
+        statsd,
+        new IOLogger(log),
+        ContainerInfo.get().getContainerId(),
+        TERMINATION_TIMEOUT);
   }
 
   /**
@@ -170,10 +192,12 @@ public final class ProfileUploader {
    */
   ProfileUploader(
       final Config config,
+      final StatsDClient statsd,
       final IOLogger ioLogger,
       final String containerId,
       final int terminationTimeout)
       throws IOException {
+    this.statsd = statsd;
     url = config.getFinalProfilingUrl();
     apiKey = config.getApiKey();
     agentless = config.isProfilingAgentless();
@@ -261,6 +285,16 @@ public final class ProfileUploader {
     client.dispatcher().setMaxRequestsPerHost(MAX_RUNNING_REQUESTS);
 
     compressionType = CompressionType.of(config.getProfilingUploadCompression());
+    adaptiveCompression =
+        compressionType == CompressionType.ADAPTIVE
+            ? new AdaptiveCompression(
+                config.getProfilingUploadCompressionCpuBudget(), config.getProfilingUploadPeriod())
+            : null;
+    maxQueuedRecordings = config.getProfilingUploadMaxQueuedRecordings();
+    spoolBuffers =
+        config.getProfilingUploadMaxInFlightBytes() > 0
+            ? new SpoolBuffers(config.getProfilingUploadMaxInFlightBytes())
+            : null;
   }
 
   /**
@@ -294,7 +328,10 @@ public final class ProfileUploader {
           });
       return;
     } else {
-      log.warn("Cannot upload profile data: too many enqueued requests!");
+      statsd.incrementCounter("uploader.recordings.dropped");
+      log.warn(
+          "Cannot upload profile data: too many enqueued requests! ({} recordings dropped so far)",
+          droppedRecordings.incrementAndGet());
     }
     // the request was not made; release the recording data
     data.release();
@@ -320,13 +357,34 @@ public final class ProfileUploader {
     return client;
   }
 
+  /** @return the number of recordings dropped because too many were queued for upload */
+  long getDroppedRecordings() {
+    return droppedRecordings.get();
+  }
+
+  /** @return the number of recordings uploaded without spooling their compressed data */
+  long getUnspooledRecordings() {
+    return unspooledRecordings.get();
+  }
+
+  /** @return the number of bytes held by spooled recordings */
+  long getInFlightBytes() {
+    return spoolBuffers == null ? 0 : spoolBuffers.getInFlightBytes();
+  }
+
   private void makeUploadRequest(
       @Nonnull final RecordingType type,
       @Nonnull final RecordingData data,
       @Nonnull Runnable onCompletion) {
 
+    final Spool spool = spoolBuffers == null ? null : spoolBuffers.newSpool();
+    final AdaptiveCompression.Step step =
+        adaptiveCompression == null ? null : adaptiveCompression.select();
     final CompressingRequestBody body =
-        new CompressingRequestBody(compressionType, data::getStream);
+        step == null
+            ? new CompressingRequestBody(compressionType, data::getStream, spool)
+            : new CompressingRequestBody(
+                step.type, step.level, data::getStream, spool, adaptiveCompression.cpuClock());
 
     final MultipartBody.Builder bodyBuilder =
         new MultipartBody.Builder()
@@ -368,6 +426,8 @@ public final class ProfileUploader {
               public void onFailure(Call call, IOException e) {
                 logDebug("Failed to upload profile");
                 responseCallback.onFailure(call, e);
+                recordCompression();
+                releaseSpool();
                 onCompletion.run();
               }
 
@@ -375,9 +435,35 @@ public final class ProfileUploader {
               public void onResponse(Call call, Response response) throws IOException {
                 logDebug("Uploaded profile");
                 responseCallback.onResponse(call, response);
+                recordCompression();
+                releaseSpool();
                 onCompletion.run();
               }
 
+              private void recordCompression() {
+                // a failed request may have stopped compressing part way
+                if (step != null && body.isCompressionMeasured()) {
+                  adaptiveCompression.record(
+                      step,
+                      body.getReadBytes(),
+                      body.getWrittenBytes(),
+                      body.getCompressionCpuNanos());
+                }
+              }
+
+              private void releaseSpool() {
+                if (spool != null) {
+                  if (spool.isOverflowed()) {
+                    statsd.incrementCounter("uploader.recordings.unspooled");
+                    log.debug(
+                        "Uploaded {} unspooled, too many bytes in flight ({} recordings so far)",
+                        data.getName(),
+                        unspooledRecordings.incrementAndGet());
+                  }
+                  spool.release();
+                }
+              }
+
               private void logDebug(String msg) {
                 if (log.isDebugEnabled()) {
                   log.debug(
@@ -393,7 +479,7 @@ public final class ProfileUploader {
   }
 
   private boolean canEnqueueMoreRequests() {
-    return client.dispatcher().queuedCallsCount() < MAX_ENQUEUED_REQUESTS;
+    return client.dispatcher().queuedCallsCount() < maxQueuedRecordings;
   }
 
   private List<String> tagsToList(final Map<String, String> tags) {
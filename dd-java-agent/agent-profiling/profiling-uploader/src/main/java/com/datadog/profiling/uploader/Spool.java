@@ -0,0 +1,110 @@
+package com.datadog.profiling.uploader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * The compressed bytes of a single upload, held in segments of {@linkplain SpoolBuffers}. Once the
+ * bytes allowed in flight are used up the spool overflows: it gives its segments back and ignores
+ * the remaining bytes, leaving the upload to read the recording again if it is retried.
+ *
+ * <p>A spool is confined to the thread running its request, so it is not thread safe.
+ */
+final class Spool extends OutputStream {
+  private final SpoolBuffers buffers;
+  private final List<byte[]> segments = new ArrayList<>();
+  // bytes written to the last segment
+  private int position = SpoolBuffers.SEGMENT_SIZE;
+  private long size = 0;
+  private boolean overflowed = false;
+  private boolean complete = false;
+
+  Spool(final SpoolBuffers buffers) {
+    this.buffers = buffers;
+  }
+
+  @Override
+  public void write(final int b) {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(@Nonnull final byte[] b, int off, int len) {
+    if (overflowed || complete) {
+      return;
+    }
+    while (len > 0) {
+      if (position == SpoolBuffers.SEGMENT_SIZE) {
+        final byte[] segment = buffers.acquire();
+        if (segment == null) {
+          overflowed = true;
+          releaseSegments();
+          return;
+        }
+        segments.add(segment);
+        position = 0;
+      }
+      final int count = Math.min(len, SpoolBuffers.SEGMENT_SIZE - position);
+      System.arraycopy(b, off, segments.get(segments.size() - 1), position, count);
+      position += count;
+      size += count;
+      off += count;
+      len -= count;
+    }
+  }
+
+  /** Marks all the bytes of the upload as spooled, unless some were left out */
+  void complete() {
+    complete = !overflowed;
+  }
+
+  /** @return true if all the bytes of the upload are spooled */
+  boolean isComplete() {
+    return complete;
+  }
+
+  /** @return true if the bytes allowed in flight were used up while spooling */
+  boolean isOverflowed() {
+    return overflowed;
+  }
+
+  long size() {
+    return size;
+  }
+
+  /** Writes the bytes spooled so far out to the stream */
+  void writeTo(@Nonnull final OutputStream out) throws IOException {
+    final int last = segments.size() - 1;
+    for (int i = 0; i < last; ++i) {
+      out.write(segments.get(i), 0, SpoolBuffers.SEGMENT_SIZE);
+    }
+    if (last >= 0) {
+      out.write(segments.get(last), 0, position);
+    }
+  }
+
+  /** Discards the bytes spooled so far, so the upload can be spooled again */
+  void reset() {
+    releaseSegments();
+    overflowed = false;
+    complete = false;
+  }
+
+  /** Gives the segments back, once the upload is done */
+  void release() {
+    releaseSegments();
+    complete = false;
+  }
+
+  private void releaseSegments() {
+    for (final byte[] segment : segments) {
+      buffers.release(segment);
+    }
+    segments.clear();
+    position = SpoolBuffers.SEGMENT_SIZE;
+    size = 0;
+  }
+}
@@ -0,0 +1,53 @@
+package com.datadog.profiling.uploader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Bounds the memory holding compressed recordings until they are uploaded. Each upload spools its
+ * compressed bytes into fixed size segments taken from here, so that a retried request can resend
+ * them rather than reading and compressing the recording again.
+ */
+final class SpoolBuffers {
+  static final int SEGMENT_SIZE = 64 * 1024;
+  // released segments kept for the next uploads
+  static final int MAX_FREE_SEGMENTS = 16;
+
+  private final long maxInFlightBytes;
+  private final AtomicLong inFlightBytes = new AtomicLong();
+  private final ArrayBlockingQueue<byte[]> freeSegments =
+      new ArrayBlockingQueue<>(MAX_FREE_SEGMENTS);
+
+  /** @param maxInFlightBytes the most bytes all the spools may hold at once */
+  SpoolBuffers(final long maxInFlightBytes) {
+    this.maxInFlightBytes = maxInFlightBytes;
+  }
+
+  Spool newSpool() {
+    return new Spool(this);
+  }
+
+  /** @return a segment, or null if taking it would exceed the bytes allowed in flight */
+  @Nullable
+  byte[] acquire() {
+    long current;
+    do {
+      current = inFlightBytes.get();
+      if (current + SEGMENT_SIZE > maxInFlightBytes) {
+        return null;
+      }
+    } while (!inFlightBytes.compareAndSet(current, current + SEGMENT_SIZE));
+    final byte[] segment = freeSegments.poll();
+    return segment != null ? segment : new byte[SEGMENT_SIZE];
+  }
+
+  void release(final byte[] segment) {
+    inFlightBytes.addAndGet(-SEGMENT_SIZE);
+    freeSegments.offer(segment);
+  }
+
+  long getInFlightBytes() {
+    return inFlightBytes.get();
+  }
+}
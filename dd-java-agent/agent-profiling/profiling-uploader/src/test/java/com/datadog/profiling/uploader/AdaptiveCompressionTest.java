@@ -0,0 +1,85 @@
+package com.datadog.profiling.uploader;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveCompressionTest {
+  private static final long BUDGET = 1_000_000;
+  private static final AdaptiveCompression.Step[] STEPS = AdaptiveCompression.ZSTD_STEPS;
+
+  @Test
+  void startsHalfwayUp() {
+    AdaptiveCompression compression = new AdaptiveCompression(STEPS, BUDGET);
+
+    assertSame(STEPS[2], compression.select());
+  }
+
+  @Test
+  void stepsDownWhenOverBudget() {
+    AdaptiveCompression compression = new AdaptiveCompression(STEPS, BUDGET);
+
+    compression.record(compression.select(), 1000, 100, BUDGET + 1);
+    assertSame(STEPS[1], compression.select());
+
+    compression.record(compression.select(), 1000, 200, BUDGET + 1);
+    compression.record(compression.select(), 1000, 300, BUDGET + 1);
+    compression.record(compression.select(), 1000, 300, BUDGET + 1);
+    assertSame(STEPS[0], compression.select());
+  }
+
+  @Test
+  void stepsUpWhenWellUnderBudget() {
+    AdaptiveCompression compression = new AdaptiveCompression(STEPS, BUDGET);
+
+    compression.record(compression.select(), 1000, 100, BUDGET / 2);
+    assertSame(STEPS[2], compression.select());
+
+    compression.record(compression.select(), 1000, 100, BUDGET / 8);
+    assertSame(STEPS[3], compression.select());
+  }
+
+  @Test
+  void staysWhenTheNextStepCompressesNoBetter() {
+    AdaptiveCompression compression = new AdaptiveCompression(STEPS, BUDGET);
+
+    compression.record(compression.select(), 1000, 100, BUDGET / 8);
+    // the next step compresses barely better, for more than the budget
+    compression.record(compression.select(), 1000, 99, BUDGET + 1);
+    assertSame(STEPS[2], compression.select());
+
+    compression.record(compression.select(), 1000, 100, BUDGET / 8);
+    assertSame(STEPS[2], compression.select());
+  }
+
+  @Test
+  void ignoresUploadsCompressedBeforeTheStepChanged() {
+    AdaptiveCompression compression = new AdaptiveCompression(STEPS, BUDGET);
+    AdaptiveCompression.Step overlapping = compression.select();
+
+    compression.record(compression.select(), 1000, 100, BUDGET + 1);
+    compression.record(overlapping, 1000, 100, BUDGET + 1);
+
+    assertSame(STEPS[1], compression.select());
+  }
+
+  @Test
+  void staysWithoutThreadCpuTime() {
+    AdaptiveCompression compression = new AdaptiveCompression(STEPS, BUDGET, false);
+
+    assertNull(compression.cpuClock());
+    compression.record(compression.select(), 1000, 100, BUDGET + 1);
+
+    assertSame(STEPS[2], compression.select());
+  }
+
+  @Test
+  void ignoresUploadsWithoutData() {
+    AdaptiveCompression compression = new AdaptiveCompression(STEPS, BUDGET);
+
+    compression.record(compression.select(), 0, 0, BUDGET + 1);
+
+    assertSame(STEPS[2], compression.select());
+  }
+}
@@ -6,6 +6,8 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.datadog.profiling.controller.RecordingInputStream;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -14,6 +16,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.EnumSet;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import net.jpountz.lz4.LZ4FrameInputStream;
@@ -25,6 +28,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.internal.verification.VerificationModeFactory;
 import org.mockito.stubbing.Answer;
 
@@ -169,6 +173,7 @@ class CompressingRequestBodyTest {
         }
       case LZ4:
       case ON:
+      case ADAPTIVE:
         {
           assertTrue(CompressingRequestBody.isLz4(compressedStream));
           byte[] uncompressed = IOUtils.toByteArray(new LZ4FrameInputStream(compressedStream));
@@ -186,18 +191,133 @@ class CompressingRequestBodyTest {
           assertEquals(compressed.length, instance.getWrittenBytes());
           break;
         }
+      case ZSTD:
+        {
+          assertTrue(CompressingRequestBody.isZstd(compressedStream));
+          byte[] uncompressed = IOUtils.toByteArray(new ZstdInputStream(compressedStream));
+          assertArrayEquals(recordingData, uncompressed);
+          assertEquals(recordingData.length, instance.getReadBytes());
+          assertEquals(compressed.length, instance.getWrittenBytes());
+          break;
+        }
     }
   }
 
+  @ParameterizedTest
+  @ValueSource(ints = {1, 3, 9})
+  void writeToZstdLevels(int level) throws IOException {
+    CompressingRequestBody instance =
+        new CompressingRequestBody(
+            CompressionType.ZSTD,
+            level,
+            CompressingRequestBodyTest::testRecordingStream,
+            null,
+            System::nanoTime);
+
+    byte[] compressed = instanceWriteAsBytes(instance);
+
+    byte[] uncompressed =
+        IOUtils.toByteArray(new ZstdInputStream(new ByteArrayInputStream(compressed)));
+    assertArrayEquals(recordingData, uncompressed);
+    assertFalse(instance.isPassedThrough());
+    assertTrue(instance.isCompressionMeasured());
+    assertTrue(instance.getCompressionCpuNanos() > 0);
+  }
+
+  @Test
+  void onlyTheFirstWriteIsMeasured() throws IOException {
+    // every reading of the clock moves it forward
+    AtomicLong clock = new AtomicLong();
+    CompressingRequestBody instance =
+        new CompressingRequestBody(
+            CompressionType.ZSTD,
+            0,
+            CompressingRequestBodyTest::testRecordingStream,
+            null,
+            () -> clock.addAndGet(1_000));
+
+    instanceWriteAsBytes(instance);
+    assertTrue(instance.isCompressionMeasured());
+    long measured = instance.getCompressionCpuNanos();
+    assertTrue(measured > 0);
+
+    instanceWriteAsBytes(instance);
+    assertEquals(measured, instance.getCompressionCpuNanos());
+  }
+
+  @ParameterizedTest
+  @EnumSource(CompressionType.class)
+  void writeToAgainResendsSpooledData(CompressionType compressionType) throws Exception {
+    CompressingRequestBody.InputStreamSupplier supplier = faultySupplier(0);
+    SpoolBuffers buffers = new SpoolBuffers(Long.MAX_VALUE);
+    Spool spool = buffers.newSpool();
+    CompressingRequestBody instance = new CompressingRequestBody(compressionType, supplier, spool);
+
+    byte[] first = instanceWriteAsBytes(instance);
+    byte[] second = instanceWriteAsBytes(instance);
+
+    assertArrayEquals(first, second);
+    verify(supplier, VerificationModeFactory.times(1)).get();
+    assertTrue(spool.isComplete());
+    assertEquals(first.length, spool.size());
+    assertEquals(first.length, instance.getWrittenBytes());
+
+    spool.release();
+    assertEquals(0, buffers.getInFlightBytes());
+  }
+
+  @Test
+  void writeToAgainRecompressesWhenSpoolOverflows() throws Exception {
+    CompressingRequestBody.InputStreamSupplier supplier = faultySupplier(0);
+    SpoolBuffers buffers = new SpoolBuffers(SpoolBuffers.SEGMENT_SIZE);
+    Spool spool = buffers.newSpool();
+    CompressingRequestBody instance =
+        new CompressingRequestBody(CompressionType.OFF, supplier, spool);
+
+    byte[] first = instanceWriteAsBytes(instance);
+    assertTrue(spool.isOverflowed());
+    assertEquals(0, buffers.getInFlightBytes());
+    byte[] second = instanceWriteAsBytes(instance);
+
+    assertArrayEquals(recordingData, first);
+    assertArrayEquals(recordingData, second);
+    verify(supplier, VerificationModeFactory.times(2)).get();
+    assertFalse(spool.isComplete());
+  }
+
+  @Test
+  void spoolsShareTheBytesInFlight() {
+    SpoolBuffers buffers = new SpoolBuffers(2 * SpoolBuffers.SEGMENT_SIZE);
+    Spool first = buffers.newSpool();
+    Spool second = buffers.newSpool();
+
+    first.write(new byte[SpoolBuffers.SEGMENT_SIZE + 1], 0, SpoolBuffers.SEGMENT_SIZE + 1);
+    second.write(1);
+
+    assertFalse(first.isOverflowed());
+    assertTrue(second.isOverflowed());
+    assertEquals(2 * SpoolBuffers.SEGMENT_SIZE, buffers.getInFlightBytes());
+
+    first.release();
+    second.reset();
+    second.write(1);
+    second.complete();
+
+    assertTrue(second.isComplete());
+    assertEquals(1, second.size());
+    assertEquals(SpoolBuffers.SEGMENT_SIZE, buffers.getInFlightBytes());
+  }
+
   @ParameterizedTest
   @EnumSource(CompressionType.class)
   void writeToRecompression(CompressionType targetType) throws IOException {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
     OutputStream compressedStream = null;
     for (CompressionType type : EnumSet.allOf(CompressionType.class)) {
-      if (type == CompressionType.OFF) {
+      if (type == CompressionType.OFF || type == CompressionType.ADAPTIVE) {
         continue;
       }
+      baos.reset();
       switch (type) {
         case LZ4:
         case ON:
@@ -210,6 +330,11 @@ class CompressingRequestBodyTest {
             compressedStream = new GZIPOutputStream(baos);
             break;
           }
+        case ZSTD:
+          {
+            compressedStream = new ZstdOutputStream(baos);
+            break;
+          }
       }
       assertNotNull(compressedStream);
 
@@ -225,6 +350,8 @@ class CompressingRequestBodyTest {
       byte[] compressedOutput = instanceWriteAsBytes(instance);
 
       assertArrayEquals(compressedInput, compressedOutput);
+      assertTrue(instance.isPassedThrough());
+      assertFalse(instance.isCompressionMeasured());
     }
   }
 
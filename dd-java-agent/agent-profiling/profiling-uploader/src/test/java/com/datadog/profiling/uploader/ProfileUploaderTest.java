@@ -34,6 +34,7 @@ import com.datadog.profiling.controller.RecordingInputStream;
 import com.datadog.profiling.controller.RecordingType;
 import com.datadog.profiling.testing.ProfilingTestUtils;
 import com.datadog.profiling.uploader.util.PidHelper;
+import com.github.luben.zstd.ZstdInputStream;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -41,6 +42,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.io.ByteStreams;
 import datadog.trace.api.Config;
 import datadog.trace.api.IOLogger;
+import datadog.trace.api.StatsDClient;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -86,6 +88,8 @@ public class ProfileUploaderTest {
   private static final String RECORDING_RESOURCE = "/test-recording.jfr";
   private static final String RECODING_NAME_PREFIX = "test-recording-";
   private static final RecordingType RECORDING_TYPE = RecordingType.CONTINUOUS;
+  private static final int MAX_QUEUED_RECORDINGS = 20;
+  private static final int MAX_IN_FLIGHT_BYTES = 1024 * 1024;
 
   private static final Map<String, String> TAGS;
 
@@ -127,6 +131,7 @@ public class ProfileUploaderTest {
 
   @Mock private Config config;
   @Mock private IOLogger ioLogger;
+  @Mock private StatsDClient statsd;
 
   private final MockWebServer server = new MockWebServer();
   private HttpUrl url;
@@ -143,10 +148,12 @@ public class ProfileUploaderTest {
     when(config.getApiKey()).thenReturn(null);
     when(config.getMergedProfilingTags()).thenReturn(TAGS);
     when(config.getProfilingUploadTimeout()).thenReturn((int) REQUEST_TIMEOUT.getSeconds());
+    when(config.getProfilingUploadMaxQueuedRecordings()).thenReturn(MAX_QUEUED_RECORDINGS);
+    when(config.getProfilingUploadMaxInFlightBytes()).thenReturn(MAX_IN_FLIGHT_BYTES);
 
     uploader =
         new ProfileUploader(
-            config, ioLogger, "containerId", (int) TERMINATION_TIMEOUT.getSeconds());
+            config, statsd, ioLogger, "containerId", (int) TERMINATION_TIMEOUT.getSeconds());
   }
 
   @AfterEach
@@ -206,7 +213,7 @@ public class ProfileUploaderTest {
   }
 
   @ParameterizedTest
-  @ValueSource(strings = {"on", "lz4", "gzip", "off", "invalid"})
+  @ValueSource(strings = {"on", "lz4", "gzip", "zstd", "adaptive", "off", "invalid"})
   public void testRequestParameters(final String compression) throws Exception {
     when(config.getProfilingUploadCompression()).thenReturn(compression);
     when(config.getProfilingUploadTimeout()).thenReturn(500000);
@@ -249,6 +256,10 @@ public class ProfileUploaderTest {
         (byte[]) Iterables.getFirst(parameters.get(ProfileUploader.DATA_PARAM), new byte[] {});
     if (compression.equals("gzip")) {
       uploadedBytes = unGzip(uploadedBytes);
+    } else if (compression.equals("zstd")) {
+      uploadedBytes = unZstd(uploadedBytes);
+    } else if (compression.equals("adaptive")) {
+      uploadedBytes = decompress(uploadedBytes);
     } else if (compression.equals("on")
         || compression.equals("lz4")
         || compression.equals("invalid")) {
@@ -261,7 +272,7 @@ public class ProfileUploaderTest {
   public void testRequestWithContainerId() throws Exception {
     uploader =
         new ProfileUploader(
-            config, ioLogger, "container-id", (int) TERMINATION_TIMEOUT.getSeconds());
+            config, statsd, ioLogger, "container-id", (int) TERMINATION_TIMEOUT.getSeconds());
 
     server.enqueue(new MockResponse().setResponseCode(200));
     uploadAndWait(RECORDING_TYPE, mockRecordingData());
@@ -416,6 +427,25 @@ public class ProfileUploaderTest {
     uploadAndWait(RECORDING_TYPE, recording);
 
     verify(recording).release();
+    assertEquals(0, uploader.getInFlightBytes());
+  }
+
+  @Test
+  public void testRecordingNotSpooledWhenTooManyBytesInFlight() throws Exception {
+    when(config.getProfilingUploadMaxInFlightBytes()).thenReturn(SpoolBuffers.SEGMENT_SIZE);
+    uploader =
+        new ProfileUploader(
+            config, statsd, ioLogger, "containerId", (int) TERMINATION_TIMEOUT.getSeconds());
+    server.enqueue(new MockResponse().setResponseCode(200));
+
+    final RecordingData recording = mockRecordingData();
+    uploadAndWait(RECORDING_TYPE, recording);
+
+    assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+    verify(recording).release();
+    assertEquals(1, uploader.getUnspooledRecordings());
+    verify(statsd).incrementCounter("uploader.recordings.unspooled");
+    assertEquals(0, uploader.getInFlightBytes());
   }
 
   @Test
@@ -553,7 +583,7 @@ public class ProfileUploaderTest {
     // We need to make sure that initial requests that fill up the queue hang to the duration of the
     // test. So we specify insanely large timeout here.
     when(config.getProfilingUploadTimeout()).thenReturn((int) FOREVER_REQUEST_TIMEOUT.getSeconds());
-    uploader = new ProfileUploader(config);
+    uploader = new ProfileUploader(config, statsd);
 
     // We have to block all parallel requests to make sure queue is kept full
     for (int i = 0; i < ProfileUploader.MAX_RUNNING_REQUESTS; i++) {
@@ -571,7 +601,7 @@ public class ProfileUploaderTest {
       uploader.upload(RECORDING_TYPE, recording);
     }
 
-    for (int i = 0; i < ProfileUploader.MAX_ENQUEUED_REQUESTS; i++) {
+    for (int i = 0; i < MAX_QUEUED_RECORDINGS; i++) {
       final RecordingData recording = mockRecordingData();
       inflightRecordings.add(recording);
       uploader.upload(RECORDING_TYPE, recording);
@@ -597,6 +627,8 @@ public class ProfileUploaderTest {
     }
     // however, the rejected recording should have the recording data released
     verify(rejectedRecording).release();
+    assertEquals(1, uploader.getDroppedRecordings());
+    verify(statsd).incrementCounter("uploader.recordings.dropped");
   }
 
   @Test
@@ -641,6 +673,23 @@ public class ProfileUploaderTest {
     return result.toByteArray();
   }
 
+  private static byte[] unZstd(final byte[] compressed) throws IOException {
+    final InputStream stream = new ZstdInputStream(new ByteArrayInputStream(compressed));
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    ByteStreams.copy(stream, result);
+    return result.toByteArray();
+  }
+
+  private static byte[] decompress(final byte[] compressed) throws IOException {
+    final InputStream stream = new BufferedInputStream(new ByteArrayInputStream(compressed));
+    if (CompressingRequestBody.isZstd(stream)) {
+      return unZstd(compressed);
+    } else if (CompressingRequestBody.isGzip(stream)) {
+      return unGzip(compressed);
+    }
+    return unLz4(compressed);
+  }
+
   private void uploadAndWait(RecordingType recordingType, RecordingData data)
       throws InterruptedException {
     CountDownLatch latch = new CountDownLatch(1);
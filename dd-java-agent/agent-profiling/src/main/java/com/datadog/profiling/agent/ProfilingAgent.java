@@ -9,6 +9,8 @@ import com.datadog.profiling.controller.ProfilingSystem;
 import com.datadog.profiling.controller.UnsupportedEnvironmentException;
 import com.datadog.profiling.uploader.ProfileUploader;
 import datadog.trace.api.Config;
+import datadog.trace.api.StatsDClient;
+import datadog.trace.api.StatsDClientManager;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.time.Duration;
@@ -30,8 +32,12 @@ public class ProfilingAgent {
   /**
    * Main entry point into profiling Note: this must be reentrant because we may want to start
    * profiling before any other tool, and then attempt to start it again at normal time
+   *
+   * @param statsDClientManager reports the profiler's health metrics, or null when profiling
+   *     starts before the tracer
    */
-  public static synchronized void run(final boolean isStartingFirst)
+  public static synchronized void run(
+      final boolean isStartingFirst, final StatsDClientManager statsDClientManager)
       throws IllegalArgumentException, IOException {
     if (profiler == null) {
       final Config config = Config.get();
@@ -53,7 +59,8 @@ public class ProfilingAgent {
       try {
         final Controller controller = ControllerFactory.createController(config);
 
-        final ProfileUploader uploader = new ProfileUploader(config);
+        final ProfileUploader uploader =
+            new ProfileUploader(config, createStatsDClient(config, statsDClientManager));
 
         final Duration startupDelay = Duration.ofSeconds(config.getProfilingStartDelay());
         final Duration uploadPeriod = Duration.ofSeconds(config.getProfilingUploadPeriod());
@@ -94,6 +101,31 @@ public class ProfilingAgent {
     }
   }
 
+  private static StatsDClient createStatsDClient(
+      final Config config, final StatsDClientManager statsDClientManager) {
+    if (statsDClientManager == null || !config.isHealthMetricsEnabled()) {
+      return StatsDClient.NO_OP;
+    }
+    String host = config.getHealthMetricsStatsdHost();
+    if (host == null) {
+      host = config.getJmxFetchStatsdHost();
+    }
+    if (host == null) {
+      host = config.getAgentHost();
+    }
+
+    Integer port = config.getHealthMetricsStatsdPort();
+    if (port == null) {
+      port = config.getJmxFetchStatsdPort();
+    }
+
+    return statsDClientManager.statsDClient(
+        host,
+        port,
+        "datadog.profiler",
+        new String[] {"lang:java", "service:" + config.getServiceName()});
+  }
+
   private static class ShutdownHook extends Thread {
 
     private final WeakReference<ProfilingSystem> profilerRef;
@@ -7,6 +7,7 @@ import static datadog.trace.agent.tooling.bytebuddy.matcher.NameMatchers.namedOn
 import static net.bytebuddy.matcher.ElementMatchers.any;
 import static net.bytebuddy.matcher.ElementMatchers.none;
 
+import datadog.trace.agent.tooling.bytebuddy.matcher.TypeNameIndex;
 import datadog.trace.agent.tooling.context.FieldBackedContextProvider;
 import datadog.trace.api.Config;
 import datadog.trace.bootstrap.FieldBackedContextAccessor;
@@ -77,13 +78,22 @@ public class AgentInstaller {
     INSTRUMENTATION = inst;
 
     FieldBackedContextProvider.resetContextMatchers();
+    TypeNameIndex.INSTANCE.reset();
+    ParallelDiscoveryStrategy.reset();
+
+    final ElementMatcher<? super TypeDescription> globalIgnoresMatcher =
+        globalIgnoresMatcher(skipAdditionalLibraryMatcher);
+    final ElementMatcher<? super TypeDescription> configuredExcludesMatcher =
+        matchesConfiguredExcludes();
+    final AgentBuilder.RedefinitionStrategy.DiscoveryStrategy discoveryStrategy =
+        discoveryStrategy(globalIgnoresMatcher, configuredExcludesMatcher);
 
     AgentBuilder.Ignored ignoredAgentBuilder =
         new AgentBuilder.Default()
             .disableClassFormatChanges()
             .assureReadEdgeTo(INSTRUMENTATION, FieldBackedContextAccessor.class)
             .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
-            .with(AgentBuilder.RedefinitionStrategy.DiscoveryStrategy.Reiterating.INSTANCE)
+            .with(discoveryStrategy)
             .with(AgentBuilder.DescriptionStrategy.Default.POOL_ONLY)
             .with(AgentTooling.poolStrategy())
             .with(new ClassLoadListener())
@@ -93,17 +103,16 @@ public class AgentInstaller {
             // .with(AgentBuilder.LambdaInstrumentationStrategy.ENABLED)
             .ignore(any(), skipClassLoader());
 
-    ignoredAgentBuilder =
-        ignoredAgentBuilder.or(globalIgnoresMatcher(skipAdditionalLibraryMatcher));
+    ignoredAgentBuilder = ignoredAgentBuilder.or(globalIgnoresMatcher);
 
-    ignoredAgentBuilder = ignoredAgentBuilder.or(matchesConfiguredExcludes());
+    ignoredAgentBuilder = ignoredAgentBuilder.or(configuredExcludesMatcher);
 
     AgentBuilder agentBuilder = ignoredAgentBuilder;
     if (DEBUG) {
       agentBuilder =
           agentBuilder
               .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
-              .with(AgentBuilder.RedefinitionStrategy.DiscoveryStrategy.Reiterating.INSTANCE)
+              .with(discoveryStrategy)
               .with(new RedefinitionLoggingListener())
               .with(new TransformLoggingListener());
     }
@@ -148,13 +157,38 @@ public class AgentInstaller {
         log.error("Unable to load instrumentation {}", instrumenter.getClass().getName(), e);
       }
     }
+    TypeNameIndex.INSTANCE.build();
     if (DEBUG) {
-      log.debug("Installed {} instrumenter(s)", numInstrumenters);
+      log.debug(
+          "Installed {} instrumenter(s), {} of them indexed by type name",
+          numInstrumenters,
+          TypeNameIndex.INSTANCE.size());
     }
 
     return agentBuilder.installOn(inst);
   }
 
+  /**
+   * Loaded classes are matched against the instrumentations on several threads when parallel
+   * retransformation is enabled, and on the thread installing the agent otherwise.
+   */
+  private static AgentBuilder.RedefinitionStrategy.DiscoveryStrategy discoveryStrategy(
+      final ElementMatcher<? super TypeDescription> globalIgnoresMatcher,
+      final ElementMatcher<? super TypeDescription> configuredExcludesMatcher) {
+    if (!Config.get().isRetransformParallelEnabled()) {
+      return AgentBuilder.RedefinitionStrategy.DiscoveryStrategy.Reiterating.INSTANCE;
+    }
+    List<AgentBuilder.RawMatcher> ignores = new ArrayList<>();
+    ignores.add(new AgentBuilder.RawMatcher.ForElementMatchers(any(), skipClassLoader(), any()));
+    ignores.add(new AgentBuilder.RawMatcher.ForElementMatchers(globalIgnoresMatcher, any(), any()));
+    ignores.add(
+        new AgentBuilder.RawMatcher.ForElementMatchers(configuredExcludesMatcher, any(), any()));
+    return new ParallelDiscoveryStrategy(
+        AgentBuilder.RedefinitionStrategy.DiscoveryStrategy.Reiterating.INSTANCE,
+        ignores,
+        Config.get().getRetransformParallelism());
+  }
+
   private static Set<Instrumenter.TargetSystem> getEnabledSystems() {
     EnumSet<Instrumenter.TargetSystem> enabledSystems =
         EnumSet.noneOf(Instrumenter.TargetSystem.class);
@@ -2,10 +2,12 @@ package datadog.trace.agent.tooling;
 
 import datadog.trace.agent.tooling.bytebuddy.DDCachingPoolStrategy;
 import datadog.trace.agent.tooling.bytebuddy.DDLocationStrategy;
+import datadog.trace.agent.tooling.bytebuddy.PersistentTypeCache;
 import datadog.trace.api.Config;
 import datadog.trace.bootstrap.WeakCache;
 import datadog.trace.bootstrap.WeakCache.Provider;
 import datadog.trace.bootstrap.WeakMap;
+import java.io.File;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,7 +48,41 @@ public class AgentTooling {
 
   private static final DDLocationStrategy LOCATION_STRATEGY = new DDLocationStrategy();
   private static final DDCachingPoolStrategy POOL_STRATEGY =
-      new DDCachingPoolStrategy(Config.get().isResolverUseLoadClassEnabled());
+      new DDCachingPoolStrategy(
+          Config.get().isResolverUseLoadClassEnabled(), persistentTypeCache(Config.get()));
+
+  private static PersistentTypeCache persistentTypeCache(final Config config) {
+    if (!config.isResolverPersistentCacheEnabled()) {
+      return null;
+    }
+    String dir = config.getResolverPersistentCacheDir();
+    if (null == dir) {
+      // the temp directory is shared, so each user gets their own cache directory
+      dir =
+          System.getProperty("java.io.tmpdir")
+              + File.separator
+              + "dd-java-agent-type-cache-"
+              + fileNameSafe(System.getProperty("user.name", ""));
+    }
+    return PersistentTypeCache.start(new File(dir));
+  }
+
+  /** @return the name, with any character which isn't safe in a file name replaced by '_' */
+  private static String fileNameSafe(final String name) {
+    StringBuilder safe = new StringBuilder(name.length());
+    for (int i = 0; i < name.length(); ++i) {
+      char c = name.charAt(i);
+      boolean isSafe =
+          (c >= 'a' && c <= 'z')
+              || (c >= 'A' && c <= 'Z')
+              || (c >= '0' && c <= '9')
+              || c == '.'
+              || c == '_'
+              || c == '-';
+      safe.append(isSafe ? c : '_');
+    }
+    return safe.toString();
+  }
 
   public static <K, V> WeakCache<K, V> newWeakCache() {
     return newWeakCache(DEFAULT_CACHE_CAPACITY);
@@ -10,6 +10,7 @@ import static net.bytebuddy.matcher.ElementMatchers.not;
 
 import datadog.trace.agent.tooling.bytebuddy.DDTransformers;
 import datadog.trace.agent.tooling.bytebuddy.ExceptionHandlers;
+import datadog.trace.agent.tooling.bytebuddy.matcher.TypeNameIndex;
 import datadog.trace.agent.tooling.context.FieldBackedContextProvider;
 import datadog.trace.agent.tooling.context.InstrumentationContextProvider;
 import datadog.trace.agent.tooling.context.NoopContextProvider;
@@ -145,18 +146,32 @@ public interface Instrumenter {
 
       lazyInit();
 
-      AgentBuilder.Identified.Extendable agentBuilder =
-          parentAgentBuilder
-              .type(
+      final ElementMatcher<? super TypeDescription> typeMatcher = typeMatcher();
+      final ElementMatcher<ClassLoader> classLoaderMatcher =
+          failSafe(
+              classLoaderMatcher(),
+              "Instrumentation class loader matcher unexpected exception: "
+                  + getClass().getName());
+      // types matched by name are looked up in the index before anything else is evaluated
+      final AgentBuilder.RawMatcher indexedMatcher =
+          TypeNameIndex.INSTANCE.indexedMatcher(typeMatcher, classLoaderMatcher);
+      final AgentBuilder.RawMatcher matcher =
+          null != indexedMatcher
+              ? indexedMatcher
+              : new AgentBuilder.RawMatcher.ForElementMatchers(
                   failSafe(
-                      typeMatcher(),
+                      typeMatcher,
                       "Instrumentation type matcher unexpected exception: " + getClass().getName()),
-                  failSafe(
-                      classLoaderMatcher(),
-                      "Instrumentation class loader matcher unexpected exception: "
-                          + getClass().getName()))
+                  classLoaderMatcher,
+                  any());
+      final MuzzleMatcher muzzleMatcher = new MuzzleMatcher();
+      // loaded classes are matched against the same matchers before being retransformed
+      ParallelDiscoveryStrategy.register(matcher, muzzleMatcher);
+      AgentBuilder.Identified.Extendable agentBuilder =
+          parentAgentBuilder
+              .type(matcher)
               .and(NOT_DECORATOR_MATCHER)
-              .and(new MuzzleMatcher())
+              .and(muzzleMatcher)
               .transform(DDTransformers.defaultTransformers());
       agentBuilder = injectHelperClasses(agentBuilder);
       agentBuilder = contextProvider.instrumentationTransformer(agentBuilder);
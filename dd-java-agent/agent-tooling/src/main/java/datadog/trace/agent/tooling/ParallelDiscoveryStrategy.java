@@ -0,0 +1,249 @@
+package datadog.trace.agent.tooling;
+
+import static datadog.trace.util.AgentThreadFactory.AgentThread.RETRANSFORM_MATCHER;
+
+import datadog.trace.bootstrap.FieldBackedContextAccessor;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.utility.JavaModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Discovers the loaded classes to retransform when the agent is installed, leaving out the classes
+ * which no instrumentation can match. Matching them - describing each class, then evaluating the
+ * type, class loader and muzzle matchers of every instrumentation - is what makes retransformation
+ * slow when many classes are already loaded, so it is done in a bounded fork-join pool instead of
+ * on the thread installing the agent.
+ *
+ * <p>The classes left are a superset of those the agent transforms: the agent still matches them
+ * before retransforming them in batches, one batch at a time, but its caches are warm by then and
+ * there are only a few of them left. Any class which can't be matched here is left for the agent
+ * to decide.
+ */
+public final class ParallelDiscoveryStrategy
+    implements AgentBuilder.RedefinitionStrategy.DiscoveryStrategy {
+  private static final Logger log = LoggerFactory.getLogger(ParallelDiscoveryStrategy.class);
+
+  // the matchers of each instrumentation installed, all of which must match
+  private static final List<AgentBuilder.RawMatcher[]> INSTRUMENTATIONS =
+      new CopyOnWriteArrayList<>();
+
+  // classes are split between tasks until each has at most this many to match
+  static final int TASK_SIZE = 64;
+
+  private static final ForkJoinPool.ForkJoinWorkerThreadFactory WORKER_FACTORY =
+      new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+          return new Worker(pool);
+        }
+      };
+
+  private final AgentBuilder.RedefinitionStrategy.DiscoveryStrategy delegate;
+  private final List<AgentBuilder.RawMatcher> ignores;
+  private final int parallelism;
+
+  /**
+   * @param delegate discovers the loaded classes
+   * @param ignores matches the classes the agent ignores
+   * @param parallelism the number of threads matching classes, or 0 to derive it from the number
+   *     of processors
+   */
+  public ParallelDiscoveryStrategy(
+      final AgentBuilder.RedefinitionStrategy.DiscoveryStrategy delegate,
+      final List<AgentBuilder.RawMatcher> ignores,
+      final int parallelism) {
+    this.delegate = delegate;
+    this.ignores = ignores;
+    this.parallelism = parallelism > 0 ? parallelism : defaultParallelism();
+  }
+
+  /** Leaves the thread installing the agent a processor of its own, using up to 8 others. */
+  static int defaultParallelism() {
+    return Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  /** Forgets the instrumentations registered so far */
+  public static void reset() {
+    INSTRUMENTATIONS.clear();
+  }
+
+  /** Registers the matchers of an instrumentation, which transforms classes all of them match */
+  public static void register(final AgentBuilder.RawMatcher... matchers) {
+    INSTRUMENTATIONS.add(matchers);
+  }
+
+  @Override
+  public Iterable<Iterable<Class<?>>> resolve(final Instrumentation instrumentation) {
+    final Iterable<Iterable<Class<?>>> types = delegate.resolve(instrumentation);
+    return new Iterable<Iterable<Class<?>>>() {
+      @Override
+      public Iterator<Iterable<Class<?>>> iterator() {
+        return new Candidates(instrumentation, types.iterator());
+      }
+    };
+  }
+
+  /** @return false if no instrumentation can transform the class */
+  boolean isCandidate(final Instrumentation instrumentation, final Class<?> type) {
+    if (!instrumentation.isModifiableClass(type)) {
+      return false;
+    }
+    try {
+      if (Arrays.asList(type.getInterfaces()).contains(FieldBackedContextAccessor.class)) {
+        return true; // transformed before, its context store fields must be added again
+      }
+      ClassLoader classLoader = type.getClassLoader();
+      JavaModule module = JavaModule.ofType(type);
+      ProtectionDomain protectionDomain = type.getProtectionDomain();
+      ClassFileLocator classFileLocator =
+          AgentTooling.locationStrategy().classFileLocator(classLoader, module);
+      TypeDescription typeDescription =
+          AgentTooling.poolStrategy()
+              .typePool(classFileLocator, classLoader)
+              .describe(type.getName())
+              .resolve();
+      for (AgentBuilder.RawMatcher ignore : ignores) {
+        if (ignore.matches(typeDescription, classLoader, module, type, protectionDomain)) {
+          return false;
+        }
+      }
+      for (AgentBuilder.RawMatcher[] matchers : INSTRUMENTATIONS) {
+        if (matchesAll(matchers, typeDescription, classLoader, module, type, protectionDomain)) {
+          return true;
+        }
+      }
+      return false;
+    } catch (final Throwable e) {
+      return true; // left for the agent to decide
+    }
+  }
+
+  private static boolean matchesAll(
+      final AgentBuilder.RawMatcher[] matchers,
+      final TypeDescription typeDescription,
+      final ClassLoader classLoader,
+      final JavaModule module,
+      final Class<?> type,
+      final ProtectionDomain protectionDomain) {
+    for (AgentBuilder.RawMatcher matcher : matchers) {
+      if (!matcher.matches(typeDescription, classLoader, module, type, protectionDomain)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Each batch of loaded classes discovered, less the classes no instrumentation can match */
+  private final class Candidates implements Iterator<Iterable<Class<?>>> {
+    private final Instrumentation instrumentation;
+    private final Iterator<Iterable<Class<?>>> types;
+    private ForkJoinPool pool;
+
+    Candidates(final Instrumentation instrumentation, final Iterator<Iterable<Class<?>>> types) {
+      this.instrumentation = instrumentation;
+      this.types = types;
+    }
+
+    @Override
+    public boolean hasNext() {
+      boolean hasNext = types.hasNext();
+      if (!hasNext && null != pool) {
+        pool.shutdown();
+        pool = null;
+      }
+      return hasNext;
+    }
+
+    @Override
+    public Iterable<Class<?>> next() {
+      List<Class<?>> batch = new ArrayList<>();
+      for (Class<?> type : types.next()) {
+        batch.add(type);
+      }
+      if (null == pool) {
+        pool = new ForkJoinPool(parallelism, WORKER_FACTORY, null, false);
+      }
+      long start = System.nanoTime();
+      Class<?>[] loaded = batch.toArray(new Class<?>[0]);
+      boolean[] candidate = new boolean[loaded.length];
+      pool.invoke(new MatchTask(instrumentation, loaded, candidate, 0, loaded.length));
+      List<Class<?>> candidates = new ArrayList<>();
+      for (int i = 0; i < loaded.length; ++i) {
+        if (candidate[i]) {
+          candidates.add(loaded[i]);
+        }
+      }
+      if (log.isDebugEnabled()) {
+        log.debug(
+            "Matched {} loaded classes on {} threads in {} ms, {} of them can be transformed",
+            loaded.length,
+            parallelism,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            candidates.size());
+      }
+      return candidates;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+
+  private final class MatchTask extends RecursiveAction {
+    private final Instrumentation instrumentation;
+    private final Class<?>[] loaded;
+    private final boolean[] candidate;
+    private final int from;
+    private final int to;
+
+    MatchTask(
+        final Instrumentation instrumentation,
+        final Class<?>[] loaded,
+        final boolean[] candidate,
+        final int from,
+        final int to) {
+      this.instrumentation = instrumentation;
+      this.loaded = loaded;
+      this.candidate = candidate;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= TASK_SIZE) {
+        for (int i = from; i < to; ++i) {
+          candidate[i] = isCandidate(instrumentation, loaded[i]);
+        }
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(
+            new MatchTask(instrumentation, loaded, candidate, from, middle),
+            new MatchTask(instrumentation, loaded, candidate, middle, to));
+      }
+    }
+  }
+
+  private static final class Worker extends ForkJoinWorkerThread {
+    Worker(final ForkJoinPool pool) {
+      super(pool);
+      setName(RETRANSFORM_MATCHER.threadName);
+      setDaemon(true);
+    }
+  }
+}
@@ -41,6 +41,9 @@ import org.slf4j.LoggerFactory;
  *
  * <p>Eviction is handled almost entirely through a size restriction; however, softValues are still
  * used as a further safeguard.
+ *
+ * <p>When a {@link PersistentTypeCache} is given, types which miss this cache are read from it
+ * before being located with the class loader, so they survive restarts of the JVM.
  */
 public class DDCachingPoolStrategy implements PoolStrategy {
   private static final Logger log = LoggerFactory.getLogger(DDCachingPoolStrategy.class);
@@ -86,12 +89,21 @@ public class DDCachingPoolStrategy implements PoolStrategy {
 
   private final boolean fallBackToLoadClass;
 
+  /** Null unless enabled */
+  private final PersistentTypeCache persistentTypeCache;
+
   public DDCachingPoolStrategy() {
     this(true);
   }
 
   public DDCachingPoolStrategy(boolean fallBackToLoadClass) {
+    this(fallBackToLoadClass, null);
+  }
+
+  public DDCachingPoolStrategy(
+      boolean fallBackToLoadClass, PersistentTypeCache persistentTypeCache) {
     this.fallBackToLoadClass = fallBackToLoadClass;
+    this.persistentTypeCache = persistentTypeCache;
     bootstrapCacheProvider =
         new SharedResolutionCacheAdapter(
             BOOTSTRAP_HASH, null, sharedResolutionCache, fallBackToLoadClass);
@@ -100,22 +112,30 @@ public class DDCachingPoolStrategy implements PoolStrategy {
   @Override
   public final TypePool typePool(
       final ClassFileLocator classFileLocator, final ClassLoader classLoader) {
+    return typePool(classFileLocator, classLoader, null);
+  }
+
+  @Override
+  public final TypePool typePool(
+      final ClassFileLocator classFileLocator, final ClassLoader classLoader, final String name) {
+    // the type being instrumented is described from the bytes being transformed, so it is kept
+    // out of the shared cache, which may hold a description of other bytes
     if (classLoader == null) {
-      return createCachingTypePool(bootstrapCacheProvider, classFileLocator);
+      return createCachingTypePool(
+          excludingInstrumentedType(name, bootstrapCacheProvider), classFileLocator);
     }
 
     WeakReference<ClassLoader> loaderRef = loaderRefCache.computeIfAbsent(classLoader, WEAK_REF);
 
     final int loaderHash = classLoader.hashCode();
-    return createCachingTypePool(loaderHash, loaderRef, classFileLocator);
-  }
-
-  @Override
-  public final TypePool typePool(
-      final ClassFileLocator classFileLocator, final ClassLoader classLoader, final String name) {
-    // FIXME satisfy interface constraint that the currently instrumented type is not used in the
-    // cache
-    return typePool(classFileLocator, classLoader);
+    TypePool.CacheProvider cacheProvider =
+        excludingInstrumentedType(name, createCacheProvider(loaderHash, loaderRef));
+    if (persistentTypeCache != null) {
+      // the type being instrumented is still located with the bytes being transformed
+      return createCachingTypePool(
+          cacheProvider, persistentTypeCache.locator(classFileLocator, loaderRef, name));
+    }
+    return createCachingTypePool(cacheProvider, classFileLocator);
   }
 
   private TypePool.CacheProvider createCacheProvider(
@@ -124,14 +144,9 @@ public class DDCachingPoolStrategy implements PoolStrategy {
         loaderHash, loaderRef, sharedResolutionCache, fallBackToLoadClass);
   }
 
-  private TypePool createCachingTypePool(
-      final int loaderHash,
-      final WeakReference<ClassLoader> loaderRef,
-      final ClassFileLocator classFileLocator) {
-    return new TypePool.Default.WithLazyResolution(
-        createCacheProvider(loaderHash, loaderRef),
-        classFileLocator,
-        TypePool.Default.ReaderMode.FAST);
+  private static TypePool.CacheProvider excludingInstrumentedType(
+      final String name, final TypePool.CacheProvider cacheProvider) {
+    return null == name ? cacheProvider : new InstrumentedTypeCacheAdapter(name, cacheProvider);
   }
 
   private TypePool createCachingTypePool(
@@ -220,6 +235,47 @@ public class DDCachingPoolStrategy implements PoolStrategy {
     }
   }
 
+  /**
+   * Keeps the resolution of the type being instrumented to the type pool it was created for, and
+   * defers to the shared cache for every other type.
+   */
+  static final class InstrumentedTypeCacheAdapter implements TypePool.CacheProvider {
+    private final String instrumentedTypeName;
+    private final TypePool.CacheProvider sharedCacheProvider;
+
+    private TypePool.Resolution instrumentedTypeResolution;
+
+    InstrumentedTypeCacheAdapter(
+        final String instrumentedTypeName, final TypePool.CacheProvider sharedCacheProvider) {
+      this.instrumentedTypeName = instrumentedTypeName;
+      this.sharedCacheProvider = sharedCacheProvider;
+    }
+
+    @Override
+    public TypePool.Resolution find(final String className) {
+      if (className.equals(instrumentedTypeName)) {
+        return instrumentedTypeResolution;
+      }
+      return sharedCacheProvider.find(className);
+    }
+
+    @Override
+    public TypePool.Resolution register(
+        final String className, final TypePool.Resolution resolution) {
+      if (className.equals(instrumentedTypeName)) {
+        instrumentedTypeResolution = resolution;
+        return resolution;
+      }
+      return sharedCacheProvider.register(className, resolution);
+    }
+
+    @Override
+    public void clear() {
+      instrumentedTypeResolution = null;
+      sharedCacheProvider.clear();
+    }
+  }
+
   static final class SharedResolutionCacheAdapter implements TypePool.CacheProvider {
     private static final String OBJECT_NAME = "java.lang.Object";
     private static final TypePool.Resolution OBJECT_RESOLUTION =
@@ -0,0 +1,568 @@
+package datadog.trace.agent.tooling.bytebuddy;
+
+import static datadog.trace.bootstrap.AgentClassLoading.LOCATING_CLASS;
+import static datadog.trace.util.AgentThreadFactory.AGENT_THREAD_GROUP;
+import static datadog.trace.util.Strings.getResourceName;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import datadog.trace.util.AgentTaskScheduler;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.jar.asm.ClassReader;
+import net.bytebuddy.jar.asm.ClassWriter;
+import net.bytebuddy.utility.OpenedClassReader;
+import net.bytebuddy.utility.StreamDrainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the class files read by the type pool on disk, so when the JVM restarts the types it
+ * resolves from the same jars are read back from a memory-mapped file, instead of being located in
+ * their jar and inflated again.
+ *
+ * <p>Each jar has its own file:
+ *
+ * <ul>
+ *   <li>named after a digest of the path, the size and last modified time of the jar, so a jar
+ *       which changed gets a new file and the file of its previous version is deleted
+ *   <li>holding the class files of the types resolved from the jar, stripped of what the type pool
+ *       doesn't read: method bodies and debug information
+ *   <li>ending with a checksum, and discarded when it doesn't match or its header doesn't match
+ *       the jar
+ * </ul>
+ *
+ * <p>Types resolved for the first time are added to the file of their jar periodically, and when
+ * the JVM exits. Since the class files are trusted as the jar's, the directory must belong to the
+ * user running the JVM and only be accessible to them.
+ */
+public final class PersistentTypeCache {
+  private static final Logger log = LoggerFactory.getLogger(PersistentTypeCache.class);
+
+  static final int MAGIC = 0xDD7CAC4E;
+  static final int VERSION = 1;
+
+  static final String SUFFIX = ".types";
+
+  private static final long PERSIST_PERIOD_SECONDS = 30;
+
+  private static final Set<PosixFilePermission> OWNER_ONLY =
+      PosixFilePermissions.fromString("rwx------");
+
+  private final File directory;
+  private final ConcurrentMap<String, JarTypes> jars = new ConcurrentHashMap<>();
+
+  PersistentTypeCache(final File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @return a cache in the directory, which persists new types periodically and when the JVM
+   *     exits, or null if the directory can't be created or may be accessed by other users
+   */
+  public static PersistentTypeCache start(final File directory) {
+    if (!prepareDirectory(directory)) {
+      return null;
+    }
+    PersistentTypeCache cache = new PersistentTypeCache(directory);
+    AgentTaskScheduler.INSTANCE.scheduleAtFixedRate(
+        PersistTask.INSTANCE, cache, PERSIST_PERIOD_SECONDS, PERSIST_PERIOD_SECONDS, SECONDS);
+    try {
+      Runtime.getRuntime().addShutdownHook(new ShutdownHook(cache));
+    } catch (final IllegalStateException e) {
+      // The JVM is already shutting down.
+    }
+    return cache;
+  }
+
+  /**
+   * Creates the directory if needed. Where permissions are POSIX, the directory must be owned by
+   * the current user, and its permissions are restricted to them.
+   *
+   * @return false if the directory can't be used
+   */
+  static boolean prepareDirectory(final File directory) {
+    Path path = directory.toPath();
+    boolean posix = path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    try {
+      if (!Files.isDirectory(path)) {
+        Path parent = path.toAbsolutePath().getParent();
+        if (null != parent) {
+          Files.createDirectories(parent);
+        }
+        try {
+          if (posix) {
+            Files.createDirectory(path, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+          } else {
+            Files.createDirectory(path);
+          }
+        } catch (final FileAlreadyExistsException e) {
+          // created by another JVM in the meantime
+        }
+      }
+      if (posix) {
+        UserPrincipal user =
+            path.getFileSystem()
+                .getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!user.equals(Files.getOwner(path))) {
+          log.warn("Persistent type cache directory {} is owned by another user", directory);
+          return false;
+        }
+        if (!OWNER_ONLY.equals(Files.getPosixFilePermissions(path))) {
+          Files.setPosixFilePermissions(path, OWNER_ONLY);
+        }
+      }
+      return true;
+    } catch (final IOException | RuntimeException e) {
+      log.warn("Cannot create persistent type cache directory {}", directory, e);
+      return false;
+    }
+  }
+
+  /**
+   * @param excludedType the type being transformed, which is always located by the delegate since
+   *     its class file may not be the one in its jar
+   * @return a locator which reads the types of the class loader from the cache when it can
+   */
+  ClassFileLocator locator(
+      final ClassFileLocator delegate,
+      final WeakReference<ClassLoader> loaderRef,
+      final String excludedType) {
+    return new CachingLocator(this, delegate, loaderRef, excludedType);
+  }
+
+  /** Writes the types added since the last time to disk */
+  public void persist() {
+    for (JarTypes jar : jars.values()) {
+      jar.persist();
+    }
+  }
+
+  /** @return the types cached for the jar, identified by its path within the outermost jar */
+  JarTypes jarTypes(final String jarKey) {
+    JarTypes jar = jars.get(jarKey);
+    if (null == jar) {
+      jar = open(jarKey);
+      JarTypes existing = jars.putIfAbsent(jarKey, jar);
+      if (null != existing) {
+        jar = existing;
+      }
+    }
+    return jar;
+  }
+
+  private JarTypes open(final String jarKey) {
+    int nested = jarKey.indexOf("!/");
+    File jarFile = new File(nested < 0 ? jarKey : jarKey.substring(0, nested));
+    long jarSize = jarFile.length();
+    long jarModified = jarFile.lastModified();
+    if (jarSize == 0 || jarModified == 0) {
+      return JarTypes.NOT_CACHED; // missing or unreadable
+    }
+    final String prefix = digest(jarKey) + '-';
+    final String name =
+        prefix + Long.toHexString(jarSize) + '-' + Long.toHexString(jarModified) + SUFFIX;
+    File[] stale =
+        directory.listFiles(
+            new FilenameFilter() {
+              @Override
+              public boolean accept(final File dir, final String fileName) {
+                return fileName.startsWith(prefix)
+                    && fileName.endsWith(SUFFIX)
+                    && !fileName.equals(name);
+              }
+            });
+    if (null != stale) {
+      for (File file : stale) {
+        log.debug("Deleting stale persistent type cache {}", file);
+        file.delete();
+      }
+    }
+    return JarTypes.load(new File(directory, name), jarKey, jarSize, jarModified);
+  }
+
+  /** @return the hex SHA-256 digest of the jar key, identifying its files without collisions */
+  static String digest(final String jarKey) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(jarKey.getBytes(UTF_8));
+      StringBuilder hex = new StringBuilder(2 * digest.length);
+      for (byte b : digest) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (final Exception e) {
+      // every JVM supports SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** @return the path of the jar holding the class file, or null if it isn't in a jar file */
+  static String jarKeyOf(final URL url) {
+    if (null == url || !"jar".equals(url.getProtocol())) {
+      return null;
+    }
+    String path = url.getPath();
+    int entry = path.lastIndexOf("!/");
+    if (entry < 0 || !path.startsWith("file:")) {
+      return null;
+    }
+    try {
+      // nested jars, as in spring boot, keep the path of the inner jar after the outermost one
+      int nested = path.indexOf("!/");
+      String outermost = new File(new URI(path.substring(0, nested))).getPath();
+      return outermost + path.substring(nested, entry);
+    } catch (final Exception e) {
+      return null;
+    }
+  }
+
+  /** @return the class file without method bodies nor debug information */
+  static byte[] strip(final byte[] classFile) {
+    ClassReader reader = OpenedClassReader.of(classFile);
+    ClassWriter writer = new ClassWriter(0);
+    reader.accept(
+        writer, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    return writer.toByteArray();
+  }
+
+  /** The class files of the types resolved from a jar */
+  static final class JarTypes {
+    static final JarTypes NOT_CACHED = new JarTypes(null, null, 0, 0, null);
+
+    private final File file;
+    private final String jarKey;
+    private final long jarSize;
+    private final long jarModified;
+
+    // replaced by the contents of the file once new types have been written to it
+    private volatile Contents contents;
+
+    // types not written to the file yet
+    private final ConcurrentMap<String, byte[]> added = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    private JarTypes(
+        final File file,
+        final String jarKey,
+        final long jarSize,
+        final long jarModified,
+        final Contents contents) {
+      this.file = file;
+      this.jarKey = jarKey;
+      this.jarSize = jarSize;
+      this.jarModified = jarModified;
+      this.contents = contents;
+    }
+
+    static JarTypes load(
+        final File file, final String jarKey, final long jarSize, final long jarModified) {
+      return new JarTypes(
+          file, jarKey, jarSize, jarModified, read(file, jarKey, jarSize, jarModified));
+    }
+
+    /** @return the class files in the file, none if it is missing, corrupt or not the jar's */
+    private static Contents read(
+        final File file, final String jarKey, final long jarSize, final long jarModified) {
+      Map<String, Long> index = new HashMap<>();
+      ByteBuffer mapped = null;
+      if (file.isFile()) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+            FileChannel channel = in.getChannel()) {
+          // the mapping stays valid once the channel is closed
+          ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+          if (readIndex(buffer, jarKey, jarSize, jarModified, index)) {
+            mapped = buffer;
+          }
+        } catch (final IOException | RuntimeException e) {
+          log.debug("Cannot read persistent type cache {}", file, e);
+        }
+        if (null == mapped) {
+          log.debug("Discarding corrupt persistent type cache {}", file);
+          file.delete();
+        }
+      }
+      return null == mapped ? Contents.NONE : new Contents(index, mapped);
+    }
+
+    /** @return false if the file is corrupt or isn't the file of the jar */
+    private static boolean readIndex(
+        final ByteBuffer buffer,
+        final String jarKey,
+        final long jarSize,
+        final long jarModified,
+        final Map<String, Long> index) {
+      int end = buffer.limit() - 4;
+      if (end < 0 || buffer.getInt(end) != checksum(buffer, end)) {
+        return false;
+      }
+      ByteBuffer in = buffer.duplicate();
+      if (in.getInt() != MAGIC
+          || in.getInt() != VERSION
+          || in.getLong() != jarSize
+          || in.getLong() != jarModified
+          || !jarKey.equals(readString(in))) {
+        return false;
+      }
+      int count = in.getInt();
+      for (int i = 0; i < count; ++i) {
+        String resourceName = readString(in);
+        int length = in.getInt();
+        int offset = in.position();
+        if (length < 0 || length > end - offset) {
+          return false;
+        }
+        index.put(resourceName, ((long) offset << 32) | length);
+        in.position(offset + length);
+      }
+      return in.position() == end;
+    }
+
+    private static int checksum(final ByteBuffer buffer, final int end) {
+      CRC32 crc = new CRC32();
+      ByteBuffer in = buffer.duplicate();
+      in.limit(end);
+      byte[] chunk = new byte[8192];
+      while (in.hasRemaining()) {
+        int length = Math.min(chunk.length, in.remaining());
+        in.get(chunk, 0, length);
+        crc.update(chunk, 0, length);
+      }
+      return (int) crc.getValue();
+    }
+
+    private static String readString(final ByteBuffer in) {
+      byte[] bytes = new byte[in.getShort() & 0xFFFF];
+      in.get(bytes);
+      return new String(bytes, UTF_8);
+    }
+
+    /** @return the stripped class file of the resource, or null if it isn't cached */
+    byte[] find(final String resourceName) {
+      if (this == NOT_CACHED) {
+        return null;
+      }
+      Contents current = contents;
+      Long entry = current.index.get(resourceName);
+      if (null == entry) {
+        return added.get(resourceName);
+      }
+      ByteBuffer in = current.mapped.duplicate();
+      in.position((int) (entry >>> 32));
+      byte[] classFile = new byte[entry.intValue()];
+      in.get(classFile);
+      return classFile;
+    }
+
+    void add(final String resourceName, final byte[] classFile) {
+      if (this == NOT_CACHED || contents.index.containsKey(resourceName)) {
+        return;
+      }
+      byte[] stripped;
+      try {
+        stripped = strip(classFile);
+      } catch (final Throwable e) {
+        log.debug("Cannot strip class file {} from {}", resourceName, jarKey, e);
+        return;
+      }
+      if (null == added.putIfAbsent(resourceName, stripped)) {
+        dirty = true;
+      }
+    }
+
+    synchronized void persist() {
+      if (!dirty) {
+        return;
+      }
+      dirty = false;
+      Map<String, byte[]> written = new HashMap<>(added);
+      Path tmp = null;
+      try {
+        // only readable by the current user, as the directory
+        tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        write(tmp.toFile(), written);
+        Files.move(
+            tmp,
+            file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        tmp = null;
+        Contents persisted = read(file, jarKey, jarSize, jarModified);
+        if (persisted != Contents.NONE) {
+          // read the written types back from the file, rather than keeping them in memory too
+          contents = persisted;
+          for (Map.Entry<String, byte[]> classFile : written.entrySet()) {
+            added.remove(classFile.getKey(), classFile.getValue());
+          }
+        }
+      } catch (final IOException | RuntimeException e) {
+        log.debug("Cannot write persistent type cache {}", file, e);
+      } finally {
+        if (null != tmp) {
+          tmp.toFile().delete();
+        }
+      }
+    }
+
+    private void write(final File tmp, final Map<String, byte[]> written) throws IOException {
+      Map<String, byte[]> classFiles = new HashMap<>(written);
+      for (String resourceName : contents.index.keySet()) {
+        classFiles.put(resourceName, find(resourceName));
+      }
+      try (BufferedOutputStream buffered = new BufferedOutputStream(new FileOutputStream(tmp))) {
+        CheckedOutputStream checked = new CheckedOutputStream(buffered, new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(jarSize);
+        out.writeLong(jarModified);
+        writeString(out, jarKey);
+        out.writeInt(classFiles.size());
+        for (Map.Entry<String, byte[]> classFile : classFiles.entrySet()) {
+          writeString(out, classFile.getKey());
+          out.writeInt(classFile.getValue().length);
+          out.write(classFile.getValue());
+        }
+        out.flush();
+        new DataOutputStream(buffered).writeInt((int) checked.getChecksum().getValue());
+      }
+    }
+
+    private static void writeString(final DataOutputStream out, final String string)
+        throws IOException {
+      byte[] bytes = string.getBytes(UTF_8);
+      out.writeShort(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /** The class files read back from a file, as offset << 32 | length in the mapped buffer */
+  static final class Contents {
+    static final Contents NONE = new Contents(Collections.<String, Long>emptyMap(), null);
+
+    final Map<String, Long> index;
+    final ByteBuffer mapped;
+
+    Contents(final Map<String, Long> index, final ByteBuffer mapped) {
+      this.index = index;
+      this.mapped = mapped;
+    }
+  }
+
+  /** Reads the types from their jar's cache, and adds those it doesn't have yet */
+  static final class CachingLocator implements ClassFileLocator {
+    private final PersistentTypeCache cache;
+    private final ClassFileLocator delegate;
+    private final WeakReference<ClassLoader> loaderRef;
+    private final String excludedType;
+
+    CachingLocator(
+        final PersistentTypeCache cache,
+        final ClassFileLocator delegate,
+        final WeakReference<ClassLoader> loaderRef,
+        final String excludedType) {
+      this.cache = cache;
+      this.delegate = delegate;
+      this.loaderRef = loaderRef;
+      this.excludedType = excludedType;
+    }
+
+    @Override
+    public Resolution locate(final String className) throws IOException {
+      ClassLoader classLoader = loaderRef.get();
+      if (null == classLoader || className.equals(excludedType)) {
+        return delegate.locate(className);
+      }
+      String resourceName = getResourceName(className);
+      URL url = null;
+      LOCATING_CLASS.begin();
+      try {
+        // only finds the resource, without reading it
+        url = classLoader.getResource(resourceName);
+      } catch (final Throwable ignored) {
+      } finally {
+        LOCATING_CLASS.end();
+      }
+      String jarKey = jarKeyOf(url);
+      if (null == jarKey) {
+        return delegate.locate(className);
+      }
+      JarTypes jar = cache.jarTypes(jarKey);
+      byte[] classFile = jar.find(resourceName);
+      if (null != classFile) {
+        return new Resolution.Explicit(classFile);
+      }
+      // read the class file from the resource already found, rather than looking it up again
+      classFile = read(url);
+      if (null == classFile) {
+        return delegate.locate(className);
+      }
+      jar.add(resourceName, classFile);
+      return new Resolution.Explicit(classFile);
+    }
+
+    private static byte[] read(final URL url) {
+      try (InputStream in = url.openStream()) {
+        return StreamDrainer.DEFAULT.drain(in);
+      } catch (final IOException | RuntimeException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+
+  private static final class PersistTask implements AgentTaskScheduler.Task<PersistentTypeCache> {
+    static final PersistTask INSTANCE = new PersistTask();
+
+    @Override
+    public void run(final PersistentTypeCache cache) {
+      cache.persist();
+    }
+  }
+
+  private static final class ShutdownHook extends Thread {
+    private final PersistentTypeCache cache;
+
+    ShutdownHook(final PersistentTypeCache cache) {
+      super(AGENT_THREAD_GROUP, "dd-type-cache-shutdown-hook");
+      this.cache = cache;
+    }
+
+    @Override
+    public void run() {
+      cache.persist();
+    }
+  }
+}
@@ -2,6 +2,7 @@ package datadog.trace.agent.tooling.bytebuddy.matcher;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -138,6 +139,24 @@ public final class NameMatchers<T extends NamedElement>
     }
   }
 
+  /** @return the only names this matches, or null if it isn't limited to a set of names */
+  @SuppressWarnings("unchecked")
+  Set<String> exactNames() {
+    switch (mode) {
+      case NAMED:
+        return Collections.singleton((String) data);
+      case NAMED_ONE_OF:
+        return (Set<String>) data;
+      default:
+        return null;
+    }
+  }
+
+  /** @return the prefix of the names this matches, or null if it doesn't match by prefix */
+  String namePrefix() {
+    return mode == NAME_STARTS_WITH ? (String) data : null;
+  }
+
   @SuppressWarnings("unchecked")
   private boolean namedOneOf(String name) {
     return ((Set<String>) data).contains(name);
@@ -0,0 +1,254 @@
+package datadog.trace.agent.tooling.bytebuddy.matcher;
+
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.utility.JavaModule;
+
+/**
+ * Indexes the instrumentations which match types by exact name or by name prefix, so a class being
+ * loaded is looked up once, by name, to find which of them can apply to it, instead of each of
+ * them evaluating its class loader matcher and type matcher in turn.
+ *
+ * <p>Each indexed instrumentation gets an id, and a matcher which only tests whether the id is
+ * among the candidates found for the class; the lookup is done by the first of these matchers to
+ * see the class, and remembered for the others on the same thread. Instrumentations matching
+ * types by hierarchy or by any other means are not indexed, and evaluate their matchers as before.
+ */
+public final class TypeNameIndex {
+
+  /** The index of the instrumentations installed by the agent */
+  public static final TypeNameIndex INSTANCE = new TypeNameIndex();
+
+  private static final BitSet NO_CANDIDATES = new BitSet();
+
+  // the ids of the instrumentations matching each name or prefix, since the last reset
+  private final Map<String, BitSet> names = new HashMap<>();
+  private final Map<String, BitSet> prefixes = new HashMap<>();
+  private int nextId;
+
+  // null until built
+  private volatile Index index;
+
+  /** Forgets every instrumentation indexed so far */
+  public synchronized void reset() {
+    names.clear();
+    prefixes.clear();
+    nextId = 0;
+    index = null;
+  }
+
+  /**
+   * @return a matcher for the types of an instrumentation which checks the index before its class
+   *     loader matcher, or null if its type matcher can't be indexed
+   */
+  public synchronized AgentBuilder.RawMatcher indexedMatcher(
+      final ElementMatcher<? super TypeDescription> typeMatcher,
+      final ElementMatcher<? super ClassLoader> classLoaderMatcher) {
+    if (!(typeMatcher instanceof NameMatchers)) {
+      return null;
+    }
+    NameMatchers<?> nameMatcher = (NameMatchers<?>) typeMatcher;
+    Set<String> exactNames = nameMatcher.exactNames();
+    String prefix = nameMatcher.namePrefix();
+    if (null == exactNames && null == prefix) {
+      return null;
+    }
+    int id = nextId++;
+    if (null != exactNames) {
+      for (String name : exactNames) {
+        idsOf(names, name).set(id);
+      }
+    } else {
+      idsOf(prefixes, prefix).set(id);
+    }
+    return new IndexedMatcher(this, id, typeMatcher, classLoaderMatcher);
+  }
+
+  /**
+   * Builds the index from the instrumentations indexed so far; until then their matchers evaluate
+   * their type matchers instead.
+   */
+  public synchronized void build() {
+    index = new Index(names, prefixes);
+  }
+
+  /** @return the number of instrumentations indexed */
+  public synchronized int size() {
+    return nextId;
+  }
+
+  private static BitSet idsOf(final Map<String, BitSet> ids, final String key) {
+    BitSet bits = ids.get(key);
+    if (null == bits) {
+      bits = new BitSet();
+      ids.put(key, bits);
+    }
+    return bits;
+  }
+
+  private static final class IndexedMatcher implements AgentBuilder.RawMatcher {
+    private final TypeNameIndex typeNameIndex;
+    private final int id;
+    private final ElementMatcher<? super TypeDescription> typeMatcher;
+    private final ElementMatcher<? super ClassLoader> classLoaderMatcher;
+
+    IndexedMatcher(
+        final TypeNameIndex typeNameIndex,
+        final int id,
+        final ElementMatcher<? super TypeDescription> typeMatcher,
+        final ElementMatcher<? super ClassLoader> classLoaderMatcher) {
+      this.typeNameIndex = typeNameIndex;
+      this.id = id;
+      this.typeMatcher = typeMatcher;
+      this.classLoaderMatcher = classLoaderMatcher;
+    }
+
+    @Override
+    public boolean matches(
+        final TypeDescription typeDescription,
+        final ClassLoader classLoader,
+        final JavaModule module,
+        final Class<?> classBeingRedefined,
+        final ProtectionDomain protectionDomain) {
+      Index index = typeNameIndex.index;
+      if (null == index) {
+        return classLoaderMatcher.matches(classLoader) && typeMatcher.matches(typeDescription);
+      }
+      // the index matches names exactly as the type matcher would
+      return index.candidates(typeDescription.getActualName()).get(id)
+          && classLoaderMatcher.matches(classLoader);
+    }
+
+    @Override
+    public String toString() {
+      return "indexed(" + typeMatcher + ") and " + classLoaderMatcher;
+    }
+  }
+
+  private static final class Index {
+    private final Map<String, BitSet> names;
+    private final PrefixNode prefixes = new PrefixNode();
+
+    private final ThreadLocal<Lookup> lastLookup =
+        new ThreadLocal<Lookup>() {
+          @Override
+          protected Lookup initialValue() {
+            return new Lookup();
+          }
+        };
+
+    Index(final Map<String, BitSet> names, final Map<String, BitSet> prefixIds) {
+      this.names = new HashMap<>(names);
+      for (Map.Entry<String, BitSet> prefix : prefixIds.entrySet()) {
+        prefixes.add(prefix.getKey(), prefix.getValue());
+      }
+      prefixes.inherit(null);
+    }
+
+    /** @return the ids of the instrumentations which can match the name */
+    BitSet candidates(final String name) {
+      Lookup lookup = lastLookup.get();
+      // the same type is matched by each instrumentation in turn
+      if (name != lookup.name && !name.equals(lookup.name)) {
+        lookup.candidates = lookup(name);
+        lookup.name = name;
+      }
+      return lookup.candidates;
+    }
+
+    private BitSet lookup(final String name) {
+      BitSet named = names.get(name);
+      BitSet prefixed = prefixes.candidates(name);
+      if (null == named) {
+        return null == prefixed ? NO_CANDIDATES : prefixed;
+      }
+      if (null == prefixed) {
+        return named;
+      }
+      BitSet candidates = (BitSet) named.clone();
+      candidates.or(prefixed);
+      return candidates;
+    }
+  }
+
+  private static final class Lookup {
+    String name;
+    BitSet candidates;
+  }
+
+  /** A trie of name prefixes, each node holding the ids matching its prefix or a shorter one */
+  private static final class PrefixNode {
+    private char[] chars = new char[0];
+    private PrefixNode[] children = new PrefixNode[0];
+    private BitSet ids;
+
+    void add(final String prefix, final BitSet prefixIds) {
+      PrefixNode node = this;
+      for (int i = 0; i < prefix.length(); ++i) {
+        node = node.childOrNew(prefix.charAt(i));
+      }
+      if (null == node.ids) {
+        node.ids = new BitSet();
+      }
+      node.ids.or(prefixIds);
+    }
+
+    /** Adds the ids of shorter prefixes to the ids of each prefix */
+    void inherit(final BitSet inherited) {
+      if (null != inherited) {
+        if (null == ids) {
+          ids = inherited;
+        } else {
+          ids.or(inherited);
+        }
+      }
+      for (PrefixNode child : children) {
+        child.inherit(ids);
+      }
+    }
+
+    /** @return the ids of the longest prefix of the name, or null if none of them prefix it */
+    BitSet candidates(final String name) {
+      BitSet candidates = ids;
+      PrefixNode node = this;
+      for (int i = 0; i < name.length(); ++i) {
+        node = node.child(name.charAt(i));
+        if (null == node) {
+          break;
+        }
+        if (null != node.ids) {
+          candidates = node.ids;
+        }
+      }
+      return candidates;
+    }
+
+    private PrefixNode child(final char c) {
+      for (int i = 0; i < chars.length; ++i) {
+        if (chars[i] == c) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    private PrefixNode childOrNew(final char c) {
+      PrefixNode child = child(c);
+      if (null == child) {
+        child = new PrefixNode();
+        chars = Arrays.copyOf(chars, chars.length + 1);
+        children = Arrays.copyOf(children, children.length + 1);
+        chars[chars.length - 1] = c;
+        children[children.length - 1] = child;
+      }
+      return child;
+    }
+  }
+}
@@ -151,9 +151,9 @@ public class MuzzleVisitor implements AsmVisitorWrapper {
          * protected synchronized ReferenceMatcher getInstrumentationMuzzle() {
          *   if (null == this.instrumentationMuzzle) {
          *     this.instrumentationMuzzle = new ReferenceMatcher(this.helperClassNames(),
-         *                                                       new Reference[]{
-         *                                                                       //reference builders
-         *                                                                       });
+         *                                                       new String[]{
+         *                                                                    //encoded references
+         *                                                                    });
          *   }
          *   return this.instrumentationMuzzle;
          * }
@@ -195,227 +195,13 @@ public class MuzzleVisitor implements AsmVisitorWrapper {
               "()[Ljava/lang/String;",
               false);
 
-          final Reference[] references = generateReferences();
-          mv.visitLdcInsn(references.length);
-          mv.visitTypeInsn(Opcodes.ANEWARRAY, "datadog/trace/agent/tooling/muzzle/Reference");
-
-          for (int i = 0; i < references.length; ++i) {
+          final String[] encodedReferences = ReferenceIndex.encode(generateReferences());
+          mv.visitLdcInsn(encodedReferences.length);
+          mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/String");
+          for (int i = 0; i < encodedReferences.length; ++i) {
             mv.visitInsn(Opcodes.DUP);
             mv.visitLdcInsn(i);
-            mv.visitTypeInsn(Opcodes.NEW, "datadog/trace/agent/tooling/muzzle/Reference$Builder");
-            mv.visitInsn(Opcodes.DUP);
-            mv.visitLdcInsn(references[i].getClassName());
-            mv.visitMethodInsn(
-                Opcodes.INVOKESPECIAL,
-                "datadog/trace/agent/tooling/muzzle/Reference$Builder",
-                "<init>",
-                "(Ljava/lang/String;)V",
-                false);
-            for (Reference.Source source : references[i].getSources()) {
-              mv.visitLdcInsn(source.getName());
-              mv.visitLdcInsn(source.getLine());
-              mv.visitMethodInsn(
-                  Opcodes.INVOKEVIRTUAL,
-                  "datadog/trace/agent/tooling/muzzle/Reference$Builder",
-                  "withSource",
-                  "(Ljava/lang/String;I)Ldatadog/trace/agent/tooling/muzzle/Reference$Builder;",
-                  false);
-            }
-            for (Reference.Flag flag : references[i].getFlags()) {
-              mv.visitFieldInsn(
-                  Opcodes.GETSTATIC,
-                  "datadog/trace/agent/tooling/muzzle/Reference$Flag",
-                  flag.name(),
-                  "Ldatadog/trace/agent/tooling/muzzle/Reference$Flag;");
-              mv.visitMethodInsn(
-                  Opcodes.INVOKEVIRTUAL,
-                  "datadog/trace/agent/tooling/muzzle/Reference$Builder",
-                  "withFlag",
-                  "(Ldatadog/trace/agent/tooling/muzzle/Reference$Flag;)Ldatadog/trace/agent/tooling/muzzle/Reference$Builder;",
-                  false);
-            }
-            if (null != references[i].getSuperName()) {
-              mv.visitLdcInsn(references[i].getSuperName());
-              mv.visitMethodInsn(
-                  Opcodes.INVOKEVIRTUAL,
-                  "datadog/trace/agent/tooling/muzzle/Reference$Builder",
-                  "withSuperName",
-                  "(Ljava/lang/String;)Ldatadog/trace/agent/tooling/muzzle/Reference$Builder;",
-                  false);
-            }
-            for (String interfaceName : references[i].getInterfaces()) {
-              mv.visitLdcInsn(interfaceName);
-              mv.visitMethodInsn(
-                  Opcodes.INVOKEVIRTUAL,
-                  "datadog/trace/agent/tooling/muzzle/Reference$Builder",
-                  "withInterface",
-                  "(Ljava/lang/String;)Ldatadog/trace/agent/tooling/muzzle/Reference$Builder;",
-                  false);
-            }
-            for (Reference.Field field : references[i].getFields()) {
-              { // sources
-                mv.visitLdcInsn(field.getSources().size());
-                mv.visitTypeInsn(
-                    Opcodes.ANEWARRAY, "datadog/trace/agent/tooling/muzzle/Reference$Source");
-
-                int j = 0;
-                for (Reference.Source source : field.getSources()) {
-                  mv.visitInsn(Opcodes.DUP);
-                  mv.visitLdcInsn(j);
-
-                  mv.visitTypeInsn(
-                      Opcodes.NEW, "datadog/trace/agent/tooling/muzzle/Reference$Source");
-                  mv.visitInsn(Opcodes.DUP);
-                  mv.visitLdcInsn(source.getName());
-                  mv.visitLdcInsn(source.getLine());
-                  mv.visitMethodInsn(
-                      Opcodes.INVOKESPECIAL,
-                      "datadog/trace/agent/tooling/muzzle/Reference$Source",
-                      "<init>",
-                      "(Ljava/lang/String;I)V",
-                      false);
-
-                  mv.visitInsn(Opcodes.AASTORE);
-                  ++j;
-                }
-              }
-
-              { // flags
-                mv.visitLdcInsn(field.getFlags().size());
-                mv.visitTypeInsn(
-                    Opcodes.ANEWARRAY, "datadog/trace/agent/tooling/muzzle/Reference$Flag");
-
-                int j = 0;
-                for (Reference.Flag flag : field.getFlags()) {
-                  mv.visitInsn(Opcodes.DUP);
-                  mv.visitLdcInsn(j);
-                  mv.visitFieldInsn(
-                      Opcodes.GETSTATIC,
-                      "datadog/trace/agent/tooling/muzzle/Reference$Flag",
-                      flag.name(),
-                      "Ldatadog/trace/agent/tooling/muzzle/Reference$Flag;");
-                  mv.visitInsn(Opcodes.AASTORE);
-                  ++j;
-                }
-              }
-
-              mv.visitLdcInsn(field.getName());
-
-              { // field type
-                mv.visitLdcInsn(field.getType().getDescriptor());
-                mv.visitMethodInsn(
-                    Opcodes.INVOKESTATIC,
-                    Type.getInternalName(Type.class),
-                    "getType",
-                    Type.getMethodDescriptor(Type.class.getMethod("getType", String.class)),
-                    false);
-              }
-
-              mv.visitMethodInsn(
-                  Opcodes.INVOKEVIRTUAL,
-                  "datadog/trace/agent/tooling/muzzle/Reference$Builder",
-                  "withField",
-                  Type.getMethodDescriptor(
-                      Reference.Builder.class.getMethod(
-                          "withField",
-                          Reference.Source[].class,
-                          Reference.Flag[].class,
-                          String.class,
-                          Type.class)),
-                  false);
-            }
-            for (Reference.Method method : references[i].getMethods()) {
-              mv.visitLdcInsn(method.getSources().size());
-              mv.visitTypeInsn(
-                  Opcodes.ANEWARRAY, "datadog/trace/agent/tooling/muzzle/Reference$Source");
-              int j = 0;
-              for (Reference.Source source : method.getSources()) {
-                mv.visitInsn(Opcodes.DUP);
-                mv.visitLdcInsn(j);
-
-                mv.visitTypeInsn(
-                    Opcodes.NEW, "datadog/trace/agent/tooling/muzzle/Reference$Source");
-                mv.visitInsn(Opcodes.DUP);
-                mv.visitLdcInsn(source.getName());
-                mv.visitLdcInsn(source.getLine());
-                mv.visitMethodInsn(
-                    Opcodes.INVOKESPECIAL,
-                    "datadog/trace/agent/tooling/muzzle/Reference$Source",
-                    "<init>",
-                    "(Ljava/lang/String;I)V",
-                    false);
-
-                mv.visitInsn(Opcodes.AASTORE);
-                ++j;
-              }
-
-              mv.visitLdcInsn(method.getFlags().size());
-              mv.visitTypeInsn(
-                  Opcodes.ANEWARRAY, "datadog/trace/agent/tooling/muzzle/Reference$Flag");
-              j = 0;
-              for (Reference.Flag flag : method.getFlags()) {
-                mv.visitInsn(Opcodes.DUP);
-                mv.visitLdcInsn(j);
-                mv.visitFieldInsn(
-                    Opcodes.GETSTATIC,
-                    "datadog/trace/agent/tooling/muzzle/Reference$Flag",
-                    flag.name(),
-                    "Ldatadog/trace/agent/tooling/muzzle/Reference$Flag;");
-                mv.visitInsn(Opcodes.AASTORE);
-                ++j;
-              }
-
-              mv.visitLdcInsn(method.getName());
-
-              { // return type
-                mv.visitLdcInsn(method.getReturnType().getDescriptor());
-                mv.visitMethodInsn(
-                    Opcodes.INVOKESTATIC,
-                    Type.getInternalName(Type.class),
-                    "getType",
-                    Type.getMethodDescriptor(Type.class.getMethod("getType", String.class)),
-                    false);
-              }
-
-              mv.visitLdcInsn(method.getParameterTypes().size());
-              mv.visitTypeInsn(Opcodes.ANEWARRAY, Type.getInternalName(Type.class));
-              j = 0;
-              for (Type parameterType : method.getParameterTypes()) {
-                mv.visitInsn(Opcodes.DUP);
-                mv.visitLdcInsn(j);
-
-                mv.visitLdcInsn(parameterType.getDescriptor());
-                mv.visitMethodInsn(
-                    Opcodes.INVOKESTATIC,
-                    Type.getInternalName(Type.class),
-                    "getType",
-                    Type.getMethodDescriptor(Type.class.getMethod("getType", String.class)),
-                    false);
-
-                mv.visitInsn(Opcodes.AASTORE);
-                j++;
-              }
-
-              mv.visitMethodInsn(
-                  Opcodes.INVOKEVIRTUAL,
-                  "datadog/trace/agent/tooling/muzzle/Reference$Builder",
-                  "withMethod",
-                  Type.getMethodDescriptor(
-                      Reference.Builder.class.getMethod(
-                          "withMethod",
-                          Reference.Source[].class,
-                          Reference.Flag[].class,
-                          String.class,
-                          Type.class,
-                          Type[].class)),
-                  false);
-            }
-            mv.visitMethodInsn(
-                Opcodes.INVOKEVIRTUAL,
-                "datadog/trace/agent/tooling/muzzle/Reference$Builder",
-                "build",
-                "()Ldatadog/trace/agent/tooling/muzzle/Reference;",
-                false);
+            mv.visitLdcInsn(encodedReferences[i]);
             mv.visitInsn(Opcodes.AASTORE);
           }
 
@@ -423,7 +209,7 @@ public class MuzzleVisitor implements AsmVisitorWrapper {
               Opcodes.INVOKESPECIAL,
               "datadog/trace/agent/tooling/muzzle/ReferenceMatcher",
               "<init>",
-              "([Ljava/lang/String;[Ldatadog/trace/agent/tooling/muzzle/Reference;)V",
+              "([Ljava/lang/String;[Ljava/lang/String;)V",
               false);
           mv.visitFieldInsn(
               Opcodes.PUTFIELD,
@@ -0,0 +1,282 @@
+package datadog.trace.agent.tooling.muzzle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.bytebuddy.jar.asm.Type;
+
+/**
+ * Compact binary encoding of the muzzle references of an instrumentation, generated at build time
+ * by the {@link MuzzleGradlePlugin} and decoded the first time the instrumentation is matched.
+ *
+ * <p>The encoding starts with a version, then a table of the strings used by the references, which
+ * are then written as indices into that table. It is embedded in the instrumentation class as
+ * string constants, each byte held by one character, so the instrumentation doesn't need any
+ * bytecode to build its references and doesn't build them until they are needed.
+ */
+public final class ReferenceIndex {
+
+  static final int VERSION = 1;
+
+  // each char takes at most two bytes in a class file constant, which holds up to 65535 bytes
+  private static final int CHUNK_SIZE = 16384;
+
+  private static final Reference.Flag[] FLAGS = Reference.Flag.values();
+
+  private ReferenceIndex() {}
+
+  /** @return the references, encoded as string constants */
+  public static String[] encode(final Reference[] references) {
+    try {
+      StringTable strings = new StringTable();
+      ByteArrayOutputStream referenceBytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(referenceBytes);
+      writeVarInt(out, references.length);
+      for (Reference reference : references) {
+        writeVarInt(out, strings.indexOf(reference.getClassName()));
+        writeVarInt(
+            out,
+            null == reference.getSuperName() ? 0 : strings.indexOf(reference.getSuperName()) + 1);
+        writeVarInt(out, reference.getInterfaces().size());
+        for (String interfaceName : reference.getInterfaces()) {
+          writeVarInt(out, strings.indexOf(interfaceName));
+        }
+        writeVarInt(out, flagsOf(reference.getFlags()));
+        writeSources(out, strings, reference.getSources());
+        writeVarInt(out, reference.getFields().size());
+        for (Reference.Field field : reference.getFields()) {
+          writeVarInt(out, strings.indexOf(field.getName()));
+          writeVarInt(out, strings.indexOf(field.getType().getDescriptor()));
+          writeVarInt(out, flagsOf(field.getFlags()));
+          writeSources(out, strings, field.getSources());
+        }
+        writeVarInt(out, reference.getMethods().size());
+        for (Reference.Method method : reference.getMethods()) {
+          writeVarInt(out, strings.indexOf(method.getName()));
+          writeVarInt(out, strings.indexOf(method.getDescriptor()));
+          writeVarInt(out, flagsOf(method.getFlags()));
+          writeSources(out, strings, method.getSources());
+        }
+      }
+      out.flush();
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream header = new DataOutputStream(bytes);
+      header.writeByte(VERSION);
+      writeVarInt(header, strings.size());
+      for (String string : strings.strings()) {
+        header.writeUTF(string);
+      }
+      header.flush();
+      referenceBytes.writeTo(bytes);
+      return toChunks(bytes.toByteArray());
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** @return the references encoded in the string constants */
+  public static Reference[] decode(final String[] chunks) {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(fromChunks(chunks)));
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IllegalStateException(
+            "Unsupported muzzle reference index version " + version + ", expected " + VERSION);
+      }
+      String[] strings = new String[readVarInt(in)];
+      for (int i = 0; i < strings.length; ++i) {
+        strings[i] = in.readUTF();
+      }
+      Reference[] references = new Reference[readVarInt(in)];
+      for (int i = 0; i < references.length; ++i) {
+        Reference.Builder builder = new Reference.Builder(strings[readVarInt(in)]);
+        int superName = readVarInt(in);
+        if (superName > 0) {
+          builder.withSuperName(strings[superName - 1]);
+        }
+        int interfaceCount = readVarInt(in);
+        for (int j = 0; j < interfaceCount; ++j) {
+          builder.withInterface(strings[readVarInt(in)]);
+        }
+        for (Reference.Flag flag : readFlags(in)) {
+          builder.withFlag(flag);
+        }
+        for (Reference.Source source : readSources(in, strings)) {
+          builder.withSource(source.getName(), source.getLine());
+        }
+        int fieldCount = readVarInt(in);
+        for (int j = 0; j < fieldCount; ++j) {
+          String name = strings[readVarInt(in)];
+          Type type = Type.getType(strings[readVarInt(in)]);
+          Reference.Flag[] flags = readFlags(in);
+          builder.withField(readSources(in, strings), flags, name, type);
+        }
+        int methodCount = readVarInt(in);
+        for (int j = 0; j < methodCount; ++j) {
+          String name = strings[readVarInt(in)];
+          String descriptor = strings[readVarInt(in)];
+          Reference.Flag[] flags = readFlags(in);
+          builder.withMethod(
+              readSources(in, strings),
+              flags,
+              name,
+              Type.getReturnType(descriptor),
+              Type.getArgumentTypes(descriptor));
+        }
+        references[i] = builder.build();
+      }
+      return references;
+    } catch (IOException e) {
+      throw new IllegalStateException("Corrupt muzzle reference index", e);
+    }
+  }
+
+  /**
+   * @return a key identifying what the reference requires from a class loader, equal for equal
+   *     requirements whichever instrumentation they come from
+   */
+  static String keyOf(final Reference reference) {
+    StringBuilder key = new StringBuilder(reference.getClassName());
+    key.append(':').append(flagsOf(reference.getFlags()));
+    if (null != reference.getSuperName()) {
+      key.append('<').append(reference.getSuperName());
+    }
+    for (String interfaceName : reference.getInterfaces()) {
+      key.append('^').append(interfaceName);
+    }
+    for (Reference.Field field : reference.getFields()) {
+      key.append('#')
+          .append(field.getName())
+          .append(field.getType().getDescriptor())
+          .append(':')
+          .append(flagsOf(field.getFlags()));
+    }
+    for (Reference.Method method : reference.getMethods()) {
+      key.append('#')
+          .append(method.getName())
+          .append(method.getDescriptor())
+          .append(':')
+          .append(flagsOf(method.getFlags()));
+    }
+    return key.toString();
+  }
+
+  private static void writeSources(
+      final DataOutputStream out,
+      final StringTable strings,
+      final Collection<Reference.Source> sources)
+      throws IOException {
+    writeVarInt(out, sources.size());
+    for (Reference.Source source : sources) {
+      writeVarInt(out, strings.indexOf(source.getName()));
+      writeVarInt(out, source.getLine());
+    }
+  }
+
+  private static Reference.Source[] readSources(final DataInputStream in, final String[] strings)
+      throws IOException {
+    Reference.Source[] sources = new Reference.Source[readVarInt(in)];
+    for (int i = 0; i < sources.length; ++i) {
+      sources[i] = new Reference.Source(strings[readVarInt(in)], readVarInt(in));
+    }
+    return sources;
+  }
+
+  private static int flagsOf(final Set<Reference.Flag> flags) {
+    int mask = 0;
+    for (Reference.Flag flag : flags) {
+      mask |= 1 << flag.ordinal();
+    }
+    return mask;
+  }
+
+  private static Reference.Flag[] readFlags(final DataInputStream in) throws IOException {
+    int mask = readVarInt(in);
+    Reference.Flag[] flags = new Reference.Flag[Integer.bitCount(mask)];
+    int i = 0;
+    for (Reference.Flag flag : FLAGS) {
+      if ((mask & (1 << flag.ordinal())) != 0) {
+        flags[i++] = flag;
+      }
+    }
+    return flags;
+  }
+
+  private static void writeVarInt(final DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarInt(final DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length integer");
+  }
+
+  private static String[] toChunks(final byte[] bytes) {
+    String[] chunks = new String[(bytes.length + CHUNK_SIZE - 1) / CHUNK_SIZE];
+    for (int i = 0; i < chunks.length; ++i) {
+      int offset = i * CHUNK_SIZE;
+      char[] chars = new char[Math.min(CHUNK_SIZE, bytes.length - offset)];
+      for (int j = 0; j < chars.length; ++j) {
+        chars[j] = (char) (bytes[offset + j] & 0xFF);
+      }
+      chunks[i] = new String(chars);
+    }
+    return chunks;
+  }
+
+  private static byte[] fromChunks(final String[] chunks) {
+    int length = 0;
+    for (String chunk : chunks) {
+      length += chunk.length();
+    }
+    byte[] bytes = new byte[length];
+    int offset = 0;
+    for (String chunk : chunks) {
+      for (int i = 0; i < chunk.length(); ++i) {
+        bytes[offset++] = (byte) chunk.charAt(i);
+      }
+    }
+    return bytes;
+  }
+
+  private static final class StringTable {
+    private final Map<String, Integer> indices = new LinkedHashMap<>();
+
+    int indexOf(final String string) {
+      Integer index = indices.get(string);
+      if (null == index) {
+        index = indices.size();
+        indices.put(string, index);
+      }
+      return index;
+    }
+
+    int size() {
+      return indices.size();
+    }
+
+    List<String> strings() {
+      return new ArrayList<>(indices.keySet());
+    }
+  }
+}
@@ -17,29 +17,62 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import net.bytebuddy.description.field.FieldDescription;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.pool.TypePool;
 
-/** Matches a set of references against a classloader. */
+/**
+ * Matches a set of references against a classloader.
+ *
+ * <p>Whether a reference matches a classloader is remembered for the classloader, and shared with
+ * every other matcher with an equal reference, so a reference common to several instrumentations
+ * is only checked once per classloader.
+ */
 public final class ReferenceMatcher {
   private static final Source[] EMPTY_SOURCES = new Source[0];
   private final WeakCache<ClassLoader, Boolean> mismatchCache = AgentTooling.newWeakCache();
-  private final Reference[] references;
   private final Set<String> helperClassNames;
+  // null once decoded
+  private String[] encodedReferences;
+  private volatile Decoded decoded;
 
   public ReferenceMatcher(final Reference... references) {
     this(new String[0], references);
   }
 
   public ReferenceMatcher(final String[] helperClassNames, final Reference[] references) {
-    this.references = references;
     this.helperClassNames = new HashSet<>(Arrays.asList(helperClassNames));
+    this.decoded = new Decoded(references);
+  }
+
+  /**
+   * @param encodedReferences the references, encoded at build time by {@link
+   *     ReferenceIndex#encode(Reference[])}, which are only decoded when first needed
+   */
+  public ReferenceMatcher(final String[] helperClassNames, final String[] encodedReferences) {
+    this.helperClassNames = new HashSet<>(Arrays.asList(helperClassNames));
+    this.encodedReferences = encodedReferences;
   }
 
   public Reference[] getReferences() {
-    return references;
+    return decoded().references;
+  }
+
+  private Decoded decoded() {
+    Decoded decoded = this.decoded;
+    if (null == decoded) {
+      synchronized (this) {
+        decoded = this.decoded;
+        if (null == decoded) {
+          decoded = new Decoded(ReferenceIndex.decode(encodedReferences));
+          this.decoded = decoded;
+          encodedReferences = null;
+        }
+      }
+    }
+    return decoded;
   }
 
   /**
@@ -65,12 +98,20 @@ public final class ReferenceMatcher {
       };
 
   private boolean doesMatch(final ClassLoader loader) {
+    final Decoded decoded = decoded();
+    final Map<String, Boolean> results = SharedResults.forClassLoader(loader);
     final List<Mismatch> mismatches = new ArrayList<>();
-    for (final Reference reference : references) {
+    for (int i = 0; i < decoded.references.length; ++i) {
+      final Reference reference = decoded.references[i];
       // Don't reference-check helper classes.
       // They will be injected by the instrumentation's HelperInjector.
       if (!helperClassNames.contains(reference.getClassName())) {
-        if (!checkMatch(reference, loader, mismatches)) {
+        Boolean matches = results.get(decoded.keys[i]);
+        if (null == matches) {
+          matches = checkMatch(reference, loader, mismatches);
+          results.put(decoded.keys[i], matches);
+        }
+        if (!matches) {
           return false;
         }
       }
@@ -90,7 +131,7 @@ public final class ReferenceMatcher {
       loader = Utils.getBootstrapProxy();
     }
     List<Mismatch> mismatches = new ArrayList<>();
-    for (final Reference reference : references) {
+    for (final Reference reference : getReferences()) {
       // Don't reference-check helper classes.
       // They will be injected by the instrumentation's HelperInjector.
       if (!helperClassNames.contains(reference.getClassName())) {
@@ -324,4 +365,35 @@ public final class ReferenceMatcher {
       }
     }
   }
+
+  private static final class Decoded {
+    final Reference[] references;
+    final String[] keys;
+
+    Decoded(final Reference[] references) {
+      this.references = references;
+      this.keys = new String[references.length];
+      for (int i = 0; i < references.length; ++i) {
+        keys[i] = ReferenceIndex.keyOf(references[i]);
+      }
+    }
+  }
+
+  /** Whether each reference checked so far matches, by classloader */
+  private static final class SharedResults {
+    private static final WeakCache<ClassLoader, Map<String, Boolean>> RESULTS =
+        AgentTooling.newWeakCache();
+
+    private static final Function<ClassLoader, Map<String, Boolean>> NEW_RESULTS =
+        new Function<ClassLoader, Map<String, Boolean>>() {
+          @Override
+          public Map<String, Boolean> apply(ClassLoader key) {
+            return new ConcurrentHashMap<>();
+          }
+        };
+
+    static Map<String, Boolean> forClassLoader(final ClassLoader loader) {
+      return RESULTS.computeIfAbsent(loader, NEW_RESULTS);
+    }
+  }
 }
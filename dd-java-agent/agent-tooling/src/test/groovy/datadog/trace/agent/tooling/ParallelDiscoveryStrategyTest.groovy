@@ -0,0 +1,112 @@
+package datadog.trace.agent.tooling
+
+import datadog.trace.test.util.DDSpecification
+import net.bytebuddy.agent.builder.AgentBuilder
+import net.bytebuddy.description.type.TypeDescription
+import net.bytebuddy.utility.JavaModule
+
+import java.lang.instrument.Instrumentation
+import java.security.ProtectionDomain
+
+class ParallelDiscoveryStrategyTest extends DDSpecification {
+
+  def cleanup() {
+    ParallelDiscoveryStrategy.reset()
+  }
+
+  def "only classes some instrumentation matches are left, in order"() {
+    setup:
+    List<Class<?>> loaded = (0..<1000).collect { [String, Integer, Long, Thread, StringBuilder][it % 5] }
+    ParallelDiscoveryStrategy.register(named(String.name))
+    ParallelDiscoveryStrategy.register(named(Thread.name), named(Thread.name))
+    ParallelDiscoveryStrategy.register(named(Long.name), none())
+    def strategy = new ParallelDiscoveryStrategy(discovering([loaded]), [], 4)
+
+    when:
+    def batches = strategy.resolve(modifiable()).collect { it.collect() }
+
+    then:
+    batches.size() == 1
+    batches[0].size() == 400
+    batches[0] == loaded.findAll { it == String || it == Thread }
+  }
+
+  def "ignored classes are left out"() {
+    setup:
+    ParallelDiscoveryStrategy.register(named(String.name))
+    ParallelDiscoveryStrategy.register(named(Integer.name))
+    def strategy = new ParallelDiscoveryStrategy(discovering([[String, Integer]]), [named(Integer.name)], 2)
+
+    expect:
+    strategy.resolve(modifiable()).collect { it.collect() } == [[String]]
+  }
+
+  def "classes which fail to match are left for the agent to decide"() {
+    setup:
+    ParallelDiscoveryStrategy.register(failing())
+    def strategy = new ParallelDiscoveryStrategy(discovering([[String]]), [], 2)
+
+    expect:
+    strategy.resolve(modifiable()).collect { it.collect() } == [[String]]
+  }
+
+  def "each batch discovered is matched"() {
+    setup:
+    ParallelDiscoveryStrategy.register(named(Integer.name))
+    def strategy = new ParallelDiscoveryStrategy(discovering([[String, Integer], [Integer, Long]]), [], 2)
+
+    expect:
+    strategy.resolve(modifiable()).collect { it.collect() } == [[Integer], [Integer]]
+  }
+
+  def "unmodifiable classes are left out"() {
+    setup:
+    ParallelDiscoveryStrategy.register(named(String.name))
+    Instrumentation instrumentation = Stub(Instrumentation) {
+      isModifiableClass(_) >> false
+    }
+    def strategy = new ParallelDiscoveryStrategy(discovering([[String]]), [], 2)
+
+    expect:
+    strategy.resolve(instrumentation).collect { it.collect() } == [[]]
+  }
+
+  Instrumentation modifiable() {
+    return Stub(Instrumentation) {
+      isModifiableClass(_) >> true
+    }
+  }
+
+  AgentBuilder.RedefinitionStrategy.DiscoveryStrategy discovering(List<List<Class<?>>> batches) {
+    return Stub(AgentBuilder.RedefinitionStrategy.DiscoveryStrategy) {
+      resolve(_) >> batches
+    }
+  }
+
+  static AgentBuilder.RawMatcher named(String name) {
+    return new AgentBuilder.RawMatcher() {
+      @Override
+      boolean matches(TypeDescription typeDescription, ClassLoader classLoader, JavaModule module, Class<?> classBeingRedefined, ProtectionDomain protectionDomain) {
+        return typeDescription.name == name
+      }
+    }
+  }
+
+  static AgentBuilder.RawMatcher none() {
+    return new AgentBuilder.RawMatcher() {
+      @Override
+      boolean matches(TypeDescription typeDescription, ClassLoader classLoader, JavaModule module, Class<?> classBeingRedefined, ProtectionDomain protectionDomain) {
+        return false
+      }
+    }
+  }
+
+  static AgentBuilder.RawMatcher failing() {
+    return new AgentBuilder.RawMatcher() {
+      @Override
+      boolean matches(TypeDescription typeDescription, ClassLoader classLoader, JavaModule module, Class<?> classBeingRedefined, ProtectionDomain protectionDomain) {
+        throw new IllegalStateException("failing")
+      }
+    }
+  }
+}
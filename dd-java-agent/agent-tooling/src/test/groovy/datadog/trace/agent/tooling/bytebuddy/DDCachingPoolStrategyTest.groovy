@@ -1,6 +1,7 @@
 package datadog.trace.agent.tooling.bytebuddy
 
 import datadog.trace.test.util.DDSpecification
+import net.bytebuddy.dynamic.ClassFileLocator
 import net.bytebuddy.dynamic.ClassFileLocator.NoOp
 
 import java.util.concurrent.ForkJoinTask
@@ -20,4 +21,25 @@ class DDCachingPoolStrategyTest extends DDSpecification {
     description.name == ForkJoinTask.name
     implementsInterface(named(Future.name)).matches(description)
   }
+
+  def "the type being instrumented is kept out of the shared cache"() {
+    setup:
+    def strategy = new DDCachingPoolStrategy(true)
+    def loader = DDCachingPoolStrategyTest.classLoader
+    def locator = ClassFileLocator.ForClassLoader.of(loader)
+    def instrumentedType = DDCachingPoolStrategyTest.name
+
+    when:
+    def pool = strategy.typePool(locator, loader, instrumentedType)
+    pool.describe(instrumentedType).resolve()
+
+    then:
+    strategy.approximateSize() == 0
+
+    when:
+    pool.describe(ForkJoinTask.name).resolve()
+
+    then:
+    strategy.approximateSize() == 1
+  }
 }
@@ -0,0 +1,163 @@
+package datadog.trace.agent.tooling.bytebuddy
+
+import datadog.trace.test.util.DDSpecification
+import net.bytebuddy.description.type.TypeDescription
+import net.bytebuddy.dynamic.ClassFileLocator
+import net.bytebuddy.pool.TypePool
+import spock.lang.Requires
+
+import java.lang.ref.WeakReference
+import java.nio.file.FileSystems
+import java.nio.file.Files
+import java.nio.file.attribute.PosixFilePermissions
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+class PersistentTypeCacheTest extends DDSpecification {
+  static final String TYPE = DDCachingPoolStrategy.name
+  static final String RESOURCE = TYPE.replace('.', '/') + ".class"
+
+  File dir
+  File jar
+  URLClassLoader loader
+
+  def setup() {
+    dir = File.createTempDir()
+    jar = new File(File.createTempDir(), "types.jar")
+    writeJar(jar)
+    loader = new URLClassLoader([jar.toURI().toURL()] as URL[], (ClassLoader) null)
+  }
+
+  def cleanup() {
+    loader.close()
+    dir.deleteDir()
+    jar.parentFile.deleteDir()
+  }
+
+  def "types are read back from disk once persisted"() {
+    setup:
+    def cache = new PersistentTypeCache(dir)
+
+    when:
+    def first = cache.locator(new DDClassFileLocator(loader), new WeakReference<ClassLoader>(loader), null).locate(TYPE)
+    cache.persist()
+
+    then:
+    first.isResolved()
+    dir.listFiles().size() == 1
+
+    when:
+    def restarted = new PersistentTypeCache(dir)
+    def second = restarted.locator(ClassFileLocator.NoOp.INSTANCE, new WeakReference<ClassLoader>(loader), null).locate(TYPE)
+
+    then:
+    second.isResolved()
+    second.resolve().length < first.resolve().length
+    describe(second).getDeclaredMethods()*.descriptor == describe(first).getDeclaredMethods()*.descriptor
+    describe(second).getInterfaces().size() == describe(first).getInterfaces().size()
+  }
+
+  def "persisted types are read from their file instead of being kept in memory"() {
+    setup:
+    def cache = new PersistentTypeCache(dir)
+    cache.locator(new DDClassFileLocator(loader), new WeakReference<ClassLoader>(loader), null).locate(TYPE)
+    def jarTypes = cache.jarTypes(PersistentTypeCache.jarKeyOf(loader.getResource(RESOURCE)))
+
+    expect:
+    jarTypes.added.size() == 1
+
+    when:
+    cache.persist()
+    def resolution = cache.locator(ClassFileLocator.NoOp.INSTANCE, new WeakReference<ClassLoader>(loader), null).locate(TYPE)
+
+    then:
+    jarTypes.added.isEmpty()
+    resolution.isResolved()
+    dir.listFiles()[0].name.startsWith(PersistentTypeCache.digest(jar.path) + "-")
+  }
+
+  @Requires({ FileSystems.getDefault().supportedFileAttributeViews().contains("posix") })
+  def "the directory is restricted to the current user"() {
+    setup:
+    def cacheDir = new File(dir, "cache")
+    def shared = new File(dir, "shared")
+    shared.mkdir()
+    Files.setPosixFilePermissions(shared.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"))
+
+    expect:
+    PersistentTypeCache.prepareDirectory(cacheDir)
+    PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheDir.toPath())) == "rwx------"
+    PersistentTypeCache.prepareDirectory(shared)
+    PosixFilePermissions.toString(Files.getPosixFilePermissions(shared.toPath())) == "rwx------"
+  }
+
+  def "the type being transformed is not read from the cache"() {
+    setup:
+    def cache = new PersistentTypeCache(dir)
+    cache.locator(new DDClassFileLocator(loader), new WeakReference<ClassLoader>(loader), null).locate(TYPE)
+
+    when:
+    def resolution = cache.locator(ClassFileLocator.NoOp.INSTANCE, new WeakReference<ClassLoader>(loader), TYPE).locate(TYPE)
+
+    then:
+    !resolution.isResolved()
+  }
+
+  def "corrupt files are discarded"() {
+    setup:
+    def cache = new PersistentTypeCache(dir)
+    cache.locator(new DDClassFileLocator(loader), new WeakReference<ClassLoader>(loader), null).locate(TYPE)
+    cache.persist()
+    def file = dir.listFiles()[0]
+    def bytes = file.bytes
+    bytes[bytes.length - 10] = (byte) (bytes[bytes.length - 10] ^ 0xFF)
+    file.bytes = bytes
+
+    when:
+    def resolution = new PersistentTypeCache(dir).locator(ClassFileLocator.NoOp.INSTANCE, new WeakReference<ClassLoader>(loader), null).locate(TYPE)
+
+    then:
+    !resolution.isResolved()
+    !file.exists()
+  }
+
+  def "files of a previous version of the jar are deleted"() {
+    setup:
+    def cache = new PersistentTypeCache(dir)
+    cache.locator(new DDClassFileLocator(loader), new WeakReference<ClassLoader>(loader), null).locate(TYPE)
+    cache.persist()
+    def file = dir.listFiles()[0]
+    jar.setLastModified(jar.lastModified() - 60_000)
+
+    when:
+    def resolution = new PersistentTypeCache(dir).locator(ClassFileLocator.NoOp.INSTANCE, new WeakReference<ClassLoader>(loader), null).locate(TYPE)
+
+    then:
+    !resolution.isResolved()
+    !file.exists()
+  }
+
+  def "jar keys identify nested jars"() {
+    expect:
+    PersistentTypeCache.jarKeyOf(new URL(url)) == key
+
+    where:
+    url                                                              | key
+    "jar:file:/app/lib/a.jar!/com/example/A.class"                   | "/app/lib/a.jar"
+    "jar:file:/app/app.jar!/BOOT-INF/lib/b.jar!/com/example/B.class" | "/app/app.jar!/BOOT-INF/lib/b.jar"
+    "file:/app/classes/com/example/C.class"                          | null
+  }
+
+  static TypeDescription describe(ClassFileLocator.Resolution resolution) {
+    def pool = TypePool.Default.of(ClassFileLocator.Simple.of(TYPE, resolution.resolve()))
+    return pool.describe(TYPE).resolve()
+  }
+
+  static void writeJar(File jar) {
+    new JarOutputStream(new FileOutputStream(jar)).withCloseable { out ->
+      out.putNextEntry(new JarEntry(RESOURCE))
+      out.write(DDCachingPoolStrategy.getResourceAsStream("/" + RESOURCE).bytes)
+      out.closeEntry()
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package datadog.trace.agent.tooling.bytebuddy.matcher
+
+import datadog.trace.test.util.DDSpecification
+import net.bytebuddy.description.type.TypeDescription
+import net.bytebuddy.matcher.ElementMatcher
+
+import static datadog.trace.agent.tooling.bytebuddy.matcher.DDElementMatchers.extendsClass
+import static datadog.trace.agent.tooling.bytebuddy.matcher.NameMatchers.nameEndsWith
+import static datadog.trace.agent.tooling.bytebuddy.matcher.NameMatchers.nameStartsWith
+import static datadog.trace.agent.tooling.bytebuddy.matcher.NameMatchers.named
+import static datadog.trace.agent.tooling.bytebuddy.matcher.NameMatchers.namedOneOf
+import static net.bytebuddy.matcher.ElementMatchers.any
+
+class TypeNameIndexTest extends DDSpecification {
+
+  def index = new TypeNameIndex()
+  def anyClassLoader = any()
+
+  def "only name matchers are indexed"() {
+    expect:
+    (index.indexedMatcher(matcher, anyClassLoader) != null) == indexed
+
+    where:
+    matcher                           | indexed
+    named("a.B")                      | true
+    namedOneOf("a.B", "a.C")          | true
+    nameStartsWith("a.")              | true
+    nameEndsWith("B")                 | false
+    named("a.B").or(named("a.C"))     | false
+    extendsClass(named("a.B"))        | false
+  }
+
+  def "indexed matchers match the same names as their type matchers"() {
+    setup:
+    def exact = index.indexedMatcher(named("com.foo.Bar"), anyClassLoader)
+    def oneOf = index.indexedMatcher(namedOneOf("com.foo.Bar", "com.foo.Baz"), anyClassLoader)
+    def prefix = index.indexedMatcher(nameStartsWith("com.foo."), anyClassLoader)
+    def longerPrefix = index.indexedMatcher(nameStartsWith("com.foo.Ba"), anyClassLoader)
+    index.build()
+
+    expect:
+    matches(exact, name) == (name == "com.foo.Bar")
+    matches(oneOf, name) == (name in ["com.foo.Bar", "com.foo.Baz"])
+    matches(prefix, name) == name.startsWith("com.foo.")
+    matches(longerPrefix, name) == name.startsWith("com.foo.Ba")
+
+    where:
+    name << ["com.foo.Bar", "com.foo.Baz", "com.foo.Qux", "com.foo", "com.fooBar", "org.Other", ""]
+  }
+
+  def "the class loader matcher is only evaluated for candidates"() {
+    setup:
+    def classLoaderMatcher = Mock(ElementMatcher)
+    def matcher = index.indexedMatcher(named("com.foo.Bar"), classLoaderMatcher)
+    index.build()
+
+    when:
+    boolean other = matches(matcher, "com.foo.Baz")
+
+    then:
+    !other
+    0 * classLoaderMatcher.matches(_)
+
+    when:
+    boolean candidate = matches(matcher, "com.foo.Bar")
+
+    then:
+    !candidate
+    1 * classLoaderMatcher.matches(_) >> false
+  }
+
+  def "matchers evaluate their type matchers until the index is built"() {
+    setup:
+    def matcher = index.indexedMatcher(named("com.foo.Bar"), anyClassLoader)
+
+    expect:
+    matches(matcher, "com.foo.Bar")
+    !matches(matcher, "com.foo.Baz")
+  }
+
+  def matches(matcher, String name) {
+    def type = Stub(TypeDescription) {
+      getActualName() >> name
+      getName() >> name
+    }
+    return matcher.matches(type, null, null, null, null)
+  }
+}
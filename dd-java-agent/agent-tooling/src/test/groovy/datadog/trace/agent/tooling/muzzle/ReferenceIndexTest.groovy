@@ -0,0 +1,98 @@
+package datadog.trace.agent.tooling.muzzle
+
+import datadog.trace.test.util.DDSpecification
+import net.bytebuddy.jar.asm.Type
+
+import static TestAdviceClasses.MethodBodyAdvice
+
+class ReferenceIndexTest extends DDSpecification {
+
+  def "encoded references decode to equal references"() {
+    setup:
+    Reference[] references = ReferenceCreator.createReferencesFrom(MethodBodyAdvice.getName(), this.getClass().getClassLoader()).values().toArray(new Reference[0])
+
+    when:
+    Reference[] decoded = ReferenceIndex.decode(ReferenceIndex.encode(references))
+
+    then:
+    decoded.length == references.length
+    for (int i = 0; i < references.length; ++i) {
+      assert decoded[i].className == references[i].className
+      assert decoded[i].superName == references[i].superName
+      assert decoded[i].interfaces == references[i].interfaces
+      assert decoded[i].flags == references[i].flags
+      assert decoded[i].sources == references[i].sources
+      assert decoded[i].fields == references[i].fields
+      assert decoded[i].fields*.flags == references[i].fields*.flags
+      assert decoded[i].methods == references[i].methods
+      assert decoded[i].methods*.flags == references[i].methods*.flags
+      assert ReferenceIndex.keyOf(decoded[i]) == ReferenceIndex.keyOf(references[i])
+    }
+  }
+
+  def "large indexes are split into several constants"() {
+    setup:
+    Reference[] references = (0..<2000).collect {
+      new Reference.Builder("com.example.Generated$it")
+        .withSource("Advice", it)
+        .withMethod(new Reference.Source[0], new Reference.Flag[0], "method$it", Type.VOID_TYPE)
+        .build()
+    } as Reference[]
+
+    when:
+    String[] encoded = ReferenceIndex.encode(references)
+    Reference[] decoded = ReferenceIndex.decode(encoded)
+
+    then:
+    encoded.length > 1
+    decoded*.className == references*.className
+    decoded*.methods == references*.methods
+  }
+
+  def "unknown versions are rejected"() {
+    setup:
+    String[] encoded = ReferenceIndex.encode([new Reference.Builder("com.example.A").build()] as Reference[])
+    encoded[0] = ((char) (ReferenceIndex.VERSION + 1)) + encoded[0].substring(1)
+
+    when:
+    ReferenceIndex.decode(encoded)
+
+    then:
+    thrown(IllegalStateException)
+  }
+
+  def "truncated indexes are rejected"() {
+    setup:
+    String[] encoded = ReferenceIndex.encode([new Reference.Builder("com.example.A").build()] as Reference[])
+    encoded[0] = encoded[0].substring(0, encoded[0].length() - 1)
+
+    when:
+    ReferenceIndex.decode(encoded)
+
+    then:
+    thrown(IllegalStateException)
+  }
+
+  def "references with equal requirements share a key whatever their sources"() {
+    setup:
+    def first = new Reference.Builder("com.example.A")
+      .withSource("FirstAdvice", 12)
+      .withFlag(Reference.Flag.PUBLIC)
+      .withMethod(new Reference.Source[0], new Reference.Flag[0], "run", Type.VOID_TYPE)
+      .build()
+    def second = new Reference.Builder("com.example.A")
+      .withSource("SecondAdvice", 34)
+      .withFlag(Reference.Flag.PUBLIC)
+      .withMethod(new Reference.Source[0], new Reference.Flag[0], "run", Type.VOID_TYPE)
+      .build()
+    def different = new Reference.Builder("com.example.A")
+      .withSource("FirstAdvice", 12)
+      .withFlag(Reference.Flag.PUBLIC)
+      .withMethod(new Reference.Source[0], new Reference.Flag[0], "stop", Type.VOID_TYPE)
+      .build()
+
+    expect:
+    ReferenceIndex.keyOf(first) == ReferenceIndex.keyOf(second)
+    ReferenceIndex.keyOf(first) != ReferenceIndex.keyOf(different)
+  }
+}
@@ -0,0 +1,103 @@
+package datadog.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures what the agent adds to loading classes at startup: each invocation defines thousands of
+ * classes, none of which is instrumented, in a new class loader, so that every class goes through
+ * the type matching of every instrumentation.
+ */
+public class ClassLoadingBenchmark {
+
+  private static final String[] PACKAGES = {
+    "com/example/orders/api/",
+    "com/example/orders/service/",
+    "com/example/orders/repository/",
+    "com/example/billing/",
+    "org/example/util/",
+    "org/example/config/internal/"
+  };
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    @Param({"1000", "10000"})
+    int classes;
+
+    String[] names;
+    byte[][] bytecode;
+
+    @Setup(Level.Trial)
+    public void generateClasses() throws IOException {
+      names = new String[classes];
+      bytecode = new byte[classes][];
+      for (int i = 0; i < classes; ++i) {
+        String internalName = PACKAGES[i % PACKAGES.length] + "Generated" + i;
+        names[i] = internalName.replace('/', '.');
+        bytecode[i] = emptyClass(internalName);
+      }
+    }
+  }
+
+  @Benchmark
+  public ClassLoader loadClasses(final BenchmarkState state) {
+    GeneratedClassLoader classLoader = new GeneratedClassLoader();
+    for (int i = 0; i < state.classes; ++i) {
+      classLoader.define(state.names[i], state.bytecode[i]);
+    }
+    return classLoader;
+  }
+
+  /** @return the bytecode of an empty public class extending {@link Object} */
+  static byte[] emptyClass(final String internalName) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + internalName.length());
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0xCAFEBABE);
+    out.writeShort(0); // minor version
+    out.writeShort(50); // major version, Java 6 so no stack map frames are needed
+    out.writeShort(5); // constant pool count, plus one
+    out.writeByte(7); // #1 class, named by #2
+    out.writeShort(2);
+    out.writeByte(1); // #2 utf8
+    out.writeUTF(internalName);
+    out.writeByte(7); // #3 class, named by #4
+    out.writeShort(4);
+    out.writeByte(1); // #4 utf8
+    out.writeUTF("java/lang/Object");
+    out.writeShort(0x0021); // public super
+    out.writeShort(1); // this class
+    out.writeShort(3); // super class
+    out.writeShort(0); // interfaces
+    out.writeShort(0); // fields
+    out.writeShort(0); // methods
+    out.writeShort(0); // attributes
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  static final class GeneratedClassLoader extends ClassLoader {
+    GeneratedClassLoader() {
+      super(ClassLoadingBenchmark.class.getClassLoader());
+    }
+
+    Class<?> define(final String name, final byte[] bytecode) {
+      return defineClass(name, bytecode, 0, bytecode.length);
+    }
+  }
+
+  @Fork(jvmArgsAppend = "-javaagent:/path/to/dd-java-agent-master.jar")
+  public static class WithAgentMaster extends ClassLoadingBenchmark {}
+
+  @Fork(
+      jvmArgsAppend =
+          "-javaagent:/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar")
+  public static class WithAgent extends ClassLoadingBenchmark {}
+}
@@ -2,13 +2,22 @@ package datadog.benchmark;
 
 import datadog.benchmark.classes.TracedClass;
 import datadog.benchmark.classes.UntracedClass;
+import java.io.File;
+import java.io.IOException;
 import java.lang.instrument.Instrumentation;
 import java.lang.instrument.UnmodifiableClassException;
 import net.bytebuddy.agent.ByteBuddyAgent;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
 
 public class ClassRetransformingBenchmark {
 
@@ -17,6 +26,28 @@ public class ClassRetransformingBenchmark {
     private final Instrumentation inst = ByteBuddyAgent.install();
   }
 
+  /** Classes loaded before the benchmark, none of which is instrumented */
+  @State(Scope.Benchmark)
+  public static class LoadedClasses {
+    @Param({"1000", "10000"})
+    int classes;
+
+    Class<?>[] loaded;
+
+    @Setup(Level.Trial)
+    public void loadClasses() throws IOException {
+      ClassLoadingBenchmark.GeneratedClassLoader classLoader =
+          new ClassLoadingBenchmark.GeneratedClassLoader();
+      loaded = new Class<?>[classes];
+      for (int i = 0; i < classes; ++i) {
+        String internalName = "com/example/loaded/Loaded" + i;
+        loaded[i] =
+            classLoader.define(
+                internalName.replace('/', '.'), ClassLoadingBenchmark.emptyClass(internalName));
+      }
+    }
+  }
+
   @Benchmark
   public void testUntracedRetransform(final BenchmarkState state)
       throws UnmodifiableClassException {
@@ -28,6 +59,13 @@ public class ClassRetransformingBenchmark {
     state.inst.retransformClasses(TracedClass.class);
   }
 
+  @Benchmark
+  public void testLoadedClassesRetransform(
+      final BenchmarkState state, final LoadedClasses loadedClasses)
+      throws UnmodifiableClassException {
+    state.inst.retransformClasses(loadedClasses.loaded);
+  }
+
   @Fork(jvmArgsAppend = "-javaagent:/path/to/dd-java-agent-master.jar")
   public static class WithAgentMaster extends ClassRetransformingBenchmark {}
 
@@ -35,4 +73,32 @@ public class ClassRetransformingBenchmark {
       jvmArgsAppend =
           "-javaagent:/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar")
   public static class WithAgent extends ClassRetransformingBenchmark {}
+
+  /**
+   * Attaches the agent once the classes are loaded, so installing it retransforms them; each fork
+   * measures a single installation.
+   */
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 0)
+  @Measurement(iterations = 1)
+  public static class LateAttach {
+    static final String AGENT_JAR =
+        "/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar";
+
+    @Benchmark
+    public void attachAgent(final LoadedClasses loadedClasses) {
+      ByteBuddyAgent.attach(
+          new File(AGENT_JAR), ByteBuddyAgent.ProcessProvider.ForCurrentVm.INSTANCE);
+    }
+
+    @Fork(jvmArgsAppend = "-Djdk.attach.allowAttachSelf=true")
+    public static class Serial extends LateAttach {}
+
+    @Fork(
+        jvmArgsAppend = {
+          "-Djdk.attach.allowAttachSelf=true",
+          "-Ddd.retransform.parallel.enabled=true"
+        })
+    public static class Parallel extends LateAttach {}
+  }
 }
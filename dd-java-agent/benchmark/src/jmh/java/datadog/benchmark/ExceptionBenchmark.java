@@ -0,0 +1,55 @@
+package datadog.benchmark;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of creating an exception, which the exception profiling instruments. Runs
+ * without the agent, with the agent but the profiling disabled, and with the exception profiling
+ * enabled (which needs a JDK with JFR); exceptions of several types are created so that the
+ * histogram counts more than one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+public class ExceptionBenchmark {
+
+  static final String AGENT_JAR =
+      "/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar";
+
+  @State(Scope.Thread)
+  public static class Types {
+    int next;
+  }
+
+  @Benchmark
+  public Throwable newRuntimeException() {
+    return new RuntimeException();
+  }
+
+  @Benchmark
+  public Throwable newExceptionOfManyTypes(final Types types) {
+    switch (types.next++ & 3) {
+      case 0:
+        return new IllegalArgumentException();
+      case 1:
+        return new IllegalStateException();
+      case 2:
+        return new UnsupportedOperationException();
+      default:
+        return new ArithmeticException();
+    }
+  }
+
+  @Fork(jvmArgsAppend = "-javaagent:" + AGENT_JAR)
+  public static class WithAgent extends ExceptionBenchmark {}
+
+  @Fork(jvmArgsAppend = {"-javaagent:" + AGENT_JAR, "-Ddd.profiling.enabled=true"})
+  public static class WithExceptionProfiling extends ExceptionBenchmark {}
+}
@@ -0,0 +1,37 @@
+package datadog.benchmark;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Simulates an exception storm, as when a downstream outage makes every request fail: 32 threads
+ * create and throw exceptions as fast as they can, which with the exception profiling enabled hits
+ * the sampler far more often than its budget allows samples.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Threads(32)
+public class ExceptionStormBenchmark {
+
+  @Benchmark
+  public Object throwAndCatch() {
+    try {
+      throw new IllegalStateException("downstream unavailable");
+    } catch (final IllegalStateException e) {
+      return e;
+    }
+  }
+
+  @Fork(jvmArgsAppend = "-javaagent:" + ExceptionBenchmark.AGENT_JAR)
+  public static class WithAgent extends ExceptionStormBenchmark {}
+
+  @Fork(
+      jvmArgsAppend = {"-javaagent:" + ExceptionBenchmark.AGENT_JAR, "-Ddd.profiling.enabled=true"})
+  public static class WithExceptionProfiling extends ExceptionStormBenchmark {}
+}
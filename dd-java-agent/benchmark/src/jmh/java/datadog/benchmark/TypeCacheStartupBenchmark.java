@@ -0,0 +1,143 @@
+package datadog.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what the agent adds to loading the classes of a jar when the JVM starts, with the
+ * persistent type cache enabled: each fork loads every class of the JMH jar once, in a new class
+ * loader, so the type matching of the instrumentations resolves their super types from the jar.
+ *
+ * <p>The cold benchmark copies the jar to a new path in each fork, so its types are never found in
+ * the cache. The warm benchmark copies it once to the same path, so the types persisted when the
+ * warmup fork exits are read back by the measured fork.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class TypeCacheStartupBenchmark {
+
+  static final String JAR_DIR =
+      System.getProperty("java.io.tmpdir") + File.separator + "dd-type-cache-benchmark-jars";
+
+  @State(Scope.Benchmark)
+  public static class ColdJar {
+    File jar;
+    List<String> classNames;
+
+    @Setup(Level.Trial)
+    public void copyJar() throws IOException {
+      jar = File.createTempFile("cold-", ".jar");
+      copyBenchmarkJar(jar);
+      classNames = classNames(jar);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJar() {
+      jar.delete();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class WarmJar {
+    File jar;
+    List<String> classNames;
+
+    @Setup(Level.Trial)
+    public void copyJar() throws IOException {
+      jar = new File(JAR_DIR, "warm.jar");
+      if (!jar.isFile()) {
+        jar.getParentFile().mkdirs();
+        copyBenchmarkJar(jar);
+      }
+      classNames = classNames(jar);
+    }
+  }
+
+  @Benchmark
+  public int cold(final ColdJar state) throws IOException {
+    return loadClasses(state.jar, state.classNames);
+  }
+
+  @Benchmark
+  public int warm(final WarmJar state) throws IOException {
+    return loadClasses(state.jar, state.classNames);
+  }
+
+  static int loadClasses(final File jar, final List<String> classNames) throws IOException {
+    int loaded = 0;
+    // not delegating to the benchmark's class loader, which already loaded the jar
+    try (URLClassLoader classLoader = new URLClassLoader(new URL[] {jar.toURI().toURL()}, null)) {
+      for (String className : classNames) {
+        try {
+          Class.forName(className, false, classLoader);
+          ++loaded;
+        } catch (final Throwable ignored) {
+          // missing optional dependency
+        }
+      }
+    }
+    return loaded;
+  }
+
+  static void copyBenchmarkJar(final File jar) throws IOException {
+    File source =
+        new File(Benchmark.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+    Files.copy(
+        source.toPath(),
+        jar.toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.COPY_ATTRIBUTES);
+  }
+
+  static List<String> classNames(final File jar) throws IOException {
+    List<String> classNames = new ArrayList<>();
+    try (JarFile jarFile = new JarFile(jar)) {
+      Enumeration<JarEntry> entries = jarFile.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        if (name.endsWith(".class") && !name.endsWith("module-info.class")) {
+          classNames.add(name.substring(0, name.length() - 6).replace('/', '.'));
+        }
+      }
+    }
+    return classNames;
+  }
+
+  @Fork(
+      value = 1,
+      warmups = 1,
+      jvmArgsAppend = {
+        "-javaagent:/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar",
+        "-Ddd.resolver.persistent.cache.enabled=true",
+        "-Ddd.resolver.persistent.cache.dir=/tmp/dd-type-cache-benchmark"
+      })
+  public static class WithAgent extends TypeCacheStartupBenchmark {}
+
+  @Fork(
+      value = 1,
+      warmups = 1,
+      jvmArgsAppend =
+          "-javaagent:/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar")
+  public static class WithAgentWithoutCache extends TypeCacheStartupBenchmark {}
+}
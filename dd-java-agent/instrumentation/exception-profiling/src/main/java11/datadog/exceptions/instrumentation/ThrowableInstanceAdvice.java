@@ -1,8 +1,5 @@
 package datadog.exceptions.instrumentation;
 
-import static datadog.trace.util.AgentThreadFactory.AGENT_THREAD_GROUP;
-
-import datadog.trace.api.Config;
 import datadog.trace.bootstrap.CallDepthThreadLocalMap;
 import datadog.trace.bootstrap.instrumentation.exceptions.ExceptionProfiling;
 import datadog.trace.bootstrap.instrumentation.exceptions.ExceptionSampleEvent;
@@ -24,26 +21,23 @@ public class ThrowableInstanceAdvice {
       return;
     }
     try {
-      /*
-       * Exclude internal agent threads from exception profiling.
-       */
-      if (Config.get().isProfilingExcludeAgentThreads()
-          && AGENT_THREAD_GROUP.equals(Thread.currentThread().getThreadGroup())) {
-        return;
-      }
       /*
        * We may get into a situation when this is called before ExceptionProfiling had a chance
        * to fully initialize. So despite the fact that this returns static singleton this may
        * return null sometimes.
+       * Checked first, so that nothing else is done while the exception events are disabled.
        */
-      if (ExceptionProfiling.getInstance() == null) {
+      final ExceptionProfiling exceptionProfiling = ExceptionProfiling.getInstance();
+      if (exceptionProfiling == null || !exceptionProfiling.isEnabled()) {
         return;
       }
       /*
+       * Internal agent threads are excluded from exception profiling while processing the exception,
+       * after its sampling decision.
        * JFR will assign the stacktrace depending on the place where the event is committed.
        * Therefore we need to commit the event here, right in the 'Exception' constructor
        */
-      final ExceptionSampleEvent event = ExceptionProfiling.getInstance().process(t);
+      final ExceptionSampleEvent event = exceptionProfiling.process(t);
       if (event != null && event.shouldCommit()) {
         event.commit();
       }
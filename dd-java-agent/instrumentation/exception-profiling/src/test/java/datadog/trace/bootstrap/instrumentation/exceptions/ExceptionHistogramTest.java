@@ -14,6 +14,8 @@ import java.time.Instant;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Phaser;
 import java.util.stream.Stream;
 import jdk.jfr.FlightRecorder;
@@ -115,6 +117,47 @@ public class ExceptionHistogramTest {
     assertFalse(histogram.record(new NullPointerException()));
   }
 
+  @Test
+  public void testConcurrentRecordsCounted() throws InterruptedException {
+    final Map<String, Long> counts = new ConcurrentHashMap<>();
+    final ExceptionHistogram histogram =
+        new ExceptionHistogram(Config.get()) {
+          @Override
+          void emitEvents(final Stream<ExceptionHistogram.Pair<String, Long>> items) {
+            items.forEach(p -> counts.merge(p.getKey(), p.getValue(), Long::sum));
+          }
+        };
+    // don't want the JFR integration active here
+    histogram.deregister();
+
+    final int threads = 4;
+    final int records = 10_000;
+    final CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      // emit() is only ever called from a single thread
+      final boolean emitting = t == 0;
+      new Thread(
+              () -> {
+                final Exception npe = new NullPointerException();
+                final Exception iae = new IllegalArgumentException();
+                for (int i = 0; i < records; i++) {
+                  histogram.record(npe);
+                  histogram.record(iae);
+                  if (emitting && i % 1000 == 0) {
+                    histogram.doEmit();
+                  }
+                }
+                done.countDown();
+              })
+          .start();
+    }
+    done.await();
+    histogram.doEmit();
+
+    assertEquals(threads * records, (long) counts.get(NullPointerException.class.getName()));
+    assertEquals(threads * records, (long) counts.get(IllegalArgumentException.class.getName()));
+  }
+
   @Test
   public void testExceptionsRecorded()
       throws IOException, CouldNotLoadRecordingException, InterruptedException {
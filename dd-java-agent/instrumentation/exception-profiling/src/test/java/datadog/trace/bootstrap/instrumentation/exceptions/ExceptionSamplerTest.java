@@ -0,0 +1,96 @@
+package datadog.trace.bootstrap.instrumentation.exceptions;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import datadog.trace.api.sampling.AdaptiveSampler;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ExceptionSamplerTest {
+
+  private Recording recording;
+  private AdaptiveSampler sampler;
+  private ExceptionSampler instance;
+
+  @BeforeEach
+  public void setup() {
+    recording = new Recording();
+    recording.enable("datadog.ExceptionSample");
+    recording.start();
+
+    sampler = mock(AdaptiveSampler.class);
+    when(sampler.getWindow()).thenReturn(1L);
+    when(sampler.nextSampleGap()).thenReturn(3);
+    when(sampler.sampleAfter(anyLong())).thenReturn(true);
+    instance = new ExceptionSampler(sampler);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    recording.close();
+  }
+
+  @Test
+  public void skipsTheCountdownWithoutAskingTheSampler() {
+    for (int i = 0; i < 3; i++) {
+      assertFalse(instance.sample());
+    }
+    verify(sampler, never()).sampleAfter(anyLong());
+
+    assertTrue(instance.sample());
+    // the skipped exceptions are counted with the sampled one
+    verify(sampler).sampleAfter(3);
+    verify(sampler, never()).sample();
+  }
+
+  @Test
+  public void countsTheSkippedExceptionsAndDrawsAgainWhenTheWindowRolls() {
+    // the countdown is drawn when the first exception is seen
+    assertFalse(instance.sample());
+    assertFalse(instance.sample());
+    verify(sampler, never()).skip(2);
+
+    when(sampler.getWindow()).thenReturn(2L);
+    when(sampler.nextSampleGap()).thenReturn(1);
+    assertFalse(instance.sample());
+    verify(sampler).skip(2);
+
+    // only one exception was left to skip with the countdown drawn for the new window
+    assertTrue(instance.sample());
+    verify(sampler).sampleAfter(1);
+  }
+
+  @Test
+  public void skipsEveryExceptionOnceTheBudgetIsSpent() {
+    when(sampler.nextSampleGap()).thenReturn(0);
+    when(sampler.isBudgetSpent()).thenReturn(true);
+
+    for (int i = 0; i < 5; i++) {
+      assertFalse(instance.sample());
+    }
+    verify(sampler, never()).sampleAfter(anyLong());
+
+    // the exceptions skipped while the budget was spent are counted when the window rolls
+    when(sampler.getWindow()).thenReturn(2L);
+    instance.sample();
+    verify(sampler).skip(5);
+  }
+
+  @Test
+  public void skipsEverythingWhenTheEventIsDisabled() {
+    recording.close();
+    when(sampler.nextSampleGap()).thenReturn(0);
+
+    assertFalse(instance.sample());
+    verify(sampler, never()).getWindow();
+    verify(sampler, never()).sampleAfter(anyLong());
+  }
+}
@@ -59,10 +59,18 @@ public final class ConfigDefaults {
   static final int DEFAULT_PROFILING_UPLOAD_PERIOD = 60; // 1 min
   static final int DEFAULT_PROFILING_UPLOAD_TIMEOUT = 30; // seconds
   static final String DEFAULT_PROFILING_UPLOAD_COMPRESSION = "on";
+  // percent of one CPU over the upload period
+  static final double DEFAULT_PROFILING_UPLOAD_COMPRESSION_CPU_BUDGET = 1.0;
+  static final int DEFAULT_PROFILING_UPLOAD_MAX_IN_FLIGHT_BYTES = 32 * 1024 * 1024; // 32 MiB
+  static final int DEFAULT_PROFILING_UPLOAD_MAX_QUEUED_RECORDINGS = 20;
   static final int DEFAULT_PROFILING_PROXY_PORT = 8080;
   static final int DEFAULT_PROFILING_EXCEPTION_SAMPLE_LIMIT = 10_000;
   static final int DEFAULT_PROFILING_EXCEPTION_HISTOGRAM_TOP_ITEMS = 50;
   static final int DEFAULT_PROFILING_EXCEPTION_HISTOGRAM_MAX_COLLECTION_SIZE = 10000;
+  // "events" records a JFR event per scope, "sampled" samples the active scope of each thread
+  // every 100 ms: each sample walks all the threads which activated a scope and records an event
+  // per thread with an active one, so shorter periods cost more CPU and recording size
+  static final String DEFAULT_PROFILING_SCOPE_MODE = "events";
   static final boolean DEFAULT_PROFILING_AGENTLESS = false;
 
   static final boolean DEFAULT_KAFKA_CLIENT_PROPAGATION_ENABLED = true;
@@ -74,6 +82,21 @@ public final class ConfigDefaults {
   static final boolean DEFAULT_TRACE_ANALYTICS_ENABLED = false;
   static final float DEFAULT_ANALYTICS_SAMPLE_RATE = 1.0f;
   static final int DEFAULT_TRACE_RATE_LIMIT = 100;
+  public static final int DEFAULT_PENDING_TRACE_BUFFER_SIZE = 1 << 12; // 4096
+  static final int DEFAULT_TRACE_SERIALIZATION_SHARDS = 1;
+  static final int DEFAULT_TRACE_SENDER_MAX_IN_FLIGHT = 0;
+  static final int DEFAULT_TRACE_SENDER_MAX_RETRIES = 3;
+  static final int DEFAULT_TRACE_AGENT_V05_RETAINED_BYTES = 0;
+  static final boolean DEFAULT_TRACE_EARLY_SAMPLING_ENABLED = false;
+  static final boolean DEFAULT_TRACE_SPAN_RECYCLING_ENABLED = false;
+  static final boolean DEFAULT_TRACE_SPAN_RECYCLING_DEBUG = false;
+  static final boolean DEFAULT_TRACE_COMPLETION_ASYNC_ENABLED = false;
+  static final int DEFAULT_TRACE_COMPLETION_WORKERS = 0;
+  static final int DEFAULT_TRACE_COMPLETION_QUEUE_SIZE = 1 << 10; // 1024
+  public static final int DEFAULT_TRACER_METRICS_MAX_MEMORY_BYTES = 8 << 20; // 8MB
+  static final boolean DEFAULT_RESOLVER_PERSISTENT_CACHE_ENABLED = false;
+  static final boolean DEFAULT_RETRANSFORM_PARALLEL_ENABLED = false;
+  static final int DEFAULT_RETRANSFORM_PARALLELISM = 0;
 
   public static final boolean DEFAULT_ASYNC_PROPAGATING = true;
 
@@ -83,7 +83,15 @@ public class DDId {
 
   private static long MAX_FIRST_PART = 0x1999999999999999L; // Max unsigned 64 bits / 10
 
-  private static long parseUnsignedLong(String s) throws NumberFormatException {
+  /**
+   * Parses the decimal representation of the unsigned 64 bit id, without allocating a {@code
+   * DDId}.
+   *
+   * @param s String of unsigned 64 bit id
+   * @return long representing the bits of the unsigned 64 bit id
+   * @throws NumberFormatException
+   */
+  public static long parseUnsignedLong(String s) throws NumberFormatException {
     if (s == null) {
       throw new NumberFormatException("null");
     }
@@ -129,7 +137,14 @@ public class DDId {
     }
   }
 
-  private static long parseUnsignedLongHex(String s) throws NumberFormatException {
+  /**
+   * Parses the hex representation of the unsigned 64 bit id, without allocating a {@code DDId}.
+   *
+   * @param s String in hex of unsigned 64 bit id
+   * @return long representing the bits of the unsigned 64 bit id
+   * @throws NumberFormatException
+   */
+  public static long parseUnsignedLongHex(String s) throws NumberFormatException {
     if (s == null) {
       throw new NumberFormatException("null");
     }
@@ -157,8 +172,15 @@ public class DDId {
     }
   }
 
-  // TODO Can be removed when Java7 support is removed
-  private static String toUnsignedString(long l) {
+  /**
+   * Returns the decimal string representation of the unsigned 64 bit id, without allocating a
+   * {@code DDId}. The {@code String} will NOT be cached.
+   *
+   * @param l long representing the bits of the unsigned 64 bit id
+   * @return decimal string
+   */
+  // TODO Can be replaced by Long.toUnsignedString when Java7 support is removed
+  public static String toUnsignedString(long l) {
     if (l >= 0) return Long.toString(l);
 
     // shift left once and divide by 5 results in an unsigned divide by 10
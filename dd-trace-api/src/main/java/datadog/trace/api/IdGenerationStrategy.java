@@ -6,18 +6,23 @@ import java.util.concurrent.atomic.AtomicLong;
 public enum IdGenerationStrategy {
   RANDOM {
     @Override
-    public DDId generate() {
-      return DDId.from(ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE));
+    public long generateId() {
+      return ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
     }
   },
   SEQUENTIAL {
     private final AtomicLong id = new AtomicLong(0);
 
     @Override
-    public DDId generate() {
-      return DDId.from(id.incrementAndGet());
+    public long generateId() {
+      return id.incrementAndGet();
     }
   };
 
-  public abstract DDId generate();
+  public DDId generate() {
+    return DDId.from(generateId());
+  }
+
+  /** @return the bits of a new unsigned 64 bit id, without allocating a {@code DDId} */
+  public abstract long generateId();
 }
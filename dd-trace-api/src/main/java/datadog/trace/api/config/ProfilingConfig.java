@@ -31,6 +31,12 @@ public final class ProfilingConfig {
       "profiling.jfr-template-override-file";
   public static final String PROFILING_UPLOAD_TIMEOUT = "profiling.upload.timeout";
   public static final String PROFILING_UPLOAD_COMPRESSION = "profiling.upload.compression";
+  public static final String PROFILING_UPLOAD_COMPRESSION_CPU_BUDGET =
+      "profiling.upload.compression.cpu-budget";
+  public static final String PROFILING_UPLOAD_MAX_IN_FLIGHT_BYTES =
+      "profiling.upload.max-in-flight-bytes";
+  public static final String PROFILING_UPLOAD_MAX_QUEUED_RECORDINGS =
+      "profiling.upload.max-queued-recordings";
   public static final String PROFILING_PROXY_HOST = "profiling.proxy.host";
   public static final String PROFILING_PROXY_PORT = "profiling.proxy.port";
   public static final String PROFILING_PROXY_USERNAME = "profiling.proxy.username";
@@ -41,6 +47,7 @@ public final class ProfilingConfig {
   public static final String PROFILING_EXCEPTION_HISTOGRAM_MAX_COLLECTION_SIZE =
       "profiling.exception.histogram.max-collection-size";
   public static final String PROFILING_EXCLUDE_AGENT_THREADS = "profiling.exclude.agent-threads";
+  public static final String PROFILING_SCOPE_MODE = "profiling.scope.mode";
 
   // Not intended for production use
   public static final String PROFILING_AGENTLESS = "profiling.agentless";
@@ -53,6 +53,11 @@ public final class TraceInstrumentationConfig {
   public static final String TEMP_JARS_CLEAN_ON_BOOT = "temp.jars.clean.on.boot";
 
   public static final String RESOLVER_USE_LOADCLASS = "resolver.use.loadclass";
+  public static final String RESOLVER_PERSISTENT_CACHE_ENABLED =
+      "resolver.persistent.cache.enabled";
+  public static final String RESOLVER_PERSISTENT_CACHE_DIR = "resolver.persistent.cache.dir";
+  public static final String RETRANSFORM_PARALLEL_ENABLED = "retransform.parallel.enabled";
+  public static final String RETRANSFORM_PARALLELISM = "retransform.parallelism";
 
   private TraceInstrumentationConfig() {}
 }
@@ -44,12 +44,24 @@ public final class TracerConfig {
   public static final String SCOPE_STRICT_MODE = "trace.scope.strict.mode";
   public static final String SCOPE_INHERIT_ASYNC_PROPAGATION =
       "trace.scope.inherit.async.propagation";
+  public static final String SCOPE_POOLING_ENABLED = "trace.scope.pooling.enabled";
   public static final String PARTIAL_FLUSH_MIN_SPANS = "trace.partial.flush.min.spans";
   public static final String TRACE_STRICT_WRITES_ENABLED = "trace.strict.writes.enabled";
   public static final String PROPAGATION_STYLE_EXTRACT = "propagation.style.extract";
   public static final String PROPAGATION_STYLE_INJECT = "propagation.style.inject";
 
   public static final String ENABLE_TRACE_AGENT_V05 = "trace.agent.v0.5.enabled";
+  public static final String PENDING_TRACE_BUFFER_SIZE = "trace.pending.buffer.size";
+  public static final String TRACE_SERIALIZATION_SHARDS = "trace.serialization.shards";
+  public static final String TRACE_SENDER_MAX_IN_FLIGHT = "trace.sender.max.in.flight";
+  public static final String TRACE_SENDER_MAX_RETRIES = "trace.sender.max.retries";
+  public static final String TRACE_AGENT_V05_RETAINED_BYTES = "trace.agent.v0.5.retained.bytes";
+  public static final String TRACE_EARLY_SAMPLING_ENABLED = "trace.early.sampling.enabled";
+  public static final String TRACE_SPAN_RECYCLING_ENABLED = "trace.span.recycling.enabled";
+  public static final String TRACE_SPAN_RECYCLING_DEBUG = "trace.span.recycling.debug";
+  public static final String TRACE_COMPLETION_ASYNC_ENABLED = "trace.completion.async.enabled";
+  public static final String TRACE_COMPLETION_WORKERS = "trace.completion.workers";
+  public static final String TRACE_COMPLETION_QUEUE_SIZE = "trace.completion.queue.size";
 
   private TracerConfig() {}
 }
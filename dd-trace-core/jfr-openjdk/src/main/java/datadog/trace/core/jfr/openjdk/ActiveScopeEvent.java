@@ -0,0 +1,32 @@
+package datadog.trace.core.jfr.openjdk;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+@Name("datadog.ActiveScope")
+@Label("ActiveScope")
+@Description("Datadog event sampling the scope active on a thread.")
+@Category("Datadog")
+@Period("100 ms")
+@StackTrace(false)
+public final class ActiveScopeEvent extends Event {
+  @Label("Thread")
+  private final Thread thread;
+
+  @Label("Trace Id")
+  private final long traceId;
+
+  @Label("Span Id")
+  private final long spanId;
+
+  ActiveScopeEvent(final Thread thread, final long traceId, final long spanId) {
+    this.thread = thread;
+    this.traceId = traceId;
+    this.spanId = spanId;
+  }
+}
@@ -0,0 +1,107 @@
+package datadog.trace.core.jfr.openjdk;
+
+import datadog.trace.core.scopemanager.ExtendedScopeListener;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Correlates traces with profiles by sampling the scope active on each thread, rather than
+ * recording a {@link ScopeEvent} for each activation: activating or closing a scope only writes the
+ * ids of its span in a slot of the thread, and the slots of all the threads are read periodically
+ * to emit an {@link ActiveScopeEvent} for each thread with an active scope.
+ *
+ * <p>The scope manager notifies the activation of the parent scope after closing a scope, so a
+ * slot only ever holds the ids of the scope on top of the stack of its thread.
+ *
+ * <p>Each period costs a walk over the slots of all the threads and an event per thread with an
+ * active scope, so the period of {@link ActiveScopeEvent} defaults to 100 ms, at the cost of
+ * missing most of the spans much shorter than that.
+ */
+public class ActiveScopeSampler implements ExtendedScopeListener {
+  private final Queue<Slot> slots = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<Slot> threadSlot = ThreadLocal.withInitial(this::newSlot);
+  private final Runnable eventHook = this::emit;
+
+  public ActiveScopeSampler() {
+    ExcludedVersions.checkVersionExclusion();
+    // Note: this loads the JFR classes - which may not be present on some JVMs
+    FlightRecorder.addPeriodicEvent(ActiveScopeEvent.class, eventHook);
+  }
+
+  @Override
+  public void afterScopeActivated(final long traceId, final long spanId) {
+    threadSlot.get().activate(traceId, spanId);
+  }
+
+  @Override
+  public void afterScopeClosed() {
+    threadSlot.get().clear();
+  }
+
+  private Slot newSlot() {
+    final Slot slot = new Slot(Thread.currentThread());
+    slots.add(slot);
+    return slot;
+  }
+
+  private void emit() {
+    final Iterator<Slot> it = slots.iterator();
+    while (it.hasNext()) {
+      final Slot slot = it.next();
+      final Thread thread = slot.thread.get();
+      if (thread == null || !thread.isAlive()) {
+        it.remove();
+        continue;
+      }
+      final long spanId = slot.spanId;
+      if (spanId == 0) {
+        continue;
+      }
+      final long traceId = slot.traceId;
+      if (slot.spanId != spanId) {
+        // another scope was activated while reading, it will be seen next period
+        continue;
+      }
+      final ActiveScopeEvent event = new ActiveScopeEvent(thread, traceId, spanId);
+      if (event.shouldCommit()) {
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * The ids of the span active on a thread, written by that thread only. The span id is cleared
+   * before the trace id is written and set after, so that a reader seeing the same span id before
+   * and after reading the trace id has read the trace id of that span. Ordered writes are enough
+   * for this and cheaper than volatile ones.
+   */
+  static final class Slot {
+    private static final AtomicLongFieldUpdater<Slot> TRACE_ID =
+        AtomicLongFieldUpdater.newUpdater(Slot.class, "traceId");
+    private static final AtomicLongFieldUpdater<Slot> SPAN_ID =
+        AtomicLongFieldUpdater.newUpdater(Slot.class, "spanId");
+
+    final WeakReference<Thread> thread;
+    volatile long traceId;
+    // 0 when no scope is active
+    volatile long spanId;
+
+    Slot(final Thread thread) {
+      this.thread = new WeakReference<>(thread);
+    }
+
+    void activate(final long traceId, final long spanId) {
+      SPAN_ID.lazySet(this, 0);
+      TRACE_ID.lazySet(this, traceId);
+      SPAN_ID.lazySet(this, spanId);
+    }
+
+    void clear() {
+      SPAN_ID.lazySet(this, 0);
+    }
+  }
+}
@@ -1,6 +1,5 @@
 package datadog.trace.core.jfr.openjdk;
 
-import datadog.trace.api.DDId;
 import datadog.trace.core.util.SystemAccess;
 import jdk.jfr.Category;
 import jdk.jfr.Description;
@@ -29,9 +28,9 @@ public final class ScopeEvent extends Event {
 
   private transient long cpuTimeStart;
 
-  ScopeEvent(DDId traceId, DDId spanId) {
-    this.traceId = traceId.toLong();
-    this.spanId = spanId.toLong();
+  ScopeEvent(long traceId, long spanId) {
+    this.traceId = traceId;
+    this.spanId = spanId;
 
     if (isEnabled()) {
       resume();
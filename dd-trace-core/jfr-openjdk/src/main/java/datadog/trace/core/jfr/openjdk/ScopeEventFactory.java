@@ -1,6 +1,5 @@
 package datadog.trace.core.jfr.openjdk;
 
-import datadog.trace.api.DDId;
 import datadog.trace.core.scopemanager.ExtendedScopeListener;
 import java.util.ArrayDeque;
 import java.util.Deque;
@@ -19,7 +18,7 @@ public class ScopeEventFactory implements ExtendedScopeListener {
   }
 
   @Override
-  public void afterScopeActivated(DDId traceId, DDId spanId) {
+  public void afterScopeActivated(long traceId, long spanId) {
     Deque<ScopeEvent> stack = scopeEventStack.get();
 
     ScopeEvent scopeEvent = stack.peek();
@@ -27,8 +26,7 @@ public class ScopeEventFactory implements ExtendedScopeListener {
     if (scopeEvent == null) {
       // Empty stack
       stack.push(new ScopeEvent(traceId, spanId));
-    } else if (scopeEvent.getTraceId() == traceId.toLong()
-        && scopeEvent.getSpanId() == spanId.toLong()) {
+    } else if (scopeEvent.getTraceId() == traceId && scopeEvent.getSpanId() == spanId) {
 
       // Reactivation
       scopeEvent.resume();
@@ -0,0 +1,99 @@
+package datadog.trace.core.jfr.openjdk
+
+
+import datadog.trace.api.config.ProfilingConfig
+import datadog.trace.bootstrap.instrumentation.api.AgentScope
+import datadog.trace.bootstrap.instrumentation.api.AgentSpan
+import datadog.trace.common.writer.ListWriter
+import datadog.trace.core.CoreTracer
+import datadog.trace.test.util.DDSpecification
+import spock.lang.Requires
+
+import java.time.Duration
+
+@Requires({
+  jvm.java11Compatible
+})
+class ActiveScopeSamplerTest extends DDSpecification {
+  // several sampling periods
+  private static final Duration SLEEP_DURATION = Duration.ofMillis(500)
+
+  def tracer
+
+  def setup() {
+    injectSysConfig(ProfilingConfig.PROFILING_ENABLED, "true")
+    injectSysConfig(ProfilingConfig.PROFILING_SCOPE_MODE, "sampled")
+    tracer = CoreTracer.builder().writer(new ListWriter()).build()
+  }
+
+  def cleanup() {
+    tracer?.close()
+  }
+
+  def "Active scope is sampled"() {
+    setup:
+    def recording = JfrHelper.startRecording()
+
+    when:
+    AgentSpan span = tracer.buildSpan("test").start()
+    AgentScope scope = tracer.activateSpan(span)
+    sleep(SLEEP_DURATION.toMillis())
+    scope.close()
+    def events = JfrHelper.stopRecording(recording)
+    span.finish()
+
+    then:
+    events.every { it.eventType.name != "datadog.Scope" }
+    def samples = activeScopeSamples(events)
+    !samples.empty
+    samples.every {
+      it.getLong("traceId") == span.context().traceId.toLong() &&
+        it.getLong("spanId") == span.context().spanId.toLong()
+    }
+  }
+
+  def "Closed scope is not sampled"() {
+    setup:
+    AgentSpan span = tracer.buildSpan("test").start()
+    AgentScope scope = tracer.activateSpan(span)
+    scope.close()
+    span.finish()
+
+    when:
+    def recording = JfrHelper.startRecording()
+    sleep(SLEEP_DURATION.toMillis())
+    def events = JfrHelper.stopRecording(recording)
+
+    then:
+    activeScopeSamples(events).empty
+  }
+
+  def "Parent scope is sampled again once the child scope is closed"() {
+    setup:
+    def recording = JfrHelper.startRecording()
+
+    when:
+    AgentSpan parent = tracer.buildSpan("parent").start()
+    AgentScope parentScope = tracer.activateSpan(parent)
+    AgentSpan child = tracer.buildSpan("child").start()
+    AgentScope childScope = tracer.activateSpan(child)
+    sleep(SLEEP_DURATION.toMillis())
+    childScope.close()
+    child.finish()
+    sleep(SLEEP_DURATION.toMillis())
+    parentScope.close()
+    def events = JfrHelper.stopRecording(recording)
+    parent.finish()
+
+    then:
+    def spanIds = activeScopeSamples(events).collect { it.getLong("spanId") } as Set
+    spanIds == [parent.context().spanId.toLong(), child.context().spanId.toLong()] as Set
+  }
+
+  private static List activeScopeSamples(List events) {
+    return events.findAll {
+      it.eventType.name == "datadog.ActiveScope" &&
+        it.getThread("thread").javaThreadId == Thread.currentThread().id
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package datadog.trace.common.metrics;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import datadog.trace.common.writer.ListWriter;
+import datadog.trace.core.CoreSpan;
+import datadog.trace.core.CoreTracer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures publishing from many threads at once when a few keys get most of the traffic, with keys
+ * drawn from a Zipfian distribution, comparing batches alone with hot keys accumulated in stripes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Threads(64)
+public class ConflatingMetricsAggregatorContention {
+
+  private static final int DISTINCT_KEYS = 100;
+  private static final int SAMPLES = 1 << 16;
+
+  @Param({"0", "4"})
+  int maxHotKeys;
+
+  private CoreTracer tracer;
+  private ConflatingMetricsAggregator aggregator;
+  private List<List<? extends CoreSpan<?>>> traces;
+  private int[] zipfian;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next = (int) Thread.currentThread().getId() * 997;
+  }
+
+  @Setup(Level.Trial)
+  public void init() {
+    tracer = CoreTracer.builder().writer(new ListWriter()).strictTraceWrites(false).build();
+    aggregator =
+        new ConflatingMetricsAggregator(
+            Collections.<String>emptySet(),
+            new ConflatingMetricsAggregatorPublish.NullSink(),
+            new ConflatingMetricsAggregatorPublish.NullMetricWriter(),
+            2048,
+            2048,
+            10,
+            SECONDS,
+            maxHotKeys);
+    aggregator.start();
+    traces = new ArrayList<>(DISTINCT_KEYS);
+    for (int i = 0; i < DISTINCT_KEYS; ++i) {
+      traces.add(
+          Collections.singletonList(
+              (CoreSpan<?>)
+                  tracer
+                      .buildSpan("operation")
+                      .withServiceName("service")
+                      .withResourceName("resource" + i)
+                      .withSpanType("web")
+                      .start()));
+    }
+    // the key of rank k is published with probability proportional to 1/k
+    double[] cumulative = new double[DISTINCT_KEYS];
+    double sum = 0;
+    for (int i = 0; i < DISTINCT_KEYS; ++i) {
+      sum += 1D / (i + 1);
+      cumulative[i] = sum;
+    }
+    Random random = new Random(0);
+    zipfian = new int[SAMPLES];
+    for (int i = 0; i < SAMPLES; ++i) {
+      double r = random.nextDouble() * sum;
+      int key = 0;
+      while (cumulative[key] < r) {
+        ++key;
+      }
+      zipfian[i] = key;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    aggregator.close();
+    tracer.close();
+  }
+
+  @Benchmark
+  public boolean publish(Cursor cursor) {
+    int next = cursor.next++ & (SAMPLES - 1);
+    return aggregator.publish(traces.get(zipfian[next]));
+  }
+}
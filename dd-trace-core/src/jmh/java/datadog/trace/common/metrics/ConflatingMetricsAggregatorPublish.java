@@ -0,0 +1,113 @@
+package datadog.trace.common.metrics;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import datadog.trace.common.writer.ListWriter;
+import datadog.trace.core.CoreSpan;
+import datadog.trace.core.CoreTracer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the cost of publishing a trace to the metrics aggregator on the thread which finished
+ * it, with keys drawn from a varying number of distinct combinations of span fields. Run with {@code
+ * -prof gc} to check the publishing path does not allocate once the keys have been seen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+public class ConflatingMetricsAggregatorPublish {
+
+  @Param({"10", "1000", "100000"})
+  int distinctKeys;
+
+  private CoreTracer tracer;
+  private ConflatingMetricsAggregator aggregator;
+  private List<List<? extends CoreSpan<?>>> traces;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void init() {
+    tracer = CoreTracer.builder().writer(new ListWriter()).strictTraceWrites(false).build();
+    aggregator =
+        new ConflatingMetricsAggregator(
+            Collections.<String>emptySet(),
+            new NullSink(),
+            new NullMetricWriter(),
+            2048,
+            2048,
+            10,
+            SECONDS);
+    aggregator.start();
+    traces = new ArrayList<>(distinctKeys);
+    for (int i = 0; i < distinctKeys; ++i) {
+      // the span is never finished, it only needs to look like a finished top level span
+      traces.add(
+          Collections.singletonList(
+              (CoreSpan<?>)
+                  tracer
+                      .buildSpan("operation" + (i % 10))
+                      .withServiceName("service" + (i % 3))
+                      .withResourceName("resource" + i)
+                      .withSpanType("web")
+                      .start()));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    aggregator.close();
+    tracer.close();
+  }
+
+  @Benchmark
+  public boolean publish(Cursor cursor) {
+    int next = cursor.next;
+    cursor.next = next + 1 == distinctKeys ? 0 : next + 1;
+    return aggregator.publish(traces.get(next));
+  }
+
+  static final class NullSink implements Sink {
+    @Override
+    public void register(EventListener listener) {}
+
+    @Override
+    public boolean validate() {
+      return true;
+    }
+
+    @Override
+    public void accept(int messageCount, ByteBuffer buffer) {}
+  }
+
+  static final class NullMetricWriter implements MetricWriter {
+    @Override
+    public void startBucket(int metricCount, long start, long duration) {}
+
+    @Override
+    public void add(MetricKey key, AggregateMetric aggregate) {}
+
+    @Override
+    public void finishBucket() {}
+
+    @Override
+    public void reset() {}
+  }
+}
@@ -0,0 +1,245 @@
+package datadog.trace.common.writer.ddagent;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import datadog.trace.bootstrap.instrumentation.api.AgentSpan;
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
+import datadog.trace.common.writer.ListWriter;
+import datadog.trace.core.CoreSpan;
+import datadog.trace.core.CoreTracer;
+import datadog.trace.core.DDSpan;
+import datadog.trace.core.serialization.ByteBufferConsumer;
+import datadog.trace.core.serialization.EncodingCache;
+import datadog.trace.core.serialization.FlushingBuffer;
+import datadog.trace.core.serialization.Mapper;
+import datadog.trace.core.serialization.Writable;
+import datadog.trace.core.serialization.msgpack.MsgPackWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the rate at which realistic traces are encoded with the v0.4 format, in bytes per
+ * second, with strings written from the process-wide table of encoded strings, or encoded on every
+ * write as they were before it existed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+public class TraceMapperV0_4Serialization {
+
+  @Param({"true", "false"})
+  boolean interned;
+
+  @Param({"1", "10", "100"})
+  int spansPerTrace;
+
+  private CoreTracer tracer;
+  private List<? extends CoreSpan<?>> trace;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class EncodedBytes {
+    public long bytes;
+  }
+
+  @State(Scope.Thread)
+  public static class Serializer implements ByteBufferConsumer {
+    EncodedBytes counters;
+    Mapper<List<? extends CoreSpan<?>>> mapper;
+    Mapper<List<? extends CoreSpan<?>>> plainMapper;
+    MsgPackWriter writer;
+
+    @Setup(Level.Iteration)
+    public void init(EncodedBytes counters) {
+      this.counters = counters;
+      this.writer = new MsgPackWriter(new FlushingBuffer(1 << 20, this));
+      final TraceMapperV0_4 mapper = new TraceMapperV0_4();
+      final PlainStrings plainStrings = new PlainStrings(writer);
+      this.mapper = mapper;
+      this.plainMapper =
+          new Mapper<List<? extends CoreSpan<?>>>() {
+            @Override
+            public void map(List<? extends CoreSpan<?>> trace, Writable writable) {
+              mapper.map(trace, plainStrings);
+            }
+          };
+    }
+
+    @Override
+    public void accept(int messageCount, ByteBuffer buffer) {
+      counters.bytes += buffer.remaining();
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void init() {
+    tracer = CoreTracer.builder().writer(new ListWriter()).strictTraceWrites(false).build();
+    List<DDSpan> trace = new ArrayList<>(spansPerTrace);
+    AgentSpan root = null;
+    for (int i = 0; i < spansPerTrace; ++i) {
+      CoreTracer.CoreSpanBuilder builder =
+          tracer
+              .buildSpan(i == 0 ? "servlet.request" : "jdbc.query")
+              .withServiceName(i == 0 ? "web-frontend" : "orders-db")
+              .withResourceName(i == 0 ? "GET /orders/{id}" : "SELECT * FROM orders WHERE id = ?")
+              .withSpanType(i == 0 ? "web" : "sql")
+              .withTag("component", i == 0 ? "tomcat-server" : "java-jdbc-prepared_statement")
+              .withTag("span.kind", i == 0 ? "server" : "client")
+              .withTag("http.url", "http://localhost:8080/orders/" + i)
+              .withTag("http.method", "GET")
+              .withTag("peer.hostname", "localhost")
+              .withTag("db.instance", "orders")
+              .withTag("http.status_code", 200);
+      if (null != root) {
+        builder.asChildOf(root.context());
+      }
+      AgentSpan span = builder.start();
+      if (null == root) {
+        root = span;
+      }
+      trace.add((DDSpan) span);
+    }
+    this.trace = trace;
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    tracer.close();
+  }
+
+  @Benchmark
+  public boolean serialize(Serializer serializer) {
+    return serializer.writer.format(trace, interned ? serializer.mapper : serializer.plainMapper);
+  }
+
+  /** Writes interned strings as they were written before they were interned. */
+  private static final class PlainStrings implements Writable {
+    private final Writable delegate;
+
+    private PlainStrings(Writable delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void writeInternedString(CharSequence s) {
+      if (s instanceof UTF8BytesString) {
+        delegate.writeUTF8((UTF8BytesString) s);
+      } else {
+        delegate.writeString(s, null);
+      }
+    }
+
+    @Override
+    public void writeNull() {
+      delegate.writeNull();
+    }
+
+    @Override
+    public void writeBoolean(boolean value) {
+      delegate.writeBoolean(value);
+    }
+
+    @Override
+    public void writeObject(Object value, EncodingCache encodingCache) {
+      delegate.writeObject(value, encodingCache);
+    }
+
+    @Override
+    public void writeMap(Map<? extends CharSequence, ?> map, EncodingCache encodingCache) {
+      delegate.writeMap(map, encodingCache);
+    }
+
+    @Override
+    public void writeString(CharSequence s, EncodingCache encodingCache) {
+      delegate.writeString(s, encodingCache);
+    }
+
+    @Override
+    public void writeUTF8(byte[] string, int offset, int length) {
+      delegate.writeUTF8(string, offset, length);
+    }
+
+    @Override
+    public void writeUTF8(byte[] string) {
+      delegate.writeUTF8(string);
+    }
+
+    @Override
+    public void writeUTF8(UTF8BytesString string) {
+      delegate.writeUTF8(string);
+    }
+
+    @Override
+    public void writeBinary(byte[] binary) {
+      delegate.writeBinary(binary);
+    }
+
+    @Override
+    public void writeBinary(byte[] binary, int offset, int length) {
+      delegate.writeBinary(binary, offset, length);
+    }
+
+    @Override
+    public void startMap(int elementCount) {
+      delegate.startMap(elementCount);
+    }
+
+    @Override
+    public void startStruct(int elementCount) {
+      delegate.startStruct(elementCount);
+    }
+
+    @Override
+    public void startArray(int elementCount) {
+      delegate.startArray(elementCount);
+    }
+
+    @Override
+    public void writeBinary(ByteBuffer buffer) {
+      delegate.writeBinary(buffer);
+    }
+
+    @Override
+    public void writeInt(int value) {
+      delegate.writeInt(value);
+    }
+
+    @Override
+    public void writeSignedInt(int value) {
+      delegate.writeSignedInt(value);
+    }
+
+    @Override
+    public void writeLong(long value) {
+      delegate.writeLong(value);
+    }
+
+    @Override
+    public void writeSignedLong(long value) {
+      delegate.writeSignedLong(value);
+    }
+
+    @Override
+    public void writeFloat(float value) {
+      delegate.writeFloat(value);
+    }
+
+    @Override
+    public void writeDouble(double value) {
+      delegate.writeDouble(value);
+    }
+  }
+}
@@ -9,11 +9,18 @@ public class BlackholeWriter implements Writer {
   private final Blackhole blackhole;
   private final TraceCounters counters;
   private final int tokens;
+  private final boolean recycle;
 
   public BlackholeWriter(Blackhole blackhole, TraceCounters counters, int tokens) {
+    this(blackhole, counters, tokens, false);
+  }
+
+  /** @param recycle whether to recycle traces once they have been consumed, like a serializer */
+  public BlackholeWriter(Blackhole blackhole, TraceCounters counters, int tokens, boolean recycle) {
     this.blackhole = blackhole;
     this.counters = counters;
     this.tokens = tokens;
+    this.recycle = recycle;
   }
 
   @Override
@@ -22,6 +29,9 @@ public class BlackholeWriter implements Writer {
     blackhole.consume(trace);
     counters.traces++;
     counters.spans += trace.size();
+    if (recycle) {
+      SpanRecycler.recycle(trace);
+    }
   }
 
   @Override
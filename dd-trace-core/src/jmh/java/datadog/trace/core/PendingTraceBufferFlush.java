@@ -0,0 +1,90 @@
+package datadog.trace.core;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the latency distribution between a trace becoming eligible for writing and the buffer
+ * actually writing it, while the buffer is holding a large number of traces which are still being
+ * referenced and so can't be written yet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PendingTraceBufferFlush {
+
+  @Param({"0", "1000", "100000"})
+  int pendingTraces;
+
+  PendingTraceBuffer buffer;
+
+  @Setup(Level.Trial)
+  public void init() {
+    buffer = PendingTraceBuffer.delaying(Math.max(pendingTraces * 2, 1 << 12));
+    buffer.start();
+    for (int i = 0; i < pendingTraces; ++i) {
+      buffer.enqueue(LongLivedTrace.INSTANCE);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    buffer.close();
+  }
+
+  @Benchmark
+  public boolean flushLatency() {
+    EligibleTrace trace = new EligibleTrace();
+    buffer.enqueue(trace);
+    while (!trace.written) {
+      Thread.yield();
+    }
+    return trace.written;
+  }
+
+  /** Never becomes eligible for writing while the benchmark runs. */
+  private static final class LongLivedTrace implements PendingTraceBuffer.Element {
+    static final LongLivedTrace INSTANCE = new LongLivedTrace();
+
+    @Override
+    public long oldestFinishedTime() {
+      return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean lastReferencedNanosAgo(long nanos) {
+      return false;
+    }
+
+    @Override
+    public void write() {}
+  }
+
+  private static final class EligibleTrace implements PendingTraceBuffer.Element {
+    volatile boolean written;
+
+    @Override
+    public long oldestFinishedTime() {
+      return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean lastReferencedNanosAgo(long nanos) {
+      return true;
+    }
+
+    @Override
+    public void write() {
+      written = true;
+    }
+  }
+}
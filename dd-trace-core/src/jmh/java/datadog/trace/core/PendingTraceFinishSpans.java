@@ -0,0 +1,87 @@
+package datadog.trace.core;
+
+import datadog.trace.api.DDId;
+import java.util.Collections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Finishes spans of a single long running trace from several threads, with partial flushes
+ * draining the finished spans concurrently.
+ */
+@State(Scope.Benchmark)
+public class PendingTraceFinishSpans {
+
+  CoreTracer tracer;
+  PendingTrace trace;
+
+  @Param({"100", "1000"})
+  int partialFlushMinSpans;
+
+  private DDSpan span;
+
+  @Setup(Level.Trial)
+  public void init(TraceCounters counters, Blackhole blackhole) {
+    tracer =
+        CoreTracer.builder()
+            .writer(new BlackholeWriter(blackhole, counters, 0))
+            .partialFlushMinSpans(partialFlushMinSpans)
+            .strictTraceWrites(false)
+            .build();
+    DDId traceId = DDId.from(1);
+    trace = tracer.createTrace(traceId.toLong());
+    DDSpan root = newSpan(traceId, DDId.from(2), DDId.ZERO);
+    // the root span is never finished, so the trace is only ever partially flushed
+    trace.registerSpan(root);
+    span = newSpan(traceId, DDId.from(3), DDId.from(2));
+  }
+
+  private DDSpan newSpan(DDId traceId, DDId spanId, DDId parentId) {
+    return DDSpan.create(
+        System.currentTimeMillis() * 1000,
+        new DDSpanContext(
+            traceId,
+            spanId,
+            parentId,
+            null,
+            "service",
+            "operation",
+            "resource",
+            1,
+            null,
+            Collections.<String, String>emptyMap(),
+            false,
+            "type",
+            0,
+            trace));
+  }
+
+  private void finishSpan() {
+    trace.registerSpan(span);
+    trace.addFinishedSpan(span);
+  }
+
+  @Threads(1)
+  @Benchmark
+  public void finishSpans1() {
+    finishSpan();
+  }
+
+  @Threads(8)
+  @Benchmark
+  public void finishSpans8() {
+    finishSpan();
+  }
+
+  @Threads(64)
+  @Benchmark
+  public void finishSpans64() {
+    finishSpan();
+  }
+}
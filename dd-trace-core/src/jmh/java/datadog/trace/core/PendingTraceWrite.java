@@ -34,7 +34,7 @@ public class PendingTraceWrite {
             .strictTraceWrites(false)
             .build();
     DDId traceId = DDId.from(1);
-    trace = tracer.createTrace(traceId);
+    trace = tracer.createTrace(traceId.toLong());
     root =
         DDSpan.create(
             System.currentTimeMillis() * 1000,
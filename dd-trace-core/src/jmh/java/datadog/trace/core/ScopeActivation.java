@@ -0,0 +1,102 @@
+package datadog.trace.core;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import datadog.trace.api.StatsDClient;
+import datadog.trace.bootstrap.instrumentation.api.AgentScope;
+import datadog.trace.bootstrap.instrumentation.api.AgentSpan;
+import datadog.trace.bootstrap.instrumentation.api.ScopeSource;
+import datadog.trace.core.scopemanager.ContinuableScopeManager;
+import datadog.trace.core.scopemanager.ExtendedScopeListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Activates nested scopes up to a depth, then closes them in order, as reactive code does many
+ * times per request.
+ *
+ * <p>Run with {@code -prof gc} to compare {@code gc.alloc.rate.norm}, the bytes allocated per
+ * nesting, with and without pooling.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+public class ScopeActivation {
+
+  @Param({"1", "2", "4", "8", "16", "32"})
+  int depth;
+
+  @Param({"false", "true"})
+  boolean pooling;
+
+  @Param({"false", "true"})
+  boolean listener;
+
+  CoreTracer tracer;
+  AgentSpan[] spans;
+  AgentScope[] scopes;
+
+  @Setup(Level.Trial)
+  public void init(TraceCounters counters, Blackhole blackhole) {
+    ContinuableScopeManager scopeManager =
+        new ContinuableScopeManager(0, StatsDClient.NO_OP, false, true, pooling);
+    if (listener) {
+      scopeManager.addExtendedScopeListener(new BlackholeListener(blackhole));
+    }
+    tracer =
+        CoreTracer.builder()
+            .writer(new BlackholeWriter(blackhole, counters, 0))
+            .scopeManager(scopeManager)
+            .strictTraceWrites(false)
+            .build();
+    spans = new AgentSpan[depth];
+    for (int i = 0; i < depth; ++i) {
+      spans[i] = tracer.buildSpan("span-" + i).start();
+    }
+    scopes = new AgentScope[depth];
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    for (AgentSpan span : spans) {
+      span.finish();
+    }
+    tracer.close();
+  }
+
+  @Benchmark
+  public void activateAndClose() {
+    for (int i = 0; i < depth; ++i) {
+      scopes[i] = tracer.activateSpan(spans[i], ScopeSource.INSTRUMENTATION);
+    }
+    for (int i = depth - 1; i >= 0; --i) {
+      scopes[i].close();
+      scopes[i] = null;
+    }
+  }
+
+  static final class BlackholeListener implements ExtendedScopeListener {
+    private final Blackhole blackhole;
+
+    BlackholeListener(Blackhole blackhole) {
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    public void afterScopeActivated(long traceId, long spanId) {
+      blackhole.consume(spanId);
+    }
+
+    @Override
+    public void afterScopeClosed() {}
+  }
+}
@@ -0,0 +1,89 @@
+package datadog.trace.core;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import datadog.trace.bootstrap.instrumentation.api.AgentPropagation;
+import datadog.trace.bootstrap.instrumentation.api.AgentSpan;
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of a service hop: extracting the context of an incoming request, creating a
+ * root span and a child span from it, injecting the child's context into an outgoing request and
+ * finishing both spans.
+ *
+ * <p>Run with {@code -prof gc} to compare {@code gc.alloc.rate.norm}, the bytes allocated per hop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+public class SpanCreation {
+
+  private static final AgentPropagation.Setter<Map<String, String>> SETTER =
+      new AgentPropagation.Setter<Map<String, String>>() {
+        @Override
+        public void set(Map<String, String> carrier, String key, String value) {
+          carrier.put(key, value);
+        }
+      };
+
+  private static final AgentPropagation.ContextVisitor<Map<String, String>> GETTER =
+      new AgentPropagation.ContextVisitor<Map<String, String>>() {
+        @Override
+        public void forEachKey(
+            Map<String, String> carrier, AgentPropagation.KeyClassifier classifier) {
+          for (Map.Entry<String, String> header : carrier.entrySet()) {
+            if (!classifier.accept(header.getKey(), header.getValue())) {
+              return;
+            }
+          }
+        }
+      };
+
+  CoreTracer tracer;
+  Map<String, String> incoming;
+
+  @State(Scope.Thread)
+  public static class Outgoing {
+    final Map<String, String> headers = new HashMap<>();
+  }
+
+  @Setup(Level.Trial)
+  public void init(TraceCounters counters, Blackhole blackhole) {
+    tracer =
+        CoreTracer.builder()
+            .writer(new BlackholeWriter(blackhole, counters, 0))
+            .strictTraceWrites(false)
+            .build();
+    incoming = new HashMap<>();
+    incoming.put("x-datadog-trace-id", "12345678901234567890");
+    incoming.put("x-datadog-parent-id", "1234567890123456789");
+    incoming.put("x-datadog-sampling-priority", "1");
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    tracer.close();
+  }
+
+  @Benchmark
+  public Map<String, String> serviceHop(Outgoing outgoing) {
+    AgentSpan.Context.Extracted extracted = tracer.extract(incoming, GETTER);
+    AgentSpan root = tracer.buildSpan("servlet.request").asChildOf(extracted).start();
+    AgentSpan child = tracer.buildSpan("http.request").asChildOf(root).start();
+    tracer.inject(child, outgoing.headers, SETTER);
+    child.finish();
+    root.finish();
+    return outgoing.headers;
+  }
+}
@@ -0,0 +1,87 @@
+package datadog.trace.core;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import datadog.trace.api.Config;
+import datadog.trace.api.config.TracerConfig;
+import datadog.trace.bootstrap.instrumentation.api.AgentSpan;
+import datadog.trace.bootstrap.instrumentation.api.Tags;
+import java.util.Properties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of creating and finishing spans tagged the way HTTP client and JDBC
+ * instrumentations tag them, with or without recycling the storage of their tags and metrics once
+ * they have been written.
+ *
+ * <p>Run with {@code -prof gc} to compare {@code gc.alloc.rate.norm}, the bytes allocated per span.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+public class TaggedSpanCreation {
+
+  @Param({"false", "true"})
+  boolean recycling;
+
+  CoreTracer tracer;
+
+  @Setup(Level.Trial)
+  public void init(TraceCounters counters, Blackhole blackhole) {
+    Properties properties = new Properties();
+    properties.setProperty(TracerConfig.TRACE_SPAN_RECYCLING_ENABLED, String.valueOf(recycling));
+    tracer =
+        CoreTracer.builder()
+            .config(Config.get(properties))
+            .writer(new BlackholeWriter(blackhole, counters, 0, recycling))
+            .strictTraceWrites(false)
+            .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    tracer.close();
+  }
+
+  @Benchmark
+  public AgentSpan httpClientSpan() {
+    AgentSpan span = tracer.buildSpan("http.request").start();
+    span.setTag(Tags.COMPONENT, "okhttp");
+    span.setTag(Tags.SPAN_KIND, Tags.SPAN_KIND_CLIENT);
+    span.setTag(Tags.HTTP_METHOD, "GET");
+    span.setTag(Tags.HTTP_URL, "http://localhost:8080/orders");
+    span.setTag(Tags.PEER_HOSTNAME, "localhost");
+    span.setTag(Tags.PEER_PORT, 8080);
+    span.setTag(Tags.HTTP_STATUS, 200);
+    span.setTag("http.route", "/orders");
+    span.setMetric("_dd.measured", 1);
+    span.finish();
+    return span;
+  }
+
+  @Benchmark
+  public AgentSpan jdbcSpan() {
+    AgentSpan span = tracer.buildSpan("database.query").start();
+    span.setTag(Tags.COMPONENT, "java-jdbc-prepared_statement");
+    span.setTag(Tags.SPAN_KIND, Tags.SPAN_KIND_CLIENT);
+    span.setTag(Tags.DB_TYPE, "postgresql");
+    span.setTag(Tags.DB_INSTANCE, "orders");
+    span.setTag(Tags.DB_USER, "app");
+    span.setTag(Tags.PEER_HOSTNAME, "db.local");
+    span.setTag(Tags.DB_STATEMENT, "SELECT * FROM orders WHERE id = ?");
+    span.setMetric("db.row_count", 12L);
+    span.setMetric("db.pool.usage", 0.75d);
+    span.finish();
+    return span;
+  }
+}
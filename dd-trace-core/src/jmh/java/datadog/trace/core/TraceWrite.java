@@ -0,0 +1,67 @@
+package datadog.trace.core;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import datadog.trace.bootstrap.instrumentation.api.AgentSpan;
+import datadog.trace.bootstrap.instrumentation.api.Tags;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of processing a completed trace, from the trace processor rules and the stats
+ * to the sampling decision, before it is handed to the writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+public class TraceWrite {
+
+  @Param({"1", "50", "1000"})
+  int spans;
+
+  CoreTracer tracer;
+  List<DDSpan> trace;
+
+  @Setup(Level.Trial)
+  public void init(TraceCounters counters, Blackhole blackhole) {
+    tracer =
+        CoreTracer.builder()
+            .writer(new BlackholeWriter(blackhole, counters, 0))
+            .strictTraceWrites(false)
+            .build();
+    trace = new ArrayList<>(spans);
+    AgentSpan root = tracer.buildSpan("servlet.request").start();
+    root.setTag(Tags.SPAN_KIND, Tags.SPAN_KIND_SERVER);
+    root.setTag(Tags.HTTP_STATUS, 200);
+    trace.add((DDSpan) root);
+    for (int i = 1; i < spans; ++i) {
+      AgentSpan child = tracer.buildSpan("database.query").asChildOf(root).start();
+      child.setTag(Tags.SPAN_KIND, Tags.SPAN_KIND_CLIENT);
+      child.setTag(Tags.DB_TYPE, "postgresql");
+      child.finish();
+      trace.add((DDSpan) child);
+    }
+    root.finish();
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    tracer.close();
+  }
+
+  @Benchmark
+  public void write() {
+    tracer.write(trace);
+  }
+}
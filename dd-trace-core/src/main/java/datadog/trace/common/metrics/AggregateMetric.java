@@ -46,6 +46,14 @@ public final class AggregateMetric {
     return this;
   }
 
+  /** Records successful hits whose latencies have already been added to the ok histogram. */
+  public AggregateMetric recordOkHits(int count, int topLevelCount, long duration) {
+    this.hitCount += count;
+    this.topLevelCount += topLevelCount;
+    this.duration += duration;
+    return this;
+  }
+
   public int getErrorCount() {
     return errorCount;
   }
@@ -4,11 +4,14 @@ import static datadog.trace.common.metrics.Batch.REPORT;
 import static datadog.trace.common.metrics.ConflatingMetricsAggregator.POISON_PILL;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
-import datadog.trace.core.util.LRUCache;
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
+import datadog.trace.core.monitor.HealthMetrics;
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Queue;
-import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -19,41 +22,79 @@ final class Aggregator implements Runnable {
 
   private static final Logger log = LoggerFactory.getLogger(Aggregator.class);
 
+  // a key becomes hot once it has this many hits in a reporting interval,
+  // and stops being hot once it has fewer than a quarter as many
+  static final int HOT_KEY_HITS = 1024;
+
+  // keys which don't fit in the budget are aggregated under this resource
+  static final UTF8BytesString OTHER_RESOURCE = UTF8BytesString.create("_other");
+
+  // estimates of the retained sizes, checked against measured sizes in FootprintTest:
+  // the histograms dominate, their stores grow to a few hundred bins of 8 bytes
+  // for latencies spread over a few powers of two
+  static final int AGGREGATE_SIZE = 2 * 2048 + 64;
+  static final int KEY_OVERHEAD = 256;
+
+  // released aggregates kept for reuse, outside of the budget
+  private static final int MAX_POOLED_AGGREGATES = 64;
+
   private final Queue<Batch> batchPool;
   private final BlockingQueue<Batch> inbox;
-  private final LRUCache<MetricKey, AggregateMetric> aggregates;
+  // in access order, so aggregates without hits since the last report come first
+  private final LinkedHashMap<MetricKey, AggregateMetric> aggregates;
+  private final ArrayDeque<AggregateMetric> aggregatePool = new ArrayDeque<>();
   private final ConcurrentHashMap<MetricKey, Batch> pending;
-  private final Set<MetricKey> commonKeys;
+  private final MetricKeys commonKeys;
   private final MetricWriter writer;
+  private final HealthMetrics healthMetrics;
+  private final int maxAggregates;
+  private final long maxMemoryBytes;
+  private final int maxHotKeys;
+  private final Map<MetricKey, StripedBatch> hotKeys = new HashMap<>();
+  // no longer hot, but may have been added to since they were last folded
+  private final Map<MetricKey, StripedBatch> coolingKeys = new HashMap<>();
+  // keys aggregated under the catch-all resource, kept canonical while they have hits
+  // so publishing threads don't take them for new keys (and force keep their traces)
+  private final Map<MetricKey, Collapsed> collapsedKeys = new HashMap<>();
   // the reporting interval controls how much history will be buffered
   // when the agent is unresponsive (only 10 pending requests will be
   // buffered by OkHttpSink)
   private final long reportingIntervalNanos;
 
   private boolean dirty;
+  private long usedBytes;
+  private int evicted;
+  private int collapsed;
 
   Aggregator(
       MetricWriter writer,
       Queue<Batch> batchPool,
       BlockingQueue<Batch> inbox,
       ConcurrentHashMap<MetricKey, Batch> pending,
-      final Set<MetricKey> commonKeys,
+      final MetricKeys commonKeys,
       int maxAggregates,
+      long maxMemoryBytes,
+      int maxHotKeys,
+      HealthMetrics healthMetrics,
       long reportingInterval,
       TimeUnit reportingIntervalTimeUnit) {
     this.writer = writer;
+    this.healthMetrics = healthMetrics;
+    this.maxAggregates = maxAggregates;
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.maxHotKeys = maxHotKeys;
     this.batchPool = batchPool;
     this.inbox = inbox;
     this.commonKeys = commonKeys;
-    this.aggregates =
-        new LRUCache<>(
-            new CommonKeyCleaner(commonKeys), maxAggregates * 4 / 3, 0.75f, maxAggregates);
+    this.aggregates = new LinkedHashMap<>(maxAggregates * 4 / 3, 0.75f, true);
     this.pending = pending;
     this.reportingIntervalNanos = reportingIntervalTimeUnit.toNanos(reportingInterval);
   }
 
   public void clearAggregates() {
     this.aggregates.clear();
+    this.collapsedKeys.clear();
+    this.usedBytes = 0;
   }
 
   @Override
@@ -71,13 +112,22 @@ final class Aggregator implements Runnable {
           MetricKey key = batch.getKey();
           // important that it is still *this* batch pending, must not remove otherwise
           pending.remove(key, batch);
-          AggregateMetric aggregate = aggregates.get(key);
-          if (null == aggregate) {
-            aggregate = new AggregateMetric();
-            aggregates.put(key, aggregate);
-          }
+          AggregateMetric aggregate = aggregateFor(key);
           batch.contributeTo(aggregate);
           dirty = true;
+          if (aggregate.getHitCount() >= HOT_KEY_HITS
+              && hotKeys.size() < maxHotKeys
+              && !hotKeys.containsKey(key)
+              // the key hasn't been collapsed
+              && aggregates.containsKey(key)) {
+            StripedBatch stripedBatch = coolingKeys.remove(key);
+            if (null == stripedBatch) {
+              stripedBatch = new StripedBatch();
+            }
+            hotKeys.put(key, stripedBatch);
+            // publishing threads will use the stripes from now on
+            key.setStripedBatch(stripedBatch);
+          }
           // return the batch for reuse
           batchPool.offer(batch);
         }
@@ -88,9 +138,12 @@ final class Aggregator implements Runnable {
   }
 
   private void report(long when) {
+    foldHotKeys();
+    reportDroppedKeys();
     if (dirty) {
       try {
         expungeStaleAggregates();
+        expungeStaleCollapsedKeys();
         if (!aggregates.isEmpty()) {
           writer.startBucket(aggregates.size(), when, reportingIntervalNanos);
           for (Map.Entry<MetricKey, AggregateMetric> aggregate : aggregates.entrySet()) {
@@ -108,6 +161,138 @@ final class Aggregator implements Runnable {
     }
   }
 
+  private void foldHotKeys() {
+    for (Map.Entry<MetricKey, StripedBatch> cooling : coolingKeys.entrySet()) {
+      fold(cooling.getKey(), cooling.getValue());
+    }
+    coolingKeys.clear();
+    Iterator<Map.Entry<MetricKey, StripedBatch>> it = hotKeys.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<MetricKey, StripedBatch> hot = it.next();
+      MetricKey key = hot.getKey();
+      if (fold(key, hot.getValue()) < HOT_KEY_HITS / 4) {
+        // go back to batches, but fold the stripes once more in
+        // case there were publishing threads still adding to them
+        key.setStripedBatch(null);
+        coolingKeys.put(key, hot.getValue());
+        it.remove();
+      }
+    }
+  }
+
+  private int fold(MetricKey key, StripedBatch stripedBatch) {
+    AggregateMetric aggregate = aggregateFor(key);
+    int hits = stripedBatch.contributeTo(aggregate);
+    if (hits > 0) {
+      dirty = true;
+    }
+    return hits;
+  }
+
+  /**
+   * Gets the aggregate for the key, creating it if there is room within the budget. Aggregates
+   * which haven't had any hits since the last report are evicted to make room. When there is no
+   * room without losing hits, the key is collapsed: its hits are aggregated under {@link
+   * #OTHER_RESOURCE} along with the other collapsed keys of its service and operation, until there
+   * is room for it again.
+   */
+  private AggregateMetric aggregateFor(MetricKey key) {
+    AggregateMetric aggregate = aggregates.get(key);
+    if (null != aggregate) {
+      return aggregate;
+    }
+    if (makeRoom(sizeOf(key), false)) {
+      collapsedKeys.remove(key);
+      return newAggregate(key);
+    }
+    Collapsed collapsedKey = collapsedKeys.get(key);
+    if (null == collapsedKey) {
+      // only counted the first time the key is collapsed
+      ++collapsed;
+      collapsedKey =
+          new Collapsed(
+              new MetricKey(
+                  OTHER_RESOURCE,
+                  key.getService(),
+                  key.getOperationName(),
+                  key.getType(),
+                  key.getHttpStatusCode()));
+      if (collapsedKeys.size() < maxAggregates) {
+        collapsedKeys.put(key, collapsedKey);
+      } else {
+        // too many to keep track of, so publishing threads needn't find it again
+        commonKeys.remove(key);
+      }
+    }
+    collapsedKey.hit = true;
+    MetricKey otherKey = collapsedKey.otherKey;
+    aggregate = aggregates.get(otherKey);
+    if (null == aggregate) {
+      // there is a bounded number of these, so make room at any cost
+      makeRoom(sizeOf(otherKey), true);
+      aggregate = newAggregate(otherKey);
+    }
+    return aggregate;
+  }
+
+  private boolean makeRoom(long size, boolean evictHits) {
+    Iterator<Map.Entry<MetricKey, AggregateMetric>> it = aggregates.entrySet().iterator();
+    while ((aggregates.size() >= maxAggregates || usedBytes + size > maxMemoryBytes)
+        && it.hasNext()) {
+      Map.Entry<MetricKey, AggregateMetric> eldest = it.next();
+      if (!evictHits && eldest.getValue().getHitCount() > 0) {
+        // everything after the eldest has been accessed more recently
+        return false;
+      }
+      it.remove();
+      release(eldest.getKey(), eldest.getValue());
+      ++evicted;
+    }
+    return (aggregates.size() < maxAggregates && usedBytes + size <= maxMemoryBytes)
+        || aggregates.isEmpty();
+  }
+
+  private AggregateMetric newAggregate(MetricKey key) {
+    AggregateMetric aggregate = aggregatePool.poll();
+    if (null == aggregate) {
+      aggregate = new AggregateMetric();
+    }
+    aggregates.put(key, aggregate);
+    usedBytes += sizeOf(key);
+    return aggregate;
+  }
+
+  private void release(MetricKey key, AggregateMetric aggregate) {
+    usedBytes -= sizeOf(key);
+    commonKeys.remove(key);
+    if (aggregatePool.size() < MAX_POOLED_AGGREGATES) {
+      aggregate.clear();
+      aggregatePool.offer(aggregate);
+    }
+  }
+
+  static long sizeOf(MetricKey key) {
+    // each string is held as both chars and UTF-8 bytes
+    return KEY_OVERHEAD
+        + AGGREGATE_SIZE
+        + 2L
+            * (key.getResource().length()
+                + key.getService().length()
+                + key.getOperationName().length()
+                + key.getType().length());
+  }
+
+  private void reportDroppedKeys() {
+    if (evicted > 0) {
+      healthMetrics.onStatsAggregatesEvicted(evicted);
+      evicted = 0;
+    }
+    if (collapsed > 0) {
+      healthMetrics.onStatsKeysCollapsed(collapsed);
+      collapsed = 0;
+    }
+  }
+
   private void expungeStaleAggregates() {
     Iterator<Map.Entry<MetricKey, AggregateMetric>> it = aggregates.entrySet().iterator();
     while (it.hasNext()) {
@@ -115,27 +300,37 @@ final class Aggregator implements Runnable {
       AggregateMetric metric = pair.getValue();
       if (metric.getHitCount() == 0) {
         it.remove();
-        commonKeys.remove(pair.getKey());
+        release(pair.getKey(), metric);
       }
     }
   }
 
-  private long wallClockTime() {
-    return MILLISECONDS.toNanos(System.currentTimeMillis());
+  private void expungeStaleCollapsedKeys() {
+    Iterator<Map.Entry<MetricKey, Collapsed>> it = collapsedKeys.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<MetricKey, Collapsed> pair = it.next();
+      Collapsed collapsedKey = pair.getValue();
+      if (collapsedKey.hit) {
+        collapsedKey.hit = false;
+      } else {
+        // it may get an aggregate of its own next time it is seen
+        it.remove();
+        commonKeys.remove(pair.getKey());
+      }
+    }
   }
 
-  private static final class CommonKeyCleaner
-      implements LRUCache.ExpiryListener<MetricKey, AggregateMetric> {
-
-    private final Set<MetricKey> commonKeys;
+  private static final class Collapsed {
+    final MetricKey otherKey;
+    // whether the key has had hits since the last report
+    boolean hit;
 
-    private CommonKeyCleaner(Set<MetricKey> commonKeys) {
-      this.commonKeys = commonKeys;
+    Collapsed(MetricKey otherKey) {
+      this.otherKey = otherKey;
     }
+  }
 
-    @Override
-    public void accept(Map.Entry<MetricKey, AggregateMetric> expired) {
-      commonKeys.remove(expired.getKey());
-    }
+  private long wallClockTime() {
+    return MILLISECONDS.toNanos(System.currentTimeMillis());
   }
 }
@@ -1,21 +1,27 @@
 package datadog.trace.common.metrics;
 
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACER_METRICS_MAX_MEMORY_BYTES;
 import static datadog.trace.api.Functions.UTF8_ENCODE;
 import static datadog.trace.common.metrics.AggregateMetric.ERROR_TAG;
 import static datadog.trace.common.metrics.AggregateMetric.TOP_LEVEL_TAG;
 import static datadog.trace.common.metrics.Batch.REPORT;
+import static datadog.trace.core.processor.TracePipeline.FORCE_KEEP;
+import static datadog.trace.core.processor.TracePipeline.SKIP_STATS;
 import static datadog.trace.util.AgentThreadFactory.AgentThread.METRICS_AGGREGATOR;
 import static datadog.trace.util.AgentThreadFactory.THREAD_JOIN_TIMOUT_MS;
 import static datadog.trace.util.AgentThreadFactory.newAgentThread;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import datadog.trace.api.Config;
+import datadog.trace.api.StatsDClient;
 import datadog.trace.api.WellKnownTags;
 import datadog.trace.api.cache.DDCache;
 import datadog.trace.api.cache.DDCaches;
 import datadog.trace.bootstrap.instrumentation.api.Tags;
 import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
 import datadog.trace.core.CoreSpan;
+import datadog.trace.core.DDSpan;
+import datadog.trace.core.monitor.HealthMetrics;
 import datadog.trace.util.AgentTaskScheduler;
 import java.util.List;
 import java.util.Queue;
@@ -39,10 +45,13 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
 
   static final Batch POISON_PILL = Batch.NULL;
 
-  private final Set<String> ignoredResources;
+  // the number of keys which may be accumulated in stripes at once
+  static final int MAX_HOT_KEYS = 4;
+
+  private final IgnoredResources ignoredResources;
   private final Queue<Batch> batchPool;
   private final ConcurrentHashMap<MetricKey, Batch> pending;
-  private final ConcurrentHashMap<MetricKey, MetricKey> keys;
+  private final MetricKeys keys;
   private final Thread thread;
   private final BlockingQueue<Batch> inbox;
   private final Sink sink;
@@ -53,7 +62,7 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
   private volatile boolean enabled = true;
   private volatile AgentTaskScheduler.Scheduled<?> cancellation;
 
-  public ConflatingMetricsAggregator(Config config) {
+  public ConflatingMetricsAggregator(Config config, HealthMetrics healthMetrics) {
     this(
         config.getWellKnownTags(),
         config.getMetricsIgnoredResources(),
@@ -62,16 +71,30 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
             config.getAgentTimeout(),
             config.isTracerMetricsBufferingEnabled()),
         config.getTracerMetricsMaxAggregates(),
-        config.getTracerMetricsMaxPending());
+        config.getTracerMetricsMaxPending(),
+        config.getTracerMetricsMaxMemoryBytes(),
+        healthMetrics);
   }
 
-  ConflatingMetricsAggregator(
+  private ConflatingMetricsAggregator(
       WellKnownTags wellKnownTags,
       Set<String> ignoredResources,
       Sink sink,
       int maxAggregates,
-      int queueSize) {
-    this(wellKnownTags, ignoredResources, sink, maxAggregates, queueSize, 10, SECONDS);
+      int queueSize,
+      long maxMemoryBytes,
+      HealthMetrics healthMetrics) {
+    this(
+        ignoredResources,
+        sink,
+        new SerializingMetricWriter(wellKnownTags, sink),
+        maxAggregates,
+        queueSize,
+        10,
+        SECONDS,
+        MAX_HOT_KEYS,
+        maxMemoryBytes,
+        healthMetrics);
   }
 
   ConflatingMetricsAggregator(
@@ -100,11 +123,55 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
       int queueSize,
       long reportingInterval,
       TimeUnit timeUnit) {
-    this.ignoredResources = ignoredResources;
+    this(
+        ignoredResources,
+        sink,
+        metricWriter,
+        maxAggregates,
+        queueSize,
+        reportingInterval,
+        timeUnit,
+        MAX_HOT_KEYS);
+  }
+
+  ConflatingMetricsAggregator(
+      Set<String> ignoredResources,
+      Sink sink,
+      MetricWriter metricWriter,
+      int maxAggregates,
+      int queueSize,
+      long reportingInterval,
+      TimeUnit timeUnit,
+      int maxHotKeys) {
+    this(
+        ignoredResources,
+        sink,
+        metricWriter,
+        maxAggregates,
+        queueSize,
+        reportingInterval,
+        timeUnit,
+        maxHotKeys,
+        DEFAULT_TRACER_METRICS_MAX_MEMORY_BYTES,
+        new HealthMetrics(StatsDClient.NO_OP));
+  }
+
+  ConflatingMetricsAggregator(
+      Set<String> ignoredResources,
+      Sink sink,
+      MetricWriter metricWriter,
+      int maxAggregates,
+      int queueSize,
+      long reportingInterval,
+      TimeUnit timeUnit,
+      int maxHotKeys,
+      long maxMemoryBytes,
+      HealthMetrics healthMetrics) {
+    this.ignoredResources = new IgnoredResources(ignoredResources);
     this.inbox = new MpscBlockingConsumerArrayQueue<>(queueSize);
     this.batchPool = new SpmcArrayQueue<>(maxAggregates);
     this.pending = new ConcurrentHashMap<>(maxAggregates * 4 / 3, 0.75f);
-    this.keys = new ConcurrentHashMap<>();
+    this.keys = new MetricKeys(maxAggregates);
     this.sink = sink;
     this.aggregator =
         new Aggregator(
@@ -112,8 +179,11 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
             batchPool,
             inbox,
             pending,
-            keys.keySet(),
+            keys,
             maxAggregates,
+            maxMemoryBytes,
+            maxHotKeys,
+            healthMetrics,
             reportingInterval,
             timeUnit);
     this.thread = newAgentThread(METRICS_AGGREGATOR, aggregator);
@@ -150,38 +220,78 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
 
   @Override
   public boolean publish(List<? extends CoreSpan<?>> trace) {
-    boolean forceKeep = false;
+    int signals = 0;
     if (enabled) {
       for (CoreSpan<?> span : trace) {
-        boolean isTopLevel = span.isTopLevel();
-        if (isTopLevel || span.isMeasured()) {
-          if (ignoredResources.contains(span.getResourceName().toString())) {
-            // skip publishing all children
-            return false;
-          }
-          forceKeep |= publish(span, isTopLevel);
+        signals = publish(span, signals);
+        if ((signals & SKIP_STATS) != 0) {
+          break;
+        }
+      }
+    }
+    return (signals & FORCE_KEEP) != 0;
+  }
+
+  @Override
+  public int process(DDSpan span, int signals) {
+    return enabled ? publish(span, signals) : signals;
+  }
+
+  @Override
+  public void addTagsRead(Set<String> tags) {
+    tags.add(Tags.HTTP_STATUS);
+  }
+
+  /** Publishes the next span of a trace, as part of a single pass over the trace */
+  int publish(CoreSpan<?> span, int signals) {
+    if ((signals & SKIP_STATS) == 0) {
+      boolean isTopLevel = span.isTopLevel();
+      if (isTopLevel || span.isMeasured()) {
+        if (ignoredResources.contains(span.getResourceName())) {
+          // skip publishing all children, and don't keep the trace for the spans already published
+          return (signals & ~FORCE_KEEP) | SKIP_STATS;
+        }
+        if (publish(span, isTopLevel)) {
+          signals |= FORCE_KEEP;
         }
       }
     }
-    return forceKeep;
+    return signals;
   }
 
   private boolean publish(CoreSpan<?> span, boolean isTopLevel) {
-    MetricKey newKey =
-        new MetricKey(
-            span.getResourceName(),
-            SERVICE_NAMES.computeIfAbsent(span.getServiceName(), UTF8_ENCODE),
-            span.getOperationName(),
-            span.getType(),
-            span.getTag(Tags.HTTP_STATUS, ZERO));
+    CharSequence resourceName = span.getResourceName();
+    String serviceName = span.getServiceName();
+    CharSequence operationName = span.getOperationName();
+    CharSequence type = span.getType();
+    int httpStatusCode = span.getTag(Tags.HTTP_STATUS, ZERO);
     boolean isNewKey = false;
-    MetricKey key = keys.putIfAbsent(newKey, newKey);
+    // only allocate a key the first time these values are seen
+    MetricKey key = keys.get(resourceName, serviceName, operationName, type, httpStatusCode);
     if (null == key) {
-      key = newKey;
-      isNewKey = true;
+      MetricKey newKey =
+          new MetricKey(
+              resourceName,
+              SERVICE_NAMES.computeIfAbsent(serviceName, UTF8_ENCODE),
+              operationName,
+              type,
+              httpStatusCode);
+      key = keys.putIfAbsent(newKey);
+      if (null == key) {
+        key = newKey;
+        isNewKey = true;
+      }
     }
-    long tag = (span.getError() > 0 ? ERROR_TAG : 0L) | (isTopLevel ? TOP_LEVEL_TAG : 0L);
+    boolean isError = span.getError() > 0;
     long durationNanos = span.getDurationNano();
+    StripedBatch stripedBatch = key.getStripedBatch();
+    if (null != stripedBatch && !isError) {
+      // the key is hot, so no need to go through the inbox (and
+      // it's clearly not rare enough to override the sampler)
+      stripedBatch.add(isTopLevel, durationNanos);
+      return false;
+    }
+    long tag = (isError ? ERROR_TAG : 0L) | (isTopLevel ? TOP_LEVEL_TAG : 0L);
     Batch batch = pending.get(key);
     if (null != batch) {
       // there is a pending batch, try to win the race to add to it
@@ -205,7 +315,7 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
     // must offer to the queue after adding to pending
     inbox.offer(batch);
     // force keep keys we haven't seen before or errors
-    return isNewKey || span.getError() > 0;
+    return isNewKey || isError;
   }
 
   private Batch newBatch(MetricKey key) {
@@ -0,0 +1,51 @@
+package datadog.trace.common.metrics;
+
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
+import java.util.Set;
+
+/**
+ * The resource names to ignore, with their hashes computed up front, so that any {@code
+ * CharSequence} resource name can be checked without converting it to a {@code String}.
+ */
+final class IgnoredResources {
+
+  private final UTF8BytesString[] names;
+  private final int[] hashes;
+  private final int mask;
+
+  IgnoredResources(Set<String> resourceNames) {
+    int size = 1;
+    while (size < 2 * resourceNames.size()) {
+      size <<= 1;
+    }
+    this.names = new UTF8BytesString[size];
+    this.hashes = new int[size];
+    this.mask = size - 1;
+    for (String resourceName : resourceNames) {
+      UTF8BytesString name = UTF8BytesString.create(resourceName);
+      int hash = name.hashCode();
+      int index = hash & mask;
+      while (null != names[index]) {
+        index = (index + 1) & mask;
+      }
+      names[index] = name;
+      hashes[index] = hash;
+    }
+  }
+
+  boolean contains(CharSequence resourceName) {
+    if (mask == 0 && null == names[0]) {
+      return false;
+    }
+    int hash = MetricKey.hashOf(resourceName);
+    int index = hash & mask;
+    UTF8BytesString name;
+    while (null != (name = names[index])) {
+      if (hashes[index] == hash && MetricKey.contentEquals(name, resourceName)) {
+        return true;
+      }
+      index = (index + 1) & mask;
+    }
+    return false;
+  }
+}
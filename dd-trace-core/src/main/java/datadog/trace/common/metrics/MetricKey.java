@@ -12,6 +12,8 @@ public final class MetricKey {
   private final UTF8BytesString type;
   private final int httpStatusCode;
   private final int hash;
+  // set by the aggregator while the key is hot, not part of the key's identity
+  private volatile StripedBatch stripedBatch;
 
   public MetricKey(
       CharSequence resource,
@@ -24,14 +26,87 @@ public final class MetricKey {
     this.operationName = null == operationName ? EMPTY : UTF8BytesString.create(operationName);
     this.type = null == type ? EMPTY : UTF8BytesString.create(type);
     this.httpStatusCode = httpStatusCode;
+    this.hash =
+        hash(
+            this.resource.hashCode(),
+            this.service.hashCode(),
+            this.operationName.hashCode(),
+            this.type.hashCode(),
+            httpStatusCode);
+  }
+
+  /**
+   * Computes the hash code of the key which would be created from these values, without creating
+   * it.
+   */
+  static int hashOf(
+      CharSequence resource,
+      CharSequence service,
+      CharSequence operationName,
+      CharSequence type,
+      int httpStatusCode) {
+    return hash(
+        hashOf(resource), hashOf(service), hashOf(operationName), hashOf(type), httpStatusCode);
+  }
+
+  private static int hash(
+      int resourceHash, int serviceHash, int operationNameHash, int typeHash, int httpStatusCode) {
     // unrolled polynomial hashcode which avoids allocating varargs
     // the constants are 31^4, 31^3, 31^2, 31^1, 31^0
-    this.hash =
-        923521 * this.resource.hashCode()
-            + 29791 * this.service.hashCode()
-            + 961 * this.operationName.hashCode()
-            + 31 * this.type.hashCode()
-            + httpStatusCode;
+    return 923521 * resourceHash
+        + 29791 * serviceHash
+        + 961 * operationNameHash
+        + 31 * typeHash
+        + httpStatusCode;
+  }
+
+  /** @return the hash code of the {@code String} with the same characters */
+  static int hashOf(CharSequence value) {
+    if (null == value) {
+      return 0;
+    }
+    if (value instanceof String || value instanceof UTF8BytesString) {
+      // cached
+      return value.hashCode();
+    }
+    int hash = 0;
+    for (int i = 0; i < value.length(); ++i) {
+      hash = 31 * hash + value.charAt(i);
+    }
+    return hash;
+  }
+
+  /**
+   * Checks whether this key would be equal to the key created from these values, without creating
+   * it.
+   */
+  boolean matches(
+      int hash,
+      CharSequence resource,
+      CharSequence service,
+      CharSequence operationName,
+      CharSequence type,
+      int httpStatusCode) {
+    return this.hash == hash
+        && this.httpStatusCode == httpStatusCode
+        && contentEquals(this.resource, resource)
+        && contentEquals(this.service, service)
+        && contentEquals(this.operationName, operationName)
+        && contentEquals(this.type, type);
+  }
+
+  /** @return whether the value has the same characters as the {@code String} */
+  static boolean contentEquals(UTF8BytesString string, CharSequence value) {
+    if (null == value) {
+      return string.length() == 0;
+    }
+    if (value instanceof UTF8BytesString) {
+      return string.equals(value);
+    }
+    if (value instanceof String) {
+      return string.toString().equals(value);
+    }
+    return string.toString().contentEquals(value);
   }
 
   public UTF8BytesString getResource() {
@@ -54,6 +129,15 @@ public final class MetricKey {
     return httpStatusCode;
   }
 
+  /** @return where to accumulate hits while the key is hot, otherwise null */
+  StripedBatch getStripedBatch() {
+    return stripedBatch;
+  }
+
+  void setStripedBatch(StripedBatch stripedBatch) {
+    this.stripedBatch = stripedBatch;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -0,0 +1,130 @@
+package datadog.trace.common.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The canonical {@link MetricKey} for each combination of span fields currently being aggregated.
+ *
+ * <p>This is an open-addressed hash table, so that publishing threads can look up the key of a span
+ * from its fields without allocating anything. Keys are inserted lock-free by publishing threads,
+ * and only ever removed by the aggregator thread, once their aggregate has expired.
+ */
+final class MetricKeys {
+
+  private static final MetricKey REMOVED = new MetricKey(null, null, null, null, 0);
+
+  private volatile AtomicReferenceArray<MetricKey> table;
+  // only accessed by the aggregator thread
+  private int removed;
+
+  MetricKeys(int maxKeys) {
+    this.table = new AtomicReferenceArray<>(tableSizeFor(maxKeys));
+  }
+
+  private static int tableSizeFor(int maxKeys) {
+    // keep the load factor at or below 0.5
+    int size = 16;
+    while (size < 2 * maxKeys && size < (1 << 30)) {
+      size <<= 1;
+    }
+    return size;
+  }
+
+  private static int indexOf(int hash, int mask) {
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  /** @return the canonical key for these values, or null if there isn't one yet. */
+  MetricKey get(
+      CharSequence resource,
+      CharSequence service,
+      CharSequence operationName,
+      CharSequence type,
+      int httpStatusCode) {
+    int hash = MetricKey.hashOf(resource, service, operationName, type, httpStatusCode);
+    AtomicReferenceArray<MetricKey> table = this.table;
+    int mask = table.length() - 1;
+    int index = indexOf(hash, mask);
+    for (int probes = 0; probes <= mask; ++probes) {
+      MetricKey key = table.get(index);
+      if (null == key) {
+        return null;
+      }
+      if (REMOVED != key
+          && key.matches(hash, resource, service, operationName, type, httpStatusCode)) {
+        return key;
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * @return the canonical key equal to this one if there is one, otherwise null, having made this
+   *     key canonical if there was room for it.
+   */
+  MetricKey putIfAbsent(MetricKey newKey) {
+    AtomicReferenceArray<MetricKey> table = this.table;
+    int mask = table.length() - 1;
+    int index = indexOf(newKey.hashCode(), mask);
+    for (int probes = 0; probes <= mask; ++probes) {
+      MetricKey key = table.get(index);
+      if (null == key) {
+        if (table.compareAndSet(index, null, newKey)) {
+          return null;
+        }
+        // lost the race for the slot, check the winner
+        key = table.get(index);
+      }
+      if (REMOVED != key && newKey.equals(key)) {
+        return key;
+      }
+      index = (index + 1) & mask;
+    }
+    // the table is full, so the key is used without being made canonical
+    return null;
+  }
+
+  /** Must only be called by the aggregator thread. */
+  void remove(MetricKey oldKey) {
+    AtomicReferenceArray<MetricKey> table = this.table;
+    int mask = table.length() - 1;
+    int index = indexOf(oldKey.hashCode(), mask);
+    for (int probes = 0; probes <= mask; ++probes) {
+      MetricKey key = table.get(index);
+      if (null == key) {
+        return;
+      }
+      if (REMOVED != key && oldKey.equals(key)) {
+        // a marker rather than null, so probing for keys inserted after this one still works
+        table.set(index, REMOVED);
+        if (++removed > table.length() >>> 2) {
+          compact(table);
+        }
+        return;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  /**
+   * Replaces the table with a copy without removal markers. A key inserted into the old table
+   * while it is being copied may be lost, in which case it will just be treated as a new key again.
+   */
+  private void compact(AtomicReferenceArray<MetricKey> old) {
+    AtomicReferenceArray<MetricKey> compacted = new AtomicReferenceArray<>(old.length());
+    int mask = compacted.length() - 1;
+    for (int i = 0; i < old.length(); ++i) {
+      MetricKey key = old.get(i);
+      if (null != key && REMOVED != key) {
+        int index = indexOf(key.hashCode(), mask);
+        while (null != compacted.get(index)) {
+          index = (index + 1) & mask;
+        }
+        compacted.set(index, key);
+      }
+    }
+    this.table = compacted;
+    this.removed = 0;
+  }
+}
@@ -1,9 +1,15 @@
 package datadog.trace.common.metrics;
 
 import datadog.trace.core.CoreSpan;
+import datadog.trace.core.processor.SpanStage;
 import java.util.List;
 
-public interface MetricsAggregator extends AutoCloseable {
+/**
+ * Computes stats from completed traces, either from a whole trace with {@link #publish(List)}, or
+ * span by span as a stage of the trace pipeline, raising {@code FORCE_KEEP} when a span is needed
+ * to keep the stats accurate.
+ */
+public interface MetricsAggregator extends AutoCloseable, SpanStage {
   void start();
 
   void report();
@@ -1,11 +1,13 @@
 package datadog.trace.common.metrics;
 
 import datadog.trace.api.Config;
+import datadog.trace.core.monitor.HealthMetrics;
 
 public class MetricsAggregatorFactory {
-  public static MetricsAggregator createMetricsAggregator(Config config) {
+  public static MetricsAggregator createMetricsAggregator(
+      Config config, HealthMetrics healthMetrics) {
     if (config.isTracerMetricsEnabled()) {
-      return new ConflatingMetricsAggregator(config);
+      return new ConflatingMetricsAggregator(config, healthMetrics);
     }
     return NoOpMetricsAggregator.INSTANCE;
   }
@@ -1,7 +1,9 @@
 package datadog.trace.common.metrics;
 
 import datadog.trace.core.CoreSpan;
+import datadog.trace.core.DDSpan;
 import java.util.List;
+import java.util.Set;
 
 public final class NoOpMetricsAggregator implements MetricsAggregator {
 
@@ -18,6 +20,14 @@ public final class NoOpMetricsAggregator implements MetricsAggregator {
     return false;
   }
 
+  @Override
+  public int process(DDSpan span, int signals) {
+    return signals;
+  }
+
+  @Override
+  public void addTagsRead(Set<String> tags) {}
+
   @Override
   public void close() {}
 }
@@ -0,0 +1,152 @@
+package datadog.trace.common.metrics;
+
+import datadog.trace.core.histogram.Histogram;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Accumulates the successful hits of a hot key, without handing batches to the aggregator thread.
+ *
+ * <p>Publishing threads are spread over stripes, each holding a hit count, a top level count, a
+ * duration sum and a small log-linear histogram of durations. Stripes are padded so no two share a
+ * cache line. A thread starts on a stripe chosen from its id, and moves to another stripe whenever
+ * it finds another thread adding to its stripe, so threads which keep colliding end up apart. The
+ * aggregator thread folds the stripes into the key's aggregate when it reports. Errors still go
+ * through {@link Batch}es, so they keep being reported with exact durations.
+ *
+ * <p>The stripes are read and reset field by field, so a hit recorded while the stripes are being
+ * folded may have its count and duration reported in consecutive intervals.
+ */
+final class StripedBatch {
+
+  // the histogram has 16 linear buckets per power of two, so durations are recorded with less
+  // than 1.6% relative error when the midpoint of their bucket is folded into the aggregate
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // durations longer than about 73 minutes are recorded in the last bucket
+  private static final long MAX_DURATION = (1L << 42) - 1;
+  static final int BUCKETS = bucketOf(MAX_DURATION) + 1;
+
+  private static final int MAX_STRIPES = 16;
+
+  // each stripe is padded with two cache lines at both ends, as adjacent lines may be prefetched
+  private static final int PADDING = 16;
+  private static final int HITS = PADDING;
+  private static final int TOP_LEVEL = PADDING + 1;
+  private static final int DURATION = PADDING + 2;
+  private static final int HISTOGRAM = PADDING + 3;
+  private static final int STRIPE_LENGTH = HISTOGRAM + BUCKETS + PADDING;
+
+  /** The stripe each thread adds to, shared by all keys, like the probe of a LongAdder */
+  private static final ThreadLocal<int[]> PROBE =
+      new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+          // spread consecutive thread ids over the stripes, never 0 so it can be rehashed
+          long id = Thread.currentThread().getId();
+          int h = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+          return new int[] {0 == h ? 1 : h};
+        }
+      };
+
+  private final Stripe[] stripes;
+  private final int mask;
+
+  StripedBatch() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  StripedBatch(int concurrency) {
+    int size = 1;
+    while (size < concurrency && size < MAX_STRIPES) {
+      size <<= 1;
+    }
+    this.stripes = new Stripe[size];
+    for (int i = 0; i < size; ++i) {
+      stripes[i] = new Stripe();
+    }
+    this.mask = size - 1;
+  }
+
+  void add(boolean topLevel, long durationNanos) {
+    int[] probe = PROBE.get();
+    if (!stripes[probe[0] & mask].tryAdd(topLevel, durationNanos)) {
+      // another thread is adding to the same stripe, so move to another one
+      int h = probe[0];
+      h ^= h << 13;
+      h ^= h >>> 17;
+      h ^= h << 5;
+      probe[0] = h;
+      stripes[h & mask].add(topLevel, durationNanos);
+    }
+  }
+
+  /** @return the number of hits folded into the aggregate */
+  int contributeTo(AggregateMetric aggregate) {
+    long hits = 0;
+    long topLevel = 0;
+    long duration = 0;
+    Histogram latencies = aggregate.getOkLatencies();
+    for (Stripe stripe : stripes) {
+      hits += stripe.cells.getAndSet(HITS, 0);
+      topLevel += stripe.cells.getAndSet(TOP_LEVEL, 0);
+      duration += stripe.cells.getAndSet(DURATION, 0);
+      for (int i = 0; i < BUCKETS; ++i) {
+        if (stripe.cells.get(HISTOGRAM + i) != 0) {
+          latencies.accept(valueOf(i), stripe.cells.getAndSet(HISTOGRAM + i, 0));
+        }
+      }
+    }
+    if (hits > 0) {
+      aggregate.recordOkHits((int) hits, (int) topLevel, duration);
+    }
+    return (int) hits;
+  }
+
+  static int bucketOf(long durationNanos) {
+    if (durationNanos < SUB_BUCKETS) {
+      return (int) Math.max(durationNanos, 0);
+    }
+    long value = Math.min(durationNanos, MAX_DURATION);
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /** @return the midpoint of the bucket */
+  static long valueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+    long lowerBound = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+    return lowerBound + ((1L << shift) >>> 1);
+  }
+
+  private static final class Stripe {
+    // the counters and the histogram, between the padding
+    final AtomicLongArray cells = new AtomicLongArray(STRIPE_LENGTH);
+
+    /** @return false without adding the hit if another thread is adding to the stripe */
+    boolean tryAdd(boolean topLevel, long durationNanos) {
+      long hits = cells.get(HITS);
+      if (!cells.compareAndSet(HITS, hits, hits + 1)) {
+        return false;
+      }
+      addRest(topLevel, durationNanos);
+      return true;
+    }
+
+    void add(boolean topLevel, long durationNanos) {
+      cells.getAndIncrement(HITS);
+      addRest(topLevel, durationNanos);
+    }
+
+    private void addRest(boolean topLevel, long durationNanos) {
+      if (topLevel) {
+        cells.getAndIncrement(TOP_LEVEL);
+      }
+      cells.getAndAdd(DURATION, durationNanos);
+      cells.getAndIncrement(HISTOGRAM + bucketOf(durationNanos));
+    }
+  }
+}
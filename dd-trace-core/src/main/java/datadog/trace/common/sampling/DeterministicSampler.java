@@ -36,7 +36,7 @@ public class DeterministicSampler<T extends CoreSpan<T>> implements RateSampler<
     if (rate >= 1) {
       sampled = true;
     } else if (rate > 0) {
-      long mod = span.getTraceId().toLong() * KNUTH_FACTOR;
+      long mod = span.traceId() * KNUTH_FACTOR;
       // unsigned 64 bit comparison with pre-calculated cutoff
       if (mod + Long.MIN_VALUE < cutoff) {
         sampled = true;
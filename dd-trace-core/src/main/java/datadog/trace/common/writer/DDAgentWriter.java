@@ -14,6 +14,7 @@ import datadog.trace.common.writer.ddagent.DDAgentApi;
 import datadog.trace.common.writer.ddagent.DDAgentFeaturesDiscovery;
 import datadog.trace.common.writer.ddagent.DDAgentResponseListener;
 import datadog.trace.common.writer.ddagent.PayloadDispatcher;
+import datadog.trace.common.writer.ddagent.PayloadSender;
 import datadog.trace.common.writer.ddagent.Prioritization;
 import datadog.trace.common.writer.ddagent.TraceProcessingWorker;
 import datadog.trace.core.DDSpan;
@@ -70,6 +71,10 @@ public class DDAgentWriter implements Writer {
     Monitoring monitoring = Monitoring.DISABLED;
     boolean traceAgentV05Enabled = Config.get().isTraceAgentV05Enabled();
     boolean metricsReportingEnabled = Config.get().isTracerMetricsEnabled();
+    int serializationShards = Config.get().getTraceSerializationShards();
+    int senderMaxInFlight = Config.get().getTraceSenderMaxInFlight();
+    int senderMaxRetries = Config.get().getTraceSenderMaxRetries();
+    int traceAgentV05RetainedBytes = Config.get().getTraceAgentV05RetainedBytes();
 
     private DDAgentApi agentApi;
     private Prioritization prioritization;
@@ -130,11 +135,31 @@ public class DDAgentWriter implements Writer {
       return this;
     }
 
+    public DDAgentWriterBuilder traceAgentV05RetainedBytes(int traceAgentV05RetainedBytes) {
+      this.traceAgentV05RetainedBytes = traceAgentV05RetainedBytes;
+      return this;
+    }
+
     public DDAgentWriterBuilder metricsReportingEnabled(boolean metricsReportingEnabled) {
       this.metricsReportingEnabled = metricsReportingEnabled;
       return this;
     }
 
+    public DDAgentWriterBuilder serializationShards(int serializationShards) {
+      this.serializationShards = serializationShards;
+      return this;
+    }
+
+    public DDAgentWriterBuilder senderMaxInFlight(int senderMaxInFlight) {
+      this.senderMaxInFlight = senderMaxInFlight;
+      return this;
+    }
+
+    public DDAgentWriterBuilder senderMaxRetries(int senderMaxRetries) {
+      this.senderMaxRetries = senderMaxRetries;
+      return this;
+    }
+
     public DDAgentWriterBuilder featureDiscovery(DDAgentFeaturesDiscovery featureDiscovery) {
       this.featureDiscovery = featureDiscovery;
       return this;
@@ -153,7 +178,11 @@ public class DDAgentWriter implements Writer {
           prioritization,
           monitoring,
           traceAgentV05Enabled,
+          traceAgentV05RetainedBytes,
           metricsReportingEnabled,
+          serializationShards,
+          senderMaxInFlight,
+          senderMaxRetries,
           featureDiscovery);
     }
   }
@@ -170,7 +199,11 @@ public class DDAgentWriter implements Writer {
       final Prioritization prioritization,
       final Monitoring monitoring,
       final boolean traceAgentV05Enabled,
+      int traceAgentV05RetainedBytes,
       boolean metricsReportingEnabled,
+      int serializationShards,
+      int senderMaxInFlight,
+      int senderMaxRetries,
       DDAgentFeaturesDiscovery featureDiscovery) {
     HttpUrl agentUrl = HttpUrl.get("http://" + agentHost + ":" + traceAgentPort);
     OkHttpClient client =
@@ -190,13 +223,50 @@ public class DDAgentWriter implements Writer {
     }
     this.discovery = featureDiscovery;
     this.healthMetrics = healthMetrics;
-    this.dispatcher = new PayloadDispatcher(featureDiscovery, api, healthMetrics, monitoring);
+    PayloadDispatcher[] dispatchers;
+    PayloadSender sender;
+    if (serializationShards > 1 || senderMaxInFlight > 0) {
+      // each shard serializes into buffers from the sender's ring, and a single sender sends all
+      // the payloads
+      serializationShards = Math.max(1, serializationShards);
+      sender =
+          new PayloadSender(
+              api, healthMetrics, serializationShards, senderMaxInFlight, senderMaxRetries);
+      dispatchers = new PayloadDispatcher[serializationShards];
+      PayloadDispatcher.DroppedCounts droppedCounts = new PayloadDispatcher.DroppedCounts();
+      for (int i = 0; i < serializationShards; ++i) {
+        dispatchers[i] =
+            new PayloadDispatcher(
+                featureDiscovery,
+                api,
+                healthMetrics,
+                monitoring,
+                sender,
+                traceAgentV05RetainedBytes,
+                droppedCounts);
+      }
+    } else {
+      sender = null;
+      dispatchers =
+          new PayloadDispatcher[] {
+            new PayloadDispatcher(
+                featureDiscovery,
+                api,
+                healthMetrics,
+                monitoring,
+                null,
+                traceAgentV05RetainedBytes)
+          };
+    }
+    // the shards share their dropped trace counts, so the next payload of any shard reports them
+    this.dispatcher = dispatchers[0];
     this.traceProcessingWorker =
         new TraceProcessingWorker(
             traceBufferSize,
             healthMetrics,
             monitoring,
-            dispatcher,
+            dispatchers,
+            sender,
             featureDiscovery,
             null == prioritization ? FAST_LANE : prioritization,
             flushFrequencySeconds,
@@ -281,6 +351,10 @@ public class DDAgentWriter implements Writer {
     return false;
   }
 
+  public DDAgentFeaturesDiscovery getFeaturesDiscovery() {
+    return discovery;
+  }
+
   public DDAgentApi getApi() {
     return api;
   }
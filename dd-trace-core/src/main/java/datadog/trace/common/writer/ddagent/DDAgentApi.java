@@ -10,17 +10,18 @@ import datadog.trace.core.monitor.Counter;
 import datadog.trace.core.monitor.Monitoring;
 import datadog.trace.core.monitor.Recording;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** The API pointing to a DD agent */
+/** The API pointing to a DD agent, which may send several payloads concurrently */
 public class DDAgentApi {
 
   private static final Logger log = LoggerFactory.getLogger(DDAgentApi.class);
@@ -35,12 +36,14 @@ public class DDAgentApi {
   private static final String DATADOG_DROPPED_SPAN_COUNT = "Datadog-Client-Dropped-P0-Spans";
   private static final String DATADOG_AGENT_STATE = "Datadog-Agent-State";
 
-  private final List<DDAgentResponseListener> responseListeners = new ArrayList<>();
+  private final List<DDAgentResponseListener> responseListeners = new CopyOnWriteArrayList<>();
 
-  private long totalTraces = 0;
-  private long receivedTraces = 0;
-  private long sentTraces = 0;
-  private long failedTraces = 0;
+  private final AtomicLong totalTraces = new AtomicLong();
+  private final AtomicLong receivedTraces = new AtomicLong();
+  private final AtomicLong sentTraces = new AtomicLong();
+  private final AtomicLong failedTraces = new AtomicLong();
+  // only one request at a time rediscovers the agent once its state changes
+  private final Object discoveryLock = new Object();
 
   private final Recording sendPayloadTimer;
   private final Counter agentErrorCounter;
@@ -85,7 +88,7 @@ public class DDAgentApi {
     final int sizeInBytes = payload.sizeInBytes();
     String tracesEndpoint = featuresDiscovery.getTraceEndpoint();
     if (null == tracesEndpoint) {
-      featuresDiscovery.discover();
+      featuresDiscovery.discoverIfNecessary();
       tracesEndpoint = featuresDiscovery.getTraceEndpoint();
       if (null == tracesEndpoint) {
         log.error("No datadog agent detected");
@@ -107,8 +110,11 @@ public class DDAgentApi {
               .addHeader(DATADOG_DROPPED_SPAN_COUNT, Long.toString(payload.droppedSpans()))
               .put(payload.toRequest())
               .build();
-      this.totalTraces += payload.traceCount();
-      this.receivedTraces += payload.traceCount();
+      // payloads which are retried are only counted once
+      if (payload.onAttempt() == 0) {
+        this.totalTraces.addAndGet(payload.traceCount());
+        this.receivedTraces.addAndGet(payload.traceCount());
+      }
       try (final Recording recording = sendPayloadTimer.start();
           final okhttp3.Response response = httpClient.newCall(request).execute()) {
         handleAgentChange(response.header(DATADOG_AGENT_STATE));
@@ -142,15 +148,19 @@ public class DDAgentApi {
   }
 
   private void handleAgentChange(String state) {
-    String previous = featuresDiscovery.state();
-    if (!Objects.equals(state, previous)) {
-      featuresDiscovery.discover();
+    if (!Objects.equals(state, featuresDiscovery.state())) {
+      synchronized (discoveryLock) {
+        // another request may have rediscovered the agent meanwhile
+        if (!Objects.equals(state, featuresDiscovery.state())) {
+          featuresDiscovery.discover();
+        }
+      }
     }
   }
 
   private void countAndLogSuccessfulSend(final int traceCount, final int sizeInBytes) {
     // count the successful traces
-    this.sentTraces += traceCount;
+    this.sentTraces.addAndGet(traceCount);
 
     ioLogger.success(createSendLogMessage(traceCount, sizeInBytes, "Success"));
   }
@@ -161,7 +171,7 @@ public class DDAgentApi {
       final okhttp3.Response response,
       final IOException outer) {
     // count the failed traces
-    this.failedTraces += traceCount;
+    this.failedTraces.addAndGet(traceCount);
     // these are used to catch and log if there is a failure in debug logging the response body
     String agentError = getResponseBody(response);
     String sendErrorString =
@@ -198,13 +208,13 @@ public class DDAgentApi {
         + ")"
         + " traces to the DD agent."
         + " Total: "
-        + this.totalTraces
+        + this.totalTraces.get()
         + ", Received: "
-        + this.receivedTraces
+        + this.receivedTraces.get()
         + ", Sent: "
-        + this.sentTraces
+        + this.sentTraces.get()
         + ", Failed: "
-        + this.failedTraces
+        + this.failedTraces.get()
         + ".";
   }
 
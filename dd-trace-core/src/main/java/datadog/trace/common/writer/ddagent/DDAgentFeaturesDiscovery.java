@@ -63,7 +63,21 @@ public class DDAgentFeaturesDiscovery implements DroppingPolicy {
     this.discoveryTimer = monitoring.newTimer("trace.agent.discovery.time");
   }
 
-  public void discover() {
+  /**
+   * Discovers the features of the agent, unless its trace endpoint is already known, so callers
+   * which are all missing it only discover them once
+   */
+  public void discoverIfNecessary() {
+    if (null == traceEndpoint) {
+      synchronized (this) {
+        if (null == traceEndpoint) {
+          discover();
+        }
+      }
+    }
+  }
+
+  public synchronized void discover() {
     // 1. try to fetch info about the agent, if the endpoint is there
     // 2. try to parse the response, if it can be parsed, finish
     // 3. fallback if the endpoint couldn't be found or the response couldn't be parsed
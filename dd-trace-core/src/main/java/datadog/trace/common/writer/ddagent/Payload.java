@@ -16,6 +16,7 @@ public abstract class Payload {
   private int traceCount = 0;
   private long droppedTraces = 0;
   private long droppedSpans = 0;
+  private int attempts = 0;
   protected ByteBuffer body = EMPTY_ARRAY.duplicate();
 
   public Payload withBody(int traceCount, ByteBuffer body) {
@@ -48,12 +49,25 @@ public abstract class Payload {
     return droppedSpans;
   }
 
+  /** @return the number of times sending the payload was attempted before this attempt */
+  int onAttempt() {
+    return attempts++;
+  }
+
   abstract int sizeInBytes();
 
   abstract void writeTo(WritableByteChannel channel) throws IOException;
 
   abstract RequestBody toRequest();
 
+  /**
+   * Makes this payload independent of any serializer state which is about to be reset, other than
+   * its body, which the serializer hands over to the payload.
+   */
+  Payload detach() {
+    return this;
+  }
+
   protected int msgpackArrayHeaderSize(int count) {
     if (count < 0x10) {
       return 1;
@@ -12,36 +12,87 @@ import java.nio.ByteBuffer;
 import java.util.List;
 import org.jctools.counters.CountersFactory;
 import org.jctools.counters.FixedSizeStripedLongCounter;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class PayloadDispatcher implements ByteBufferConsumer {
 
-  private static final Logger log = LoggerFactory.getLogger(PayloadDispatcher.class);
-
   private final DDAgentApi api;
   private final DDAgentFeaturesDiscovery featuresDiscovery;
   private final HealthMetrics healthMetrics;
   private final Monitoring monitoring;
+  private final PayloadSender sender;
+  private final int v05RetainedBytes;
 
   private Recording batchTimer;
   private TraceMapper traceMapper;
   private WritableFormatter packer;
 
-  private final FixedSizeStripedLongCounter droppedSpanCount =
-      CountersFactory.createFixedSizeStripedCounter(8);
-  private final FixedSizeStripedLongCounter droppedTraceCount =
-      CountersFactory.createFixedSizeStripedCounter(8);
+  private final DroppedCounts droppedCounts;
 
   public PayloadDispatcher(
       DDAgentFeaturesDiscovery featuresDiscovery,
       DDAgentApi api,
       HealthMetrics healthMetrics,
       Monitoring monitoring) {
+    this(featuresDiscovery, api, healthMetrics, monitoring, null);
+  }
+
+  /**
+   * @param sender sends payloads asynchronously and supplies the buffers they are serialized into,
+   *     or null to send each payload from the serializing thread
+   */
+  public PayloadDispatcher(
+      DDAgentFeaturesDiscovery featuresDiscovery,
+      DDAgentApi api,
+      HealthMetrics healthMetrics,
+      Monitoring monitoring,
+      PayloadSender sender) {
+    this(featuresDiscovery, api, healthMetrics, monitoring, sender, 0);
+  }
+
+  /**
+   * @param sender sends payloads asynchronously and supplies the buffers they are serialized into,
+   *     or null to send each payload from the serializing thread
+   * @param v05RetainedBytes the size the v0.5 dictionary may be kept between payloads at
+   */
+  public PayloadDispatcher(
+      DDAgentFeaturesDiscovery featuresDiscovery,
+      DDAgentApi api,
+      HealthMetrics healthMetrics,
+      Monitoring monitoring,
+      PayloadSender sender,
+      int v05RetainedBytes) {
+    this(
+        featuresDiscovery,
+        api,
+        healthMetrics,
+        monitoring,
+        sender,
+        v05RetainedBytes,
+        new DroppedCounts());
+  }
+
+  /**
+   * @param sender sends payloads asynchronously and supplies the buffers they are serialized into,
+   *     or null to send each payload from the serializing thread
+   * @param v05RetainedBytes the size the v0.5 dictionary may be kept between payloads at
+   * @param droppedCounts the counts of dropped traces, which may be shared with other dispatchers
+   *     so they are reported with the next payload of any of them
+   */
+  public PayloadDispatcher(
+      DDAgentFeaturesDiscovery featuresDiscovery,
+      DDAgentApi api,
+      HealthMetrics healthMetrics,
+      Monitoring monitoring,
+      PayloadSender sender,
+      int v05RetainedBytes,
+      DroppedCounts droppedCounts) {
+    this.droppedCounts = droppedCounts;
     this.featuresDiscovery = featuresDiscovery;
     this.api = api;
     this.healthMetrics = healthMetrics;
     this.monitoring = monitoring;
+    this.sender = sender;
+    this.v05RetainedBytes = v05RetainedBytes;
   }
 
   void flush() {
@@ -51,16 +102,14 @@ public class PayloadDispatcher implements ByteBufferConsumer {
   }
 
   public void onDroppedTrace(int spanCount) {
-    droppedSpanCount.inc(spanCount);
-    droppedTraceCount.inc();
+    droppedCounts.onDroppedTrace(spanCount);
   }
 
   void addTrace(List<? extends CoreSpan<?>> trace) {
     selectTraceMapper();
-    // the call below is blocking and will trigger IO if a flush is necessary
-    // there are alternative approaches to avoid blocking here, such as
-    // introducing an unbound queue and another thread to do the IO
-    // however, we can't block the application threads from here.
+    // a full buffer is flushed by the call below: without a sender the payload is sent from this
+    // thread, otherwise it is handed over to the sender, which only blocks while all of its
+    // buffers are in flight
     if (null == traceMapper || !packer.format(trace, traceMapper)) {
       healthMetrics.onFailedPublish(trace.get(0).samplingPriority());
     }
@@ -68,10 +117,11 @@ public class PayloadDispatcher implements ByteBufferConsumer {
 
   private void selectTraceMapper() {
     if (null == traceMapper) {
-      featuresDiscovery.discover();
+      // the agent is discovered by whichever dispatcher or sender first needs its trace endpoint
+      featuresDiscovery.discoverIfNecessary();
       String tracesUrl = featuresDiscovery.getTraceEndpoint();
       if (DDAgentFeaturesDiscovery.V5_ENDPOINT.equalsIgnoreCase(tracesUrl)) {
-        this.traceMapper = new TraceMapperV0_5();
+        this.traceMapper = new TraceMapperV0_5(2 << 20, 2 << 20, v05RetainedBytes);
       } else if (null != tracesUrl) {
         this.traceMapper = new TraceMapperV0_4();
       }
@@ -79,7 +129,12 @@ public class PayloadDispatcher implements ByteBufferConsumer {
         this.batchTimer =
             monitoring.newTimer(
                 "tracer.trace.buffer.fill.time", "endpoint:" + traceMapper.endpoint());
-        this.packer = new MsgPackWriter(new FlushingBuffer(traceMapper.messageBufferSize(), this));
+        int bufferSize = traceMapper.messageBufferSize();
+        this.packer =
+            new MsgPackWriter(
+                null == sender
+                    ? new FlushingBuffer(bufferSize, this)
+                    : new FlushingBuffer(bufferSize, this, sender));
         batchTimer.start();
       }
     }
@@ -89,8 +144,8 @@ public class PayloadDispatcher implements ByteBufferConsumer {
     return traceMapper
         .newPayload()
         .withBody(messageCount, buffer)
-        .withDroppedSpans(droppedSpanCount.getAndReset())
-        .withDroppedTraces(droppedTraceCount.getAndReset());
+        .withDroppedSpans(droppedCounts.droppedSpans.getAndReset())
+        .withDroppedTraces(droppedCounts.droppedTraces.getAndReset());
   }
 
   @Override
@@ -100,22 +155,29 @@ public class PayloadDispatcher implements ByteBufferConsumer {
     if (messageCount > 0) {
       batchTimer.reset();
       Payload payload = newPayload(messageCount, buffer);
-      final int sizeInBytes = payload.sizeInBytes();
-      healthMetrics.onSerialize(sizeInBytes);
-      DDAgentApi.Response response = api.sendSerializedTraces(payload);
-      traceMapper.reset();
-      if (response.success()) {
-        if (log.isDebugEnabled()) {
-          log.debug("Successfully sent {} traces to the API", messageCount);
-        }
-        healthMetrics.onSend(messageCount, sizeInBytes, response);
+      healthMetrics.onSerialize(payload.sizeInBytes());
+      if (null == sender) {
+        PayloadSender.sendPayload(api, healthMetrics, payload);
+        traceMapper.reset();
       } else {
-        if (log.isDebugEnabled()) {
-          log.debug(
-              "Failed to send {} traces of size {} bytes to the API", messageCount, sizeInBytes);
-        }
-        healthMetrics.onFailedSend(messageCount, sizeInBytes, response);
+        // the buffer is handed over to the sender, but anything else is about to be reused
+        Payload detached = payload.detach();
+        traceMapper.reset();
+        sender.send(detached);
       }
     }
   }
+
+  /** Counts the traces dropped by the tracer, until they are reported with a payload */
+  public static final class DroppedCounts {
+    private final FixedSizeStripedLongCounter droppedSpans =
+        CountersFactory.createFixedSizeStripedCounter(8);
+    private final FixedSizeStripedLongCounter droppedTraces =
+        CountersFactory.createFixedSizeStripedCounter(8);
+
+    void onDroppedTrace(int spanCount) {
+      droppedSpans.inc(spanCount);
+      droppedTraces.inc();
+    }
+  }
 }
@@ -0,0 +1,304 @@
+package datadog.trace.common.writer.ddagent;
+
+import static datadog.trace.util.AgentThreadFactory.AgentThread.TRACE_SENDER;
+import static datadog.trace.util.AgentThreadFactory.THREAD_JOIN_TIMOUT_MS;
+import static datadog.trace.util.AgentThreadFactory.newAgentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import datadog.trace.core.monitor.HealthMetrics;
+import datadog.trace.core.serialization.ByteBufferPool;
+import datadog.trace.util.AgentThreadFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jctools.queues.MpscBlockingConsumerArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends serialized payloads to the agent from its own threads, so that serializing threads never
+ * wait for IO.
+ *
+ * <p>Payloads are serialized into a small ring of reusable buffers owned by the sender: when a
+ * buffer is full, the serializer hands it over along with its payload and swaps to a free buffer,
+ * while the full one is in flight. There is one buffer for each serializer and one for each request
+ * which may be in flight, so serializers only wait for a free buffer when the agent can't keep up.
+ *
+ * <p>Requests failing with a 5xx status or an IO error are retried with exponential backoff, and
+ * only the outcome of the last attempt is recorded. When more than one request may be in flight,
+ * requests are sent concurrently through the same {@link DDAgentApi}.
+ */
+public class PayloadSender implements ByteBufferPool, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(PayloadSender.class);
+
+  private static final long INITIAL_BACKOFF_MILLIS = 100;
+  private static final long MAX_BACKOFF_MILLIS = 5000;
+
+  private final DDAgentApi api;
+  private final HealthMetrics healthMetrics;
+  private final int maxInFlight;
+  private final int maxRetries;
+
+  private final int bufferCount;
+  private final AtomicInteger allocatedBuffers = new AtomicInteger();
+  private final ArrayBlockingQueue<ByteBuffer> freeBuffers;
+
+  private final MpscBlockingConsumerArrayQueue<Object> queue;
+  private final Semaphore inFlight;
+  private final ExecutorService executor;
+  private final Thread senderThread;
+
+  private volatile boolean closed;
+
+  /**
+   * @param serializers the number of threads serializing into this sender's buffers
+   * @param maxInFlight the maximum number of requests sent concurrently
+   * @param maxRetries the maximum number of times a failed request is retried
+   */
+  public PayloadSender(
+      DDAgentApi api, HealthMetrics healthMetrics, int serializers, int maxInFlight, int maxRetries) {
+    this.api = api;
+    this.healthMetrics = healthMetrics;
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.maxRetries = Math.max(0, maxRetries);
+    this.bufferCount = Math.max(1, serializers) + this.maxInFlight;
+    this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+    // every queued payload holds a buffer, leave room for a flush from each serializer too
+    this.queue = new MpscBlockingConsumerArrayQueue<>(2 * bufferCount);
+    this.inFlight = new Semaphore(this.maxInFlight);
+    // with a single request in flight, send from the sender thread itself
+    this.executor =
+        this.maxInFlight > 1
+            ? new ThreadPoolExecutor(
+                this.maxInFlight,
+                this.maxInFlight,
+                0,
+                MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new AgentThreadFactory(TRACE_SENDER))
+            : null;
+    this.senderThread = newAgentThread(TRACE_SENDER, new SendingHandler());
+  }
+
+  public void start() {
+    senderThread.start();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    senderThread.interrupt();
+    if (null != executor) {
+      executor.shutdownNow();
+    }
+    try {
+      senderThread.join(THREAD_JOIN_TIMOUT_MS);
+    } catch (InterruptedException ignored) {
+    }
+  }
+
+  @Override
+  public ByteBuffer acquire(int capacity) {
+    ByteBuffer buffer = freeBuffers.poll();
+    if (null == buffer) {
+      int allocated = allocatedBuffers.get();
+      while (allocated < bufferCount) {
+        if (allocatedBuffers.compareAndSet(allocated, allocated + 1)) {
+          return ByteBuffer.allocate(capacity);
+        }
+        allocated = allocatedBuffers.get();
+      }
+      buffer = awaitFreeBuffer();
+    }
+    if (null == buffer || buffer.capacity() != capacity) {
+      // either the sender has been closed, or the serializer has changed format
+      return ByteBuffer.allocate(capacity);
+    }
+    buffer.clear();
+    return buffer;
+  }
+
+  private ByteBuffer awaitFreeBuffer() {
+    long start = System.nanoTime();
+    ByteBuffer buffer = null;
+    try {
+      while (null == buffer && !closed) {
+        buffer = freeBuffers.poll(100, MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    healthMetrics.onBufferWait(System.nanoTime() - start);
+    return buffer;
+  }
+
+  private void release(Payload payload) {
+    // the body is a slice of a buffer acquired from this sender
+    if (payload.body.hasArray()) {
+      freeBuffers.offer(ByteBuffer.wrap(payload.body.array()));
+    }
+  }
+
+  /** Discards an event which will never be sent, so neither its buffer nor its flush leak. */
+  private void discard(Object event) {
+    if (event instanceof Payload) {
+      Payload payload = (Payload) event;
+      release(payload);
+      healthMetrics.onSendDropped(payload.traceCount(), payload.sizeInBytes());
+    } else if (event instanceof FlushEvent) {
+      ((FlushEvent) event).sync();
+    }
+  }
+
+  /**
+   * Queues a payload to be sent. The payload's body must have been serialized into a buffer
+   * acquired from this sender, and must not share any other buffers with its serializer.
+   */
+  void send(Payload payload) {
+    offer(payload);
+  }
+
+  /** Syncs the flush once all the payloads queued before it have been sent. */
+  void flush(FlushEvent flush) {
+    offer(flush);
+  }
+
+  private void offer(Object event) {
+    if (senderThread.getState() == Thread.State.TERMINATED) {
+      discard(event);
+      return;
+    }
+    boolean offered = queue.offer(event);
+    while (!offered) {
+      if (!senderThread.isAlive()) {
+        discard(event);
+        return;
+      }
+      Thread.yield();
+      offered = queue.offer(event);
+    }
+  }
+
+  /** Sends the payload from the calling thread and records the outcome. */
+  static DDAgentApi.Response sendPayload(
+      DDAgentApi api, HealthMetrics healthMetrics, Payload payload) {
+    DDAgentApi.Response response = api.sendSerializedTraces(payload);
+    recordOutcome(healthMetrics, payload, response);
+    return response;
+  }
+
+  private static void recordOutcome(
+      HealthMetrics healthMetrics, Payload payload, DDAgentApi.Response response) {
+    final int traceCount = payload.traceCount();
+    final int sizeInBytes = payload.sizeInBytes();
+    if (response.success()) {
+      if (log.isDebugEnabled()) {
+        log.debug("Successfully sent {} traces to the API", traceCount);
+      }
+      healthMetrics.onSend(traceCount, sizeInBytes, response);
+    } else {
+      if (log.isDebugEnabled()) {
+        log.debug("Failed to send {} traces of size {} bytes to the API", traceCount, sizeInBytes);
+      }
+      healthMetrics.onFailedSend(traceCount, sizeInBytes, response);
+    }
+  }
+
+  private static boolean isRetryable(DDAgentApi.Response response) {
+    if (null != response.status()) {
+      return response.status() >= 500;
+    }
+    return response.exception() instanceof IOException;
+  }
+
+  private void sendWithRetries(Payload payload) {
+    try {
+      long backoffMillis = INITIAL_BACKOFF_MILLIS;
+      for (int attempt = 0; ; ++attempt) {
+        DDAgentApi.Response response = api.sendSerializedTraces(payload);
+        if (response.success() || attempt >= maxRetries || closed || !isRetryable(response)) {
+          recordOutcome(healthMetrics, payload, response);
+          break;
+        }
+        healthMetrics.onRetry(payload.sizeInBytes());
+        Thread.sleep(backoffMillis);
+        backoffMillis = Math.min(backoffMillis << 1, MAX_BACKOFF_MILLIS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Throwable e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Error while sending traces", e);
+      }
+    } finally {
+      release(payload);
+      inFlight.release();
+    }
+  }
+
+  private final class Send implements Runnable {
+    private final Payload payload;
+
+    private Send(Payload payload) {
+      this.payload = payload;
+    }
+
+    @Override
+    public void run() {
+      sendWithRetries(payload);
+    }
+  }
+
+  private final class SendingHandler implements Runnable {
+
+    @Override
+    public void run() {
+      Thread thread = Thread.currentThread();
+      try {
+        while (!thread.isInterrupted()) {
+          Object event = queue.take();
+          if (event instanceof Payload) {
+            try {
+              inFlight.acquire();
+            } catch (InterruptedException e) {
+              discard(event);
+              throw e;
+            }
+            healthMetrics.onBuffersInFlight(maxInFlight - inFlight.availablePermits());
+            if (null == executor) {
+              sendWithRetries((Payload) event);
+            } else {
+              try {
+                executor.execute(new Send((Payload) event));
+              } catch (RejectedExecutionException closing) {
+                release((Payload) event);
+                inFlight.release();
+              }
+            }
+          } else if (event instanceof FlushEvent) {
+            // wait for the requests in flight to complete
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+            ((FlushEvent) event).sync();
+          }
+        }
+      } catch (InterruptedException e) {
+        thread.interrupt();
+      } finally {
+        // nothing queued from now on will be sent
+        Object event;
+        while (null != (event = queue.poll())) {
+          discard(event);
+        }
+      }
+      log.debug("Datadog trace sender exited. Sending traces stopped");
+    }
+  }
+}
@@ -10,6 +10,8 @@ import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
 import datadog.trace.core.CoreSpan;
 import datadog.trace.core.Metadata;
 import datadog.trace.core.MetadataConsumer;
+import datadog.trace.core.MetricMap;
+import datadog.trace.core.TagMap;
 import datadog.trace.core.serialization.Writable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -79,7 +81,7 @@ public final class TraceMapperV0_4 implements TraceMapper {
       for (Map.Entry<String, String> entry : metadata.getBaggage().entrySet()) {
         // tags and baggage may intersect, but tags take priority
         if ((overlaps & (1L << i)) == 0) {
-          writable.writeString(entry.getKey(), null);
+          writable.writeInternedString(entry.getKey());
           writable.writeString(entry.getValue(), null);
         }
         ++i;
@@ -88,18 +90,29 @@ public final class TraceMapperV0_4 implements TraceMapper {
       writable.writeUTF8(metadata.getThreadName());
       writable.writeUTF8(THREAD_ID);
       writeLongAsString(metadata.getThreadId(), writable, numberByteArray);
-      for (Map.Entry<String, Object> entry : metadata.getTags().entrySet()) {
-        writable.writeString(entry.getKey(), null);
-        if (entry.getValue() instanceof Long || entry.getValue() instanceof Integer) {
-          // TODO it would be nice not to need to do this, either because
-          //  the agent would accept variably typed tag values, or numeric
-          //  tags get moved to the metrics
-          writeLongAsString(((Number) entry.getValue()).longValue(), writable, numberByteArray);
-        } else if (entry.getValue() instanceof UTF8BytesString) {
-          writable.writeUTF8((UTF8BytesString) entry.getValue());
-        } else {
-          writable.writeString(String.valueOf(entry.getValue()), null);
+      if (metadata.getTags() instanceof TagMap) {
+        TagMap tags = (TagMap) metadata.getTags();
+        for (int cursor = tags.first(); cursor >= 0; cursor = tags.next(cursor)) {
+          writeTag(tags.keyAt(cursor), tags.valueAt(cursor));
         }
+      } else {
+        for (Map.Entry<String, Object> entry : metadata.getTags().entrySet()) {
+          writeTag(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+
+    private void writeTag(String key, Object value) {
+      writable.writeInternedString(key);
+      if (value instanceof Long || value instanceof Integer) {
+        // TODO it would be nice not to need to do this, either because
+        //  the agent would accept variably typed tag values, or numeric
+        //  tags get moved to the metrics
+        writeLongAsString(((Number) value).longValue(), writable, numberByteArray);
+      } else if (value instanceof UTF8BytesString) {
+        writable.writeUTF8((UTF8BytesString) value);
+      } else {
+        writable.writeString(String.valueOf(value), null);
       }
     }
   }
@@ -113,7 +126,7 @@ public final class TraceMapperV0_4 implements TraceMapper {
       writable.startMap(12);
       /* 1  */
       writable.writeUTF8(SERVICE);
-      writable.writeString(span.getServiceName(), null);
+      writable.writeInternedString(span.getServiceName());
       /* 2  */
       writable.writeUTF8(NAME);
       writable.writeObject(span.getOperationName(), null);
@@ -122,13 +135,13 @@ public final class TraceMapperV0_4 implements TraceMapper {
       writable.writeObject(span.getResourceName(), null);
       /* 4  */
       writable.writeUTF8(TRACE_ID);
-      writable.writeLong(span.getTraceId().toLong());
+      writable.writeLong(span.traceId());
       /* 5  */
       writable.writeUTF8(SPAN_ID);
-      writable.writeLong(span.getSpanId().toLong());
+      writable.writeLong(span.spanId());
       /* 6  */
       writable.writeUTF8(PARENT_ID);
-      writable.writeLong(span.getParentId().toLong());
+      writable.writeLong(span.parentId());
       /* 7  */
       writable.writeUTF8(START);
       writable.writeLong(span.getStartTime());
@@ -137,7 +150,7 @@ public final class TraceMapperV0_4 implements TraceMapper {
       writable.writeLong(span.getDurationNano());
       /* 9  */
       writable.writeUTF8(TYPE);
-      writable.writeString(span.getType(), null);
+      writable.writeInternedString(span.getType());
       /* 10 */
       writable.writeUTF8(ERROR);
       writable.writeInt(span.getError());
@@ -169,9 +182,17 @@ public final class TraceMapperV0_4 implements TraceMapper {
       writable.writeUTF8(InstrumentationTags.DD_TOP_LEVEL);
       writable.writeInt(1);
     }
-    for (Map.Entry<CharSequence, Number> metric : metrics.entrySet()) {
-      writable.writeString(metric.getKey(), null);
-      writable.writeObject(metric.getValue(), null);
+    if (metrics instanceof MetricMap) {
+      MetricMap metricMap = (MetricMap) metrics;
+      for (int i = 0; i < metricMap.size(); ++i) {
+        writable.writeInternedString(metricMap.keyAt(i));
+        metricMap.writeValueAt(i, writable);
+      }
+    } else {
+      for (Map.Entry<CharSequence, Number> metric : metrics.entrySet()) {
+        writable.writeInternedString(metric.getKey());
+        writable.writeObject(metric.getValue(), null);
+      }
     }
   }
 
@@ -213,7 +234,9 @@ public final class TraceMapperV0_4 implements TraceMapper {
 
     @Override
     RequestBody toRequest() {
-      return msgpackRequestBodyOf(Arrays.asList(msgpackArrayHeader(traceCount()), body));
+      // duplicated so the request can be written again if it needs to be retried
+      return msgpackRequestBodyOf(
+          Arrays.asList(msgpackArrayHeader(traceCount()), body.duplicate()));
     }
   }
 }
@@ -9,16 +9,18 @@ import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
 import datadog.trace.core.CoreSpan;
 import datadog.trace.core.Metadata;
 import datadog.trace.core.MetadataConsumer;
+import datadog.trace.core.MetricMap;
+import datadog.trace.core.TagMap;
 import datadog.trace.core.serialization.GrowableBuffer;
 import datadog.trace.core.serialization.Mapper;
 import datadog.trace.core.serialization.Writable;
 import datadog.trace.core.serialization.WritableFormatter;
 import datadog.trace.core.serialization.msgpack.MsgPackWriter;
+import datadog.trace.core.util.ObjectIntHashMap;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import okhttp3.RequestBody;
@@ -30,8 +32,9 @@ public final class TraceMapperV0_5 implements TraceMapper {
 
   private final WritableFormatter dictionaryWriter;
   private final DictionaryMapper dictionaryMapper = new DictionaryMapper();
-  private final Map<Object, Integer> encoding = new HashMap<>();
+  private final ObjectIntHashMap<Object> encoding = new ObjectIntHashMap<>(1024);
   private final GrowableBuffer dictionary;
+  private final int retainedBytes;
 
   private final MetaWriter metaWriter = new MetaWriter();
   private final int size;
@@ -41,11 +44,22 @@ public final class TraceMapperV0_5 implements TraceMapper {
   }
 
   public TraceMapperV0_5(int dictionarySize, int bufferSize) {
+    this(dictionarySize, bufferSize, 0);
+  }
+
+  /**
+   * @param retainedBytes the size in bytes the dictionary may reach and still be kept for the next
+   *     payload, or 0 to build a new dictionary for each payload. The dictionary is sent with every
+   *     payload, so this is taken from the space for traces, and can't exceed half of it
+   */
+  public TraceMapperV0_5(int dictionarySize, int bufferSize, int retainedBytes) {
     // growable buffer is implicitly bounded by the fixed size buffer
-    // the messages themselves are written into
+    // the messages themselves are written into, and by the size of the
+    // dictionary retained between payloads
     this.dictionary = new GrowableBuffer(bufferSize);
     this.dictionaryWriter = new MsgPackWriter(dictionary);
-    this.size = bufferSize;
+    this.retainedBytes = Math.max(0, Math.min(retainedBytes, bufferSize / 2));
+    this.size = bufferSize - this.retainedBytes;
     reset();
   }
 
@@ -65,11 +79,11 @@ public final class TraceMapperV0_5 implements TraceMapper {
       /* 3  */
       writeDictionaryEncoded(writable, span.getResourceName());
       /* 4  */
-      writable.writeLong(span.getTraceId().toLong());
+      writable.writeLong(span.traceId());
       /* 5  */
-      writable.writeLong(span.getSpanId().toLong());
+      writable.writeLong(span.spanId());
       /* 6  */
-      writable.writeLong(span.getParentId().toLong());
+      writable.writeLong(span.parentId());
       /* 7  */
       writable.writeLong(span.getStartTime());
       /* 8  */
@@ -104,16 +118,24 @@ public final class TraceMapperV0_5 implements TraceMapper {
       writeDictionaryEncoded(writable, InstrumentationTags.DD_TOP_LEVEL);
       writable.writeInt(1);
     }
-    for (Map.Entry<CharSequence, Number> metric : metrics.entrySet()) {
-      writeDictionaryEncoded(writable, metric.getKey());
-      writable.writeObject(metric.getValue(), null);
+    if (metrics instanceof MetricMap) {
+      MetricMap metricMap = (MetricMap) metrics;
+      for (int i = 0; i < metricMap.size(); ++i) {
+        writeDictionaryEncoded(writable, metricMap.keyAt(i));
+        metricMap.writeValueAt(i, writable);
+      }
+    } else {
+      for (Map.Entry<CharSequence, Number> metric : metrics.entrySet()) {
+        writeDictionaryEncoded(writable, metric.getKey());
+        writable.writeObject(metric.getValue(), null);
+      }
     }
   }
 
   private void writeDictionaryEncoded(final Writable writable, final Object value) {
     final Object target = null == value ? "" : value;
-    final Integer encoded = encoding.get(target);
-    if (null == encoded) {
+    final int encoded = encoding.get(target);
+    if (ObjectIntHashMap.NO_VALUE == encoded) {
       dictionaryWriter.format(target, dictionaryMapper);
       final int dictionaryCode = dictionary.messageCount() - 1;
       encoding.put(target, dictionaryCode);
@@ -132,13 +154,22 @@ public final class TraceMapperV0_5 implements TraceMapper {
 
   @Override
   public int messageBufferSize() {
-    return size; // 2MB
+    // 2MB, less the dictionary retained from the previous payload
+    return size;
   }
 
+  /**
+   * Each payload carries the whole dictionary, since the agent doesn't keep it between payloads,
+   * but when strings are retained the dictionary doesn't need to be encoded again for the next
+   * payload. The codes of the strings are their positions in the dictionary, so strings can't be
+   * evicted one by one, and the dictionary is cleared once it has grown too large.
+   */
   @Override
   public void reset() {
-    dictionary.reset();
-    encoding.clear();
+    if (dictionary.position() > retainedBytes) {
+      dictionary.reset();
+      encoding.clear();
+    }
   }
 
   @Override
@@ -196,14 +227,26 @@ public final class TraceMapperV0_5 implements TraceMapper {
       return msgpackRequestBodyOf(toList());
     }
 
+    @Override
+    Payload detach() {
+      // the dictionary may be reset along with the mapper once the payload has been dispatched
+      ByteBuffer copy = ByteBuffer.allocate(dictionary.remaining());
+      copy.put(dictionary.duplicate());
+      copy.flip();
+      return new PayloadV0_5(copy, stringCount)
+          .withBody(traceCount(), body)
+          .withDroppedTraces(droppedTraces())
+          .withDroppedSpans(droppedSpans());
+    }
+
     private List<ByteBuffer> toList() {
       return Arrays.asList(
           // msgpack array header with 2 elements (FIXARRAY | 2)
           ByteBuffer.allocate(1).put(0, (byte) 0x92),
           msgpackArrayHeader(stringCount),
-          dictionary,
+          dictionary.duplicate(),
           msgpackArrayHeader(traceCount()),
-          body);
+          body.duplicate());
     }
   }
 
@@ -249,9 +292,17 @@ public final class TraceMapperV0_5 implements TraceMapper {
       writeDictionaryEncoded(writable, metadata.getThreadName());
       writeDictionaryEncoded(writable, THREAD_ID);
       writeDictionaryEncoded(writable, String.valueOf(metadata.getThreadId()));
-      for (final Map.Entry<String, Object> entry : metadata.getTags().entrySet()) {
-        writeDictionaryEncoded(writable, entry.getKey());
-        writeDictionaryEncoded(writable, entry.getValue());
+      if (metadata.getTags() instanceof TagMap) {
+        final TagMap tags = (TagMap) metadata.getTags();
+        for (int cursor = tags.first(); cursor >= 0; cursor = tags.next(cursor)) {
+          writeDictionaryEncoded(writable, tags.keyAt(cursor));
+          writeDictionaryEncoded(writable, tags.valueAt(cursor));
+        }
+      } else {
+        for (final Map.Entry<String, Object> entry : metadata.getTags().entrySet()) {
+          writeDictionaryEncoded(writable, entry.getKey());
+          writeDictionaryEncoded(writable, entry.getValue());
+        }
       }
     }
   }
@@ -7,6 +7,7 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import datadog.trace.core.CoreSpan;
 import datadog.trace.core.DDSpan;
+import datadog.trace.core.SpanRecycler;
 import datadog.trace.core.monitor.HealthMetrics;
 import datadog.trace.core.monitor.Monitoring;
 import datadog.trace.core.monitor.Recording;
@@ -24,16 +25,18 @@ import org.slf4j.LoggerFactory;
  *
  * <p>publishing to the buffer will not block the calling thread, but instead will return false if
  * the buffer is full. This is to avoid impacting an application thread.
+ *
+ * <p>Serialization can optionally be spread over several shards, each with its own queues, thread
+ * and {@link PayloadDispatcher}. Traces are partitioned between shards by trace id, and the
+ * serialized payloads of all shards are handed to a single {@link PayloadSender}, so serializing
+ * never waits for IO. The capacity is split between the shards.
  */
 public class TraceProcessingWorker implements AutoCloseable {
 
   private static final Logger log = LoggerFactory.getLogger(TraceProcessingWorker.class);
 
-  private final PrioritizationStrategy prioritizationStrategy;
-  private final MpscBlockingConsumerArrayQueue<Object> primaryQueue;
-  private final MpscBlockingConsumerArrayQueue<Object> secondaryQueue;
-  private final TraceSerializingHandler serializingHandler;
-  private final Thread serializerThread;
+  private final Shard[] shards;
+  private final PayloadSender sender;
   private final int capacity;
 
   public TraceProcessingWorker(
@@ -45,34 +48,75 @@ public class TraceProcessingWorker implements AutoCloseable {
       final Prioritization prioritization,
       final long flushInterval,
       final TimeUnit timeUnit) {
+    this(
+        capacity,
+        healthMetrics,
+        monitoring,
+        new PayloadDispatcher[] {dispatcher},
+        null,
+        droppingPolicy,
+        prioritization,
+        flushInterval,
+        timeUnit);
+  }
+
+  /**
+   * @param dispatchers one dispatcher per shard
+   * @param sender sends the payloads of all dispatchers, or null if the dispatchers send their
+   *     payloads themselves
+   */
+  public TraceProcessingWorker(
+      final int capacity,
+      final HealthMetrics healthMetrics,
+      final Monitoring monitoring,
+      final PayloadDispatcher[] dispatchers,
+      final PayloadSender sender,
+      final DroppingPolicy droppingPolicy,
+      final Prioritization prioritization,
+      final long flushInterval,
+      final TimeUnit timeUnit) {
     this.capacity = capacity;
-    this.primaryQueue = createQueue(capacity);
-    this.secondaryQueue = createQueue(capacity);
-    this.prioritizationStrategy =
-        prioritization.create(primaryQueue, secondaryQueue, droppingPolicy);
-    this.serializingHandler =
-        new TraceSerializingHandler(
-            primaryQueue,
-            secondaryQueue,
-            healthMetrics,
-            monitoring,
-            dispatcher,
-            flushInterval,
-            timeUnit);
-    this.serializerThread = newAgentThread(TRACE_PROCESSOR, serializingHandler);
+    this.sender = sender;
+    this.shards = new Shard[dispatchers.length];
+    // the queues of a shard need room for at least two traces
+    int shardCapacity = Math.max(2, (capacity + dispatchers.length - 1) / dispatchers.length);
+    for (int i = 0; i < dispatchers.length; ++i) {
+      shards[i] =
+          new Shard(
+              shardCapacity,
+              healthMetrics,
+              monitoring,
+              dispatchers[i],
+              sender,
+              droppingPolicy,
+              prioritization,
+              flushInterval,
+              timeUnit);
+      if (dispatchers.length > 1) {
+        shards[i].serializerThread.setName(TRACE_PROCESSOR.threadName + "-" + i);
+      }
+    }
   }
 
   public void start() {
-    this.serializerThread.start();
+    if (null != sender) {
+      sender.start();
+    }
+    for (Shard shard : shards) {
+      shard.serializerThread.start();
+    }
   }
 
   public boolean flush(long timeout, TimeUnit timeUnit) {
-    CountDownLatch latch = new CountDownLatch(1);
+    // each shard syncs the same event once it has flushed
+    CountDownLatch latch = new CountDownLatch(shards.length);
     FlushEvent flush = new FlushEvent(latch);
-    boolean offered;
-    do {
-      offered = primaryQueue.offer(flush);
-    } while (!offered && serializerThread.isAlive());
+    for (Shard shard : shards) {
+      boolean offered;
+      do {
+        offered = shard.primaryQueue.offer(flush);
+      } while (!offered && shard.serializerThread.isAlive());
+    }
     try {
       return latch.await(timeout, timeUnit);
     } catch (InterruptedException e) {
@@ -83,16 +127,33 @@ public class TraceProcessingWorker implements AutoCloseable {
 
   @Override
   public void close() {
-    serializerThread.interrupt();
-    try {
-      serializerThread.join(THREAD_JOIN_TIMOUT_MS);
-    } catch (InterruptedException ignored) {
+    for (Shard shard : shards) {
+      shard.serializerThread.interrupt();
+    }
+    for (Shard shard : shards) {
+      try {
+        shard.serializerThread.join(THREAD_JOIN_TIMOUT_MS);
+      } catch (InterruptedException ignored) {
+      }
+    }
+    if (null != sender) {
+      sender.close();
     }
   }
 
   public <T extends CoreSpan<T>> boolean publish(
       T root, int samplingPriority, final List<T> trace) {
-    return prioritizationStrategy.publish(root, samplingPriority, trace);
+    return shardOf(root).prioritizationStrategy.publish(root, samplingPriority, trace);
+  }
+
+  private Shard shardOf(CoreSpan<?> root) {
+    if (shards.length == 1) {
+      return shards[0];
+    }
+    // keep all the chunks of a trace on the same shard
+    long traceId = root.traceId();
+    int hash = (int) (traceId ^ (traceId >>> 32));
+    return shards[(hash & Integer.MAX_VALUE) % shards.length];
   }
 
   public int getCapacity() {
@@ -101,13 +162,52 @@ public class TraceProcessingWorker implements AutoCloseable {
 
   public long getRemainingCapacity() {
     // only advertise primary capacity (partly to keep test which aims to saturate the queue happy)
-    return primaryQueue.remainingCapacity();
+    long remainingCapacity = 0;
+    for (Shard shard : shards) {
+      remainingCapacity += shard.primaryQueue.remainingCapacity();
+    }
+    return remainingCapacity;
   }
 
   private static MpscBlockingConsumerArrayQueue<Object> createQueue(int capacity) {
     return new MpscBlockingConsumerArrayQueue<>(capacity);
   }
 
+  private static final class Shard {
+    private final MpscBlockingConsumerArrayQueue<Object> primaryQueue;
+    private final MpscBlockingConsumerArrayQueue<Object> secondaryQueue;
+    private final PrioritizationStrategy prioritizationStrategy;
+    private final Thread serializerThread;
+
+    Shard(
+        final int capacity,
+        final HealthMetrics healthMetrics,
+        final Monitoring monitoring,
+        final PayloadDispatcher dispatcher,
+        final PayloadSender sender,
+        final DroppingPolicy droppingPolicy,
+        final Prioritization prioritization,
+        final long flushInterval,
+        final TimeUnit timeUnit) {
+      this.primaryQueue = createQueue(capacity);
+      this.secondaryQueue = createQueue(capacity);
+      this.prioritizationStrategy =
+          prioritization.create(primaryQueue, secondaryQueue, droppingPolicy);
+      this.serializerThread =
+          newAgentThread(
+              TRACE_PROCESSOR,
+              new TraceSerializingHandler(
+                  primaryQueue,
+                  secondaryQueue,
+                  healthMetrics,
+                  monitoring,
+                  dispatcher,
+                  sender,
+                  flushInterval,
+                  timeUnit));
+    }
+  }
+
   public static class TraceSerializingHandler
       implements Runnable, MessagePassingQueue.Consumer<Object> {
 
@@ -117,6 +217,7 @@ public class TraceProcessingWorker implements AutoCloseable {
     private final long ticksRequiredToFlush;
     private final boolean doTimeFlush;
     private final PayloadDispatcher payloadDispatcher;
+    private final PayloadSender payloadSender;
     private long lastTicks;
     private final Recording dutyCycleTimer;
 
@@ -126,6 +227,7 @@ public class TraceProcessingWorker implements AutoCloseable {
         final HealthMetrics healthMetrics,
         final Monitoring monitoring,
         final PayloadDispatcher payloadDispatcher,
+        final PayloadSender payloadSender,
         final long flushInterval,
         final TimeUnit timeUnit) {
       this.primaryQueue = primaryQueue;
@@ -134,6 +236,7 @@ public class TraceProcessingWorker implements AutoCloseable {
       this.dutyCycleTimer = monitoring.newCPUTimer("tracer.duty.cycle");
       this.doTimeFlush = flushInterval > 0;
       this.payloadDispatcher = payloadDispatcher;
+      this.payloadSender = payloadSender;
       if (doTimeFlush) {
         this.lastTicks = System.nanoTime();
         this.ticksRequiredToFlush = timeUnit.toNanos(flushInterval);
@@ -152,9 +255,16 @@ public class TraceProcessingWorker implements AutoCloseable {
           List<DDSpan> trace = (List<DDSpan>) event;
           // TODO populate `_sample_rate` metric in a way that accounts for lost/dropped traces
           payloadDispatcher.addTrace(trace);
+          // the trace has been serialized, so its storage can be reused
+          SpanRecycler.recycle(trace);
         } else if (event instanceof FlushEvent) {
           payloadDispatcher.flush();
-          ((FlushEvent) event).sync();
+          if (null == payloadSender) {
+            ((FlushEvent) event).sync();
+          } else {
+            // only complete the flush once everything serialized so far has been sent
+            payloadSender.flush((FlushEvent) event);
+          }
         }
       } catch (final Throwable e) {
         if (log.isDebugEnabled()) {
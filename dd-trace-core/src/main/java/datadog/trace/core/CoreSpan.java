@@ -19,6 +19,15 @@ public interface CoreSpan<T extends CoreSpan<T>> {
 
   DDId getParentId();
 
+  /** @return the bits of the unsigned 64 bit trace id */
+  long traceId();
+
+  /** @return the bits of the unsigned 64 bit span id */
+  long spanId();
+
+  /** @return the bits of the unsigned 64 bit parent id, or zero for a root span */
+  long parentId();
+
   long getStartTime();
 
   long getDurationNano();
@@ -6,7 +6,6 @@ import static datadog.trace.core.monitor.DDAgentStatsDClientManager.statsDClient
 import static datadog.trace.util.AgentThreadFactory.AGENT_THREAD_GROUP;
 
 import datadog.trace.api.Config;
-import datadog.trace.api.DDId;
 import datadog.trace.api.IdGenerationStrategy;
 import datadog.trace.api.StatsDClient;
 import datadog.trace.api.config.GeneralConfig;
@@ -22,12 +21,16 @@ import datadog.trace.bootstrap.instrumentation.api.ScopeSource;
 import datadog.trace.common.metrics.MetricsAggregator;
 import datadog.trace.common.sampling.PrioritySampler;
 import datadog.trace.common.sampling.Sampler;
+import datadog.trace.common.writer.DDAgentWriter;
 import datadog.trace.common.writer.Writer;
 import datadog.trace.common.writer.WriterFactory;
+import datadog.trace.common.writer.ddagent.DDAgentFeaturesDiscovery;
 import datadog.trace.context.ScopeListener;
 import datadog.trace.context.TraceScope;
+import datadog.trace.core.monitor.HealthMetrics;
 import datadog.trace.core.monitor.Monitoring;
 import datadog.trace.core.monitor.Recording;
+import datadog.trace.core.processor.TracePipeline;
 import datadog.trace.core.processor.TraceProcessor;
 import datadog.trace.core.propagation.ExtractedContext;
 import datadog.trace.core.propagation.HttpCodec;
@@ -84,6 +87,25 @@ public class CoreTracer implements AgentTracer.TracerAPI {
   final Writer writer;
   /** Sampler defines the sampling policy in order to reduce the number of traces for instance */
   final Sampler<DDSpan> sampler;
+  /**
+   * When set, traces are sampled as their local root span is created, and traces which are sampled
+   * out are only recorded for stats, once this discovery finds that the agent lets the tracer drop
+   * them
+   */
+  private final DDAgentFeaturesDiscovery earlySamplingDiscovery;
+  /**
+   * When set, the storage of the tags and metrics of spans is recycled once they have been
+   * serialized, if no trace interceptor could be holding them. Only traces written to the agent
+   * writer alone are recycled.
+   */
+  final boolean recycleSpans;
+  /** When set, accessing the tags or metrics of a span after they were recycled fails */
+  final boolean detectUseAfterRecycle;
+  /**
+   * When set, completed traces are handed to these workers instead of being processed on the
+   * application thread which finished them
+   */
+  private final TraceCompletionWorkers traceCompletionWorkers;
   /** Scope manager is in charge of managing the scopes from which spans are created */
   final AgentScopeManager scopeManager;
 
@@ -100,12 +122,15 @@ public class CoreTracer implements AgentTracer.TracerAPI {
   private final int partialFlushMinSpans;
 
   private final StatsDClient statsDClient;
+  private final HealthMetrics healthMetrics;
   private final Monitoring monitoring;
   private final Monitoring performanceMonitoring;
   private final Recording traceWriteTimer;
   private final IdGenerationStrategy idGenerationStrategy;
   private final PendingTrace.Factory pendingTraceFactory;
   private final TraceProcessor traceProcessor = new TraceProcessor();
+  /** Applies the rules and computes stats in a single pass over each completed trace */
+  private final TracePipeline tracePipeline;
 
   /**
    * JVM shutdown callback, keeping a reference to it to remove this if DDTracer gets destroyed
@@ -342,11 +367,12 @@ public class CoreTracer implements AgentTracer.TracerAPI {
               config.getScopeDepthLimit(),
               this.statsDClient,
               config.isScopeStrictMode(),
-              config.isScopeInheritAsyncPropagation());
+              config.isScopeInheritAsyncPropagation(),
+              config.isScopePoolingEnabled());
       this.scopeManager = csm;
 
       if (config.isProfilingEnabled()) {
-        createScopeEventFactory(csm);
+        createScopeEventFactory(csm, config.getProfilingScopeMode());
       }
     } else {
       this.scopeManager = scopeManager;
@@ -357,15 +383,59 @@ public class CoreTracer implements AgentTracer.TracerAPI {
     } else {
       this.writer = writer;
     }
+    // traces sampled out early are not sent to the agent, so can only be
+    // accounted for when the tracer computes stats
+    if (config.isTraceEarlySamplingEnabled()
+        && config.isTracerMetricsEnabled()
+        && sampler instanceof PrioritySampler
+        && this.writer instanceof DDAgentWriter) {
+      this.earlySamplingDiscovery = ((DDAgentWriter) this.writer).getFeaturesDiscovery();
+    } else {
+      this.earlySamplingDiscovery = null;
+      if (config.isTraceEarlySamplingEnabled()) {
+        log.warn(
+            "Early sampling requires priority sampling, tracer metrics and the agent writer,"
+                + " ignoring");
+      }
+    }
+    // other writers, including a MultiWriter wrapping an agent writer, may hold on to the spans
+    // after the agent writer has serialized them
+    this.recycleSpans =
+        config.isTraceSpanRecyclingEnabled() && this.writer.getClass() == DDAgentWriter.class;
+    this.detectUseAfterRecycle = recycleSpans && config.isTraceSpanRecyclingDebug();
+    // share the agent writer's health metrics, which it starts and stops
+    this.healthMetrics =
+        this.writer instanceof DDAgentWriter
+            ? ((DDAgentWriter) this.writer).healthMetrics
+            : new HealthMetrics(this.statsDClient);
 
     this.pendingTraceBuffer =
-        strictTraceWrites ? PendingTraceBuffer.mute() : PendingTraceBuffer.delaying();
+        strictTraceWrites
+            ? PendingTraceBuffer.mute()
+            : PendingTraceBuffer.delaying(config.getPendingTraceBufferSize());
     pendingTraceFactory = new PendingTrace.Factory(this, pendingTraceBuffer, strictTraceWrites);
     pendingTraceBuffer.start();
 
     this.writer.start();
-
-    metricsAggregator = createMetricsAggregator(config);
+    // already started by the agent writer, otherwise owned by the tracer
+    healthMetrics.start();
+
+    metricsAggregator = createMetricsAggregator(config, healthMetrics);
+    // the rules can rename resources, so must see each span before the stats do
+    tracePipeline = new TracePipeline(traceProcessor, metricsAggregator);
+
+    // the workers complete traces through the pipeline, so are only started once it is built
+    if (config.isTraceCompletionAsyncEnabled()) {
+      traceCompletionWorkers =
+          new TraceCompletionWorkers(
+              this,
+              healthMetrics,
+              config.getTraceCompletionWorkers(),
+              config.getTraceCompletionQueueSize());
+      traceCompletionWorkers.start();
+    } else {
+      traceCompletionWorkers = null;
+    }
     // Schedule the metrics aggregator to begin reporting after a random delay of 1 to 10 seconds
     // (using milliseconds granularity.) This avoids a fleet of traced applications starting at the
     // same time from sending metrics in sync.
@@ -412,7 +482,7 @@ public class CoreTracer implements AgentTracer.TracerAPI {
    *
    * @return a PendingTrace
    */
-  PendingTrace createTrace(DDId id) {
+  PendingTrace createTrace(long id) {
     return pendingTraceFactory.create(id);
   }
 
@@ -541,8 +611,7 @@ public class CoreTracer implements AgentTracer.TracerAPI {
   }
 
   /**
-   * We use the sampler to know if the trace has to be reported/written. The sampler is called on
-   * the first span (root span) of the trace. If the trace is marked as a sample, we report it.
+   * Completes the trace, or hands it to the trace completion workers when there are any.
    *
    * @param trace a list of the spans related to the same trace
    */
@@ -550,6 +619,21 @@ public class CoreTracer implements AgentTracer.TracerAPI {
     if (trace.isEmpty()) {
       return;
     }
+    if (null == traceCompletionWorkers) {
+      completeTrace(trace);
+    } else if (!traceCompletionWorkers.publish(trace)) {
+      // the workers can't keep up, and the application thread mustn't do their work instead
+      writer.incrementDropCounts(trace.size());
+    }
+  }
+
+  /**
+   * We use the sampler to know if the trace has to be reported/written. The sampler is called on
+   * the first span (root span) of the trace. If the trace is marked as a sample, we report it.
+   *
+   * @param trace a list of the spans related to the same trace
+   */
+  void completeTrace(final List<DDSpan> trace) {
     List<DDSpan> writtenTrace = trace;
     if (!interceptors.isEmpty()) {
       Collection<? extends MutableSpan> interceptedTrace = new ArrayList<>(trace);
@@ -571,16 +655,21 @@ public class CoreTracer implements AgentTracer.TracerAPI {
     }
 
     if (!writtenTrace.isEmpty()) {
-      writtenTrace = traceProcessor.onTraceComplete(writtenTrace);
-
-      boolean forceKeep = metricsAggregator.publish(writtenTrace);
+      int signals = tracePipeline.process(writtenTrace);
+      boolean forceKeep = (signals & TracePipeline.FORCE_KEEP) != 0;
 
       DDSpan rootSpan = writtenTrace.get(0).getLocalRootSpan();
       setSamplingPriorityIfNecessary(rootSpan);
 
       DDSpan spanToSample = rootSpan == null ? writtenTrace.get(0) : rootSpan;
       spanToSample.forceKeep(forceKeep);
-      if (forceKeep || sampler.sample(spanToSample)) {
+      // traces sampled out early are only counted by the stats, unless a new key or an
+      // error keeps them, in which case they are sent with the tags the stats needed
+      if (forceKeep
+          || (!spanToSample.context().isLightweight() && sampler.sample(spanToSample))) {
+        if (recycleSpans && interceptors.isEmpty()) {
+          spanToSample.context().getTrace().setRecyclable();
+        }
         writer.write(writtenTrace);
       } else {
         // with span streaming this won't work - it needs to be changed
@@ -592,6 +681,27 @@ public class CoreTracer implements AgentTracer.TracerAPI {
     }
   }
 
+  /**
+   * Samples the trace as soon as its local root span is created, using the tags it was created
+   * with, so that a trace which is going to be dropped doesn't record more than stats need.
+   */
+  void sampleEarly(final DDSpan rootSpan) {
+    // until the agent is known to accept traces being dropped by the tracer, every trace is
+    // sampled as it's written, so that the agent still gets the ones it computes stats from
+    if (!earlySamplingDiscovery.supportsDropping()) {
+      return;
+    }
+    setSamplingPriorityIfNecessary(rootSpan);
+    switch (rootSpan.context().getSamplingPriority()) {
+      case PrioritySampling.SAMPLER_DROP:
+      case PrioritySampling.USER_DROP:
+        rootSpan.context().recordLightweight();
+        break;
+      default:
+        break;
+    }
+  }
+
   @SuppressWarnings("unchecked")
   void setSamplingPriorityIfNecessary(final DDSpan rootSpan) {
     // There's a race where multiple threads can see PrioritySampling.UNSET here
@@ -606,6 +716,11 @@ public class CoreTracer implements AgentTracer.TracerAPI {
     }
   }
 
+  /** @return true if the tag is read by the pipeline which completes traces */
+  boolean isReadWhenCompleting(final String tag) {
+    return tracePipeline.reads(tag);
+  }
+
   @Override
   public String getTraceId() {
     final AgentSpan activeSpan = activeSpan();
@@ -639,7 +754,11 @@ public class CoreTracer implements AgentTracer.TracerAPI {
   @Override
   public void close() {
     pendingTraceBuffer.close();
+    if (null != traceCompletionWorkers) {
+      traceCompletionWorkers.close();
+    }
     writer.close();
+    healthMetrics.close();
     statsDClient.close();
     metricsAggregator.close();
   }
@@ -647,17 +766,24 @@ public class CoreTracer implements AgentTracer.TracerAPI {
   @Override
   public void flush() {
     pendingTraceBuffer.flush();
+    if (null != traceCompletionWorkers) {
+      traceCompletionWorkers.flush(1, TimeUnit.SECONDS);
+    }
     writer.flush();
   }
 
   @SuppressForbidden
-  private static void createScopeEventFactory(ContinuableScopeManager continuableScopeManager) {
+  private static void createScopeEventFactory(
+      ContinuableScopeManager continuableScopeManager, String scopeMode) {
+    // sampling the active scope of each thread is cheaper than a JFR event per activation
+    String listenerClassName =
+        "sampled".equalsIgnoreCase(scopeMode)
+            ? "datadog.trace.core.jfr.openjdk.ActiveScopeSampler"
+            : "datadog.trace.core.jfr.openjdk.ScopeEventFactory";
     try {
       ExtendedScopeListener scopeListener =
           (ExtendedScopeListener)
-              Class.forName("datadog.trace.core.jfr.openjdk.ScopeEventFactory")
-                  .getDeclaredConstructor()
-                  .newInstance();
+              Class.forName(listenerClassName).getDeclaredConstructor().newInstance();
 
       continuableScopeManager.addExtendedScopeListener(scopeListener);
     } catch (final Throwable e) {
@@ -744,7 +870,11 @@ public class CoreTracer implements AgentTracer.TracerAPI {
     }
 
     private DDSpan buildSpan() {
-      return DDSpan.create(timestampMicro, buildSpanContext());
+      DDSpan span = DDSpan.create(timestampMicro, buildSpanContext());
+      if (null != earlySamplingDiscovery && span.getLocalRootSpan() == span) {
+        sampleEarly(span);
+      }
+      return span;
     }
 
     @Override
@@ -831,9 +961,9 @@ public class CoreTracer implements AgentTracer.TracerAPI {
      * @return the context
      */
     private DDSpanContext buildSpanContext() {
-      final DDId traceId;
-      final DDId spanId = idGenerationStrategy.generate();
-      final DDId parentSpanId;
+      final long traceId;
+      final long spanId = idGenerationStrategy.generateId();
+      final long parentSpanId;
       final Map<String, String> baggage;
       final PendingTrace parentTrace;
       final int samplingPriority;
@@ -861,8 +991,8 @@ public class CoreTracer implements AgentTracer.TracerAPI {
       // root span, parentContext will be null at this point.
       if (parentContext instanceof DDSpanContext) {
         final DDSpanContext ddsc = (DDSpanContext) parentContext;
-        traceId = ddsc.getTraceId();
-        parentSpanId = ddsc.getSpanId();
+        traceId = ddsc.traceId();
+        parentSpanId = ddsc.spanId();
         baggage = ddsc.getBaggageItems();
         parentTrace = ddsc.getTrace();
         samplingPriority = PrioritySampling.UNSET;
@@ -878,14 +1008,14 @@ public class CoreTracer implements AgentTracer.TracerAPI {
         if (parentContext instanceof ExtractedContext) {
           // Propagate external trace
           final ExtractedContext extractedContext = (ExtractedContext) parentContext;
-          traceId = extractedContext.getTraceId();
-          parentSpanId = extractedContext.getSpanId();
+          traceId = extractedContext.traceId();
+          parentSpanId = extractedContext.spanId();
           samplingPriority = extractedContext.getSamplingPriority();
           baggage = extractedContext.getBaggage();
         } else {
           // Start a new trace
-          traceId = IdGenerationStrategy.RANDOM.generate();
-          parentSpanId = DDId.ZERO;
+          traceId = IdGenerationStrategy.RANDOM.generateId();
+          parentSpanId = 0;
           samplingPriority = PrioritySampling.UNSET;
           baggage = null;
         }
@@ -136,7 +136,7 @@ public class DDSpan implements AgentSpan, CoreSpan<DDSpan> {
    * @return true if root, false otherwise
    */
   public final boolean isRootSpan() {
-    return DDId.ZERO.equals(context.getParentId());
+    return context.parentId() == 0;
   }
 
   @Override
@@ -154,8 +154,8 @@ public class DDSpan implements AgentSpan, CoreSpan<DDSpan> {
   public boolean isSameTrace(final AgentSpan otherSpan) {
     // FIXME [API] AgentSpan or AgentSpan.Context should have a "getTraceId()" type method
     if (otherSpan instanceof DDSpan) {
-      // minor optimization to avoid BigInteger.toString()
-      return getTraceId().equals(otherSpan.getTraceId());
+      // minor optimization to avoid materializing the ids
+      return context.traceId() == ((DDSpan) otherSpan).context.traceId();
     }
 
     return false;
@@ -169,6 +169,10 @@ public class DDSpan implements AgentSpan, CoreSpan<DDSpan> {
   @Override
   public DDSpan addThrowable(final Throwable error) {
     setError(true);
+    if (context.isLightweight()) {
+      // the trace won't be written, so don't pay for the stack trace
+      return this;
+    }
 
     setTag(DDTags.ERROR_MSG, error.getMessage());
     setTag(DDTags.ERROR_TYPE, error.getClass().getName());
@@ -371,6 +375,21 @@ public class DDSpan implements AgentSpan, CoreSpan<DDSpan> {
     return context.getParentId();
   }
 
+  @Override
+  public long traceId() {
+    return context.traceId();
+  }
+
+  @Override
+  public long spanId() {
+    return context.spanId();
+  }
+
+  @Override
+  public long parentId() {
+    return context.parentId();
+  }
+
   @Override
   public CharSequence getResourceName() {
     return context.getResourceName();
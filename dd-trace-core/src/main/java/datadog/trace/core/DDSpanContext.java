@@ -14,10 +14,12 @@ import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
 import datadog.trace.core.taginterceptor.TagInterceptor;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,9 +51,15 @@ public class DDSpanContext implements AgentSpan.Context {
   private volatile Map<String, String> baggageItems;
 
   // Not Shared with other span contexts
-  private final DDId traceId;
-  private final DDId spanId;
-  private final DDId parentId;
+  // the bits of the unsigned 64 bit ids, materialized as DDIds on demand
+  private final long traceId;
+  private final long spanId;
+  private final long parentId;
+  // DDIds cache their string representation, so cache them in turn, created lazily since few
+  // spans need them: concurrent callers may both create one, but each reads a complete DDId
+  private volatile DDId traceDDId;
+  private volatile DDId spanDDId;
+  private volatile DDId parentDDId;
 
   private final String parentServiceName;
 
@@ -67,7 +75,7 @@ public class DDSpanContext implements AgentSpan.Context {
    * rather read and accessed in a serial fashion on thread after thread. The synchronization can
    * then be wrapped around bulk operations to minimize the costly atomic operations.
    */
-  private final Map<String, Object> unsafeTags;
+  private final TagMap unsafeTags;
 
   /** The service name is required, otherwise the span are dropped by the agent */
   private volatile String serviceName;
@@ -95,8 +103,13 @@ public class DDSpanContext implements AgentSpan.Context {
   private volatile int samplingPriorityV1 = PrioritySampling.UNSET;
   /** The origin of the trace. (eg. Synthetics) */
   private final String origin;
-  /** Metrics on the span - access synchronized on the spanId */
-  private volatile Map<CharSequence, Number> metrics = EMPTY_METRICS;
+  /** Metrics on the span - access synchronized on the map, created with the first metric */
+  private volatile MetricMap metrics;
+
+  private static final AtomicReferenceFieldUpdater<DDSpanContext, MetricMap> METRICS_UPDATER =
+      AtomicReferenceFieldUpdater.newUpdater(DDSpanContext.class, MetricMap.class, "metrics");
+  /** Set once the storage of the tags and metrics has been recycled */
+  private volatile boolean recycled;
 
   public DDSpanContext(
       final DDId traceId,
@@ -113,13 +126,43 @@ public class DDSpanContext implements AgentSpan.Context {
       final CharSequence spanType,
       final int tagsSize,
       final PendingTrace trace) {
+    this(
+        traceId.toLong(),
+        spanId.toLong(),
+        parentId.toLong(),
+        parentServiceName,
+        serviceName,
+        operationName,
+        resourceName,
+        samplingPriority,
+        origin,
+        baggageItems,
+        errorFlag,
+        spanType,
+        tagsSize,
+        trace);
+  }
+
+  public DDSpanContext(
+      final long traceId,
+      final long spanId,
+      final long parentId,
+      final CharSequence parentServiceName,
+      final String serviceName,
+      final CharSequence operationName,
+      final CharSequence resourceName,
+      final int samplingPriority,
+      final String origin,
+      final Map<String, String> baggageItems,
+      final boolean errorFlag,
+      final CharSequence spanType,
+      final int tagsSize,
+      final PendingTrace trace) {
 
     assert trace != null;
     this.trace = trace;
+    this.unsafeTags = new TagMap(trace.getTracer().recycleSpans);
 
-    assert traceId != null;
-    assert spanId != null;
-    assert parentId != null;
     this.traceId = traceId;
     this.spanId = spanId;
     this.parentId = parentId;
@@ -131,11 +174,6 @@ public class DDSpanContext implements AgentSpan.Context {
       this.baggageItems = new ConcurrentHashMap<>(baggageItems);
     }
 
-    // The +1 is the magic number from the tags below that we set at the end,
-    // and "* 4 / 3" is to make sure that we don't resize immediately
-    final int capacity = Math.max((tagsSize <= 0 ? 3 : (tagsSize + 1)) * 4 / 3, 8);
-    this.unsafeTags = new HashMap<>(capacity);
-
     setServiceName(serviceName);
     this.operationName = operationName;
     this.resourceName = resourceName;
@@ -158,15 +196,42 @@ public class DDSpanContext implements AgentSpan.Context {
 
   @Override
   public DDId getTraceId() {
-    return traceId;
+    DDId id = traceDDId;
+    if (null == id) {
+      traceDDId = id = DDId.from(traceId);
+    }
+    return id;
   }
 
   public DDId getParentId() {
-    return parentId;
+    DDId id = parentDDId;
+    if (null == id) {
+      parentDDId = id = DDId.from(parentId);
+    }
+    return id;
   }
 
   @Override
   public DDId getSpanId() {
+    DDId id = spanDDId;
+    if (null == id) {
+      spanDDId = id = DDId.from(spanId);
+    }
+    return id;
+  }
+
+  /** @return the bits of the unsigned 64 bit trace id */
+  public long traceId() {
+    return traceId;
+  }
+
+  /** @return the bits of the unsigned 64 bit parent id */
+  public long parentId() {
+    return parentId;
+  }
+
+  /** @return the bits of the unsigned 64 bit span id */
+  public long spanId() {
     return spanId;
   }
 
@@ -252,6 +317,10 @@ public class DDSpanContext implements AgentSpan.Context {
     // if the user really wants to keep this trace chunk, we will let them,
     // even if the old sampling priority has already propagated
     SAMPLING_PRIORITY_UPDATER.set(this, USER_KEEP);
+    if (trace != null) {
+      // the tags which have already been discarded can't be recovered
+      trace.setLightweight(false);
+    }
   }
 
   /** @return if sampling priority was set by this method invocation */
@@ -355,22 +424,93 @@ public class DDSpanContext implements AgentSpan.Context {
   }
 
   public Map<CharSequence, Number> getUnsafeMetrics() {
-    return metrics;
+    checkNotRecycled();
+    MetricMap metrics = this.metrics;
+    return null == metrics ? EMPTY_METRICS : metrics;
   }
 
   public void setMetric(final CharSequence key, final Number value) {
-    if (metrics == EMPTY_METRICS) {
-      // synchronize on spanId to not contend with sample rates being set
-      synchronized (spanId) {
-        if (metrics == EMPTY_METRICS) {
-          metrics = new HashMap<>(4);
-          metrics.put(key, value instanceof Float ? value.doubleValue() : value);
-          return;
+    MetricMap metrics = metrics();
+    synchronized (metrics) {
+      if (this.metrics == metrics) {
+        metrics.put(key, value);
+      }
+    }
+  }
+
+  public void setMetric(final CharSequence key, final int value) {
+    MetricMap metrics = metrics();
+    synchronized (metrics) {
+      if (this.metrics == metrics) {
+        metrics.putInt(key, value);
+      }
+    }
+  }
+
+  public void setMetric(final CharSequence key, final long value) {
+    MetricMap metrics = metrics();
+    synchronized (metrics) {
+      if (this.metrics == metrics) {
+        metrics.putLong(key, value);
+      }
+    }
+  }
+
+  public void setMetric(final CharSequence key, final double value) {
+    MetricMap metrics = metrics();
+    synchronized (metrics) {
+      if (this.metrics == metrics) {
+        metrics.putDouble(key, value);
+      }
+    }
+  }
+
+  private MetricMap metrics() {
+    checkNotRecycled();
+    MetricMap metrics = this.metrics;
+    if (null == metrics) {
+      boolean recycleSpans = trace.getTracer().recycleSpans;
+      MetricMap created = recycleSpans ? SpanRecycler.METRICS.poll() : null;
+      if (null == created) {
+        created = new MetricMap();
+      }
+      if (METRICS_UPDATER.compareAndSet(this, null, created)) {
+        metrics = created;
+      } else {
+        // another thread set the first metric concurrently
+        metrics = this.metrics;
+        if (recycleSpans) {
+          SpanRecycler.METRICS.recycle(created);
         }
       }
     }
-    synchronized (spanId) {
-      metrics.put(key, value instanceof Float ? value.doubleValue() : value);
+    return metrics;
+  }
+
+  /**
+   * Gives the storage of the tags and metrics to the span recycler, once the span has been
+   * serialized and nothing else is expected to read them.
+   */
+  void recycle() {
+    recycled = true;
+    synchronized (unsafeTags) {
+      unsafeTags.recycle();
+    }
+    // detached before taking the lock of the map, so a metric set concurrently is either put
+    // before the map is cleared, or dropped once the setter sees the map is no longer this one's
+    MetricMap metrics = METRICS_UPDATER.getAndSet(this, null);
+    if (null != metrics) {
+      synchronized (metrics) {
+        metrics.clear();
+      }
+      SpanRecycler.METRICS.recycle(metrics);
+    }
+  }
+
+  private void checkNotRecycled() {
+    if (recycled && trace.getTracer().detectUseAfterRecycle) {
+      throw new IllegalStateException(
+          "Tags or metrics of span " + DDId.toUnsignedString(spanId) + " used after recycling");
     }
   }
 
@@ -383,9 +523,11 @@ public class DDSpanContext implements AgentSpan.Context {
   public void setTag(final String tag, final Object value) {
     if (null == value || "".equals(value)) {
       synchronized (unsafeTags) {
+        checkNotRecycled();
         unsafeTags.remove(tag);
       }
-    } else if (!trace.getTracer().getTagInterceptor().interceptTag(this, tag, value)) {
+    } else if (!trace.getTracer().getTagInterceptor().interceptTag(this, tag, value)
+        && (!trace.isLightweight() || isNeededForStats(tag))) {
       synchronized (unsafeTags) {
         unsafeSetTag(tag, value);
       }
@@ -398,16 +540,50 @@ public class DDSpanContext implements AgentSpan.Context {
     }
 
     TagInterceptor tagInterceptor = trace.getTracer().getTagInterceptor();
+    boolean lightweight = trace.isLightweight();
     synchronized (unsafeTags) {
       for (final Map.Entry<String, ? extends Object> tag : map.entrySet()) {
-        if (!tagInterceptor.interceptTag(this, tag.getKey(), tag.getValue())) {
+        if (!tagInterceptor.interceptTag(this, tag.getKey(), tag.getValue())
+            && (!lightweight || isNeededForStats(tag.getKey()))) {
           unsafeSetTag(tag.getKey(), tag.getValue());
         }
       }
     }
   }
 
+  /** @return true if the trace has been sampled out and is recorded for stats only */
+  public boolean isLightweight() {
+    return trace.isLightweight();
+  }
+
+  /**
+   * Records the rest of the trace for stats only, once it has been sampled out as its local root
+   * span was created, and discards the tags of this span which stats don't need.
+   */
+  void recordLightweight() {
+    trace.setLightweight(true);
+    synchronized (unsafeTags) {
+      Iterator<String> it = unsafeTags.keySet().iterator();
+      while (it.hasNext()) {
+        String tag = it.next();
+        // the origin comes with the trace, rather than being recorded by it
+        if (!ORIGIN_KEY.equals(tag) && !isNeededForStats(tag)) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return true if the tag is read when completing the trace, either to compute stats or by the
+   *     rules which name resources before stats are computed
+   */
+  private boolean isNeededForStats(String tag) {
+    return trace.getTracer().isReadWhenCompleting(tag);
+  }
+
   void unsafeSetTag(final String tag, final Object value) {
+    checkNotRecycled();
     unsafeTags.put(tag, value);
   }
 
@@ -433,11 +609,13 @@ public class DDSpanContext implements AgentSpan.Context {
    * @return the value associated with the tag
    */
   public Object unsafeGetTag(final String tag) {
+    checkNotRecycled();
     return unsafeTags.get(tag);
   }
 
   public Map<String, Object> getTags() {
     synchronized (unsafeTags) {
+      checkNotRecycled();
       Map<String, Object> tags = new HashMap<>(unsafeTags);
       tags.put(DDTags.THREAD_ID, threadId);
       tags.put(DDTags.THREAD_NAME, threadName.toString());
@@ -447,6 +625,7 @@ public class DDSpanContext implements AgentSpan.Context {
 
   public void processTagsAndBaggage(final MetadataConsumer consumer) {
     synchronized (unsafeTags) {
+      checkNotRecycled();
       consumer.accept(new Metadata(threadId, threadName, unsafeTags, baggageItems));
     }
   }
@@ -456,11 +635,11 @@ public class DDSpanContext implements AgentSpan.Context {
     final StringBuilder s =
         new StringBuilder()
             .append("DDSpan [ t_id=")
-            .append(traceId)
+            .append(DDId.toUnsignedString(traceId))
             .append(", s_id=")
-            .append(spanId)
+            .append(DDId.toUnsignedString(spanId))
             .append(", p_id=")
-            .append(parentId)
+            .append(DDId.toUnsignedString(parentId))
             .append(" ] trace=")
             .append(getServiceName())
             .append("/")
@@ -469,19 +648,29 @@ public class DDSpanContext implements AgentSpan.Context {
             .append(getResourceName())
             .append(" metrics=");
 
-    synchronized (spanId) {
-      Map<CharSequence, Number> metricsSnapshot = new TreeMap<>(getUnsafeMetrics());
-      if (samplingPriorityV1 != PrioritySampling.UNSET) {
-        metricsSnapshot.put(PRIORITY_SAMPLING_KEY, samplingPriorityV1);
+    MetricMap metrics = this.metrics;
+    Map<CharSequence, Number> metricsSnapshot;
+    if (null == metrics) {
+      metricsSnapshot = new TreeMap<>();
+    } else {
+      synchronized (metrics) {
+        metricsSnapshot = new TreeMap<CharSequence, Number>(metrics);
       }
-      s.append(metricsSnapshot);
     }
+    if (samplingPriorityV1 != PrioritySampling.UNSET) {
+      metricsSnapshot.put(PRIORITY_SAMPLING_KEY, samplingPriorityV1);
+    }
+    s.append(metricsSnapshot);
     if (errorFlag) {
       s.append(" *errored*");
     }
 
-    synchronized (unsafeTags) {
-      s.append(" tags=").append(new TreeMap<>(getTags()));
+    if (recycled) {
+      s.append(" *recycled*");
+    } else {
+      synchronized (unsafeTags) {
+        s.append(" tags=").append(new TreeMap<>(getTags()));
+      }
     }
     return s.toString();
   }
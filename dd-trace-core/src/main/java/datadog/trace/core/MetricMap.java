@@ -0,0 +1,242 @@
+package datadog.trace.core;
+
+import datadog.trace.core.serialization.Writable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Not thread-safe. The metrics of a span, stored as parallel arrays of keys and unboxed values, so
+ * setting a metric allocates nothing once the arrays are large enough. Values are only boxed when
+ * read through the {@link java.util.Map} interface; serializers write them by index instead, with
+ * {@link #writeValueAt(int, Writable)}.
+ */
+public final class MetricMap extends AbstractMap<CharSequence, Number> {
+
+  private static final byte INT = 0;
+  private static final byte LONG = 1;
+  private static final byte DOUBLE = 2;
+  // any other type of number, kept as it was set
+  private static final byte OTHER = 3;
+
+  private CharSequence[] keys;
+  private long[] values;
+  private byte[] types;
+  // only allocated for numbers of other types
+  private Number[] others;
+  private int size;
+
+  public MetricMap() {
+    this(4);
+  }
+
+  public MetricMap(int capacity) {
+    this.keys = new CharSequence[capacity];
+    this.values = new long[capacity];
+    this.types = new byte[capacity];
+  }
+
+  public void putInt(CharSequence key, int value) {
+    set(key, INT, value);
+  }
+
+  public void putLong(CharSequence key, long value) {
+    set(key, LONG, value);
+  }
+
+  public void putDouble(CharSequence key, double value) {
+    set(key, DOUBLE, Double.doubleToRawLongBits(value));
+  }
+
+  @Override
+  public Number put(CharSequence key, Number value) {
+    Number previous = get(key);
+    if (value instanceof Integer) {
+      putInt(key, value.intValue());
+    } else if (value instanceof Long) {
+      putLong(key, value.longValue());
+    } else if (value instanceof Double || value instanceof Float) {
+      putDouble(key, value.doubleValue());
+    } else if (null == value) {
+      remove(key);
+    } else {
+      int index = set(key, OTHER, 0);
+      if (null == others) {
+        others = new Number[keys.length];
+      }
+      others[index] = value;
+    }
+    return previous;
+  }
+
+  @Override
+  public Number get(Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : valueAt(index);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public Number remove(Object key) {
+    int index = indexOf(key);
+    if (index < 0) {
+      return null;
+    }
+    Number previous = valueAt(index);
+    int last = --size;
+    keys[index] = keys[last];
+    values[index] = values[last];
+    types[index] = types[last];
+    keys[last] = null;
+    if (null != others) {
+      others[index] = others[last];
+      others[last] = null;
+    }
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(keys, 0, size, null);
+    if (null != others) {
+      Arrays.fill(others, 0, size, null);
+    }
+    size = 0;
+  }
+
+  public CharSequence keyAt(int index) {
+    return keys[index];
+  }
+
+  /** @return the boxed value at the index */
+  public Number valueAt(int index) {
+    switch (types[index]) {
+      case INT:
+        return (int) values[index];
+      case LONG:
+        return values[index];
+      case DOUBLE:
+        return doubleAt(index);
+      default:
+        return others[index];
+    }
+  }
+
+  /** Writes the value at the index without boxing it, unless it is of some other type */
+  public void writeValueAt(int index, Writable writable) {
+    switch (types[index]) {
+      case INT:
+        writable.writeInt((int) values[index]);
+        break;
+      case LONG:
+        writable.writeLong(values[index]);
+        break;
+      case DOUBLE:
+        writable.writeDouble(doubleAt(index));
+        break;
+      default:
+        writable.writeObject(others[index], null);
+    }
+  }
+
+  @Override
+  public Set<Entry<CharSequence, Number>> entrySet() {
+    return new AbstractSet<Entry<CharSequence, Number>>() {
+      @Override
+      public Iterator<Entry<CharSequence, Number>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private double doubleAt(int index) {
+    return Double.longBitsToDouble(values[index]);
+  }
+
+  private int set(CharSequence key, byte type, long value) {
+    int index = indexOf(key);
+    if (index < 0) {
+      if (size == keys.length) {
+        int capacity = Math.max(4, size << 1);
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        types = Arrays.copyOf(types, capacity);
+        if (null != others) {
+          others = Arrays.copyOf(others, capacity);
+        }
+      }
+      index = size++;
+      keys[index] = key;
+    }
+    values[index] = value;
+    types[index] = type;
+    if (type != OTHER && null != others) {
+      others[index] = null;
+    }
+    return index;
+  }
+
+  private int indexOf(Object key) {
+    if (null == key) {
+      return -1;
+    }
+    for (int i = 0; i < size; ++i) {
+      if (key == keys[i] || key.equals(keys[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private final class EntryIterator implements Iterator<Entry<CharSequence, Number>> {
+    private int next = 0;
+    private int current = -1;
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public Entry<CharSequence, Number> next() {
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      current = next++;
+      return new SimpleImmutableEntry<>(keys[current], valueAt(current));
+    }
+
+    @Override
+    public void remove() {
+      if (current < 0) {
+        throw new IllegalStateException();
+      }
+      MetricMap.this.remove(keys[current]);
+      // the last metric has been moved to the current position
+      next = current;
+      current = -1;
+    }
+  }
+}
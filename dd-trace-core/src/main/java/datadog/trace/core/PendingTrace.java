@@ -5,9 +5,7 @@ import datadog.trace.bootstrap.instrumentation.api.AgentScope;
 import datadog.trace.bootstrap.instrumentation.api.AgentTrace;
 import datadog.trace.core.monitor.Recording;
 import datadog.trace.core.util.Clock;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import javax.annotation.Nonnull;
@@ -47,15 +45,13 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
       this.strictTraceWrites = strictTraceWrites;
     }
 
-    PendingTrace create(@Nonnull DDId traceId) {
+    PendingTrace create(long traceId) {
       return new PendingTrace(tracer, traceId, pendingTraceBuffer, strictTraceWrites);
     }
   }
 
-  private static final List<DDSpan> EMPTY = new ArrayList<>(0);
-
   private final CoreTracer tracer;
-  private final DDId traceId;
+  private final long traceId;
   private final PendingTraceBuffer pendingTraceBuffer;
   private final boolean strictTraceWrites;
 
@@ -66,9 +62,9 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
   /** Nano second ticks value at trace start */
   private final long startNanoTicks;
 
-  private final ConcurrentLinkedDeque<DDSpan> finishedSpans = new ConcurrentLinkedDeque<>();
+  private final SpanAccumulator finishedSpans = new SpanAccumulator();
 
-  // We must maintain a separate count because ConcurrentLinkedDeque.size() is a linear operation.
+  // We must maintain a separate count because SpanAccumulator.size() is a linear operation.
   private volatile int completedSpanCount = 0;
   private static final AtomicIntegerFieldUpdater<PendingTrace> COMPLETED_SPAN_COUNT =
       AtomicIntegerFieldUpdater.newUpdater(PendingTrace.class, "completedSpanCount");
@@ -88,6 +84,18 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
 
   private volatile boolean rootSpanWritten = false;
 
+  /**
+   * Set when the trace has been sampled out as its local root span was created, so that its spans
+   * only record what is needed to compute stats.
+   */
+  private volatile boolean lightweight = false;
+
+  /**
+   * Set when the trace is written and nothing but the writer holds its spans, so that their
+   * storage can be recycled once they have been serialized.
+   */
+  private volatile boolean recyclable = false;
+
   /**
    * Updated with the latest nanoTicks each time getCurrentTimeNano is called (at the start and
    * finish of each span).
@@ -96,7 +104,7 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
 
   private PendingTrace(
       @Nonnull CoreTracer tracer,
-      @Nonnull DDId traceId,
+      long traceId,
       @Nonnull PendingTraceBuffer pendingTraceBuffer,
       boolean strictTraceWrites) {
     this.tracer = tracer;
@@ -112,6 +120,22 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
     return tracer;
   }
 
+  boolean isLightweight() {
+    return lightweight;
+  }
+
+  void setLightweight(boolean lightweight) {
+    this.lightweight = lightweight;
+  }
+
+  boolean isRecyclable() {
+    return recyclable;
+  }
+
+  void setRecyclable() {
+    this.recyclable = true;
+  }
+
   /**
    * Current timestamp in nanoseconds.
    *
@@ -144,7 +168,7 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
   }
 
   void addFinishedSpan(final DDSpan span) {
-    finishedSpans.addFirst(span);
+    finishedSpans.add(span);
     // There is a benign race here where the span added above can get written out by a writer in
     // progress before the count has been incremented. It's being taken care of in the internal
     // write method.
@@ -158,11 +182,7 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
 
   /** @return Long.MAX_VALUE if no spans finished. */
   public long oldestFinishedTime() {
-    long oldest = Long.MAX_VALUE;
-    for (DDSpan span : finishedSpans) {
-      oldest = Math.min(oldest, span.getStartTime() + span.getDurationNano());
-    }
-    return oldest;
+    return finishedSpans.oldestFinishedTime();
   }
 
   /**
@@ -205,7 +225,8 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
   private void partialFlush() {
     int size = write(true);
     if (log.isDebugEnabled()) {
-      log.debug("t_id={} -> wrote partial trace of size {}", traceId, size);
+      log.debug(
+          "t_id={} -> wrote partial trace of size {}", DDId.toUnsignedString(traceId), size);
     }
   }
 
@@ -217,34 +238,24 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
   private int write(boolean isPartial) {
     if (!finishedSpans.isEmpty()) {
       try (Recording recording = tracer.writeTimer()) {
-        // Only one writer at a time
-        final List<DDSpan> trace;
-        synchronized (this) {
-          if (!isPartial) {
-            rootSpanWritten = true;
-          }
-          int size = size();
-          // If we get here and size is below 0, then the writer before us wrote out at least one
-          // more trace than the size it had when it started. Those span(s) had been added to
-          // finishedSpans by some other thread(s) while the existing spans were being written, but
-          // the completedSpanCount has not yet been incremented. This means that eventually the
-          // count(s) will be incremented, and any new spans added during the period that the count
-          // was negative will be written by someone even if we don't write them right now.
-          if (size > 0 && (!isPartial || size > tracer.getPartialFlushMinSpans())) {
-            trace = new ArrayList<>(size);
-            DDSpan span = finishedSpans.pollFirst();
-            while (null != span) {
-              trace.add(span);
-              span = finishedSpans.pollFirst();
-            }
-          } else {
-            trace = EMPTY;
-          }
+        if (!isPartial) {
+          rootSpanWritten = true;
         }
-        if (!trace.isEmpty()) {
-          COMPLETED_SPAN_COUNT.addAndGet(this, -trace.size());
-          tracer.write(trace);
-          return trace.size();
+        int size = size();
+        // If we get here and size is below 0, then the writer before us wrote out at least one
+        // more trace than the size it had when it started. Those span(s) had been added to
+        // finishedSpans by some other thread(s) while the existing spans were being written, but
+        // the completedSpanCount has not yet been incremented. This means that eventually the
+        // count(s) will be incremented, and any new spans added during the period that the count
+        // was negative will be written by someone even if we don't write them right now.
+        if (size > 0 && (!isPartial || size > tracer.getPartialFlushMinSpans())) {
+          // Concurrent writers each take a disjoint set of spans
+          final List<DDSpan> trace = finishedSpans.drain();
+          if (!trace.isEmpty()) {
+            COMPLETED_SPAN_COUNT.addAndGet(this, -trace.size());
+            tracer.write(trace);
+            return trace.size();
+          }
         }
       }
     }
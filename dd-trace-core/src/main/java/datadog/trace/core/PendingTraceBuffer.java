@@ -1,16 +1,24 @@
 package datadog.trace.core;
 
+import static datadog.trace.api.ConfigDefaults.DEFAULT_PENDING_TRACE_BUFFER_SIZE;
 import static datadog.trace.util.AgentThreadFactory.AgentThread.TRACE_MONITOR;
 import static datadog.trace.util.AgentThreadFactory.THREAD_JOIN_TIMOUT_MS;
 import static datadog.trace.util.AgentThreadFactory.newAgentThread;
 
+import datadog.trace.core.util.Clock;
+import java.util.ArrayDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.jctools.queues.MessagePassingQueue;
 import org.jctools.queues.MpscBlockingConsumerArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public abstract class PendingTraceBuffer implements AutoCloseable {
-  private static final int BUFFER_SIZE = 1 << 12; // 4096
+  private static final Logger log = LoggerFactory.getLogger(PendingTraceBuffer.class);
+
+  // the smallest capacity of the queue
+  static final int MIN_BUFFER_SIZE = 2;
 
   public interface Element {
     long oldestFinishedTime();
@@ -23,10 +31,13 @@ public abstract class PendingTraceBuffer implements AutoCloseable {
   private static class DelayingPendingTraceBuffer extends PendingTraceBuffer {
     private static final long FORCE_SEND_DELAY_MS = TimeUnit.SECONDS.toMillis(5);
     private static final long SEND_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(500);
-    private static final long SLEEP_TIME_MS = 100;
+    private static final long TICK_NS = TimeUnit.MILLISECONDS.toNanos(10);
+    // must cover SEND_DELAY_NS, so every deadline fits within a single rotation of the wheel
+    private static final int WHEEL_SLOTS = 128;
 
     private final MpscBlockingConsumerArrayQueue<Element> queue;
     private final Thread worker;
+    private final int bufferSize;
 
     private volatile boolean closed = false;
     private final AtomicInteger flushCounter = new AtomicInteger(0);
@@ -82,15 +93,6 @@ public abstract class PendingTraceBuffer implements AutoCloseable {
       }
     }
 
-    private static final class WriteDrain implements MessagePassingQueue.Consumer<Element> {
-      private static final WriteDrain WRITE_DRAIN = new WriteDrain();
-
-      @Override
-      public void accept(Element pendingTrace) {
-        pendingTrace.write();
-      }
-    }
-
     private static final class FlushElement implements Element {
       static FlushElement FLUSH_ELEMENT = new FlushElement();
 
@@ -108,47 +110,160 @@ public abstract class PendingTraceBuffer implements AutoCloseable {
       public void write() {}
     }
 
-    private final class Worker implements Runnable {
+    /**
+     * Single level hashed timing wheel, only ever accessed from the worker thread. Each pending
+     * trace is parked in the bucket of the tick at which it next becomes eligible for writing, so
+     * the worker only needs to wake up when a non-empty bucket expires. Since no deadline is ever
+     * further away than {@link #SEND_DELAY_NS}, a single rotation of the wheel is enough and no
+     * overflow rounds need to be tracked.
+     */
+    private static final class TimingWheel {
+      private final ArrayDeque<Element>[] buckets;
+      private final int mask;
+      private final long tickNanos;
+      // all ticks before this one have been expired
+      private long currentTick;
+      private int size;
+
+      @SuppressWarnings("unchecked")
+      TimingWheel(int slots, long tickNanos, long nowNanos) {
+        this.buckets = new ArrayDeque[slots];
+        for (int i = 0; i < slots; ++i) {
+          buckets[i] = new ArrayDeque<>();
+        }
+        this.mask = slots - 1;
+        this.tickNanos = tickNanos;
+        this.currentTick = nowNanos / tickNanos;
+      }
 
-      @Override
-      public void run() {
-        try {
-          while (!closed && !Thread.currentThread().isInterrupted()) {
+      int size() {
+        return size;
+      }
 
-            Element pendingTrace = queue.take(); // block until available.
+      void schedule(Element element, long deadlineNanos) {
+        // round up so that a bucket never expires before the deadlines of its elements
+        long tick = (deadlineNanos + tickNanos - 1) / tickNanos;
+        tick = Math.min(Math.max(tick, currentTick), currentTick + mask);
+        buckets[(int) (tick & mask)].addLast(element);
+        ++size;
+      }
 
-            if (pendingTrace instanceof FlushElement) {
-              // Since this is an MPSC queue, the drain needs to be called on the consumer thread
-              queue.drain(WriteDrain.WRITE_DRAIN);
-              flushCounter.incrementAndGet();
-              continue;
-            }
+      /** @return nanoseconds until the next non-empty bucket expires, or -1 if it is empty */
+      long nanosUntilNextExpiry(long nowNanos) {
+        if (size == 0) {
+          return -1;
+        }
+        for (long tick = currentTick; tick <= currentTick + mask; ++tick) {
+          if (!buckets[(int) (tick & mask)].isEmpty()) {
+            return Math.max(0, tick * tickNanos - nowNanos);
+          }
+        }
+        return -1;
+      }
 
-            long oldestFinishedTime = pendingTrace.oldestFinishedTime();
+      /** Hands every element whose bucket expired on or before {@code nowNanos} to the worker. */
+      void expire(long nowNanos, Worker worker) {
+        long nowTick = nowNanos / tickNanos;
+        if (nowTick < currentTick) {
+          return;
+        }
+        // after a long stall every bucket has expired, but each one only needs visiting once
+        for (long tick = Math.max(currentTick, nowTick - mask); tick <= nowTick; ++tick) {
+          ArrayDeque<Element> bucket = buckets[(int) (tick & mask)];
+          // elements may be rescheduled into this very bucket, so only drain what is there now
+          for (int i = bucket.size(); i > 0; --i) {
+            --size;
+            worker.process(bucket.pollFirst(), nowNanos);
+          }
+        }
+        currentTick = nowTick + 1;
+      }
 
-            long finishTimestampMillis = TimeUnit.NANOSECONDS.toMillis(oldestFinishedTime);
-            if (finishTimestampMillis <= System.currentTimeMillis() - FORCE_SEND_DELAY_MS) {
-              // Root span is getting old. Send the trace to avoid being discarded by agent.
-              pendingTrace.write();
-              continue;
-            }
+      void writeAll() {
+        for (ArrayDeque<Element> bucket : buckets) {
+          Element element = bucket.pollFirst();
+          while (null != element) {
+            element.write();
+            element = bucket.pollFirst();
+          }
+        }
+        size = 0;
+      }
+    }
+
+    private final class Worker implements Runnable, MessagePassingQueue.Consumer<Element> {
+
+      private final TimingWheel wheel =
+          new TimingWheel(WHEEL_SLOTS, TICK_NS, Clock.currentNanoTicks());
 
-            if (pendingTrace.lastReferencedNanosAgo(SEND_DELAY_NS)) {
-              // Trace has been unmodified long enough, go ahead and write whatever is finished.
-              pendingTrace.write();
+      @Override
+      public void run() {
+        try {
+          while (!closed && !Thread.currentThread().isInterrupted()) {
+            long waitNanos = wheel.nanosUntilNextExpiry(Clock.currentNanoTicks());
+            Element pendingTrace;
+            if (waitNanos < 0) {
+              pendingTrace = queue.take(); // block until available.
+            } else if (waitNanos > 0) {
+              // block until available or the next bucket expires.
+              pendingTrace = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
             } else {
-              // Trace is too new.  Requeue it and sleep to avoid a hot loop.
-              enqueue(pendingTrace);
-              Thread.sleep(SLEEP_TIME_MS);
+              pendingTrace = queue.poll();
             }
+            if (null != pendingTrace) {
+              accept(pendingTrace);
+              // Since this is an MPSC queue, the drain needs to be called on the consumer thread
+              queue.drain(this);
+            }
+            wheel.expire(Clock.currentNanoTicks(), this);
           }
         } catch (InterruptedException e) {
           Thread.currentThread().interrupt();
         }
       }
+
+      @Override
+      public void accept(Element pendingTrace) {
+        if (pendingTrace instanceof FlushElement) {
+          queue.drain(WriteDrain.WRITE_DRAIN);
+          wheel.writeAll();
+          flushCounter.incrementAndGet();
+          return;
+        }
+        process(pendingTrace, Clock.currentNanoTicks());
+      }
+
+      void process(Element pendingTrace, long nowNanos) {
+        long oldestFinishedTime = pendingTrace.oldestFinishedTime();
+
+        long finishTimestampMillis = TimeUnit.NANOSECONDS.toMillis(oldestFinishedTime);
+        if (finishTimestampMillis <= System.currentTimeMillis() - FORCE_SEND_DELAY_MS) {
+          // Root span is getting old. Send the trace to avoid being discarded by agent.
+          pendingTrace.write();
+        } else if (pendingTrace.lastReferencedNanosAgo(SEND_DELAY_NS)) {
+          // Trace has been unmodified long enough, go ahead and write whatever is finished.
+          pendingTrace.write();
+        } else if (wheel.size() >= bufferSize) {
+          // Too many traces parked already, write whatever is finished.
+          pendingTrace.write();
+        } else {
+          // Trace is too new. Park it until it could next become eligible.
+          wheel.schedule(pendingTrace, nowNanos + SEND_DELAY_NS);
+        }
+      }
+    }
+
+    private static final class WriteDrain implements MessagePassingQueue.Consumer<Element> {
+      private static final WriteDrain WRITE_DRAIN = new WriteDrain();
+
+      @Override
+      public void accept(Element pendingTrace) {
+        pendingTrace.write();
+      }
     }
 
     public DelayingPendingTraceBuffer(int bufferSize) {
+      this.bufferSize = bufferSize;
       this.queue = new MpscBlockingConsumerArrayQueue<>(bufferSize);
       this.worker = newAgentThread(TRACE_MONITOR, new Worker());
     }
@@ -169,7 +284,19 @@ public abstract class PendingTraceBuffer implements AutoCloseable {
   }
 
   public static PendingTraceBuffer delaying() {
-    return new DelayingPendingTraceBuffer(BUFFER_SIZE);
+    return delaying(DEFAULT_PENDING_TRACE_BUFFER_SIZE);
+  }
+
+  public static PendingTraceBuffer delaying(int bufferSize) {
+    if (bufferSize < MIN_BUFFER_SIZE) {
+      log.warn(
+          "Pending trace buffer size {} is less than {}, using {} instead",
+          bufferSize,
+          MIN_BUFFER_SIZE,
+          MIN_BUFFER_SIZE);
+      bufferSize = MIN_BUFFER_SIZE;
+    }
+    return new DelayingPendingTraceBuffer(bufferSize);
   }
 
   public static PendingTraceBuffer mute() {
@@ -0,0 +1,204 @@
+package datadog.trace.core;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Append-only collection of the finished spans of a {@link PendingTrace}.
+ *
+ * <p>Spans are appended into array backed segments, which are chained from the newest to the
+ * oldest as they fill up. Finishing threads claim a slot in the current segment with a single
+ * atomic increment, and {@link #drain()} takes every segment at once by swapping in a fresh one,
+ * so appending never waits for a drain in progress and vice versa.
+ *
+ * <p>Iteration and draining both return the spans newest first.
+ */
+final class SpanAccumulator extends AbstractCollection<DDSpan> {
+
+  private static final int INITIAL_SEGMENT_CAPACITY = 8;
+  private static final int MAX_SEGMENT_CAPACITY = 512;
+  // added to the claim count of a segment once it has been taken by a drain
+  private static final int SEALED = 1 << 30;
+
+  private static final class Segment {
+    private static final AtomicIntegerFieldUpdater<Segment> CLAIMED =
+        AtomicIntegerFieldUpdater.newUpdater(Segment.class, "claimed");
+    private static final AtomicLongFieldUpdater<Segment> OLDEST_FINISHED_TIME =
+        AtomicLongFieldUpdater.newUpdater(Segment.class, "oldestFinishedTime");
+
+    final AtomicReferenceArray<DDSpan> slots;
+    final Segment previous;
+
+    volatile int claimed = 0;
+    volatile long oldestFinishedTime = Long.MAX_VALUE;
+
+    Segment(int capacity, Segment previous) {
+      this.slots = new AtomicReferenceArray<>(capacity);
+      this.previous = previous;
+    }
+
+    int capacity() {
+      return slots.length();
+    }
+
+    /** @return the number of slots which have been claimed, though maybe not yet filled */
+    int claimedSlots() {
+      return Math.min(claimed, capacity());
+    }
+
+    void recordFinishedTime(long finishedTime) {
+      long oldest = oldestFinishedTime;
+      while (finishedTime < oldest
+          && !OLDEST_FINISHED_TIME.compareAndSet(this, oldest, finishedTime)) {
+        oldest = oldestFinishedTime;
+      }
+    }
+
+    /** Waits for a claimed slot to be filled in by the thread which claimed it. */
+    DDSpan awaitSlot(int slot) {
+      DDSpan span = slots.get(slot);
+      while (null == span) {
+        Thread.yield();
+        span = slots.get(slot);
+      }
+      return span;
+    }
+  }
+
+  private static final AtomicReferenceFieldUpdater<SpanAccumulator, Segment> HEAD =
+      AtomicReferenceFieldUpdater.newUpdater(SpanAccumulator.class, Segment.class, "head");
+
+  private volatile Segment head = new Segment(INITIAL_SEGMENT_CAPACITY, null);
+
+  @Override
+  public boolean add(final DDSpan span) {
+    final long finishedTime = span.getStartTime() + span.getDurationNano();
+    while (true) {
+      Segment segment = head;
+      int slot = Segment.CLAIMED.getAndIncrement(segment);
+      if (slot < segment.capacity()) {
+        segment.slots.lazySet(slot, span);
+        segment.recordFinishedTime(finishedTime);
+        return true;
+      }
+      if (slot < SEALED && head == segment) {
+        // The segment is full, help chain a bigger one in front of it. If the segment has been
+        // sealed instead, a drain has already replaced it, so just retry.
+        HEAD.compareAndSet(
+            this,
+            segment,
+            new Segment(Math.min(segment.capacity() << 1, MAX_SEGMENT_CAPACITY), segment));
+      }
+    }
+  }
+
+  /**
+   * Takes all the spans appended so far, leaving this accumulator empty. Spans appended
+   * concurrently with a drain either make it into the drained list or remain for the next one.
+   *
+   * @return the drained spans, newest first
+   */
+  List<DDSpan> drain() {
+    Segment segment;
+    do {
+      segment = head;
+      if (segment.claimed == 0 && null == segment.previous) {
+        return Collections.emptyList();
+      }
+    } while (!HEAD.compareAndSet(
+        this, segment, new Segment(INITIAL_SEGMENT_CAPACITY, null)));
+
+    // Stop any further claims on the segment we took, then wait for the claimed slots to fill.
+    int claimed = Math.min(Segment.CLAIMED.getAndAdd(segment, SEALED), segment.capacity());
+    int size = claimed;
+    for (Segment full = segment.previous; null != full; full = full.previous) {
+      size += full.capacity();
+    }
+    List<DDSpan> spans = new ArrayList<>(size);
+    for (int i = claimed - 1; i >= 0; --i) {
+      spans.add(segment.awaitSlot(i));
+    }
+    for (Segment full = segment.previous; null != full; full = full.previous) {
+      for (int i = full.capacity() - 1; i >= 0; --i) {
+        spans.add(full.awaitSlot(i));
+      }
+    }
+    return spans;
+  }
+
+  /** @return Long.MAX_VALUE if no spans finished. */
+  long oldestFinishedTime() {
+    long oldest = Long.MAX_VALUE;
+    for (Segment segment = head; null != segment; segment = segment.previous) {
+      oldest = Math.min(oldest, segment.oldestFinishedTime);
+    }
+    return oldest;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return !iterator().hasNext();
+  }
+
+  /** Linear in the number of spans, {@link PendingTrace} keeps its own count. */
+  @Override
+  public int size() {
+    int size = 0;
+    for (Iterator<DDSpan> it = iterator(); it.hasNext(); it.next()) {
+      ++size;
+    }
+    return size;
+  }
+
+  /** Weakly consistent iterator, which skips slots that have been claimed but not filled yet. */
+  @Override
+  public Iterator<DDSpan> iterator() {
+    return new Iterator<DDSpan>() {
+      private Segment segment = head;
+      private int slot = segment.claimedSlots();
+      private DDSpan next = advance();
+
+      private DDSpan advance() {
+        while (null != segment) {
+          while (--slot >= 0) {
+            DDSpan span = segment.slots.get(slot);
+            if (null != span) {
+              return span;
+            }
+          }
+          segment = segment.previous;
+          slot = null == segment ? 0 : segment.capacity();
+        }
+        return null;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return null != next;
+      }
+
+      @Override
+      public DDSpan next() {
+        if (null == next) {
+          throw new NoSuchElementException();
+        }
+        DDSpan span = next;
+        next = advance();
+        return span;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+}
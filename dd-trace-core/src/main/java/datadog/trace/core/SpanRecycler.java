@@ -0,0 +1,77 @@
+package datadog.trace.core;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import org.jctools.queues.MpmcArrayQueue;
+
+/**
+ * Recycles the storage of the tags and metrics of spans once their trace has been serialized, so
+ * that the spans created after them can reuse it instead of allocating.
+ *
+ * <p>Only the arrays holding tags and the metric containers are recycled: spans and their contexts
+ * can be referenced by application code, scopes and continuations long after they have been
+ * written, so they are left to the garbage collector. A recycled context keeps working, but has
+ * forgotten its tags and metrics; in debug mode, any later access to them fails instead, to find
+ * the code which would be affected.
+ *
+ * <p>Storage is recycled by the thread serializing traces into a bounded shared pool, and spans
+ * take it from bounded per-thread pools, refilled from the shared pool in batches, so a thread
+ * creating a span rarely touches state shared with other threads.
+ */
+public final class SpanRecycler {
+
+  private static final int SHARED_CAPACITY = 4096;
+  private static final int LOCAL_CAPACITY = 32;
+
+  static final Pool<Object[]> SLOTS = new Pool<>();
+  static final Pool<Object[]> PAIRS = new Pool<>();
+  static final Pool<MetricMap> METRICS = new Pool<>();
+
+  private SpanRecycler() {}
+
+  /**
+   * Recycles the storage of the spans of a trace which has been serialized, if nothing else can
+   * still be holding them.
+   */
+  public static void recycle(List<DDSpan> trace) {
+    if (trace.isEmpty()) {
+      return;
+    }
+    DDSpanContext context = trace.get(0).context();
+    if (null != context && context.getTrace().isRecyclable()) {
+      for (DDSpan span : trace) {
+        span.context().recycle();
+      }
+    }
+  }
+
+  static final class Pool<T> {
+    private final MpmcArrayQueue<T> shared = new MpmcArrayQueue<>(SHARED_CAPACITY);
+    private final ThreadLocal<ArrayDeque<T>> local =
+        new ThreadLocal<ArrayDeque<T>>() {
+          @Override
+          protected ArrayDeque<T> initialValue() {
+            return new ArrayDeque<>(LOCAL_CAPACITY);
+          }
+        };
+
+    /** @return recycled storage, or null if there is none */
+    T poll() {
+      ArrayDeque<T> pool = local.get();
+      T recycled = pool.poll();
+      if (null == recycled) {
+        T next;
+        while (pool.size() < LOCAL_CAPACITY && null != (next = shared.relaxedPoll())) {
+          pool.offer(next);
+        }
+        recycled = pool.poll();
+      }
+      return recycled;
+    }
+
+    /** Storage must be cleared before being recycled, it is dropped if the pool is full */
+    void recycle(T storage) {
+      shared.relaxedOffer(storage);
+    }
+  }
+}
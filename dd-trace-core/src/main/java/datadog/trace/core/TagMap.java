@@ -0,0 +1,331 @@
+package datadog.trace.core;
+
+import static datadog.trace.core.DDSpanContext.ORIGIN_KEY;
+
+import datadog.trace.api.DDTags;
+import datadog.trace.bootstrap.instrumentation.api.Tags;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Not thread-safe. The tags of a span, stored without a hash table or an entry per tag: the values
+ * of the tags most instrumentations set are held in fixed slots, indexed by the tag, and any other
+ * tags are held as key-value pairs in a flat array. Null values are not stored.
+ *
+ * <p>Serializers can visit the tags without allocating, with a cursor:
+ *
+ * <pre>
+ *   for (int i = tags.first(); i >= 0; i = tags.next(i)) {
+ *     write(tags.keyAt(i), tags.valueAt(i));
+ *   }
+ * </pre>
+ */
+public final class TagMap extends AbstractMap<String, Object> {
+
+  private static final String[] WELL_KNOWN = {
+    Tags.COMPONENT,
+    Tags.SPAN_KIND,
+    Tags.HTTP_METHOD,
+    Tags.HTTP_URL,
+    Tags.HTTP_STATUS,
+    Tags.PEER_HOSTNAME,
+    Tags.PEER_HOST_IPV4,
+    Tags.PEER_PORT,
+    Tags.PEER_SERVICE,
+    Tags.DB_TYPE,
+    Tags.DB_INSTANCE,
+    Tags.DB_USER,
+    Tags.DB_STATEMENT,
+    DDTags.ERROR_MSG,
+    DDTags.ERROR_TYPE,
+    ORIGIN_KEY
+  };
+
+  private static final int SLOTS = WELL_KNOWN.length;
+  private static final int PAIRS = 8;
+
+  // whether storage is taken from and given back to the span recycler
+  private final boolean recycling;
+
+  // allocated when the first well-known tag is set
+  private Object[] slots;
+  // keys at even indices, values at odd indices, allocated when the first other tag is set
+  private Object[] pairs;
+  private int pairCount;
+  private int size;
+
+  public TagMap() {
+    this(false);
+  }
+
+  TagMap(boolean recycling) {
+    this.recycling = recycling;
+  }
+
+  private static int slotOf(String key) {
+    switch (key) {
+      case Tags.COMPONENT:
+        return 0;
+      case Tags.SPAN_KIND:
+        return 1;
+      case Tags.HTTP_METHOD:
+        return 2;
+      case Tags.HTTP_URL:
+        return 3;
+      case Tags.HTTP_STATUS:
+        return 4;
+      case Tags.PEER_HOSTNAME:
+        return 5;
+      case Tags.PEER_HOST_IPV4:
+        return 6;
+      case Tags.PEER_PORT:
+        return 7;
+      case Tags.PEER_SERVICE:
+        return 8;
+      case Tags.DB_TYPE:
+        return 9;
+      case Tags.DB_INSTANCE:
+        return 10;
+      case Tags.DB_USER:
+        return 11;
+      case Tags.DB_STATEMENT:
+        return 12;
+      case DDTags.ERROR_MSG:
+        return 13;
+      case DDTags.ERROR_TYPE:
+        return 14;
+      case ORIGIN_KEY:
+        return 15;
+      default:
+        return -1;
+    }
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    int slot = slotOf((String) key);
+    if (slot >= 0) {
+      return null == slots ? null : slots[slot];
+    }
+    int index = indexOfPair(key);
+    return index < 0 ? null : pairs[index + 1];
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return null != get(key);
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    if (null == value) {
+      return remove(key);
+    }
+    int slot = slotOf(key);
+    if (slot >= 0) {
+      if (null == slots) {
+        slots = newSlots();
+      }
+      Object previous = slots[slot];
+      slots[slot] = value;
+      if (null == previous) {
+        ++size;
+      }
+      return previous;
+    }
+    int index = indexOfPair(key);
+    if (index >= 0) {
+      Object previous = pairs[index + 1];
+      pairs[index + 1] = value;
+      return previous;
+    }
+    if (null == pairs) {
+      pairs = newPairs();
+    } else if (pairs.length == pairCount << 1) {
+      pairs = Arrays.copyOf(pairs, pairs.length << 1);
+    }
+    pairs[pairCount << 1] = key;
+    pairs[(pairCount << 1) + 1] = value;
+    ++pairCount;
+    ++size;
+    return null;
+  }
+
+  @Override
+  public Object remove(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    int slot = slotOf((String) key);
+    if (slot >= 0) {
+      if (null == slots || null == slots[slot]) {
+        return null;
+      }
+      Object previous = slots[slot];
+      slots[slot] = null;
+      --size;
+      return previous;
+    }
+    int index = indexOfPair(key);
+    if (index < 0) {
+      return null;
+    }
+    Object previous = pairs[index + 1];
+    removePair(index);
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public void clear() {
+    if (null != slots) {
+      Arrays.fill(slots, null);
+    }
+    if (null != pairs) {
+      Arrays.fill(pairs, 0, pairCount << 1, null);
+    }
+    pairCount = 0;
+    size = 0;
+  }
+
+  /** Clears the tags, and gives their storage to the span recycler */
+  void recycle() {
+    clear();
+    if (null != slots) {
+      SpanRecycler.SLOTS.recycle(slots);
+      slots = null;
+    }
+    if (null != pairs && pairs.length == PAIRS) {
+      SpanRecycler.PAIRS.recycle(pairs);
+    }
+    pairs = null;
+  }
+
+  /** @return the cursor of the first tag, or -1 if there are no tags */
+  public int first() {
+    return seek(0);
+  }
+
+  /** @return the cursor of the tag after the tag at the cursor, or -1 if there are no more tags */
+  public int next(int cursor) {
+    return seek(cursor + 1);
+  }
+
+  public String keyAt(int cursor) {
+    return cursor < SLOTS ? WELL_KNOWN[cursor] : (String) pairs[(cursor - SLOTS) << 1];
+  }
+
+  public Object valueAt(int cursor) {
+    return cursor < SLOTS ? slots[cursor] : pairs[((cursor - SLOTS) << 1) + 1];
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return new AbstractSet<Entry<String, Object>>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /** @return the cursor of the first tag at or after the cursor, or -1 */
+  private int seek(int cursor) {
+    if (null != slots) {
+      for (; cursor < SLOTS; ++cursor) {
+        if (null != slots[cursor]) {
+          return cursor;
+        }
+      }
+    }
+    cursor = Math.max(cursor, SLOTS);
+    return cursor - SLOTS < pairCount ? cursor : -1;
+  }
+
+  private Object[] newSlots() {
+    Object[] recycled = recycling ? SpanRecycler.SLOTS.poll() : null;
+    return null == recycled ? new Object[SLOTS] : recycled;
+  }
+
+  private Object[] newPairs() {
+    Object[] recycled = recycling ? SpanRecycler.PAIRS.poll() : null;
+    return null == recycled ? new Object[PAIRS] : recycled;
+  }
+
+  private int indexOfPair(Object key) {
+    for (int i = 0; i < pairCount << 1; i += 2) {
+      if (key.equals(pairs[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void removePair(int index) {
+    // move the last pair into the gap, the order of the tags doesn't matter
+    int last = (pairCount - 1) << 1;
+    pairs[index] = pairs[last];
+    pairs[index + 1] = pairs[last + 1];
+    pairs[last] = null;
+    pairs[last + 1] = null;
+    --pairCount;
+    --size;
+  }
+
+  private final class EntryIterator implements Iterator<Entry<String, Object>> {
+    private int next = first();
+    private int current = -1;
+
+    @Override
+    public boolean hasNext() {
+      return next >= 0;
+    }
+
+    @Override
+    public Entry<String, Object> next() {
+      if (next < 0) {
+        throw new NoSuchElementException();
+      }
+      current = next;
+      next = TagMap.this.next(current);
+      return new SimpleImmutableEntry<>(keyAt(current), valueAt(current));
+    }
+
+    @Override
+    public void remove() {
+      if (current < 0) {
+        throw new IllegalStateException();
+      }
+      if (current < SLOTS) {
+        slots[current] = null;
+        --size;
+      } else {
+        removePair((current - SLOTS) << 1);
+        // the last pair has been moved to the current position
+        next = seek(current);
+      }
+      current = -1;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package datadog.trace.core;
+
+import static datadog.trace.util.AgentThreadFactory.AgentThread.TRACE_COMPLETION;
+import static datadog.trace.util.AgentThreadFactory.THREAD_JOIN_TIMOUT_MS;
+import static datadog.trace.util.AgentThreadFactory.newAgentThread;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import datadog.trace.core.monitor.HealthMetrics;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.jctools.queues.MessagePassingQueue;
+import org.jctools.queues.MpscBlockingConsumerArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Takes the work done when a trace completes - interceptors, trace processor rules, stats and
+ * sampling - off the application thread which finished its last span. That thread only offers the
+ * finished spans to the queue of a worker, which never blocks: when the queue is full the trace is
+ * dropped rather than slowing the application down.
+ *
+ * <p>Traces are partitioned between workers by trace id, so the chunks of a partially flushed trace
+ * are completed in the order they were flushed.
+ */
+final class TraceCompletionWorkers implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(TraceCompletionWorkers.class);
+
+  private final Worker[] workers;
+  private final HealthMetrics healthMetrics;
+
+  /**
+   * @param workerCount the number of workers, or 0 to derive it from the number of processors
+   * @param capacity the number of traces each worker can queue
+   */
+  TraceCompletionWorkers(
+      final CoreTracer tracer,
+      final HealthMetrics healthMetrics,
+      final int workerCount,
+      final int capacity) {
+    this.healthMetrics = healthMetrics;
+    this.workers = new Worker[workerCount > 0 ? workerCount : defaultWorkerCount()];
+    for (int i = 0; i < workers.length; ++i) {
+      workers[i] = new Worker(tracer, capacity);
+    }
+  }
+
+  /**
+   * Completing a trace is cheap compared to producing it, so a few workers are enough to keep up
+   * with the application threads; a quarter of the processors, up to 8.
+   */
+  static int defaultWorkerCount() {
+    return Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() / 4));
+  }
+
+  void start() {
+    for (Worker worker : workers) {
+      worker.thread.start();
+    }
+  }
+
+  /** @return false if the trace was dropped, because its worker's queue was full */
+  boolean publish(List<DDSpan> trace) {
+    if (workerOf(trace).queue.offer(trace)) {
+      return true;
+    }
+    healthMetrics.onFailedTraceCompletion(trace);
+    return false;
+  }
+
+  /** Waits for the traces published so far to be completed, at most for the given timeout */
+  boolean flush(long timeout, TimeUnit timeUnit) {
+    final long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+    // each worker counts the same latch down once it gets to it
+    CountDownLatch latch = new CountDownLatch(workers.length);
+    try {
+      for (Worker worker : workers) {
+        // back off while the worker's queue is full, rather than spinning until it has room
+        while (!worker.queue.offer(latch)) {
+          if (!worker.thread.isAlive() || System.nanoTime() - deadline >= 0) {
+            return false;
+          }
+          Thread.sleep(1);
+        }
+      }
+      return latch.await(deadline - System.nanoTime(), NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  @Override
+  public void close() {
+    for (Worker worker : workers) {
+      worker.thread.interrupt();
+    }
+    for (Worker worker : workers) {
+      try {
+        worker.thread.join(THREAD_JOIN_TIMOUT_MS);
+      } catch (InterruptedException ignored) {
+      }
+      if (worker.thread.isAlive()) {
+        // the queue only has a single consumer, which may still be taking from it
+        log.warn(
+            "Datadog trace completion worker did not exit, {} traces may not be written",
+            worker.queue.size());
+      } else {
+        // complete whatever was left behind, so it can still be written before the writer closes
+        worker.queue.drain(worker);
+      }
+    }
+  }
+
+  private Worker workerOf(List<DDSpan> trace) {
+    if (workers.length == 1) {
+      return workers[0];
+    }
+    long traceId = trace.get(0).traceId();
+    int hash = (int) (traceId ^ (traceId >>> 32));
+    return workers[(hash & Integer.MAX_VALUE) % workers.length];
+  }
+
+  private static final class Worker implements Runnable, MessagePassingQueue.Consumer<Object> {
+    private final CoreTracer tracer;
+    private final MpscBlockingConsumerArrayQueue<Object> queue;
+    private final Thread thread;
+
+    Worker(final CoreTracer tracer, final int capacity) {
+      this.tracer = tracer;
+      this.queue = new MpscBlockingConsumerArrayQueue<>(capacity);
+      this.thread = newAgentThread(TRACE_COMPLETION, this);
+    }
+
+    @Override
+    public void run() {
+      Thread thread = Thread.currentThread();
+      try {
+        while (!thread.isInterrupted()) {
+          accept(queue.take());
+        }
+      } catch (InterruptedException e) {
+        thread.interrupt();
+      }
+      log.debug("Datadog trace completion worker exited");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void accept(Object event) {
+      if (event instanceof List) {
+        try {
+          tracer.completeTrace((List<DDSpan>) event);
+        } catch (Throwable e) {
+          if (log.isDebugEnabled()) {
+            log.debug("Error while completing trace", e);
+          }
+        }
+      } else if (event instanceof CountDownLatch) {
+        ((CountDownLatch) event).countDown();
+      }
+    }
+  }
+}
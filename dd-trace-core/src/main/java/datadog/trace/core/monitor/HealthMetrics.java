@@ -72,6 +72,14 @@ public class HealthMetrics implements AutoCloseable {
   private final FixedSizeStripedLongCounter enqueuedSpans =
       CountersFactory.createFixedSizeStripedCounter(8);
 
+  private final FixedSizeStripedLongCounter bufferWaitNanos =
+      CountersFactory.createFixedSizeStripedCounter(8);
+
+  private final FixedSizeStripedLongCounter completionDroppedTraces =
+      CountersFactory.createFixedSizeStripedCounter(8);
+  private final FixedSizeStripedLongCounter completionDroppedSpans =
+      CountersFactory.createFixedSizeStripedCounter(8);
+
   private final StatsDClient statsd;
   private final long interval;
   private final TimeUnit units;
@@ -166,6 +174,50 @@ public class HealthMetrics implements AutoCloseable {
     onSendAttempt(traceCount, sizeInBytes, response);
   }
 
+  /** Called before a request is sent, with the number of requests in flight including it. */
+  public void onBuffersInFlight(final int buffersInFlight) {
+    statsd.gauge("sender.buffers.in_flight", buffersInFlight, NO_TAGS);
+  }
+
+  /** Called when a serializer had to wait for the sender to free up a buffer. */
+  public void onBufferWait(final long waitNanos) {
+    bufferWaitNanos.inc(waitNanos);
+  }
+
+  /** Called when a failed request is about to be retried. */
+  public void onRetry(final int sizeInBytes) {
+    statsd.incrementCounter("api.retries.total", NO_TAGS);
+    statsd.count("api.bytes.retried", sizeInBytes, NO_TAGS);
+  }
+
+  /** Called when a serialized payload was dropped because the sender had stopped. */
+  public void onSendDropped(final int traceCount, final int sizeInBytes) {
+    statsd.count("sender.traces.dropped", traceCount, NO_TAGS);
+    statsd.count("sender.bytes.dropped", sizeInBytes, NO_TAGS);
+  }
+
+  /**
+   * Called when a completed trace was dropped because the workers processing completed traces were
+   * too far behind to take it.
+   */
+  public void onFailedTraceCompletion(final List<DDSpan> trace) {
+    completionDroppedTraces.inc();
+    completionDroppedSpans.inc(trace.size());
+  }
+
+  /** Called when aggregates were dropped from the stats aggregator to stay within its budget. */
+  public void onStatsAggregatesEvicted(final int evicted) {
+    statsd.count("stats.aggregates.evicted", evicted, NO_TAGS);
+  }
+
+  /**
+   * Called when keys were aggregated into the catch-all resource of their service and operation,
+   * because there was no room left for them in the stats aggregator.
+   */
+  public void onStatsKeysCollapsed(final int collapsed) {
+    statsd.count("stats.keys.collapsed", collapsed, NO_TAGS);
+  }
+
   private void onSendAttempt(
       final int traceCount, final int sizeInBytes, final DDAgentApi.Response response) {
     statsd.incrementCounter("api.requests.total", NO_TAGS);
@@ -228,6 +280,11 @@ public class HealthMetrics implements AutoCloseable {
       reportIfChanged(
           target.statsd, "queue.dropped.traces", target.unsetPriorityDroppedTraces, UNSET_TAG);
       reportIfChanged(target.statsd, "queue.enqueued.spans", target.enqueuedSpans, NO_TAGS);
+      reportIfChanged(target.statsd, "sender.buffer.wait_ns", target.bufferWaitNanos, NO_TAGS);
+      reportIfChanged(
+          target.statsd, "completion.dropped.traces", target.completionDroppedTraces, NO_TAGS);
+      reportIfChanged(
+          target.statsd, "completion.dropped.spans", target.completionDroppedSpans, NO_TAGS);
     }
 
     private void reportIfChanged(
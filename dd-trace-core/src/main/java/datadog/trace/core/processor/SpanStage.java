@@ -0,0 +1,25 @@
+package datadog.trace.core.processor;
+
+import datadog.trace.core.DDSpan;
+import java.util.Set;
+
+/**
+ * A stage of the {@link TracePipeline}, applied to each span of a completed trace in turn. Stages
+ * are shared by every thread completing traces, so anything a stage needs to remember from one
+ * span of a trace to the next is passed along as signals.
+ */
+public interface SpanStage {
+
+  /**
+   * @param span the next span of the trace, which earlier stages have already processed
+   * @param signals the signals raised so far for the trace
+   * @return the signals, with any this span raises
+   */
+  int process(DDSpan span, int signals);
+
+  /**
+   * Adds the tags this stage reads from spans, which must be recorded even when a trace is only
+   * recorded for stats
+   */
+  void addTagsRead(Set<String> tags);
+}
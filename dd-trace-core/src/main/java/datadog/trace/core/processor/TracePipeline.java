@@ -0,0 +1,47 @@
+package datadog.trace.core.processor;
+
+import datadog.trace.core.DDSpan;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Processes completed traces in a single pass: each span goes through every stage before the next
+ * span is looked at, so however many stages there are, a trace is only traversed once and its
+ * spans are only brought into cache once.
+ */
+public final class TracePipeline {
+
+  /** Raised when a stage needs the trace to be kept, whatever the sampling decision */
+  public static final int FORCE_KEEP = 1;
+  /** Raised when no more spans of the trace should be counted in stats */
+  public static final int SKIP_STATS = 1 << 1;
+
+  private final SpanStage[] stages;
+  private final Set<String> tagsRead;
+
+  public TracePipeline(SpanStage... stages) {
+    this.stages = stages;
+    this.tagsRead = new HashSet<>();
+    for (SpanStage stage : stages) {
+      stage.addTagsRead(tagsRead);
+    }
+  }
+
+  /** @return true if any stage reads the tag */
+  public boolean reads(String tag) {
+    return tagsRead.contains(tag);
+  }
+
+  /** @return the signals raised by the stages for the trace */
+  public int process(List<DDSpan> trace) {
+    int signals = 0;
+    for (int i = 0; i < trace.size(); ++i) {
+      DDSpan span = trace.get(i);
+      for (SpanStage stage : stages) {
+        signals = stage.process(span, signals);
+      }
+    }
+    return signals;
+  }
+}
@@ -5,11 +5,13 @@ import datadog.trace.core.DDSpan;
 import datadog.trace.core.DDSpanContext;
 import datadog.trace.core.processor.rule.URLAsResourceNameRule;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class TraceProcessor {
+public class TraceProcessor implements SpanStage {
 
   private static final Logger log = LoggerFactory.getLogger(TraceProcessor.class);
   final Rule[] DEFAULT_RULES = new Rule[] {new URLAsResourceNameRule()};
@@ -49,9 +51,25 @@ public class TraceProcessor {
 
     void disableFeature(String feature);
 
+    /** @return the tags the rule reads from spans */
+    String[] tagsRead();
+
     void processSpan(DDSpanContext span);
   }
 
+  @Override
+  public int process(final DDSpan span, final int signals) {
+    applyRules(span);
+    return signals;
+  }
+
+  @Override
+  public void addTagsRead(final Set<String> tags) {
+    for (final Rule rule : rules) {
+      Collections.addAll(tags, rule.tagsRead());
+    }
+  }
+
   public List<DDSpan> onTraceComplete(final List<DDSpan> trace) {
     for (final DDSpan span : trace) {
       applyRules(span);
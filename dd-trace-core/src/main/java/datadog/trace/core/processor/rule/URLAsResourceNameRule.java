@@ -33,6 +33,11 @@ public class URLAsResourceNameRule implements TraceProcessor.Rule {
     }
   }
 
+  @Override
+  public String[] tagsRead() {
+    return new String[] {Tags.HTTP_STATUS, Tags.HTTP_URL, Tags.HTTP_METHOD};
+  }
+
   @Override
   public void processSpan(final DDSpanContext span) {
     if (span.isResourceNameSet()) {
@@ -38,9 +38,9 @@ class B3HttpCodec {
     public <C> void inject(
         final DDSpanContext context, final C carrier, final AgentPropagation.Setter<C> setter) {
       try {
-        String injectedTraceId = context.getTraceId().toHexString().toLowerCase();
+        String injectedTraceId = Long.toHexString(context.traceId());
         setter.set(carrier, TRACE_ID_KEY, injectedTraceId);
-        setter.set(carrier, SPAN_ID_KEY, context.getSpanId().toHexString().toLowerCase());
+        setter.set(carrier, SPAN_ID_KEY, Long.toHexString(context.spanId()));
 
         if (context.lockSamplingPriority()) {
           setter.set(
@@ -48,7 +48,10 @@ class B3HttpCodec {
               SAMPLING_PRIORITY_KEY,
               convertSamplingPriority(context.getSamplingPriority()));
         }
-        log.debug("{} - B3 parent context injected - {}", context.getTraceId(), injectedTraceId);
+        if (log.isDebugEnabled()) {
+          log.debug(
+              "{} - B3 parent context injected - {}", context.getTraceId(), injectedTraceId);
+        }
       } catch (final NumberFormatException e) {
         if (log.isDebugEnabled()) {
           log.debug(
@@ -120,18 +123,18 @@ class B3HttpCodec {
                   final int length = firstValue.length();
                   if (length > 32) {
                     log.debug("Header {} exceeded max length of 32: {}", TRACE_ID_KEY, value);
-                    traceId = DDId.ZERO;
+                    traceId = 0;
                     return true;
                   } else if (length > 16) {
                     trimmedValue = value.substring(length - 16);
                   } else {
                     trimmedValue = value;
                   }
-                  traceId = DDId.fromHex(trimmedValue);
+                  traceId = DDId.parseUnsignedLongHex(trimmedValue);
                   break;
                 }
               case SPAN_ID:
-                spanId = DDId.fromHex(firstValue);
+                spanId = DDId.parseUnsignedLongHex(firstValue);
                 break;
               case SAMPLING_PRIORITY:
                 samplingPriority = convertSamplingPriority(firstValue);
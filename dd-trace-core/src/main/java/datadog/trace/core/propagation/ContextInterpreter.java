@@ -4,7 +4,6 @@ import static datadog.trace.core.propagation.HttpCodec.FORWARDED_FOR_KEY;
 import static datadog.trace.core.propagation.HttpCodec.FORWARDED_PORT_KEY;
 import static datadog.trace.core.propagation.HttpCodec.firstHeaderValue;
 
-import datadog.trace.api.DDId;
 import datadog.trace.api.Functions;
 import datadog.trace.api.cache.DDCache;
 import datadog.trace.api.cache.DDCaches;
@@ -18,8 +17,8 @@ public abstract class ContextInterpreter implements AgentPropagation.KeyClassifi
 
   protected final Map<String, String> taggedHeaders;
 
-  protected DDId traceId;
-  protected DDId spanId;
+  protected long traceId;
+  protected long spanId;
   protected int samplingPriority;
   protected Map<String, String> tags;
   protected Map<String, String> baggage;
@@ -76,8 +75,8 @@ public abstract class ContextInterpreter implements AgentPropagation.KeyClassifi
   }
 
   public ContextInterpreter reset() {
-    traceId = DDId.ZERO;
-    spanId = DDId.ZERO;
+    traceId = 0;
+    spanId = 0;
     samplingPriority = defaultSamplingPriority();
     origin = null;
     forwardedFor = null;
@@ -90,7 +89,7 @@ public abstract class ContextInterpreter implements AgentPropagation.KeyClassifi
 
   TagContext build() {
     if (valid) {
-      if (!DDId.ZERO.equals(traceId)) {
+      if (traceId != 0) {
         final ExtractedContext context =
             new ExtractedContext(
                 traceId,
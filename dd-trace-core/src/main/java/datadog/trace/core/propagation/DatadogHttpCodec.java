@@ -30,8 +30,8 @@ class DatadogHttpCodec {
     public <C> void inject(
         final DDSpanContext context, final C carrier, final AgentPropagation.Setter<C> setter) {
 
-      setter.set(carrier, TRACE_ID_KEY, context.getTraceId().toString());
-      setter.set(carrier, SPAN_ID_KEY, context.getSpanId().toString());
+      setter.set(carrier, TRACE_ID_KEY, DDId.toUnsignedString(context.traceId()));
+      setter.set(carrier, SPAN_ID_KEY, DDId.toUnsignedString(context.spanId()));
       if (context.lockSamplingPriority()) {
         setter.set(carrier, SAMPLING_PRIORITY_KEY, String.valueOf(context.getSamplingPriority()));
       }
@@ -113,10 +113,10 @@ class DatadogHttpCodec {
           if (null != firstValue) {
             switch (classification) {
               case TRACE_ID:
-                traceId = DDId.from(firstValue);
+                traceId = DDId.parseUnsignedLong(firstValue);
                 break;
               case SPAN_ID:
-                spanId = DDId.from(firstValue);
+                spanId = DDId.parseUnsignedLong(firstValue);
                 break;
               case ORIGIN:
                 origin = firstValue;
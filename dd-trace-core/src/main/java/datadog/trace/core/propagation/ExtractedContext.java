@@ -8,8 +8,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Propagated data resulting from calling tracer.extract with header data from an incoming request.
  */
 public class ExtractedContext extends TagContext {
-  private final DDId traceId;
-  private final DDId spanId;
+  private final long traceId;
+  private final long spanId;
   private final int samplingPriority;
   private final Map<String, String> baggage;
   private final AtomicBoolean samplingPriorityLocked = new AtomicBoolean(false);
@@ -23,6 +23,26 @@ public class ExtractedContext extends TagContext {
       String forwardedPort,
       final Map<String, String> baggage,
       final Map<String, String> tags) {
+    this(
+        traceId.toLong(),
+        spanId.toLong(),
+        samplingPriority,
+        origin,
+        fowardedFor,
+        forwardedPort,
+        baggage,
+        tags);
+  }
+
+  public ExtractedContext(
+      final long traceId,
+      final long spanId,
+      final int samplingPriority,
+      final String origin,
+      String fowardedFor,
+      String forwardedPort,
+      final Map<String, String> baggage,
+      final Map<String, String> tags) {
     super(origin, fowardedFor, forwardedPort, tags);
     this.traceId = traceId;
     this.spanId = spanId;
@@ -41,11 +61,21 @@ public class ExtractedContext extends TagContext {
 
   @Override
   public DDId getTraceId() {
-    return traceId;
+    return DDId.from(traceId);
   }
 
   @Override
   public DDId getSpanId() {
+    return DDId.from(spanId);
+  }
+
+  /** @return the bits of the unsigned 64 bit trace id */
+  public long traceId() {
+    return traceId;
+  }
+
+  /** @return the bits of the unsigned 64 bit span id */
+  public long spanId() {
     return spanId;
   }
 
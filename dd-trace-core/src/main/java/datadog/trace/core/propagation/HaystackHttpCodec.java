@@ -60,21 +60,27 @@ public class HaystackHttpCodec {
             getBaggageItemIgnoreCase(context.getBaggageItems(), HAYSTACK_TRACE_ID_BAGGAGE_KEY);
         String injectedTraceId;
         if (originalHaystackTraceId != null
-            && convertUUIDToBigInt(originalHaystackTraceId).equals(context.getTraceId())) {
+            && convertUUIDToBigInt(originalHaystackTraceId) == context.traceId()) {
           injectedTraceId = originalHaystackTraceId;
         } else {
-          injectedTraceId = convertBigIntToUUID(context.getTraceId());
+          injectedTraceId = convertBigIntToUUID(context.traceId());
         }
         setter.set(carrier, TRACE_ID_KEY, injectedTraceId);
         context.setTag(HAYSTACK_TRACE_ID_BAGGAGE_KEY, injectedTraceId);
         setter.set(
-            carrier, DD_TRACE_ID_BAGGAGE_KEY, HttpCodec.encode(context.getTraceId().toString()));
-        setter.set(carrier, SPAN_ID_KEY, convertBigIntToUUID(context.getSpanId()));
+            carrier,
+            DD_TRACE_ID_BAGGAGE_KEY,
+            HttpCodec.encode(DDId.toUnsignedString(context.traceId())));
+        setter.set(carrier, SPAN_ID_KEY, convertBigIntToUUID(context.spanId()));
         setter.set(
-            carrier, DD_SPAN_ID_BAGGAGE_KEY, HttpCodec.encode(context.getSpanId().toString()));
-        setter.set(carrier, PARENT_ID_KEY, convertBigIntToUUID(context.getParentId()));
+            carrier,
+            DD_SPAN_ID_BAGGAGE_KEY,
+            HttpCodec.encode(DDId.toUnsignedString(context.spanId())));
+        setter.set(carrier, PARENT_ID_KEY, convertBigIntToUUID(context.parentId()));
         setter.set(
-            carrier, DD_PARENT_ID_BAGGAGE_KEY, HttpCodec.encode(context.getParentId().toString()));
+            carrier,
+            DD_PARENT_ID_BAGGAGE_KEY,
+            HttpCodec.encode(DDId.toUnsignedString(context.parentId())));
 
         for (final Map.Entry<String, String> entry : context.baggageItems()) {
           setter.set(
@@ -225,18 +231,18 @@ public class HaystackHttpCodec {
     }
   }
 
-  private static String convertBigIntToUUID(DDId id) {
+  private static String convertBigIntToUUID(long id) {
     // This is not a true/real UUID, as we don't care about the version and variant markers
     //  the creation is just taking the least significant bits and doing static most significant
     // ones.
     //  this is done for the purpose of being able to maintain cardinality and idempotence of the
     // conversion
-    String idHex = String.format("%016x", id.toLong());
+    String idHex = String.format("%016x", id);
     return DATADOG + "-" + idHex.substring(0, 4) + "-" + idHex.substring(4);
   }
 
   @SuppressForbidden
-  private static DDId convertUUIDToBigInt(String value) {
+  private static long convertUUIDToBigInt(String value) {
     try {
       if (value.contains("-")) {
         String[] strings = value.split("-");
@@ -244,16 +250,16 @@ public class HaystackHttpCodec {
         // significant one.
         if (strings.length == 5) {
           String idHex = strings[3] + strings[4];
-          return DDId.fromHex(idHex);
+          return DDId.parseUnsignedLongHex(idHex);
         }
         throw new NumberFormatException("Invalid UUID format: " + value);
       } else {
         // This could be a regular hex id without separators
         int length = value.length();
         if (length == 32) {
-          return DDId.fromHex(value.substring(16));
+          return DDId.parseUnsignedLongHex(value.substring(16));
         } else {
-          return DDId.fromHex(value);
+          return DDId.parseUnsignedLongHex(value);
         }
       }
     } catch (final Exception e) {
@@ -11,9 +11,8 @@ import datadog.trace.bootstrap.instrumentation.api.AgentTracer;
 import datadog.trace.bootstrap.instrumentation.api.ScopeSource;
 import datadog.trace.context.ScopeListener;
 import datadog.trace.context.TraceScope;
-import java.util.ArrayDeque;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import datadog.trace.core.DDSpan;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,29 +30,46 @@ public class ContinuableScopeManager implements AgentScopeManager {
       new ThreadLocal<ScopeStack>() {
         @Override
         protected final ScopeStack initialValue() {
-          return new ScopeStack();
+          return new ScopeStack(poolingEnabled);
         }
       };
 
-  private final List<ScopeListener> scopeListeners;
-  private final List<ExtendedScopeListener> extendedScopeListeners;
+  // copied on write, so activating and closing scopes iterates them without allocating
+  private volatile ScopeListener[] scopeListeners = new ScopeListener[0];
+  private volatile ExtendedScopeListener[] extendedScopeListeners = new ExtendedScopeListener[0];
+  // false until a listener is added, so scopes skip dispatching their events
+  private volatile boolean hasListeners;
+
   private final int depthLimit;
   private final StatsDClient statsDClient;
   private final boolean strictMode;
   private final boolean inheritAsyncPropagation;
+  private final boolean poolingEnabled;
 
   public ContinuableScopeManager(
       final int depthLimit,
       final StatsDClient statsDClient,
       final boolean strictMode,
       final boolean inheritAsyncPropagation) {
+    this(depthLimit, statsDClient, strictMode, inheritAsyncPropagation, false);
+  }
+
+  /**
+   * @param poolingEnabled reuse the scopes closed on each thread for the scopes it activates next,
+   *     which is only safe when no closed scope is used again
+   */
+  public ContinuableScopeManager(
+      final int depthLimit,
+      final StatsDClient statsDClient,
+      final boolean strictMode,
+      final boolean inheritAsyncPropagation,
+      final boolean poolingEnabled) {
 
     this.depthLimit = depthLimit == 0 ? Integer.MAX_VALUE : depthLimit;
     this.statsDClient = statsDClient;
     this.strictMode = strictMode;
     this.inheritAsyncPropagation = inheritAsyncPropagation;
-    this.scopeListeners = new CopyOnWriteArrayList<>();
-    this.extendedScopeListeners = new CopyOnWriteArrayList<>();
+    this.poolingEnabled = poolingEnabled;
   }
 
   @Override
@@ -121,9 +137,10 @@ public class ContinuableScopeManager implements AgentScopeManager {
         overrideAsyncPropagation
             ? isAsyncPropagating
             : active == null ? DEFAULT_ASYNC_PROPAGATING : active.isAsyncPropagating();
+    final ScopeStack scopeStack = scopeStack();
     final ContinuableScope scope =
-        new ContinuableScope(this, continuation, span, source, asyncPropagation);
-    scopeStack().push(scope);
+        scopeStack.newScope(this, continuation, span, source, asyncPropagation);
+    scopeStack.push(scope);
 
     return scope;
   }
@@ -141,7 +158,12 @@ public class ContinuableScopeManager implements AgentScopeManager {
 
   /** Attach a listener to scope activation events */
   public void addScopeListener(final ScopeListener listener) {
-    scopeListeners.add(listener);
+    synchronized (this) {
+      ScopeListener[] listeners = Arrays.copyOf(scopeListeners, scopeListeners.length + 1);
+      listeners[listeners.length - 1] = listener;
+      scopeListeners = listeners;
+      hasListeners = true;
+    }
     log.debug("Added scope listener {}", listener);
     AgentSpan activeSpan = activeSpan();
     if (activeSpan != null) {
@@ -151,12 +173,64 @@ public class ContinuableScopeManager implements AgentScopeManager {
   }
 
   public void addExtendedScopeListener(final ExtendedScopeListener listener) {
-    extendedScopeListeners.add(listener);
+    synchronized (this) {
+      ExtendedScopeListener[] listeners =
+          Arrays.copyOf(extendedScopeListeners, extendedScopeListeners.length + 1);
+      listeners[listeners.length - 1] = listener;
+      extendedScopeListeners = listeners;
+      hasListeners = true;
+    }
     log.debug("Added scope listener {}", listener);
     AgentSpan activeSpan = activeSpan();
     if (activeSpan != null) {
       // Notify the listener about the currently active scope
-      listener.afterScopeActivated(activeSpan.getTraceId(), activeSpan.context().getSpanId());
+      afterScopeActivated(listener, activeSpan);
+    }
+  }
+
+  private static void afterScopeActivated(ExtendedScopeListener listener, AgentSpan span) {
+    if (span instanceof DDSpan) {
+      // don't materialize the ids
+      listener.afterScopeActivated(((DDSpan) span).traceId(), ((DDSpan) span).spanId());
+    } else {
+      listener.afterScopeActivated(
+          span.getTraceId().toLong(), span.context().getSpanId().toLong());
+    }
+  }
+
+  private void afterScopeActivated(final AgentSpan span) {
+    for (final ScopeListener listener : scopeListeners) {
+      try {
+        listener.afterScopeActivated();
+      } catch (Throwable e) {
+        log.debug("ScopeListener threw exception in afterActivated()", e);
+      }
+    }
+
+    for (final ExtendedScopeListener listener : extendedScopeListeners) {
+      try {
+        afterScopeActivated(listener, span);
+      } catch (Throwable e) {
+        log.debug("ExtendedScopeListener threw exception in afterActivated()", e);
+      }
+    }
+  }
+
+  private void afterScopeClosed() {
+    for (final ScopeListener listener : scopeListeners) {
+      try {
+        listener.afterScopeClosed();
+      } catch (Exception e) {
+        log.debug("ScopeListener threw exception in close()", e);
+      }
+    }
+
+    for (final ExtendedScopeListener listener : extendedScopeListeners) {
+      try {
+        listener.afterScopeClosed();
+      } catch (Exception e) {
+        log.debug("ScopeListener threw exception in close()", e);
+      }
     }
   }
 
@@ -167,16 +241,18 @@ public class ContinuableScopeManager implements AgentScopeManager {
   private static final class ContinuableScope implements AgentScope {
     private final ContinuableScopeManager scopeManager;
 
+    // not final, so the scope can be reused once closed when pooling
+
     /** Continuation that created this scope. May be null. */
-    private final ContinuableScopeManager.Continuation continuation;
+    private ContinuableScopeManager.Continuation continuation;
     /** Flag to propagate this scope across async boundaries. */
     private boolean isAsyncPropagating;
 
-    private final byte source;
+    private byte source;
 
     private short referenceCount = 1;
 
-    private final AgentSpan span;
+    private AgentSpan span;
 
     ContinuableScope(
         final ContinuableScopeManager scopeManager,
@@ -191,6 +267,27 @@ public class ContinuableScopeManager implements AgentScopeManager {
       this.source = source;
     }
 
+    /** Reuses this closed scope for a new activation */
+    final void reset(
+        final ContinuableScopeManager.Continuation continuation,
+        final AgentSpan span,
+        final byte source,
+        final boolean isAsyncPropagating) {
+      this.isAsyncPropagating = isAsyncPropagating;
+      this.span = span;
+      this.continuation = continuation;
+      this.source = source;
+      this.referenceCount = 1;
+    }
+
+    /**
+     * Lets go of the continuation of this closed scope, before it is pooled. The span is kept until
+     * the scope is reused, since instrumentations finish it through the scope once closed.
+     */
+    final void release() {
+      this.continuation = null;
+    }
+
     @Override
     public void close() {
       final ScopeStack scopeStack = scopeManager.scopeStack();
@@ -218,6 +315,8 @@ public class ContinuableScopeManager implements AgentScopeManager {
         return;
       }
 
+      // read first, cleaning up may pool this scope
+      final ContinuableScopeManager.Continuation continuation = this.continuation;
       scopeStack.cleanup();
 
       if (null != continuation) {
@@ -233,20 +332,8 @@ public class ContinuableScopeManager implements AgentScopeManager {
      * I would hope this becomes unnecessary.
      */
     final void onProperClose() {
-      for (final ScopeListener listener : scopeManager.scopeListeners) {
-        try {
-          listener.afterScopeClosed();
-        } catch (Exception e) {
-          log.debug("ScopeListener threw exception in close()", e);
-        }
-      }
-
-      for (final ExtendedScopeListener listener : scopeManager.extendedScopeListeners) {
-        try {
-          listener.afterScopeClosed();
-        } catch (Exception e) {
-          log.debug("ScopeListener threw exception in close()", e);
-        }
+      if (scopeManager.hasListeners) {
+        scopeManager.afterScopeClosed();
       }
     }
 
@@ -309,20 +396,8 @@ public class ContinuableScopeManager implements AgentScopeManager {
     }
 
     public void afterActivated() {
-      for (final ScopeListener listener : scopeManager.scopeListeners) {
-        try {
-          listener.afterScopeActivated();
-        } catch (Throwable e) {
-          log.debug("ScopeListener threw exception in afterActivated()", e);
-        }
-      }
-
-      for (final ExtendedScopeListener listener : scopeManager.extendedScopeListeners) {
-        try {
-          listener.afterScopeActivated(span.getTraceId(), span.context().getSpanId());
-        } catch (Throwable e) {
-          log.debug("ExtendedScopeListener threw exception in afterActivated()", e);
-        }
+      if (scopeManager.hasListeners) {
+        scopeManager.afterScopeActivated(span);
       }
     }
   }
@@ -332,17 +407,45 @@ public class ContinuableScopeManager implements AgentScopeManager {
    * cleanup() is called to ensure the invariant
    */
   static final class ScopeStack {
-    private final ArrayDeque<ContinuableScope> stack = new ArrayDeque<>();
+    private static final int INITIAL_CAPACITY = 16;
+    // scopes kept for reuse on each thread when pooling, enough for most nested activations
+    static final int POOL_SIZE = 32;
+
+    private ContinuableScope[] stack = new ContinuableScope[INITIAL_CAPACITY];
+    private int depth;
+
+    private final ContinuableScope[] pool;
+    private int pooled;
+
+    ScopeStack(final boolean poolingEnabled) {
+      this.pool = poolingEnabled ? new ContinuableScope[POOL_SIZE] : null;
+    }
 
     /** top - accesses the top of the ScopeStack */
     final ContinuableScope top() {
-      return stack.peek();
+      return depth == 0 ? null : stack[depth - 1];
+    }
+
+    /** Returns a scope to activate, reusing a closed one when pooling */
+    final ContinuableScope newScope(
+        final ContinuableScopeManager scopeManager,
+        final Continuation continuation,
+        final AgentSpan span,
+        final byte source,
+        final boolean isAsyncPropagating) {
+      if (pooled > 0) {
+        final ContinuableScope scope = pool[--pooled];
+        pool[pooled] = null;
+        scope.reset(continuation, span, source, isAsyncPropagating);
+        return scope;
+      }
+      return new ContinuableScope(scopeManager, continuation, span, source, isAsyncPropagating);
     }
 
     void cleanup() {
-      ContinuableScope curScope = stack.peek();
       boolean changedTop = false;
-      while (curScope != null) {
+      while (depth > 0) {
+        final ContinuableScope curScope = stack[depth - 1];
         if (curScope.alive()) {
           if (changedTop) {
             curScope.afterActivated();
@@ -352,31 +455,38 @@ public class ContinuableScopeManager implements AgentScopeManager {
 
         // no longer alive -- trigger listener & null out
         curScope.onProperClose();
-        stack.poll();
+        stack[--depth] = null;
         changedTop = true;
-        curScope = stack.peek();
+        if (null != pool && pooled < pool.length) {
+          curScope.release();
+          pool[pooled++] = curScope;
+        }
       }
     }
 
     /** Pushes a new scope unto the stack */
     final void push(final ContinuableScope scope) {
-      stack.push(scope);
+      if (depth == stack.length) {
+        stack = Arrays.copyOf(stack, depth << 1);
+      }
+      stack[depth++] = scope;
       scope.afterActivated();
     }
 
     /** Fast check to see if the expectedScope is on top the stack */
     final boolean checkTop(final ContinuableScope expectedScope) {
-      return expectedScope.equals(stack.peek());
+      return depth > 0 && stack[depth - 1] == expectedScope;
     }
 
     /** Returns the current stack depth */
     final int depth() {
-      return stack.size();
+      return depth;
     }
 
     // DQH - regrettably needed for pre-existing tests
     final void clear() {
-      stack.clear();
+      Arrays.fill(stack, 0, depth, null);
+      depth = 0;
     }
   }
 
@@ -1,9 +1,8 @@
 package datadog.trace.core.scopemanager;
 
-import datadog.trace.api.DDId;
-
 public interface ExtendedScopeListener {
-  void afterScopeActivated(DDId traceId, DDId spanId);
+  /** Called just after a scope is activated, with the bits of the ids of its span. */
+  void afterScopeActivated(long traceId, long spanId);
 
   /** Called just after a scope is closed. */
   void afterScopeClosed();
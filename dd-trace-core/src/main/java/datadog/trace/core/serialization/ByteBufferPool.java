@@ -0,0 +1,17 @@
+package datadog.trace.core.serialization;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Supplies the buffers a {@link FlushingBuffer} serializes into. Each flushed buffer is handed over
+ * to the {@link ByteBufferConsumer}, which is responsible for returning it to the pool.
+ */
+public interface ByteBufferPool {
+
+  /**
+   * May block until a buffer is available.
+   *
+   * @return an empty buffer with the requested capacity
+   */
+  ByteBuffer acquire(int capacity);
+}
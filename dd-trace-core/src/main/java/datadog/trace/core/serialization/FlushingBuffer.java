@@ -4,8 +4,9 @@ import java.nio.ByteBuffer;
 
 public final class FlushingBuffer implements StreamingBuffer {
 
-  private final ByteBuffer buffer;
   private final ByteBufferConsumer consumer;
+  private final ByteBufferPool pool;
+  private ByteBuffer buffer;
 
   private int messageCount;
   private int mark;
@@ -13,6 +14,17 @@ public final class FlushingBuffer implements StreamingBuffer {
   public FlushingBuffer(int capacity, ByteBufferConsumer consumer) {
     this.buffer = ByteBuffer.allocate(capacity);
     this.consumer = consumer;
+    this.pool = null;
+  }
+
+  /**
+   * Serializes into buffers taken from the pool, and hands each flushed buffer over to the
+   * consumer instead of reusing it.
+   */
+  public FlushingBuffer(int capacity, ByteBufferConsumer consumer, ByteBufferPool pool) {
+    this.buffer = pool.acquire(capacity);
+    this.consumer = consumer;
+    this.pool = pool;
   }
 
   @Override
@@ -40,6 +52,9 @@ public final class FlushingBuffer implements StreamingBuffer {
     buffer.flip();
     ByteBuffer toPublish = buffer.slice();
     consumer.accept(messageCount, toPublish);
+    if (null != pool) {
+      buffer = pool.acquire(buffer.capacity());
+    }
     reset();
     return true;
   }
@@ -17,9 +17,16 @@ public final class GrowableBuffer implements StreamingBuffer {
     this.buffer = ByteBuffer.allocate(initialCapacity);
   }
 
+  /** @return the contents written so far, leaving the buffer open for more writes */
   public ByteBuffer slice() {
-    buffer.flip();
-    return buffer.slice();
+    ByteBuffer contents = buffer.duplicate();
+    contents.flip();
+    return contents.slice();
+  }
+
+  /** @return the number of bytes written so far */
+  public int position() {
+    return buffer.position();
   }
 
   public int messageCount() {
@@ -15,6 +15,12 @@ public interface Writable {
 
   void writeString(CharSequence s, EncodingCache encodingCache);
 
+  /**
+   * Writes a string which will be written again and again, such as a tag key, from its cached
+   * encoding where possible.
+   */
+  void writeInternedString(CharSequence s);
+
   void writeUTF8(byte[] string, int offset, int length);
 
   void writeUTF8(byte[] string);
@@ -0,0 +1,105 @@
+package datadog.trace.core.serialization.msgpack;
+
+import static datadog.trace.core.serialization.msgpack.MsgPackWriter.FIXSTR;
+import static datadog.trace.core.serialization.msgpack.MsgPackWriter.STR8;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A process-wide table of the strings written over and over again, such as tag keys, service names
+ * and span types, holding their complete msgpack encoding: the {@code str} header followed by the
+ * UTF-8 bytes, so that writing one of them is a single copy.
+ *
+ * <p>The table is set-associative: each string hashes to a set of a few slots, so it never grows
+ * and never locks, and strings colliding in a set can be interned side by side. When its set is
+ * full, a string only replaces one which hasn't been written since the set last missed, otherwise
+ * it is encoded as usual without allocating anything, so hot strings aren't evicted by colder ones.
+ * Only {@code String}s and {@link UTF8BytesString}s of at most 255 bytes are interned.
+ */
+public final class EncodedStringTable {
+
+  static final int SETS = 1024;
+  static final int WAYS = 4;
+  private static final int MAX_LENGTH = 0xFF;
+
+  private static final AtomicReferenceArray<Entry> TABLE = new AtomicReferenceArray<>(SETS * WAYS);
+
+  private EncodedStringTable() {}
+
+  /**
+   * @return the msgpack encoding of the string, interning it if needed, or null if the string can't
+   *     be interned
+   */
+  public static byte[] encode(CharSequence s) {
+    if (!(s instanceof String || s instanceof UTF8BytesString) || s.length() > MAX_LENGTH) {
+      return null;
+    }
+    // both have cached hash codes equal to the hash code of their characters
+    int hash = s.hashCode();
+    int set = ((hash ^ (hash >>> 16)) & (SETS - 1)) * WAYS;
+    int victim = -1;
+    for (int way = 0; way < WAYS; ++way) {
+      Entry entry = TABLE.get(set + way);
+      if (null == entry) {
+        // entries are never removed, so the rest of the set is empty too
+        victim = set + way;
+        break;
+      }
+      if (entry.matches(hash, s)) {
+        if (!entry.used) {
+          entry.used = true;
+        }
+        return entry.encoded;
+      }
+      if (victim < 0 && !entry.used) {
+        victim = set + way;
+      }
+    }
+    if (victim < 0) {
+      // every string in the set has been used since the last miss: give them
+      // a second chance, and let this string in if it is missed again
+      for (int way = 0; way < WAYS; ++way) {
+        TABLE.get(set + way).used = false;
+      }
+      return null;
+    }
+    byte[] utf8 =
+        s instanceof UTF8BytesString
+            ? ((UTF8BytesString) s).getUtf8Bytes()
+            : ((String) s).getBytes(UTF_8);
+    if (utf8.length > MAX_LENGTH) {
+      return null;
+    }
+    Entry entry = new Entry(hash, s, utf8);
+    TABLE.lazySet(victim, entry);
+    return entry.encoded;
+  }
+
+  private static final class Entry {
+    private final int hash;
+    private final CharSequence string;
+    private final byte[] encoded;
+    // racy, since losing an update only costs an extra miss
+    private boolean used = true;
+
+    private Entry(int hash, CharSequence string, byte[] utf8) {
+      this.hash = hash;
+      this.string = string;
+      int headerLength = utf8.length < 0x10 ? 1 : 2;
+      this.encoded = new byte[headerLength + utf8.length];
+      if (headerLength == 1) {
+        encoded[0] = (byte) (FIXSTR | utf8.length);
+      } else {
+        encoded[0] = STR8;
+        encoded[1] = (byte) utf8.length;
+      }
+      System.arraycopy(utf8, 0, encoded, headerLength, utf8.length);
+    }
+
+    boolean matches(int hash, CharSequence s) {
+      return string == s || (this.hash == hash && string.toString().equals(s.toString()));
+    }
+  }
+}
@@ -162,6 +162,16 @@ public class MsgPackWriter implements WritableFormatter {
     }
   }
 
+  @Override
+  public void writeInternedString(CharSequence s) {
+    byte[] encoded = null == s ? null : EncodedStringTable.encode(s);
+    if (null != encoded) {
+      buffer.put(encoded);
+    } else {
+      writeString(s, null);
+    }
+  }
+
   @Override
   public void writeUTF8(byte[] string, int offset, int length) {
     writeStringHeader(length);
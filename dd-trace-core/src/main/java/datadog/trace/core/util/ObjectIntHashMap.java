@@ -0,0 +1,98 @@
+package datadog.trace.core.util;
+
+import java.util.Arrays;
+
+/**
+ * Not thread-safe. Maps objects to non-negative ints without boxing them, using open addressing
+ * with linear probing. Entries can't be removed individually, but clearing the map keeps its
+ * tables, so it can be reused without allocating.
+ */
+public final class ObjectIntHashMap<K> {
+
+  /** Returned by {@link #get(Object)} when there is no value for the key. */
+  public static final int NO_VALUE = -1;
+
+  private Object[] keys;
+  private int[] values;
+  private int size;
+
+  public ObjectIntHashMap(int expectedSize) {
+    int capacity = 16;
+    // keep the load factor at or below 0.5
+    while (capacity < 2 * expectedSize && capacity < (1 << 30)) {
+      capacity <<= 1;
+    }
+    this.keys = new Object[capacity];
+    this.values = new int[capacity];
+  }
+
+  public int get(K key) {
+    Object[] keys = this.keys;
+    int mask = keys.length - 1;
+    int index = indexOf(key.hashCode(), mask);
+    Object candidate;
+    while (null != (candidate = keys[index])) {
+      if (candidate == key || key.equals(candidate)) {
+        return values[index];
+      }
+      index = (index + 1) & mask;
+    }
+    return NO_VALUE;
+  }
+
+  public void put(K key, int value) {
+    int mask = keys.length - 1;
+    int index = indexOf(key.hashCode(), mask);
+    Object candidate;
+    while (null != (candidate = keys[index])) {
+      if (candidate == key || key.equals(candidate)) {
+        values[index] = value;
+        return;
+      }
+      index = (index + 1) & mask;
+    }
+    keys[index] = key;
+    values[index] = value;
+    if (++size > keys.length >>> 1) {
+      resize();
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(keys, null);
+      size = 0;
+    }
+  }
+
+  private void resize() {
+    Object[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new Object[oldKeys.length << 1];
+    values = new int[oldKeys.length << 1];
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; ++i) {
+      Object key = oldKeys[i];
+      if (null != key) {
+        int index = indexOf(key.hashCode(), mask);
+        while (null != keys[index]) {
+          index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = oldValues[i];
+      }
+    }
+  }
+
+  private static int indexOf(int hash, int mask) {
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+}
@@ -3,9 +3,11 @@ package datadog.trace.common.metrics
 import datadog.trace.api.WellKnownTags
 import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString
 import datadog.trace.core.CoreSpan
+import datadog.trace.core.monitor.HealthMetrics
 import datadog.trace.test.util.DDSpecification
 import spock.lang.Requires
 import spock.lang.Shared
+import spock.util.concurrent.PollingConditions
 
 import java.util.concurrent.CountDownLatch
 
@@ -386,6 +388,184 @@ class ConflatingMetricAggregatorTest extends DDSpecification {
     aggregator.close()
   }
 
+  def "hot keys are accumulated in stripes until they cool down"() {
+    setup:
+    MetricWriter writer = Mock(MetricWriter)
+    Sink sink = Stub(Sink)
+    sink.validate() >> true
+    ConflatingMetricsAggregator aggregator = new ConflatingMetricsAggregator(empty,
+      sink, writer, 10, queueSize, reportingInterval, SECONDS)
+    long duration = 100
+    CoreSpan span = new SimpleSpan("service", "operation", "resource", "type", false, true, false, 0, duration)
+    CoreSpan error = new SimpleSpan("service", "operation", "resource", "type", false, true, true, 0, duration)
+    MetricKey expectedKey = new MetricKey("resource", "service", "operation", "type", 0)
+    aggregator.start()
+
+    when: "a key gets enough hits to become hot"
+    for (int i = 0; i < Aggregator.HOT_KEY_HITS + 64; ++i) {
+      aggregator.publish([span])
+    }
+
+    then:
+    new PollingConditions(timeout: 5).eventually {
+      assert null != hotStripes(aggregator)
+    }
+
+    when: "the hot key keeps getting hits"
+    CountDownLatch latch = new CountDownLatch(1)
+    int hits = 0
+    int errors = 0
+    long totalDuration = 0
+    for (int i = 0; i < 1000; ++i) {
+      aggregator.publish([span])
+    }
+    aggregator.publish([error])
+    aggregator.report()
+    latch.await(2, SECONDS)
+
+    then: "hits from both batches and stripes are reported"
+    1 * writer.startBucket(1, _, _)
+    1 * writer.add(expectedKey, _) >> { MetricKey key, AggregateMetric value ->
+      hits = value.getHitCount()
+      errors = value.getErrorCount()
+      totalDuration = value.getDuration()
+    }
+    1 * writer.finishBucket() >> { latch.countDown() }
+    hits == Aggregator.HOT_KEY_HITS + 64 + 1000 + 1
+    errors == 1
+    totalDuration == hits * duration
+    null != hotStripes(aggregator)
+
+    when: "the key gets no more hits"
+    aggregator.report()
+
+    then:
+    new PollingConditions(timeout: 5).eventually {
+      assert null == hotStripes(aggregator)
+    }
+
+    cleanup:
+    aggregator.close()
+  }
+
+  def hotStripes(ConflatingMetricsAggregator aggregator) {
+    return aggregator.keys.get("resource", "service", "operation", "type", 0)?.getStripedBatch()
+  }
+
+  def "keys which don't fit in the memory budget are collapsed"() {
+    setup:
+    MetricWriter writer = Mock(MetricWriter)
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    Sink sink = Stub(Sink)
+    sink.validate() >> true
+    MetricKey otherKey = new MetricKey(Aggregator.OTHER_RESOURCE, "service", "operation", "type", 0)
+    long budget = 2 * Aggregator.sizeOf(key(0)) + Aggregator.sizeOf(otherKey)
+    ConflatingMetricsAggregator aggregator = new ConflatingMetricsAggregator(empty,
+      sink, writer, 10, queueSize, reportingInterval, SECONDS, 0, budget, healthMetrics)
+    aggregator.start()
+
+    when: "there is room for two keys"
+    CountDownLatch latch = new CountDownLatch(1)
+    for (int i = 0; i < 5; ++i) {
+      aggregator.publish([span(i)])
+    }
+    aggregator.report()
+    latch.await(2, SECONDS)
+
+    then: "the others are collapsed"
+    1 * writer.startBucket(3, _, _)
+    1 * writer.add(key(0), _) >> { MetricKey key, AggregateMetric value ->
+      value.getHitCount() == 1
+    }
+    1 * writer.add(key(1), _) >> { MetricKey key, AggregateMetric value ->
+      value.getHitCount() == 1
+    }
+    1 * writer.add(otherKey, _) >> { MetricKey key, AggregateMetric value ->
+      value.getHitCount() == 3
+    }
+    1 * writer.finishBucket() >> { latch.countDown() }
+    1 * healthMetrics.onStatsKeysCollapsed(3)
+    0 * healthMetrics._
+
+    when: "new keys are published in the next interval"
+    latch = new CountDownLatch(1)
+    aggregator.publish([span(2)])
+    aggregator.publish([span(3)])
+    aggregator.report()
+    latch.await(2, SECONDS)
+
+    then: "they replace the keys without hits"
+    1 * writer.startBucket(2, _, _)
+    1 * writer.add(key(2), _) >> { MetricKey key, AggregateMetric value ->
+      value.getHitCount() == 1
+    }
+    1 * writer.add(key(3), _) >> { MetricKey key, AggregateMetric value ->
+      value.getHitCount() == 1
+    }
+    1 * writer.finishBucket() >> { latch.countDown() }
+    1 * healthMetrics.onStatsAggregatesEvicted(2)
+    0 * healthMetrics._
+
+    cleanup:
+    aggregator.close()
+  }
+
+  def "collapsed keys are counted once and not taken for new keys again"() {
+    setup:
+    MetricWriter writer = Mock(MetricWriter)
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    Sink sink = Stub(Sink)
+    sink.validate() >> true
+    MetricKey otherKey = new MetricKey(Aggregator.OTHER_RESOURCE, "service", "operation", "type", 0)
+    long budget = 2 * Aggregator.sizeOf(key(0)) + Aggregator.sizeOf(otherKey)
+    ConflatingMetricsAggregator aggregator = new ConflatingMetricsAggregator(empty,
+      sink, writer, 10, queueSize, reportingInterval, SECONDS, 0, budget, healthMetrics)
+    aggregator.start()
+
+    when: "the third key is collapsed"
+    CountDownLatch latch = new CountDownLatch(1)
+    for (int i = 0; i < 5; ++i) {
+      aggregator.publish([span(Math.min(i, 2))])
+    }
+    aggregator.report()
+    latch.await(2, SECONDS)
+
+    then:
+    1 * writer.add(otherKey, _) >> { MetricKey key, AggregateMetric value ->
+      value.getHitCount() == 3
+    }
+    1 * writer.finishBucket() >> { latch.countDown() }
+    1 * healthMetrics.onStatsKeysCollapsed(1)
+
+    when: "it is published again while the other keys still have hits"
+    latch = new CountDownLatch(1)
+    boolean kept = false
+    for (int i = 0; i < 3; ++i) {
+      kept |= aggregator.publish([span(i)])
+    }
+    aggregator.report()
+    latch.await(2, SECONDS)
+
+    then: "its traces aren't kept as if it were new, nor is it counted again"
+    !kept
+    1 * writer.add(otherKey, _) >> { MetricKey key, AggregateMetric value ->
+      value.getHitCount() == 1
+    }
+    1 * writer.finishBucket() >> { latch.countDown() }
+    0 * healthMetrics.onStatsKeysCollapsed(_)
+
+    cleanup:
+    aggregator.close()
+  }
+
+  def key(int i) {
+    return new MetricKey("resource" + i, "service", "operation", "type", 0)
+  }
+
+  def span(int i) {
+    return new SimpleSpan("service", "operation", "resource" + i, "type", false, true, false, 0, 100)
+  }
+
   def "should be resilient to serialization errors"() {
     setup:
     int maxAggregates = 10
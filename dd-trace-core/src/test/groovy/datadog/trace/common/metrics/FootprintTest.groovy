@@ -9,8 +9,10 @@ import spock.lang.Shared
 import java.nio.ByteBuffer
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicLongArray
 
 import static datadog.trace.api.Platform.isJavaVersionAtLeast
+import static java.util.concurrent.TimeUnit.MILLISECONDS
 import static java.util.concurrent.TimeUnit.SECONDS
 
 @Requires({
@@ -76,6 +78,31 @@ class FootprintTest extends DDSpecification {
     10                   |  1                  |  100                    |  2                |   0.01
   }
 
+  def "estimated size of an aggregate bounds its measured size"() {
+    setup:
+    MetricKey key = new MetricKey(UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+      UUID.randomUUID().toString(), "web", 200)
+    AggregateMetric aggregate = new AggregateMetric()
+
+    when: "latencies spread over two powers of two are recorded"
+    AtomicLongArray durations = new AtomicLongArray(1)
+    for (int i = 0; i < hits; ++i) {
+      long duration = MILLISECONDS.toNanos(1) + random.nextInt((int) MILLISECONDS.toNanos(3))
+      durations.set(0, i < errors ? duration | AggregateMetric.ERROR_TAG : duration)
+      aggregate.recordDurations(1, durations)
+    }
+
+    then:
+    GraphLayout.parseInstance(key, aggregate).totalSize() <= Aggregator.sizeOf(key)
+
+    where:
+    hits   | errors
+    0      | 0
+    100    | 0
+    10_000 | 0
+    10_000 | 100
+  }
+
   def randomNames(int cardinality) {
     String[] things = new String[cardinality]
     for (int i = 0; i < things.length; ++i) {
@@ -0,0 +1,98 @@
+package datadog.trace.common.metrics
+
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString
+import datadog.trace.test.util.DDSpecification
+
+class MetricKeysTest extends DDSpecification {
+
+  def "hash of the fields is the hash of the key"() {
+    expect:
+    MetricKey.hashOf(resource, service, operation, type, status) ==
+      new MetricKey(resource, service, operation, type, status).hashCode()
+
+    where:
+    resource                           | service   | operation                           | type  | status
+    "resource"                         | "service" | "operation"                         | "web" | 200
+    UTF8BytesString.create("resource") | "service" | UTF8BytesString.create("operation") | null  | 0
+    new StringBuilder("resource")      | null      | "operation"                         | "db"  | 500
+    null                               | null      | null                                | null  | 0
+  }
+
+  def "keys are found from the fields of a span"() {
+    setup:
+    MetricKeys keys = new MetricKeys(8)
+    MetricKey key = new MetricKey("resource", "service", "operation", "web", 200)
+
+    expect:
+    null == keys.get("resource", "service", "operation", "web", 200)
+    null == keys.putIfAbsent(key)
+    keys.get("resource", "service", "operation", "web", 200).is(key)
+    keys.get(UTF8BytesString.create("resource"), "service", new StringBuilder("operation"), "web", 200).is(key)
+    keys.putIfAbsent(new MetricKey("resource", "service", "operation", "web", 200)).is(key)
+    null == keys.get("resource", "service", "operation", "web", 404)
+    null == keys.get("resource", "other", "operation", "web", 200)
+  }
+
+  def "removed keys are no longer found"() {
+    setup:
+    MetricKeys keys = new MetricKeys(8)
+    List<MetricKey> added = (0..<count).collect { new MetricKey("resource" + it, "service", "operation", "web", 200) }
+    added.each { keys.putIfAbsent(it) }
+
+    when:
+    added.each { keys.remove(it) }
+
+    then:
+    added.every { null == keys.get(it.resource, it.service, it.operationName, it.type, 200) }
+
+    when: "the keys are added again after the table has been compacted"
+    added.each { assert null == keys.putIfAbsent(it) }
+
+    then:
+    added.every { keys.get(it.resource, it.service, it.operationName, it.type, 200).is(it) }
+
+    where:
+    count << [1, 8, 16]
+  }
+
+  def "an empty key is not confused with a removed slot"() {
+    setup:
+    MetricKeys keys = new MetricKeys(8)
+    MetricKey empty = new MetricKey(null, null, null, null, 0)
+    keys.putIfAbsent(empty)
+    keys.remove(empty)
+
+    expect:
+    null == keys.get("", "", "", "", 0)
+    null == keys.putIfAbsent(empty)
+    keys.get(null, null, null, null, 0).is(empty)
+  }
+
+  def "keys are not retained once the table is full"() {
+    setup:
+    MetricKeys keys = new MetricKeys(1)
+    List<MetricKey> added = (0..<32).collect { new MetricKey("resource" + it, "service", "operation", "web", 200) }
+
+    expect:
+    added.every { null == keys.putIfAbsent(it) }
+    added.count { null != keys.get(it.resource, it.service, it.operationName, it.type, 200) } == 16
+  }
+
+  def "ignored resources match any char sequence"() {
+    setup:
+    IgnoredResources ignored = new IgnoredResources(ignoredResources.toSet())
+
+    expect:
+    ignored.contains(resource) == contains
+
+    where:
+    ignoredResources  | resource                         | contains
+    []                | "foo"                            | false
+    ["foo"]           | "foo"                            | true
+    ["foo"]           | UTF8BytesString.create("foo")    | true
+    ["foo"]           | new StringBuilder("foo")         | true
+    ["foo"]           | "bar"                            | false
+    ["foo", "bar"]    | UTF8BytesString.create("bar")    | true
+    ["foo", "bar"]    | "baz"                            | false
+  }
+}
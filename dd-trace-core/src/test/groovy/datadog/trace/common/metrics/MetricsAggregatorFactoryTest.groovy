@@ -1,6 +1,8 @@
 package datadog.trace.common.metrics
 
 import datadog.trace.api.Config
+import datadog.trace.api.StatsDClient
+import datadog.trace.core.monitor.HealthMetrics
 import datadog.trace.test.util.DDSpecification
 import spock.lang.Requires
 
@@ -16,7 +18,7 @@ class MetricsAggregatorFactoryTest extends DDSpecification {
     Config config = Mock(Config)
     config.isTracerMetricsEnabled() >> false
     expect:
-    def aggregator = MetricsAggregatorFactory.createMetricsAggregator(config)
+    def aggregator = MetricsAggregatorFactory.createMetricsAggregator(config, new HealthMetrics(StatsDClient.NO_OP))
     assert aggregator instanceof NoOpMetricsAggregator
   }
 
@@ -25,7 +27,7 @@ class MetricsAggregatorFactoryTest extends DDSpecification {
     Config config = Spy(Config.get())
     config.isTracerMetricsEnabled() >> true
     expect:
-    def aggregator = MetricsAggregatorFactory.createMetricsAggregator(config)
+    def aggregator = MetricsAggregatorFactory.createMetricsAggregator(config, new HealthMetrics(StatsDClient.NO_OP))
     assert aggregator instanceof ConflatingMetricsAggregator
   }
 }
@@ -72,6 +72,21 @@ class SimpleSpan implements CoreSpan<SimpleSpan> {
     return DDId.ZERO
   }
 
+  @Override
+  long traceId() {
+    return 0
+  }
+
+  @Override
+  long spanId() {
+    return 0
+  }
+
+  @Override
+  long parentId() {
+    return 0
+  }
+
   @Override
   long getStartTime() {
     return startTime
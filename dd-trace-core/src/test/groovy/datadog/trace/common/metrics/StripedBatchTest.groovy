@@ -0,0 +1,73 @@
+package datadog.trace.common.metrics
+
+import datadog.trace.test.util.DDSpecification
+import spock.lang.Requires
+
+import java.util.concurrent.CountDownLatch
+
+import static datadog.trace.api.Platform.isJavaVersionAtLeast
+
+@Requires({
+  isJavaVersionAtLeast(8)
+})
+class StripedBatchTest extends DDSpecification {
+
+  def "durations are bucketed with less than 1.6% relative error"() {
+    expect:
+    int bucket = StripedBatch.bucketOf(duration)
+    bucket >= 0
+    bucket < StripedBatch.BUCKETS
+    Math.abs(StripedBatch.valueOf(bucket) - duration) <= duration * 0.016
+
+    where:
+    duration << [0L, 1L, 15L, 16L, 17L, 31L, 32L, 1000L, 123456L, 999_999_999L, (1L << 42) - 1]
+  }
+
+  def "small durations are recorded exactly"() {
+    expect:
+    (0..<64).every { StripedBatch.valueOf(StripedBatch.bucketOf(it)) == it }
+  }
+
+  def "very long durations are recorded in the last bucket"() {
+    expect:
+    StripedBatch.bucketOf(Long.MAX_VALUE) == StripedBatch.BUCKETS - 1
+    StripedBatch.bucketOf(-1) == 0
+  }
+
+  def "hits from all threads are folded into the aggregate"() {
+    setup:
+    StripedBatch stripedBatch = new StripedBatch(8)
+    int threadCount = 8
+    int hitsPerThread = 1000
+    CountDownLatch start = new CountDownLatch(1)
+    def threads = (0..<threadCount).collect {
+      Thread.start {
+        start.await()
+        for (int i = 0; i < hitsPerThread; ++i) {
+          stripedBatch.add(i % 2 == 0, 100)
+        }
+      }
+    }
+    AggregateMetric aggregate = new AggregateMetric()
+
+    when:
+    start.countDown()
+    threads*.join()
+    int hits = stripedBatch.contributeTo(aggregate)
+
+    then:
+    hits == threadCount * hitsPerThread
+    aggregate.getHitCount() == hits
+    aggregate.getTopLevelCount() == hits / 2
+    aggregate.getDuration() == 100L * hits
+    aggregate.getErrorCount() == 0
+    aggregate.getOkLatencies().max() > 0
+
+    when: "the stripes are folded again"
+    hits = stripedBatch.contributeTo(aggregate)
+
+    then: "they have been reset"
+    hits == 0
+    aggregate.getHitCount() == threadCount * hitsPerThread
+  }
+}
@@ -103,6 +103,24 @@ class DDAgentApiTest extends DDCoreSpecification {
     agent.close()
   }
 
+  def "the traces of a payload sent again are only counted once"() {
+    setup:
+    def agent = newAgent("v0.4/traces")
+    def client = createAgentApi(agent.address.toString())[1]
+    def payload = prepareTraces("v0.4/traces", [[], []])
+
+    when:
+    client.sendSerializedTraces(payload)
+    client.sendSerializedTraces(payload)
+
+    then:
+    client.totalTraces.get() == 2
+    client.receivedTraces.get() == 2
+
+    cleanup:
+    agent.close()
+  }
+
   def "content is sent as MSGPACK"() {
     setup:
     def agent = httpServer {
@@ -434,7 +452,7 @@ class DDAgentApiTest extends DDCoreSpecification {
       false,
       "fakeType",
       0,
-      tracer.pendingTraceFactory.create(DDId.from(1)))
+      tracer.pendingTraceFactory.create(1))
 
     def span = DDSpan.create(timestamp, context)
     span.setTag(tag, value)
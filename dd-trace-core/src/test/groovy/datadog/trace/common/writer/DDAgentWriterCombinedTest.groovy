@@ -102,7 +102,7 @@ class DDAgentWriterCombinedTest extends DDCoreSpecification {
     writer.flush()
 
     then:
-    1 * discovery.discover()
+    1 * discovery.discoverIfNecessary()
     1 * discovery.getTraceEndpoint() >> agentVersion
     1 * api.sendSerializedTraces({ it.traceCount() == 2 }) >> DDAgentApi.Response.success(200)
     0 * _
@@ -135,7 +135,7 @@ class DDAgentWriterCombinedTest extends DDCoreSpecification {
     writer.flush()
 
     then:
-    1 * discovery.discover()
+    1 * discovery.discoverIfNecessary()
     1 * discovery.getTraceEndpoint() >> agentVersion
     1 * api.sendSerializedTraces({ it.traceCount() <= traceCount }) >> DDAgentApi.Response.success(200)
     0 * _
@@ -173,7 +173,7 @@ class DDAgentWriterCombinedTest extends DDCoreSpecification {
 
     then:
     1 * discovery.getTraceEndpoint() >> agentVersion
-    1 * discovery.discover()
+    1 * discovery.discoverIfNecessary()
     1 * healthMetrics.onSerialize(_)
     1 * api.sendSerializedTraces({ it.traceCount() == 5 }) >> DDAgentApi.Response.success(200)
     _ * healthMetrics.onPublish(_, _)
@@ -215,7 +215,7 @@ class DDAgentWriterCombinedTest extends DDCoreSpecification {
 
     then:
     1 * discovery.getTraceEndpoint() >> agentVersion
-    1 * discovery.discover()
+    1 * discovery.discoverIfNecessary()
     1 * api.sendSerializedTraces({ it.traceCount() == maxedPayloadTraceCount }) >> DDAgentApi.Response.success(200)
     1 * api.sendSerializedTraces({ it.traceCount() == 1 }) >> DDAgentApi.Response.success(200)
     0 * _
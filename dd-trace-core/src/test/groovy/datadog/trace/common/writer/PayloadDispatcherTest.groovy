@@ -7,6 +7,7 @@ import datadog.trace.common.writer.ddagent.DDAgentApi
 import datadog.trace.common.writer.ddagent.DDAgentFeaturesDiscovery
 import datadog.trace.common.writer.ddagent.Payload
 import datadog.trace.common.writer.ddagent.PayloadDispatcher
+import datadog.trace.common.writer.ddagent.PayloadSender
 import datadog.trace.core.CoreTracer
 import datadog.trace.core.DDSpan
 import datadog.trace.core.DDSpanContext
@@ -18,6 +19,8 @@ import spock.lang.Shared
 import spock.lang.Timeout
 
 import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.util.concurrent.LinkedBlockingQueue
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
 
@@ -106,6 +109,48 @@ class PayloadDispatcherTest extends DDSpecification {
     "v0.5/traces" | 100
   }
 
+  def "payloads serialized into the sender's buffers are sent by the sender"() {
+    setup:
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentFeaturesDiscovery discovery = Mock(DDAgentFeaturesDiscovery)
+    discovery.getTraceEndpoint() >> traceEndpoint
+    def sent = new LinkedBlockingQueue<Payload>()
+    DDAgentApi api = Mock(DDAgentApi)
+    api.sendSerializedTraces(_) >> { Payload payload ->
+      sent.offer(payload)
+      return DDAgentApi.Response.success(200)
+    }
+    PayloadSender sender = new PayloadSender(api, healthMetrics, 1, 1, 0)
+    sender.start()
+    PayloadDispatcher dispatcher = new PayloadDispatcher(discovery, api, healthMetrics, monitoring, sender)
+    List<DDSpan> trace = [realSpan()]
+
+    when:
+    for (int i = 0; i < traceCount; ++i) {
+      dispatcher.addTrace(trace)
+    }
+    dispatcher.flush()
+    Payload payload = sent.poll(5, TimeUnit.SECONDS)
+    def channel = new ByteArrayOutputStream()
+    payload.writeTo(Channels.newChannel(channel))
+
+    then:
+    payload.traceCount() == traceCount
+    payload.sizeInBytes() == channel.size()
+    // the body starts with the msgpack array header of the whole payload
+    (channel.toByteArray()[0] & 0xF0) == 0x90 || channel.toByteArray()[0] == (byte) 0xDC
+
+    cleanup:
+    sender.close()
+
+    where:
+    traceEndpoint | traceCount
+    "v0.4/traces" | 1
+    "v0.4/traces" | 100
+    "v0.5/traces" | 1
+    "v0.5/traces" | 100
+  }
+
   def "should drop trace when there is no agent connectivity"() {
     setup:
     HealthMetrics healthMetrics = Mock(HealthMetrics)
@@ -144,6 +189,26 @@ class PayloadDispatcherTest extends DDSpecification {
     newPayload.droppedTraces() == 0
   }
 
+  def "dispatchers sharing dropped counts report them with the next payload of either"() {
+    setup:
+    DDAgentFeaturesDiscovery discovery = Mock(DDAgentFeaturesDiscovery) {
+      it.getTraceEndpoint() >> "v0.4/traces"
+    }
+    PayloadDispatcher.DroppedCounts droppedCounts = new PayloadDispatcher.DroppedCounts()
+    PayloadDispatcher first = new PayloadDispatcher(discovery, Mock(DDAgentApi), Mock(HealthMetrics), monitoring, null, 0, droppedCounts)
+    PayloadDispatcher second = new PayloadDispatcher(discovery, Mock(DDAgentApi), Mock(HealthMetrics), monitoring, null, 0, droppedCounts)
+
+    when:
+    first.addTrace([])
+    second.addTrace([])
+    first.onDroppedTrace(3)
+    Payload payload = second.newPayload(1, ByteBuffer.allocate(0))
+    then:
+    payload.droppedSpans() == 3
+    payload.droppedTraces() == 1
+    first.newPayload(1, ByteBuffer.allocate(0)).droppedTraces() == 0
+  }
+
 
   def realSpan() {
     CoreTracer tracer = Mock(CoreTracer)
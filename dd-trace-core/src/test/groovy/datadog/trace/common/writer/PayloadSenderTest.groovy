@@ -0,0 +1,192 @@
+package datadog.trace.common.writer
+
+import datadog.trace.common.writer.ddagent.DDAgentApi
+import datadog.trace.common.writer.ddagent.FlushEvent
+import datadog.trace.common.writer.ddagent.Payload
+import datadog.trace.common.writer.ddagent.PayloadSender
+import datadog.trace.common.writer.ddagent.TraceMapperV0_4
+import datadog.trace.core.monitor.HealthMetrics
+import datadog.trace.test.util.DDSpecification
+import spock.lang.Timeout
+
+import java.nio.ByteBuffer
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
+
+@Timeout(10)
+class PayloadSenderTest extends DDSpecification {
+
+  def "failed requests are retried when #description"() {
+    setup:
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentApi api = Mock(DDAgentApi)
+    PayloadSender sender = new PayloadSender(api, healthMetrics, 1, 1, 2)
+    sender.start()
+    Payload payload = payload(sender)
+
+    when:
+    sender.send(payload)
+    flush(sender)
+
+    then:
+    1 * api.sendSerializedTraces(payload) >> failure
+    1 * healthMetrics.onRetry(payload.sizeInBytes())
+    1 * api.sendSerializedTraces(payload) >> DDAgentApi.Response.success(200)
+    1 * healthMetrics.onSend(1, payload.sizeInBytes(), _)
+    0 * healthMetrics.onFailedSend(*_)
+
+    cleanup:
+    sender.close()
+
+    where:
+    description           | failure
+    "the agent fails"     | DDAgentApi.Response.failed(503)
+    "the connection dies" | DDAgentApi.Response.failed(new IOException())
+  }
+
+  def "requests rejected by the agent are not retried"() {
+    setup:
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentApi api = Mock(DDAgentApi)
+    PayloadSender sender = new PayloadSender(api, healthMetrics, 1, 1, 2)
+    sender.start()
+    Payload payload = payload(sender)
+
+    when:
+    sender.send(payload)
+    flush(sender)
+
+    then:
+    1 * api.sendSerializedTraces(payload) >> DDAgentApi.Response.failed(400)
+    0 * healthMetrics.onRetry(_)
+
+    cleanup:
+    sender.close()
+  }
+
+  def "retries give up after the maximum number of attempts"() {
+    setup:
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentApi api = Mock(DDAgentApi)
+    PayloadSender sender = new PayloadSender(api, healthMetrics, 1, 1, 2)
+    sender.start()
+    Payload payload = payload(sender)
+
+    when:
+    sender.send(payload)
+    flush(sender)
+
+    then:
+    3 * api.sendSerializedTraces(payload) >> DDAgentApi.Response.failed(500)
+    2 * healthMetrics.onRetry(payload.sizeInBytes())
+    1 * healthMetrics.onFailedSend(1, payload.sizeInBytes(), _)
+
+    cleanup:
+    sender.close()
+  }
+
+  def "buffers are recycled once their payload has been sent"() {
+    setup:
+    DDAgentApi api = Stub(DDAgentApi) {
+      sendSerializedTraces(_) >> DDAgentApi.Response.success(200)
+    }
+    PayloadSender sender = new PayloadSender(api, Stub(HealthMetrics), 1, 1, 0)
+    sender.start()
+    ByteBuffer first = sender.acquire(64)
+    ByteBuffer second = sender.acquire(64)
+
+    when:
+    sender.send(payload(first))
+    flush(sender)
+    ByteBuffer recycled = sender.acquire(64)
+
+    then:
+    recycled.array().is(first.array())
+    !recycled.array().is(second.array())
+    recycled.position() == 0
+    recycled.remaining() == 64
+
+    cleanup:
+    sender.close()
+  }
+
+  def "serializers wait for a free buffer while all buffers are in flight"() {
+    setup:
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    CountDownLatch sending = new CountDownLatch(1)
+    CountDownLatch respond = new CountDownLatch(1)
+    DDAgentApi api = Stub(DDAgentApi) {
+      sendSerializedTraces(_) >> {
+        sending.countDown()
+        respond.await()
+        return DDAgentApi.Response.success(200)
+      }
+    }
+    PayloadSender sender = new PayloadSender(api, healthMetrics, 1, 1, 0)
+    sender.start()
+    ByteBuffer inFlight = sender.acquire(64)
+    sender.acquire(64)
+    AtomicReference<ByteBuffer> acquired = new AtomicReference<>()
+
+    when:
+    sender.send(payload(inFlight))
+    sending.await()
+    Thread waiting = Thread.start {
+      acquired.set(sender.acquire(64))
+    }
+    waiting.join(200)
+
+    then:
+    1 * healthMetrics.onBuffersInFlight(1)
+    waiting.isAlive()
+    null == acquired.get()
+
+    when:
+    respond.countDown()
+    waiting.join()
+
+    then:
+    acquired.get().array().is(inFlight.array())
+    1 * healthMetrics.onBufferWait({ it > 0 })
+
+    cleanup:
+    sender.close()
+  }
+
+  def "payloads are dropped and their buffers recycled once the sender has stopped"() {
+    setup:
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentApi api = Mock(DDAgentApi)
+    PayloadSender sender = new PayloadSender(api, healthMetrics, 1, 1, 0)
+    sender.start()
+    ByteBuffer buffer = sender.acquire(64)
+    sender.acquire(64)
+    sender.close()
+
+    when:
+    Payload payload = payload(buffer)
+    sender.send(payload)
+    flush(sender)
+
+    then:
+    0 * api.sendSerializedTraces(_)
+    1 * healthMetrics.onSendDropped(1, payload.sizeInBytes())
+    sender.acquire(64).array().is(buffer.array())
+  }
+
+  def payload(PayloadSender sender) {
+    return payload(sender.acquire(64))
+  }
+
+  def payload(ByteBuffer buffer) {
+    buffer.put((byte) 0xC0).flip()
+    return new TraceMapperV0_4().newPayload().withBody(1, buffer.slice())
+  }
+
+  def flush(PayloadSender sender) {
+    CountDownLatch latch = new CountDownLatch(1)
+    sender.flush(new FlushEvent(latch))
+    assert latch.await(5, TimeUnit.SECONDS)
+  }
+}
@@ -1,7 +1,10 @@
 package datadog.trace.common.writer
 
+import datadog.trace.api.DDId
 import datadog.trace.api.StatsDClient
+import datadog.trace.common.writer.ddagent.DDAgentApi
 import datadog.trace.common.writer.ddagent.PayloadDispatcher
+import datadog.trace.common.writer.ddagent.PayloadSender
 import datadog.trace.common.writer.ddagent.TraceProcessingWorker
 import datadog.trace.core.DDSpan
 import datadog.trace.core.monitor.HealthMetrics
@@ -100,14 +103,14 @@ class TraceProcessingWorkerTest extends DDSpecification {
     when: "there is pending work it is completed before a flush"
     // processing this span will throw an exception, but it should be caught
     // and not disrupt the flush
-    worker.primaryQueue.offer([Mock(DDSpan)])
+    worker.shards[0].primaryQueue.offer([Mock(DDSpan)])
     worker.start()
     boolean flushed = worker.flush(10, TimeUnit.SECONDS)
 
     then: "the flush succeeds, triggers a dispatch, and the queue is empty"
     flushed
     flushCount.get() == 1
-    worker.primaryQueue.isEmpty()
+    worker.shards[0].primaryQueue.isEmpty()
 
     cleanup:
     worker.close()
@@ -219,7 +222,7 @@ class TraceProcessingWorkerTest extends DDSpecification {
     worker.start()
     worker.close()
     int queueSize = 0
-    while (worker.primaryQueue.offer([Mock(DDSpan)])) {
+    while (worker.shards[0].primaryQueue.offer([Mock(DDSpan)])) {
       queueSize++
     }
 
@@ -229,4 +232,56 @@ class TraceProcessingWorkerTest extends DDSpecification {
     !flushed
   }
 
+  def "sharded worker partitions traces by trace id and flushes every shard through the sender"() {
+    setup:
+    int shardCount = 4
+    List<AtomicInteger> accepted = (1..shardCount).collect { new AtomicInteger() }
+    List<AtomicInteger> flushed = (1..shardCount).collect { new AtomicInteger() }
+    PayloadDispatcher[] dispatchers = (0..<shardCount).collect { i ->
+      PayloadDispatcher dispatcher = Mock(PayloadDispatcher)
+      dispatcher.addTrace(_) >> {
+        accepted[i].incrementAndGet()
+      }
+      dispatcher.flush() >> {
+        flushed[i].incrementAndGet()
+      }
+      return dispatcher
+    } as PayloadDispatcher[]
+    PayloadSender sender = new PayloadSender(Mock(DDAgentApi), Stub(HealthMetrics), shardCount, 1, 0)
+    TraceProcessingWorker worker = new TraceProcessingWorker(10, Stub(HealthMetrics), monitoring,
+      dispatchers, sender, {
+        false
+      }, FAST_LANE, 100, TimeUnit.SECONDS) // prevent heartbeats from helping the flush happen
+    worker.start()
+
+    when: "traces of the same id are published"
+    DDSpan root = Mock(DDSpan) {
+      getTraceId() >> DDId.from(traceId)
+    }
+    5.times {
+      worker.publish(root, SAMPLER_KEEP, [root])
+    }
+
+    then: "they are all serialized by the same shard"
+    conditions.eventually {
+      assert accepted*.get().sum() == 5
+    }
+    accepted*.get().count { it == 5 } == 1
+
+    when:
+    boolean flushedAll = worker.flush(10, TimeUnit.SECONDS)
+
+    then: "the flush completes once every shard has flushed"
+    flushedAll
+    flushed.every { it.get() == 1 }
+    worker.getCapacity() == 10
+    worker.shards.every { it.primaryQueue.capacity() == 4 && it.secondaryQueue.capacity() == 4 }
+    worker.shards*.serializerThread*.name == (0..<shardCount).collect { "dd-trace-processor-$it".toString() }
+
+    cleanup:
+    worker.close()
+
+    where:
+    traceId << [1L, 2L, 3L, 1234567890123L]
+  }
 }
@@ -63,6 +63,20 @@ class DDAgentFeaturesDiscoveryTest extends DDSpecification {
     features.supportsDropping()
   }
 
+  def "the agent is only discovered until its trace endpoint is known"() {
+    setup:
+    OkHttpClient client = Mock(OkHttpClient)
+    DDAgentFeaturesDiscovery features = new DDAgentFeaturesDiscovery(client, monitoring, agentUrl, true, true)
+
+    when:
+    features.discoverIfNecessary()
+    features.discoverIfNecessary()
+
+    then:
+    1 * client.newCall(_) >> { Request request -> infoResponse(request, INFO_RESPONSE) }
+    features.getTraceEndpoint() == "v0.5/traces"
+  }
+
   def "test fallback when /info not found"() {
     setup:
     OkHttpClient client = Mock(OkHttpClient)
@@ -130,11 +130,44 @@ class TraceMapperV05PayloadTest extends DDSpecification {
     100 << 10  | 100 << 10      | 1000       | false
   }
 
+  def "retained dictionary is sent with each payload until it grows too large"() {
+    setup:
+    List<List<TraceGenerator.PojoSpan>> traces = generateRandomTraces(100, true)
+    TraceMapperV0_5 traceMapper = new TraceMapperV0_5(20 << 10, 20 << 10, retainedBytes)
+    PayloadVerifier verifier = new PayloadVerifier(traces, traceMapper)
+    MsgPackWriter packer =
+      new MsgPackWriter(new FlushingBuffer(traceMapper.messageBufferSize(), verifier))
+    when:
+    for (List<TraceGenerator.PojoSpan> trace : traces) {
+      assert packer.format(trace, traceMapper)
+    }
+    packer.flush()
+
+    then: "the retained dictionary is taken from the space for traces"
+    int maxRetainedBytes = Math.min(retainedBytes, 10 << 10)
+    traceMapper.messageBufferSize() == (20 << 10) - maxRetainedBytes
+    verifier.verifyTracesConsumed()
+    verifier.dictionaries.size() > 1
+    // the dictionary is only kept for the next payload while it is small enough
+    for (int i = 1; i < verifier.dictionaries.size(); ++i) {
+      List<String> previous = verifier.dictionaries[i - 1]
+      List<String> current = verifier.dictionaries[i]
+      boolean retained = current.size() >= previous.size() &&
+        current.subList(0, previous.size()) == previous
+      assert retained == (verifier.dictionaryBytes[i - 1] <= maxRetainedBytes)
+    }
+
+    where:
+    retainedBytes << [1 << 20, 4 << 10, 100]
+  }
+
   private static final class PayloadVerifier implements ByteBufferConsumer, WritableByteChannel {
 
     private final List<List<TraceGenerator.PojoSpan>> expectedTraces
     private final TraceMapperV0_5 mapper
     private ByteBuffer captured
+    final List<List<String>> dictionaries = new ArrayList<>()
+    final List<Long> dictionaryBytes = new ArrayList<>()
 
     private int position = 0
 
@@ -162,10 +195,13 @@ class TraceMapperV05PayloadTest extends DDSpecification {
         int header = unpacker.unpackArrayHeader()
         assertEquals(2, header)
         int dictionarySize = unpacker.unpackArrayHeader()
+        long dictionaryStart = unpacker.getTotalReadBytes()
         String[] dictionary = new String[dictionarySize]
         for (int i = 0; i < dictionary.length; ++i) {
           dictionary[i] = unpacker.unpackString()
         }
+        dictionaryBytes.add(unpacker.getTotalReadBytes() - dictionaryStart)
+        dictionaries.add(Arrays.asList(dictionary))
         int traceCount = unpacker.unpackArrayHeader()
         for (int i = 0; i < traceCount; ++i) {
           List<TraceGenerator.PojoSpan> expectedTrace = expectedTraces.get(position++)
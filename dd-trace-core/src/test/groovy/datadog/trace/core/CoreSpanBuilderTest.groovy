@@ -160,11 +160,11 @@ class CoreSpanBuilderTest extends DDCoreSpecification {
     final DDId expectedParentId = spanId
 
     final DDSpanContext mockedContext = Mock()
-    1 * mockedContext.getTraceId() >> spanId
-    1 * mockedContext.getSpanId() >> spanId
+    1 * mockedContext.traceId() >> spanId.toLong()
+    1 * mockedContext.spanId() >> spanId.toLong()
     _ * mockedContext.getServiceName() >> "foo"
     1 * mockedContext.getBaggageItems() >> [:]
-    1 * mockedContext.getTrace() >> tracer.pendingTraceFactory.create(DDId.ONE)
+    1 * mockedContext.getTrace() >> tracer.pendingTraceFactory.create(1)
 
     final String expectedName = "fakeName"
 
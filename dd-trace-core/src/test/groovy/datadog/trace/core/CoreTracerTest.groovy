@@ -1,9 +1,11 @@
 package datadog.trace.core
 
 import datadog.trace.api.Config
+import datadog.trace.api.DDTags
 import datadog.trace.api.StatsDClient
 import datadog.trace.api.sampling.PrioritySampling
 import datadog.trace.bootstrap.instrumentation.api.AgentPropagation
+import datadog.trace.bootstrap.instrumentation.api.Tags
 import datadog.trace.common.sampling.AllSampler
 import datadog.trace.common.sampling.PrioritySampler
 import datadog.trace.common.sampling.RateByServiceSampler
@@ -11,20 +13,29 @@ import datadog.trace.common.sampling.Sampler
 import datadog.trace.common.writer.DDAgentWriter
 import datadog.trace.common.writer.ListWriter
 import datadog.trace.common.writer.LoggingWriter
+import datadog.trace.common.writer.ddagent.DDAgentApi
+import datadog.trace.common.writer.ddagent.DDAgentFeaturesDiscovery
+import datadog.trace.common.writer.ddagent.TraceProcessingWorker
+import datadog.trace.core.monitor.HealthMetrics
+import datadog.trace.core.monitor.Monitoring
 import datadog.trace.core.propagation.DatadogHttpCodec
 import datadog.trace.core.propagation.HttpCodec
 import datadog.trace.core.test.DDCoreSpecification
 import spock.lang.Timeout
 
+import java.util.concurrent.TimeUnit
+
 import static datadog.trace.api.config.GeneralConfig.ENV
 import static datadog.trace.api.config.GeneralConfig.HEALTH_METRICS_ENABLED
 import static datadog.trace.api.config.GeneralConfig.SERVICE_NAME
+import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_ENABLED
 import static datadog.trace.api.config.GeneralConfig.VERSION
 import static datadog.trace.api.config.TracerConfig.AGENT_UNIX_DOMAIN_SOCKET
 import static datadog.trace.api.config.TracerConfig.HEADER_TAGS
 import static datadog.trace.api.config.TracerConfig.PRIORITY_SAMPLING
 import static datadog.trace.api.config.TracerConfig.SERVICE_MAPPING
 import static datadog.trace.api.config.TracerConfig.SPAN_TAGS
+import static datadog.trace.api.config.TracerConfig.TRACE_EARLY_SAMPLING_ENABLED
 import static datadog.trace.api.config.TracerConfig.WRITER_TYPE
 
 @Timeout(10)
@@ -375,6 +386,108 @@ class CoreTracerTest extends DDCoreSpecification {
     root.finish()
     tracer.close()
   }
+
+  def "traces sampled out early are recorded for stats only"() {
+    setup:
+    injectSysConfig(TRACE_EARLY_SAMPLING_ENABLED, "true")
+    injectSysConfig(TRACER_METRICS_ENABLED, "true")
+    def discovery = Stub(DDAgentFeaturesDiscovery) {
+      supportsDropping() >> true
+    }
+    def worker = Mock(TraceProcessingWorker)
+    def sampler = new ControllableSampler()
+    sampler.nextSamplingPriority = PrioritySampling.SAMPLER_DROP
+    def tracer = tracerBuilder().writer(agentWriter(discovery, worker)).sampler(sampler).build()
+
+    when:
+    def root = tracer.buildSpan("operation")
+      .withTag(Tags.HTTP_URL, "http://localhost/orders")
+      .withTag("custom", "value")
+      .start()
+    def child = tracer.buildSpan("child").asChildOf(root).start()
+    child.setTag("custom", "value")
+    child.setTag(Tags.HTTP_STATUS, 500)
+    child.addThrowable(new RuntimeException("boom"))
+
+    then: "the sampling decision is made when the root span is created"
+    root.getSamplingPriority() == PrioritySampling.SAMPLER_DROP
+    root.context().isLightweight()
+    child.context().isLightweight()
+
+    and: "only the tags read when the trace completes are kept"
+    root.getTag("custom") == null
+    root.getTag(Tags.HTTP_URL) == "http://localhost/orders"
+    child.getTag("custom") == null
+    child.getTag(Tags.HTTP_STATUS) == 500
+    child.isError()
+    child.getTag(DDTags.ERROR_STACK) == null
+
+    when: "the first trace sampled out completes"
+    child.finish()
+    root.finish()
+
+    then: "it is still written, because the stats haven't seen its key before"
+    1 * worker.publish(_, PrioritySampling.SAMPLER_DROP, { it.size() == 2 }) >> true
+
+    when: "another trace with the same key is sampled out"
+    def second = tracer.buildSpan("operation")
+      .withTag(Tags.HTTP_URL, "http://localhost/orders")
+      .start()
+    second.finish()
+
+    then: "it is only counted by the stats"
+    second.context().isLightweight()
+    0 * worker.publish(*_)
+
+    when: "a trace is sampled in"
+    sampler.nextSamplingPriority = PrioritySampling.SAMPLER_KEEP
+    def kept = tracer.buildSpan("kept").withTag("custom", "value").start()
+    kept.finish()
+
+    then: "it is recorded and written in full"
+    !kept.context().isLightweight()
+    kept.getTag("custom") == "value"
+    1 * worker.publish(kept, PrioritySampling.SAMPLER_KEEP, _) >> true
+
+    cleanup:
+    tracer.close()
+  }
+
+  def "traces are not sampled early until the agent lets the tracer drop them"() {
+    setup:
+    injectSysConfig(TRACE_EARLY_SAMPLING_ENABLED, "true")
+    injectSysConfig(TRACER_METRICS_ENABLED, "true")
+    def discovery = Stub(DDAgentFeaturesDiscovery) {
+      supportsDropping() >> false
+    }
+    def sampler = new ControllableSampler()
+    sampler.nextSamplingPriority = PrioritySampling.SAMPLER_DROP
+    def tracer = tracerBuilder()
+      .writer(agentWriter(discovery, Mock(TraceProcessingWorker)))
+      .sampler(sampler)
+      .build()
+
+    when:
+    def root = tracer.buildSpan("operation").withTag("custom", "value").start()
+
+    then:
+    root.getSamplingPriority() == PrioritySampling.UNSET
+    !root.context().isLightweight()
+    root.getTag("custom") == "value"
+
+    cleanup:
+    root.finish()
+    tracer.close()
+  }
+
+  private DDAgentWriter agentWriter(DDAgentFeaturesDiscovery discovery, TraceProcessingWorker worker) {
+    return new DDAgentWriter(
+      discovery,
+      Mock(DDAgentApi),
+      new HealthMetrics(StatsDClient.NO_OP),
+      new Monitoring(StatsDClient.NO_OP, 1, TimeUnit.SECONDS),
+      worker)
+  }
 }
 
 class ControllableSampler<T extends CoreSpan<T>> implements Sampler<T>, PrioritySampler<T> {
@@ -138,6 +138,27 @@ class DDSpanContextTest extends DDCoreSpecification {
     Integer | 0x55
   }
 
+  def "ids and their strings are only created once"() {
+    setup:
+    def span = tracer.buildSpan("fakeOperation").start()
+    def context = span.context()
+    def scope = tracer.activateSpan(span)
+
+    expect:
+    context.getTraceId().is(context.getTraceId())
+    context.getSpanId().is(context.getSpanId())
+    context.getParentId().is(context.getParentId())
+    context.getTraceId().toLong() == context.traceId()
+    context.getSpanId().toLong() == context.spanId()
+    tracer.getTraceId().is(tracer.getTraceId())
+    tracer.getSpanId().is(tracer.getSpanId())
+    tracer.getSpanId() == context.getSpanId().toString()
+
+    cleanup:
+    scope.close()
+    span.finish()
+  }
+
   def "force keep really keeps the trace"() {
     setup:
     def span = tracer.buildSpan("fakeOperation")
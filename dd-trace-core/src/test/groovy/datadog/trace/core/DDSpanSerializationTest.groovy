@@ -143,7 +143,7 @@ class DDSpanSerializationTest extends DDCoreSpecification {
       false,
       null,
       tags.size(),
-      tracer.pendingTraceFactory.create(DDId.ONE))
+      tracer.pendingTraceFactory.create(1))
     context.setAllTags(tags)
     def span = DDSpan.create(0, context)
     CaptureBuffer capture = new CaptureBuffer()
@@ -212,7 +212,7 @@ class DDSpanSerializationTest extends DDCoreSpecification {
       false,
       null,
       tags.size(),
-      tracer.pendingTraceFactory.create(DDId.ONE))
+      tracer.pendingTraceFactory.create(1))
     context.setAllTags(tags)
     def span = DDSpan.create(0, context)
     CaptureBuffer capture = new CaptureBuffer()
@@ -291,7 +291,7 @@ class DDSpanSerializationTest extends DDCoreSpecification {
       false,
       spanType,
       1,
-      tracer.pendingTraceFactory.create(DDId.ONE))
+      tracer.pendingTraceFactory.create(1))
     ctx.setAllTags(["k1": "v1"])
     return ctx
   }
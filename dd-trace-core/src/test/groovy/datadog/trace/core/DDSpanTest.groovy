@@ -256,7 +256,7 @@ class DDSpanTest extends DDCoreSpecification {
       false,
       "fakeType",
       0,
-      tracer.pendingTraceFactory.create(DDId.ONE))
+      tracer.pendingTraceFactory.create(1))
     then:
     context.isTopLevel() == expectTopLevel
 
@@ -0,0 +1,48 @@
+package datadog.trace.core
+
+import datadog.trace.test.util.DDSpecification
+
+class MetricMapTest extends DDSpecification {
+
+  def "metrics keep their type"() {
+    setup:
+    MetricMap metrics = new MetricMap(1)
+    when:
+    metrics.putInt("int", 1)
+    metrics.putLong("long", 2L)
+    metrics.putDouble("double", 0.5d)
+    metrics.put("float", 0.25f)
+    metrics.put("short", (short) 3)
+    then:
+    metrics.size() == 5
+    metrics.get("int") instanceof Integer
+    metrics.get("long") instanceof Long
+    metrics.get("double") instanceof Double
+    metrics.get("float") instanceof Double
+    metrics.get("short") instanceof Short
+    metrics == ["int": 1, "long": 2L, "double": 0.5d, "float": 0.25d, "short": (short) 3]
+  }
+
+  def "metrics can be replaced and removed"() {
+    setup:
+    MetricMap metrics = new MetricMap()
+    metrics.put("a", (short) 1)
+    metrics.putInt("b", 2)
+    metrics.putInt("c", 3)
+    when:
+    metrics.putDouble("a", 1.5d)
+    metrics.remove("b")
+    metrics.put("c", null)
+    metrics.putLong("d", 4L)
+    then:
+    metrics == ["a": 1.5d, "d": 4L]
+    when:
+    Iterator<CharSequence> it = metrics.keySet().iterator()
+    while (it.hasNext()) {
+      it.next()
+      it.remove()
+    }
+    then:
+    metrics.isEmpty()
+  }
+}
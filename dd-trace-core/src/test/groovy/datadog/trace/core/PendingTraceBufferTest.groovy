@@ -10,12 +10,13 @@ import datadog.trace.core.scopemanager.ContinuableScopeManager
 import datadog.trace.test.util.DDSpecification
 import spock.lang.Subject
 import spock.lang.Timeout
+import spock.util.concurrent.PollingConditions
 
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 
-import static datadog.trace.core.PendingTraceBuffer.BUFFER_SIZE
+import static datadog.trace.api.ConfigDefaults.DEFAULT_PENDING_TRACE_BUFFER_SIZE
 
 @Timeout(5)
 class PendingTraceBufferTest extends DDSpecification {
@@ -62,7 +63,7 @@ class PendingTraceBufferTest extends DDSpecification {
 
   def "continuation buffers root"() {
     setup:
-    def trace = factory.create(DDId.ONE)
+    def trace = factory.create(1)
     def span = newSpanOf(trace)
 
     expect:
@@ -92,7 +93,7 @@ class PendingTraceBufferTest extends DDSpecification {
 
   def "unfinished child buffers root"() {
     setup:
-    def trace = factory.create(DDId.ONE)
+    def trace = factory.create(1)
     def parent = newSpanOf(trace)
     def child = newSpanOf(parent)
 
@@ -127,18 +128,18 @@ class PendingTraceBufferTest extends DDSpecification {
 
     when: "Fill the buffer"
     while (buffer.queue.size() < (buffer.queue.capacity())) {
-      addContinuation(newSpanOf(factory.create(DDId.ONE))).finish()
+      addContinuation(newSpanOf(factory.create(1))).finish()
     }
 
     then:
-    buffer.queue.size() == BUFFER_SIZE
+    buffer.queue.size() == DEFAULT_PENDING_TRACE_BUFFER_SIZE
     buffer.queue.capacity() * bufferSpy.enqueue(_)
     _ * tracer.getPartialFlushMinSpans() >> 10
     _ * tracer.mapServiceName(_)
     0 * _
 
     when:
-    addContinuation(newSpanOf(factory.create(DDId.ONE))).finish()
+    addContinuation(newSpanOf(factory.create(1))).finish()
 
     then:
     1 * bufferSpy.enqueue(_)
@@ -153,7 +154,7 @@ class PendingTraceBufferTest extends DDSpecification {
     setup:
     def latch = new CountDownLatch(1)
 
-    def trace = factory.create(DDId.ONE)
+    def trace = factory.create(1)
     def parent = addContinuation(newSpanOf(trace))
     TraceScope.Continuation continuation = continuations[0]
 
@@ -203,7 +204,7 @@ class PendingTraceBufferTest extends DDSpecification {
     def parentLatch = new CountDownLatch(1)
     def childLatch = new CountDownLatch(1)
 
-    def trace = factory.create(DDId.ONE)
+    def trace = factory.create(1)
     def parent = newSpanOf(trace)
 
     when:
@@ -277,6 +278,91 @@ class PendingTraceBufferTest extends DDSpecification {
     counter.get() == 3
   }
 
+  def "parked trace is written once it is no longer referenced"() {
+    setup:
+    buffer.start()
+    def latch = new CountDownLatch(1)
+    def checks = new AtomicInteger(0)
+    def element = new PendingTraceBuffer.Element() {
+        @Override
+        long oldestFinishedTime() {
+          return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis())
+        }
+
+        @Override
+        boolean lastReferencedNanosAgo(long nanos) {
+          // still referenced when first enqueued
+          return checks.incrementAndGet() > 1
+        }
+
+        @Override
+        void write() {
+          latch.countDown()
+        }
+      }
+
+    when:
+    buffer.enqueue(element)
+
+    then:
+    latch.await(2, TimeUnit.SECONDS)
+    checks.get() == 2
+  }
+
+  def "full buffer writes parked traces immediately"() {
+    setup:
+    def smallBuffer = PendingTraceBuffer.delaying(2)
+    smallBuffer.start()
+    def counter = new AtomicInteger(0)
+    def element = new PendingTraceBuffer.Element() {
+        @Override
+        long oldestFinishedTime() {
+          return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis())
+        }
+
+        @Override
+        boolean lastReferencedNanosAgo(long nanos) {
+          return false
+        }
+
+        @Override
+        void write() {
+          counter.incrementAndGet()
+        }
+      }
+
+    when:
+    4.times {
+      smallBuffer.enqueue(element)
+    }
+
+    then:
+    new PollingConditions(timeout: 1).eventually {
+      assert counter.get() == 2
+    }
+
+    when:
+    smallBuffer.flush()
+
+    then:
+    counter.get() == 4
+
+    cleanup:
+    smallBuffer.close()
+  }
+
+  def "buffer size is raised to the minimum"() {
+    when:
+    def tinyBuffer = PendingTraceBuffer.delaying(size)
+
+    then:
+    tinyBuffer.bufferSize == PendingTraceBuffer.MIN_BUFFER_SIZE
+    tinyBuffer.queue.capacity() == PendingTraceBuffer.MIN_BUFFER_SIZE
+
+    where:
+    size << [-1, 0, 1]
+  }
+
   def addContinuation(DDSpan span) {
     def scope = scopeManager.activate(span, ScopeSource.INSTRUMENTATION, true)
     continuations << scope.capture()
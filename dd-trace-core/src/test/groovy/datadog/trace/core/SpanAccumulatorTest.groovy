@@ -0,0 +1,99 @@
+package datadog.trace.core
+
+import datadog.trace.test.util.DDSpecification
+import spock.lang.Timeout
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicBoolean
+
+@Timeout(10)
+class SpanAccumulatorTest extends DDSpecification {
+
+  def accumulator = new SpanAccumulator()
+
+  def "empty accumulator"() {
+    expect:
+    accumulator.isEmpty()
+    accumulator.size() == 0
+    accumulator.drain().isEmpty()
+    accumulator.oldestFinishedTime() == Long.MAX_VALUE
+  }
+
+  def "spans are drained newest first across segments"() {
+    setup:
+    def spans = (1..count).collect { span(it, 1) }
+
+    when:
+    spans.each { accumulator.add(it) }
+
+    then:
+    accumulator.size() == count
+    accumulator.asList() == spans.reverse()
+    accumulator.oldestFinishedTime() == 2
+
+    when:
+    def drained = accumulator.drain()
+
+    then:
+    drained == spans.reverse()
+    accumulator.isEmpty()
+    accumulator.oldestFinishedTime() == Long.MAX_VALUE
+
+    where:
+    count << [1, 8, 9, 100, 2000]
+  }
+
+  def "oldest finished time tracks the earliest finish"() {
+    when:
+    accumulator.add(span(100, 50))
+    accumulator.add(span(10, 20))
+    accumulator.add(span(200, 1))
+
+    then:
+    accumulator.oldestFinishedTime() == 30
+  }
+
+  def "concurrent adds and drains neither lose nor duplicate spans"() {
+    setup:
+    int threads = 4
+    int spansPerThread = 2000
+    def spans = (1..threads).collect { (1..spansPerThread).collect { i -> span(i, 1) } }
+    def drained = new ConcurrentLinkedQueue<DDSpan>()
+    def start = new CountDownLatch(1)
+    def done = new CountDownLatch(threads)
+    def finished = new AtomicBoolean(false)
+    def adders = spans.collect { toAdd ->
+      Thread.start {
+        start.await()
+        toAdd.each { accumulator.add(it) }
+        done.countDown()
+      }
+    }
+    def drainer = Thread.start {
+      start.await()
+      while (!finished.get()) {
+        drained.addAll(accumulator.drain())
+      }
+    }
+
+    when:
+    start.countDown()
+    done.await()
+    finished.set(true)
+    drainer.join()
+    adders*.join()
+    drained.addAll(accumulator.drain())
+
+    then:
+    drained.size() == threads * spansPerThread
+    drained.toSet().size() == drained.size()
+  }
+
+  def span(long start, long duration) {
+    return Stub(DDSpan) {
+      getStartTime() >> start
+      getDurationNano() >> duration
+    }
+  }
+}
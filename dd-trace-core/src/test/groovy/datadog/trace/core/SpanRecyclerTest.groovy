@@ -0,0 +1,152 @@
+package datadog.trace.core
+
+import datadog.trace.api.StatsDClient
+import datadog.trace.api.interceptor.MutableSpan
+import datadog.trace.api.interceptor.TraceInterceptor
+import datadog.trace.bootstrap.instrumentation.api.Tags
+import datadog.trace.common.writer.DDAgentWriter
+import datadog.trace.common.writer.ListWriter
+import datadog.trace.common.writer.MultiWriter
+import datadog.trace.common.writer.Writer
+import datadog.trace.common.writer.ddagent.DDAgentApi
+import datadog.trace.common.writer.ddagent.DDAgentFeaturesDiscovery
+import datadog.trace.common.writer.ddagent.TraceProcessingWorker
+import datadog.trace.core.monitor.HealthMetrics
+import datadog.trace.core.monitor.Monitoring
+import datadog.trace.core.test.DDCoreSpecification
+
+import java.util.concurrent.TimeUnit
+
+import static datadog.trace.api.config.TracerConfig.TRACE_SPAN_RECYCLING_DEBUG
+import static datadog.trace.api.config.TracerConfig.TRACE_SPAN_RECYCLING_ENABLED
+
+class SpanRecyclerTest extends DDCoreSpecification {
+
+  def "only traces written to the agent writer alone are recyclable"() {
+    setup:
+    injectSysConfig(TRACE_SPAN_RECYCLING_ENABLED, "true")
+    Writer writer
+    switch (writerType) {
+      case "agent":
+        writer = agentWriter()
+        break
+      case "list":
+        writer = new ListWriter()
+        break
+      default:
+        writer = new MultiWriter([agentWriter(), new ListWriter()] as Writer[])
+    }
+    def tracer = tracerBuilder().writer(writer).build()
+
+    when:
+    def span = tracer.buildSpan("operation").start()
+    span.finish()
+
+    then:
+    span.context().getTrace().isRecyclable() == recyclable
+
+    cleanup:
+    tracer.close()
+
+    where:
+    writerType | recyclable
+    "agent"    | true
+    "list"     | false
+    "multi"    | false
+  }
+
+  def "storage of written traces is recycled"() {
+    setup:
+    injectSysConfig(TRACE_SPAN_RECYCLING_ENABLED, "true")
+    def tracer = tracerBuilder().writer(agentWriter()).build()
+    drain(SpanRecycler.SLOTS)
+    drain(SpanRecycler.METRICS)
+
+    when:
+    def span = tracer.buildSpan("operation").withTag(Tags.COMPONENT, "test").start()
+    span.setMetric("metric", 1)
+    span.finish()
+    // as the agent writer's worker does once the trace has been serialized
+    SpanRecycler.recycle([span])
+
+    then:
+    span.getTag(Tags.COMPONENT) == null
+    span.getUnsafeMetrics().isEmpty()
+    span.context().toString().contains("*recycled*")
+
+    when: "a span is created after the trace was recycled"
+    def next = tracer.buildSpan("next").start()
+    next.setTag(Tags.COMPONENT, "reused")
+    next.setMetric("metric", 2)
+
+    then: "it reuses the recycled storage"
+    SpanRecycler.SLOTS.poll() == null
+    SpanRecycler.METRICS.poll() == null
+    next.getTag(Tags.COMPONENT) == "reused"
+    next.getUnsafeMetrics() == ["metric": 2]
+
+    cleanup:
+    tracer.close()
+  }
+
+  def "traces are not recycled when a trace interceptor could hold them"() {
+    setup:
+    injectSysConfig(TRACE_SPAN_RECYCLING_ENABLED, "true")
+    def tracer = tracerBuilder().writer(agentWriter()).build()
+    tracer.addTraceInterceptor(new TraceInterceptor() {
+        @Override
+        Collection<? extends MutableSpan> onTraceComplete(Collection<? extends MutableSpan> trace) {
+          return trace
+        }
+
+        @Override
+        int priority() {
+          return 0
+        }
+      })
+
+    when:
+    def span = tracer.buildSpan("operation").withTag(Tags.COMPONENT, "test").start()
+    span.finish()
+    SpanRecycler.recycle([span])
+
+    then:
+    span.getTag(Tags.COMPONENT) == "test"
+
+    cleanup:
+    tracer.close()
+  }
+
+  def "using a span after it was recycled fails in debug mode"() {
+    setup:
+    injectSysConfig(TRACE_SPAN_RECYCLING_ENABLED, "true")
+    injectSysConfig(TRACE_SPAN_RECYCLING_DEBUG, "true")
+    def tracer = tracerBuilder().writer(agentWriter()).build()
+    def span = tracer.buildSpan("operation").start()
+    span.finish()
+    SpanRecycler.recycle([span])
+
+    when:
+    span.setTag("late", "value")
+
+    then:
+    thrown(IllegalStateException)
+
+    cleanup:
+    tracer.close()
+  }
+
+  private DDAgentWriter agentWriter() {
+    return new DDAgentWriter(
+      Mock(DDAgentFeaturesDiscovery),
+      Mock(DDAgentApi),
+      new HealthMetrics(StatsDClient.NO_OP),
+      new Monitoring(StatsDClient.NO_OP, 1, TimeUnit.SECONDS),
+      Mock(TraceProcessingWorker))
+  }
+
+  private static void drain(SpanRecycler.Pool<?> pool) {
+    while (null != pool.poll()) {
+    }
+  }
+}
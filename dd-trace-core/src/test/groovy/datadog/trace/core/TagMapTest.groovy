@@ -0,0 +1,100 @@
+package datadog.trace.core
+
+import datadog.trace.bootstrap.instrumentation.api.Tags
+import datadog.trace.test.util.DDSpecification
+
+class TagMapTest extends DDSpecification {
+
+  def "well-known and other tags can be set, read and removed"() {
+    setup:
+    TagMap tags = new TagMap()
+    when:
+    tags.put(Tags.COMPONENT, "jdbc")
+    tags.put(Tags.HTTP_STATUS, 200)
+    for (int i = 0; i < 20; ++i) {
+      tags.put("custom-" + i, i)
+    }
+    then:
+    tags.size() == 22
+    tags.get(Tags.COMPONENT) == "jdbc"
+    tags.get(Tags.HTTP_STATUS) == 200
+    tags.get("custom-19") == 19
+    !tags.containsKey(Tags.DB_TYPE)
+    when:
+    tags.remove(Tags.COMPONENT)
+    tags.remove("custom-0")
+    tags.put("custom-1", "replaced")
+    tags.put("custom-2", null)
+    then:
+    tags.size() == 19
+    tags.get(Tags.COMPONENT) == null
+    tags.get("custom-0") == null
+    tags.get("custom-1") == "replaced"
+    tags.get("custom-19") == 19
+    tags == expected()
+  }
+
+  def "cursor visits every tag once"() {
+    setup:
+    TagMap tags = new TagMap()
+    tags.put(Tags.SPAN_KIND, "client")
+    tags.put("foo", "bar")
+    tags.put(Tags.DB_INSTANCE, "orders")
+    when:
+    Map<String, Object> visited = [:]
+    for (int i = tags.first(); i >= 0; i = tags.next(i)) {
+      assert !visited.containsKey(tags.keyAt(i))
+      visited.put(tags.keyAt(i), tags.valueAt(i))
+    }
+    then:
+    visited == [(Tags.SPAN_KIND): "client", "foo": "bar", (Tags.DB_INSTANCE): "orders"]
+    new TagMap().first() == -1
+  }
+
+  def "tags can be removed while iterating"() {
+    setup:
+    TagMap tags = new TagMap()
+    tags.put(Tags.HTTP_URL, "http://localhost")
+    tags.put(Tags.PEER_HOSTNAME, "localhost")
+    for (int i = 0; i < 5; ++i) {
+      tags.put("custom-" + i, i)
+    }
+    when:
+    Iterator<String> it = tags.keySet().iterator()
+    while (it.hasNext()) {
+      if (it.next() != Tags.HTTP_URL) {
+        it.remove()
+      }
+    }
+    then:
+    tags == [(Tags.HTTP_URL): "http://localhost"]
+  }
+
+  def "cleared tags can be reused"() {
+    setup:
+    TagMap tags = new TagMap()
+    tags.put(Tags.HTTP_METHOD, "GET")
+    tags.put("foo", "bar")
+    when:
+    tags.clear()
+    then:
+    tags.isEmpty()
+    tags.first() == -1
+    when:
+    tags.put("foo", "baz")
+    then:
+    tags == ["foo": "baz"]
+  }
+
+  private static Map<String, Object> expected() {
+    Map<String, Object> expected = new HashMap<>()
+    for (int i = 0; i < 20; ++i) {
+      expected.put("custom-" + i, i)
+    }
+    expected.remove("custom-0")
+    expected.remove("custom-2")
+    expected.put("custom-1", "replaced")
+    expected.put(Tags.HTTP_STATUS, 200)
+    return expected
+  }
+}
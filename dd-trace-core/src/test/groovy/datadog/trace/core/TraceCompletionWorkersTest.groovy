@@ -0,0 +1,112 @@
+package datadog.trace.core
+
+import datadog.trace.api.interceptor.MutableSpan
+import datadog.trace.api.interceptor.TraceInterceptor
+import datadog.trace.common.writer.ListWriter
+import datadog.trace.core.monitor.HealthMetrics
+import datadog.trace.core.test.DDCoreSpecification
+
+import java.util.concurrent.TimeUnit
+
+import static datadog.trace.api.config.TracerConfig.TRACE_COMPLETION_ASYNC_ENABLED
+
+class TraceCompletionWorkersTest extends DDCoreSpecification {
+
+  def "completed traces are processed off the thread which finished them"() {
+    setup:
+    injectSysConfig(TRACE_COMPLETION_ASYNC_ENABLED, "true")
+    def writer = new ListWriter()
+    def tracer = tracerBuilder().writer(writer).build()
+    String completingThread = null
+    tracer.addTraceInterceptor(new TraceInterceptor() {
+        @Override
+        Collection<? extends MutableSpan> onTraceComplete(Collection<? extends MutableSpan> trace) {
+          completingThread = Thread.currentThread().getName()
+          return trace
+        }
+
+        @Override
+        int priority() {
+          return 0
+        }
+      })
+
+    when:
+    tracer.buildSpan("operation").start().finish()
+    writer.waitForTraces(1)
+
+    then:
+    writer.firstTrace().size() == 1
+    completingThread == "dd-trace-completion"
+
+    cleanup:
+    tracer.close()
+  }
+
+  def "traces are dropped when the workers can't keep up"() {
+    setup:
+    def healthMetrics = Mock(HealthMetrics)
+    def tracer = Mock(CoreTracer)
+    // the workers are not started, so nothing is taken from their queue
+    def workers = new TraceCompletionWorkers(tracer, healthMetrics, 1, 2)
+    def trace = [Mock(DDSpan)]
+
+    expect:
+    workers.publish(trace)
+    workers.publish(trace)
+
+    when:
+    boolean published = workers.publish(trace)
+
+    then:
+    !published
+    1 * healthMetrics.onFailedTraceCompletion(trace)
+  }
+
+  def "flush gives up rather than spinning when a queue stays full"() {
+    setup:
+    def tracer = Mock(CoreTracer)
+    // the workers are not started, so their queue never drains
+    def workers = new TraceCompletionWorkers(tracer, Mock(HealthMetrics), 1, 2)
+    def trace = [Mock(DDSpan)]
+    workers.publish(trace)
+    workers.publish(trace)
+
+    expect:
+    !workers.flush(100, TimeUnit.MILLISECONDS)
+  }
+
+  def "flush waits for published traces to be completed"() {
+    setup:
+    def tracer = Mock(CoreTracer)
+    def workers = new TraceCompletionWorkers(tracer, Mock(HealthMetrics), 2, 16)
+    workers.start()
+    def trace = [Mock(DDSpan)]
+
+    when:
+    workers.publish(trace)
+    boolean flushed = workers.flush(5, TimeUnit.SECONDS)
+
+    then:
+    flushed
+    1 * tracer.completeTrace(trace)
+
+    cleanup:
+    workers.close()
+  }
+
+  def "traces left behind by exited workers are completed on close"() {
+    setup:
+    def tracer = Mock(CoreTracer)
+    // the workers are not started, so the traces are only completed by close
+    def workers = new TraceCompletionWorkers(tracer, Mock(HealthMetrics), 1, 16)
+    def trace = [Mock(DDSpan)]
+    workers.publish(trace)
+
+    when:
+    workers.close()
+
+    then:
+    1 * tracer.completeTrace(trace)
+  }
+}
@@ -187,4 +187,74 @@ class HealthMetricsTest extends DDSpecification {
     traceCount = ThreadLocalRandom.current().nextInt(1, 100)
     sendSize = ThreadLocalRandom.current().nextInt(1, 100)
   }
+
+  def "test onBuffersInFlight"() {
+    when:
+    healthMetrics.onBuffersInFlight(buffers)
+
+    then:
+    1 * statsD.gauge('sender.buffers.in_flight', buffers)
+    0 * _
+
+    where:
+    buffers = ThreadLocalRandom.current().nextInt(1, 10)
+  }
+
+  def "test onBufferWait"() {
+    setup:
+    def statsD = Mock(StatsDClient)
+    def healthMetrics = new HealthMetrics(statsD, 100, TimeUnit.MILLISECONDS)
+    healthMetrics.start()
+
+    when:
+    healthMetrics.onBufferWait(waitNanos)
+    healthMetrics.onBufferWait(waitNanos)
+    Thread.sleep(110)
+
+    then:
+    1 * statsD.count('sender.buffer.wait_ns', 2 * waitNanos)
+    0 * _
+    cleanup:
+    healthMetrics.close()
+
+    where:
+    waitNanos = ThreadLocalRandom.current().nextLong(1, 1000000)
+  }
+
+  def "test onRetry"() {
+    when:
+    healthMetrics.onRetry(retrySize)
+
+    then:
+    1 * statsD.incrementCounter('api.retries.total')
+    1 * statsD.count('api.bytes.retried', retrySize)
+    0 * _
+
+    where:
+    retrySize = ThreadLocalRandom.current().nextInt(1, 100)
+  }
+
+  def "test onStatsAggregatesEvicted"() {
+    when:
+    healthMetrics.onStatsAggregatesEvicted(evicted)
+
+    then:
+    1 * statsD.count('stats.aggregates.evicted', evicted)
+    0 * _
+
+    where:
+    evicted = ThreadLocalRandom.current().nextInt(1, 100)
+  }
+
+  def "test onStatsKeysCollapsed"() {
+    when:
+    healthMetrics.onStatsKeysCollapsed(collapsed)
+
+    then:
+    1 * statsD.count('stats.keys.collapsed', collapsed)
+    0 * _
+
+    where:
+    collapsed = ThreadLocalRandom.current().nextInt(1, 100)
+  }
 }
@@ -0,0 +1,59 @@
+package datadog.trace.core.processor
+
+import datadog.trace.core.DDSpan
+import datadog.trace.test.util.DDSpecification
+
+import static datadog.trace.core.processor.TracePipeline.FORCE_KEEP
+import static datadog.trace.core.processor.TracePipeline.SKIP_STATS
+
+class TracePipelineTest extends DDSpecification {
+
+  def "each span goes through every stage before the next span"() {
+    setup:
+    def first = Mock(SpanStage)
+    def second = Mock(SpanStage)
+    def span1 = Mock(DDSpan)
+    def span2 = Mock(DDSpan)
+    def pipeline = new TracePipeline(first, second)
+
+    when:
+    int signals = pipeline.process([span1, span2])
+
+    then:
+    1 * first.process(span1, 0) >> FORCE_KEEP
+    then:
+    1 * second.process(span1, FORCE_KEEP) >> FORCE_KEEP
+    then:
+    1 * first.process(span2, FORCE_KEEP) >> (FORCE_KEEP | SKIP_STATS)
+    then:
+    1 * second.process(span2, FORCE_KEEP | SKIP_STATS) >> SKIP_STATS
+    0 * _
+    signals == SKIP_STATS
+  }
+
+  def "the pipeline reads the tags any of its stages read"() {
+    setup:
+    def first = Stub(SpanStage) {
+      addTagsRead(_) >> { Set<String> tags -> tags.add("http.url") }
+    }
+    def second = Stub(SpanStage) {
+      addTagsRead(_) >> { Set<String> tags -> tags.add("http.status_code") }
+    }
+
+    when:
+    def pipeline = new TracePipeline(first, second)
+
+    then:
+    pipeline.reads("http.url")
+    pipeline.reads("http.status_code")
+    !pipeline.reads("custom")
+  }
+
+  def "no signals are raised for an empty trace"() {
+    setup:
+    def stage = Mock(SpanStage)
+
+    expect:
+    new TracePipeline(stage).process([]) == 0
+  }
+}
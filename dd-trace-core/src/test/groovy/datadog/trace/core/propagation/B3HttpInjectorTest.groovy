@@ -34,7 +34,7 @@ class B3HttpInjectorTest extends DDCoreSpecification {
       false,
       "fakeType",
       0,
-      tracer.pendingTraceFactory.create(DDId.ONE))
+      tracer.pendingTraceFactory.create(1))
 
     final Map<String, String> carrier = Mock()
 
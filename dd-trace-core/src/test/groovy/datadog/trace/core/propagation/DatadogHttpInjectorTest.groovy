@@ -36,7 +36,7 @@ class DatadogHttpInjectorTest extends DDCoreSpecification {
       false,
       "fakeType",
       0,
-      tracer.pendingTraceFactory.create(DDId.ONE))
+      tracer.pendingTraceFactory.create(1))
 
     final Map<String, String> carrier = Mock()
 
@@ -38,7 +38,7 @@ class HaystackHttpInjectorTest extends DDCoreSpecification {
       false,
       "fakeType",
       0,
-      tracer.pendingTraceFactory.create(DDId.ONE))
+      tracer.pendingTraceFactory.create(1))
 
     final Map<String, String> carrier = Mock()
 
@@ -86,7 +86,7 @@ class HaystackHttpInjectorTest extends DDCoreSpecification {
       false,
       "fakeType",
       0,
-      tracer.pendingTraceFactory.create(DDId.ONE))
+      tracer.pendingTraceFactory.create(1))
 
     final Map<String, String> carrier = Mock()
 
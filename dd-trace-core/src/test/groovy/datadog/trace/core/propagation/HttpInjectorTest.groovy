@@ -39,7 +39,7 @@ class HttpInjectorTest extends DDCoreSpecification {
       false,
       "fakeType",
       0,
-      tracer.pendingTraceFactory.create(DDId.ONE))
+      tracer.pendingTraceFactory.create(1))
 
     final Map<String, String> carrier = Mock()
 
@@ -1,7 +1,6 @@
 package datadog.trace.core.scopemanager
 
 import datadog.trace.agent.test.utils.ThreadUtils
-import datadog.trace.api.DDId
 import datadog.trace.api.StatsDClient
 import datadog.trace.api.interceptor.MutableSpan
 import datadog.trace.api.interceptor.TraceInterceptor
@@ -955,7 +954,7 @@ class EventCountingExtendedListener implements ExtendedScopeListener {
   public final List<EVENT> events = new ArrayList<>()
 
   @Override
-  void afterScopeActivated(DDId traceId, DDId spanId) {
+  void afterScopeActivated(long traceId, long spanId) {
     synchronized (events) {
       events.add(ACTIVATE)
     }
@@ -0,0 +1,121 @@
+package datadog.trace.core.scopemanager
+
+import datadog.trace.api.config.TracerConfig
+import datadog.trace.common.writer.ListWriter
+import datadog.trace.core.test.DDCoreSpecification
+
+import static datadog.trace.core.scopemanager.EVENT.ACTIVATE
+import static datadog.trace.core.scopemanager.EVENT.CLOSE
+
+class ScopePoolingTest extends DDCoreSpecification {
+
+  def "closed scopes are reused when pooling"() {
+    setup:
+    injectSysConfig(TracerConfig.SCOPE_POOLING_ENABLED, "true")
+    def tracer = tracerBuilder().writer(new ListWriter()).build()
+    def first = tracer.buildSpan("first").start()
+    def second = tracer.buildSpan("second").start()
+
+    when:
+    def firstScope = tracer.activateSpan(first)
+    firstScope.close()
+    def secondScope = tracer.activateSpan(second)
+
+    then:
+    secondScope.is(firstScope)
+    secondScope.span() == second
+    tracer.activeSpan() == second
+
+    when:
+    secondScope.close()
+
+    then:
+    tracer.activeSpan() == null
+
+    cleanup:
+    second.finish()
+    first.finish()
+    tracer.close()
+  }
+
+  def "the span of a pooled scope can still be finished through the scope once closed"() {
+    setup:
+    injectSysConfig(TracerConfig.SCOPE_POOLING_ENABLED, "true")
+    def writer = new ListWriter()
+    def tracer = tracerBuilder().writer(writer).build()
+    def span = tracer.buildSpan("operation").start()
+
+    when: "as instrumentations do in their exit advice"
+    def scope = tracer.activateSpan(span)
+    scope.close()
+    scope.span().finish()
+    writer.waitForTraces(1)
+
+    then:
+    scope.span() == span
+    writer.firstTrace() == [span]
+
+    cleanup:
+    tracer.close()
+  }
+
+  def "closed scopes are not reused by default"() {
+    setup:
+    def tracer = tracerBuilder().writer(new ListWriter()).build()
+    def first = tracer.buildSpan("first").start()
+    def second = tracer.buildSpan("second").start()
+
+    when:
+    def firstScope = tracer.activateSpan(first)
+    firstScope.close()
+    def secondScope = tracer.activateSpan(second)
+
+    then:
+    !secondScope.is(firstScope)
+    firstScope.span() == first
+
+    cleanup:
+    secondScope.close()
+    second.finish()
+    first.finish()
+    tracer.close()
+  }
+
+  def "nested scopes are activated and closed in order beyond the initial stack capacity"() {
+    setup:
+    injectSysConfig(TracerConfig.SCOPE_POOLING_ENABLED, pooling)
+    def tracer = tracerBuilder().writer(new ListWriter()).build()
+    ContinuableScopeManager scopeManager = tracer.scopeManager
+    def listener = new EventCountingExtendedListener()
+    scopeManager.addExtendedScopeListener(listener)
+    def spans = (0..<depth).collect { tracer.buildSpan("span-" + it).start() }
+
+    when:
+    def scopes = spans.collect { tracer.activateSpan(it) }
+
+    then:
+    scopeManager.scopeStack().depth() == depth
+    tracer.activeSpan() == spans.last()
+
+    when:
+    scopes.reverse().eachWithIndex { scope, i ->
+      scope.close()
+      assert tracer.activeSpan() == (i == depth - 1 ? null : spans[depth - 2 - i])
+    }
+
+    then:
+    scopeManager.scopeStack().depth() == 0
+    // each close re-activates the scope below it
+    listener.events.count(ACTIVATE) == 2 * depth - 1
+    listener.events.count(CLOSE) == depth
+
+    cleanup:
+    spans*.finish()
+    tracer.close()
+
+    where:
+    pooling | depth
+    "false" | 40
+    "true"  | 40
+  }
+}
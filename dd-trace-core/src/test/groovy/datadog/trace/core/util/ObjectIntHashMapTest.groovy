@@ -0,0 +1,56 @@
+package datadog.trace.core.util
+
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString
+import datadog.trace.test.util.DDSpecification
+
+import static datadog.trace.core.util.ObjectIntHashMap.NO_VALUE
+
+class ObjectIntHashMapTest extends DDSpecification {
+
+  def "values can be read back after growing"() {
+    setup:
+    ObjectIntHashMap<Object> map = new ObjectIntHashMap<>(4)
+    when:
+    for (int i = 0; i < 1000; ++i) {
+      map.put("key-" + i, i)
+    }
+    then:
+    map.size() == 1000
+    for (int i = 0; i < 1000; ++i) {
+      assert map.get("key-" + i) == i
+    }
+    map.get("key-1000") == NO_VALUE
+  }
+
+  def "keys are matched by equality"() {
+    setup:
+    ObjectIntHashMap<Object> map = new ObjectIntHashMap<>(16)
+    UTF8BytesString key = UTF8BytesString.create("foo")
+    when:
+    map.put(key, 1)
+    map.put(new String("foo"), 2)
+    map.put(UTF8BytesString.create("foo"), 3)
+    then:
+    map.size() == 2
+    map.get(key) == 3
+    map.get("foo") == 2
+  }
+
+  def "cleared map can be reused"() {
+    setup:
+    ObjectIntHashMap<Object> map = new ObjectIntHashMap<>(16)
+    map.put("foo", 1)
+    map.put(1L, 2)
+    when:
+    map.clear()
+    then:
+    map.isEmpty()
+    map.get("foo") == NO_VALUE
+    map.get(1L) == NO_VALUE
+    when:
+    map.put(1L, 3)
+    then:
+    map.size() == 1
+    map.get(1L) == 3
+  }
+}
@@ -0,0 +1,143 @@
+package datadog.trace.core.serialization.msgpack;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
+import datadog.trace.core.serialization.ByteBufferConsumer;
+import datadog.trace.core.serialization.FlushingBuffer;
+import datadog.trace.core.serialization.Mapper;
+import datadog.trace.core.serialization.Writable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+public class EncodedStringTableTest {
+
+  @Test
+  public void testEncodingIsReused() {
+    byte[] encoded = EncodedStringTable.encode("http.method");
+    assertSame(encoded, EncodedStringTable.encode(new String("http.method")));
+    assertSame(encoded, EncodedStringTable.encode(UTF8BytesString.create("http.method")));
+  }
+
+  @Test
+  public void testCollidingStringsAreInternedSideBySide() {
+    List<String> colliding = collidingStrings("side-by-side-", 2);
+    byte[] first = EncodedStringTable.encode(colliding.get(0));
+    byte[] second = EncodedStringTable.encode(colliding.get(1));
+    for (int i = 0; i < 10; ++i) {
+      assertSame(first, EncodedStringTable.encode(colliding.get(0)));
+      assertSame(second, EncodedStringTable.encode(colliding.get(1)));
+    }
+  }
+
+  @Test
+  public void testHotStringsAreNotEvicted() {
+    List<String> colliding = collidingStrings("hot-", EncodedStringTable.WAYS + 1);
+    byte[][] hot = new byte[EncodedStringTable.WAYS][];
+    for (int i = 0; i < hot.length; ++i) {
+      hot[i] = EncodedStringTable.encode(colliding.get(i));
+    }
+    // the set is full of strings used since the last miss
+    assertNull(EncodedStringTable.encode(colliding.get(EncodedStringTable.WAYS)));
+    for (int i = 0; i < hot.length; ++i) {
+      assertSame(hot[i], EncodedStringTable.encode(colliding.get(i)));
+    }
+  }
+
+  private static List<String> collidingStrings(String prefix, int count) {
+    List<String> colliding = new ArrayList<>();
+    int set = -1;
+    for (int i = 0; colliding.size() < count; ++i) {
+      String s = prefix + i;
+      int hash = s.hashCode();
+      int index = (hash ^ (hash >>> 16)) & (EncodedStringTable.SETS - 1);
+      if (set < 0) {
+        set = index;
+      }
+      if (index == set) {
+        colliding.add(s);
+      }
+    }
+    return colliding;
+  }
+
+  @Test
+  public void testEncodingHasHeader() {
+    assertArrayEquals(
+        new byte[] {(byte) (MsgPackWriter.FIXSTR | 3), 'f', 'o', 'o'},
+        EncodedStringTable.encode("foo"));
+    String sixteen = "0123456789abcdef";
+    byte[] encoded = EncodedStringTable.encode(sixteen);
+    assertEquals(MsgPackWriter.STR8, encoded[0]);
+    assertEquals(16, encoded[1]);
+    assertArrayEquals(sixteen.getBytes(UTF_8), Arrays.copyOfRange(encoded, 2, encoded.length));
+  }
+
+  @Test
+  public void testLongStringsAreNotInterned() {
+    char[] chars = new char[256];
+    Arrays.fill(chars, 'x');
+    assertNull(EncodedStringTable.encode(new String(chars)));
+    // fits in 255 chars but not in 255 bytes
+    char[] multibyte = new char[128];
+    Arrays.fill(multibyte, 'ß');
+    assertNull(EncodedStringTable.encode(new String(multibyte)));
+  }
+
+  @Test
+  public void testMutableStringsAreNotInterned() {
+    assertNull(EncodedStringTable.encode(new StringBuilder("foo")));
+  }
+
+  @Test
+  public void testWriteInternedStrings() throws IOException {
+    final List<CharSequence> strings =
+        Arrays.<CharSequence>asList(
+            "service",
+            UTF8BytesString.create("thread-1"),
+            "tschüß",
+            new StringBuilder("not interned"),
+            null,
+            "service");
+    final ByteBuffer[] written = new ByteBuffer[1];
+    MsgPackWriter writer =
+        new MsgPackWriter(
+            new FlushingBuffer(
+                1024,
+                new ByteBufferConsumer() {
+                  @Override
+                  public void accept(int messageCount, ByteBuffer buffer) {
+                    written[0] = buffer;
+                  }
+                }));
+    writer.format(
+        strings,
+        new Mapper<List<CharSequence>>() {
+          @Override
+          public void map(List<CharSequence> data, Writable writable) {
+            for (CharSequence string : data) {
+              writable.writeInternedString(string);
+            }
+          }
+        });
+    writer.flush();
+    MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(written[0]);
+    for (CharSequence string : strings) {
+      if (null == string) {
+        unpacker.unpackNil();
+      } else {
+        assertEquals(string.toString(), unpacker.unpackString());
+      }
+    }
+  }
+}
@@ -23,6 +23,33 @@ public class GrowableBufferTest {
     }
   }
 
+  @Test
+  public void sliceLeavesBufferOpenForWrites() {
+    GrowableBuffer gb = new GrowableBuffer(16);
+    gb.putInt(1);
+    ByteBuffer first = gb.slice();
+    gb.putInt(2);
+    ByteBuffer second = gb.slice();
+    assertEquals(4, first.remaining());
+    assertEquals(1, first.getInt());
+    assertEquals(8, second.remaining());
+    assertEquals(1, second.getInt());
+    assertEquals(2, second.getInt());
+  }
+
+  @Test
+  public void positionTracksBytesWritten() {
+    GrowableBuffer gb = new GrowableBuffer(5);
+    assertEquals(0, gb.position());
+    for (int i = 0; i < 5; ++i) {
+      gb.putInt(i);
+    }
+    assertEquals(20, gb.position());
+    assertEquals(gb.slice().remaining(), gb.position());
+    gb.reset();
+    assertEquals(0, gb.position());
+  }
+
   @Test
   public void testBufferCapacity() {
     GrowableBuffer gb = new GrowableBuffer(5);
@@ -170,6 +170,21 @@ class TraceGenerator {
       return parentId
     }
 
+    @Override
+    long traceId() {
+      return traceId.toLong()
+    }
+
+    @Override
+    long spanId() {
+      return spanId.toLong()
+    }
+
+    @Override
+    long parentId() {
+      return parentId.toLong()
+    }
+
     @Override
     long getStartTime() {
       return start
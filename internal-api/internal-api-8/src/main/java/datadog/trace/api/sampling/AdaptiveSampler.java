@@ -29,7 +29,13 @@ import java.util.concurrent.atomic.LongAdder;
  *
  * <p>To smooth out these hiccups the sampler maintains an under-sampling budget which can be used
  * to compensate for too rapid changes in the incoming events rate and maintain the target average
- * number of samples per window.
+ * number of samples per window. Once the budget of a window is spent no more events are sampled
+ * until the window rolls, without drawing random numbers or contending on the sample counter.
+ *
+ * <p>Callers seeing many events may skip the events which would not be sampled anyway rather than
+ * asking for each one: {@linkplain #nextSampleGap()} tells how many events to skip before the next
+ * one is sampled with the current probability, and the skipped events are counted in batches with
+ * {@linkplain #skip(long)} or {@linkplain #sampleAfter(long)}.
  */
 public final class AdaptiveSampler {
 
@@ -47,8 +53,13 @@ public final class AdaptiveSampler {
       testCounter.increment();
     }
 
-    boolean addSample(final long limit) {
-      return sampleCounter.getAndUpdate(s -> s + (s < limit ? 1 : 0)) < limit;
+    void addTests(final long tests) {
+      testCounter.add(tests);
+    }
+
+    /** @return the number of samples taken before this one, which is taken if below the limit */
+    long addSample(final long limit) {
+      return sampleCounter.getAndUpdate(s -> s + (s < limit ? 1 : 0));
     }
 
     void reset() {
@@ -76,10 +87,15 @@ public final class AdaptiveSampler {
   // maintenance one
   private volatile double probability = 1d;
   private volatile long samplesBudget;
+  // identifies the current window, incremented by each roll
+  private volatile long window = 0;
+  // the last window whose samples budget was spent
+  private volatile long spentWindow = -1;
 
   // these attributes are accessed solely from the window maintenance thread
   private double totalCountRunningAverage = 0d;
   private double avgSamples;
+  private long rolls = 0;
 
   private final double budgetAlpha;
 
@@ -133,15 +149,85 @@ public final class AdaptiveSampler {
    * @return {@literal true} if the event should be sampled
    */
   public final boolean sample() {
+    // the window is published last when it rolls, so the counts are at least as recent
+    final long currentWindow = window;
     final Counts counts = countsRef.get();
     counts.addTest();
-    if (ThreadLocalRandom.current().nextDouble() < probability) {
-      return counts.addSample(samplesBudget);
+    if (!isBudgetSpent(currentWindow) && ThreadLocalRandom.current().nextDouble() < probability) {
+      return addSample(counts, currentWindow);
     }
 
     return false;
   }
 
+  /**
+   * Counts a number of skipped events followed by one picked with the current probability, as
+   * told by {@linkplain #nextSampleGap()}, and provides binary answer whether that one is sampled
+   *
+   * @param skipped the number of events skipped before this one
+   * @return {@literal true} if the event should be sampled
+   */
+  public final boolean sampleAfter(final long skipped) {
+    // read before the counts, as in sample()
+    final long currentWindow = window;
+    final Counts counts = countsRef.get();
+    counts.addTests(skipped + 1);
+    return !isBudgetSpent(currentWindow) && addSample(counts, currentWindow);
+  }
+
+  /**
+   * Counts events which were not sampled
+   *
+   * @param events the number of events
+   */
+  public final void skip(final long events) {
+    if (events > 0) {
+      countsRef.get().addTests(events);
+    }
+  }
+
+  /**
+   * @return the number of events to skip before the next one is sampled with the current
+   *     probability, following the geometric distribution of the gaps between samples
+   */
+  public final int nextSampleGap() {
+    final double p = probability;
+    if (p >= 1d) {
+      return 0;
+    }
+    if (p <= 0d) {
+      return Integer.MAX_VALUE;
+    }
+    // 1 - nextDouble() is in (0, 1], so its log is finite
+    final double gap =
+        Math.log(1d - ThreadLocalRandom.current().nextDouble()) / Math.log1p(-p);
+    return gap >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) gap;
+  }
+
+  /** @return an identifier of the current sampling window, which changes whenever it rolls */
+  public final long getWindow() {
+    return window;
+  }
+
+  /** @return {@literal true} if no more events will be sampled in the current window */
+  public final boolean isBudgetSpent() {
+    return isBudgetSpent(window);
+  }
+
+  private boolean isBudgetSpent(final long currentWindow) {
+    return spentWindow == currentWindow;
+  }
+
+  private boolean addSample(final Counts counts, final long currentWindow) {
+    final long limit = samplesBudget;
+    final long taken = counts.addSample(limit);
+    if (taken + 1 >= limit) {
+      // open the circuit for the rest of the window, unless it rolled meanwhile
+      spentWindow = currentWindow;
+    }
+    return taken < limit;
+  }
+
   private void rollWindow() {
 
     final Counts counts = countsSlots[countsSlotIdx];
@@ -176,6 +262,8 @@ public final class AdaptiveSampler {
       } else {
         probability = Math.min(samplesBudget / totalCountRunningAverage, 1d);
       }
+      // published last, so whoever sees the new window sees its counts, budget and probability
+      window = ++rolls;
     } finally {
       // Reset the previous counts slot
       counts.reset();
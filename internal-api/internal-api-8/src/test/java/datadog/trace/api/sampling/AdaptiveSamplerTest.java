@@ -2,6 +2,9 @@ package datadog.trace.api.sampling;
 
 import static java.lang.Math.abs;
 import static java.lang.Math.round;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
@@ -254,6 +257,49 @@ class AdaptiveSamplerTest {
     testSampler(new RepeatingWindowsEventsSupplier(0, 1000, 0, 1000, 0, 1000), 15);
   }
 
+  @Test
+  public void testBudgetSpentUntilWindowRolls() {
+    final AdaptiveSampler sampler =
+        new AdaptiveSampler(WINDOW_DURATION, 1, LOOKBACK, taskScheduler);
+    final long window = sampler.getWindow();
+
+    int samples = 0;
+    while (sampler.sample()) {
+      samples++;
+    }
+    assertTrue(samples > 0);
+    assertTrue(sampler.isBudgetSpent());
+    assertFalse(sampler.sample());
+    assertFalse(sampler.sampleAfter(10));
+
+    rollWindow();
+    assertNotEquals(window, sampler.getWindow());
+    assertFalse(sampler.isBudgetSpent());
+  }
+
+  @Test
+  public void testSampleGapsFollowProbability() {
+    final AdaptiveSampler sampler =
+        new AdaptiveSampler(WINDOW_DURATION, SAMPLES_PER_WINDOW, LOOKBACK, taskScheduler);
+    // every event is sampled until the rate of events is known
+    assertEquals(0, sampler.nextSampleGap());
+
+    sampler.skip(999_999);
+    assertTrue(sampler.sampleAfter(0));
+    rollWindow();
+
+    // with 1 sample in 1M events the probability is the samples budget over 1M
+    final double p = (SAMPLES_PER_WINDOW - 1) * 16 / 1_000_000d;
+    final int draws = 100_000;
+    long gaps = 0;
+    for (int i = 0; i < draws; i++) {
+      gaps += sampler.nextSampleGap();
+    }
+    final double expectedGap = (1 - p) / p;
+    final double meanGap = gaps / (double) draws;
+    assertTrue(abs(meanGap - expectedGap) < expectedGap * 0.05, meanGap + " != " + expectedGap);
+  }
+
   private void testSampler(final IntSupplier windowEventsSupplier, final int maxErrorPercent)
       throws Exception {
     int iterations =
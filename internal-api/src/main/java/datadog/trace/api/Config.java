@@ -19,6 +19,7 @@ import static datadog.trace.api.ConfigDefaults.DEFAULT_JMX_FETCH_STATSD_PORT;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_KAFKA_CLIENT_PROPAGATION_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_LOGS_INJECTION_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PARTIAL_FLUSH_MIN_SPANS;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_PENDING_TRACE_BUFFER_SIZE;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PERF_METRICS_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PRIORITY_SAMPLING_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PRIORITY_SAMPLING_FORCE;
@@ -28,28 +29,46 @@ import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_EXCEPTION_HISTO
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_EXCEPTION_HISTOGRAM_TOP_ITEMS;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_EXCEPTION_SAMPLE_LIMIT;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_PROXY_PORT;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_SCOPE_MODE;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_START_DELAY;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_START_FORCE_FIRST;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_UPLOAD_COMPRESSION;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_UPLOAD_COMPRESSION_CPU_BUDGET;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_UPLOAD_MAX_IN_FLIGHT_BYTES;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_UPLOAD_MAX_QUEUED_RECORDINGS;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_UPLOAD_PERIOD;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PROFILING_UPLOAD_TIMEOUT;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PROPAGATION_STYLE_EXTRACT;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PROPAGATION_STYLE_INJECT;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_RESOLVER_PERSISTENT_CACHE_ENABLED;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_RETRANSFORM_PARALLELISM;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_RETRANSFORM_PARALLEL_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_RUNTIME_CONTEXT_FIELD_INJECTION;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_SCOPE_DEPTH_LIMIT;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_SERIALVERSIONUID_FIELD_INJECTION;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_SERVICE_NAME;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_SITE;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACER_METRICS_MAX_MEMORY_BYTES;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_AGENT_PORT;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_AGENT_V05_ENABLED;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_AGENT_V05_RETAINED_BYTES;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_ANALYTICS_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_ANNOTATIONS;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_COMPLETION_ASYNC_ENABLED;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_COMPLETION_QUEUE_SIZE;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_COMPLETION_WORKERS;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_EARLY_SAMPLING_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_EXECUTORS_ALL;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_METHODS;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_RATE_LIMIT;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_REPORT_HOSTNAME;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_RESOLVER_ENABLED;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_SENDER_MAX_IN_FLIGHT;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_SENDER_MAX_RETRIES;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_SERIALIZATION_SHARDS;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_SPAN_RECYCLING_DEBUG;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_SPAN_RECYCLING_ENABLED;
 import static datadog.trace.api.DDTags.HOST_TAG;
 import static datadog.trace.api.DDTags.INTERNAL_HOST_NAME;
 import static datadog.trace.api.DDTags.LANGUAGE_TAG_KEY;
@@ -78,6 +97,7 @@ import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_BUFFERING_EN
 import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_ENABLED;
 import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_IGNORED_RESOURCES;
 import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_MAX_AGGREGATES;
+import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_MAX_MEMORY_BYTES;
 import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_MAX_PENDING;
 import static datadog.trace.api.config.GeneralConfig.VERSION;
 import static datadog.trace.api.config.JmxFetchConfig.JMX_FETCH_CHECK_PERIOD;
@@ -104,11 +124,15 @@ import static datadog.trace.api.config.ProfilingConfig.PROFILING_PROXY_HOST;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_PROXY_PASSWORD;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_PROXY_PORT;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_PROXY_USERNAME;
+import static datadog.trace.api.config.ProfilingConfig.PROFILING_SCOPE_MODE;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_START_DELAY;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_START_FORCE_FIRST;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_TAGS;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_TEMPLATE_OVERRIDE_FILE;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_UPLOAD_COMPRESSION;
+import static datadog.trace.api.config.ProfilingConfig.PROFILING_UPLOAD_COMPRESSION_CPU_BUDGET;
+import static datadog.trace.api.config.ProfilingConfig.PROFILING_UPLOAD_MAX_IN_FLIGHT_BYTES;
+import static datadog.trace.api.config.ProfilingConfig.PROFILING_UPLOAD_MAX_QUEUED_RECORDINGS;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_UPLOAD_PERIOD;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_UPLOAD_TIMEOUT;
 import static datadog.trace.api.config.ProfilingConfig.PROFILING_URL;
@@ -127,7 +151,11 @@ import static datadog.trace.api.config.TraceInstrumentationConfig.KAFKA_CLIENT_P
 import static datadog.trace.api.config.TraceInstrumentationConfig.LOGS_INJECTION_ENABLED;
 import static datadog.trace.api.config.TraceInstrumentationConfig.LOGS_MDC_TAGS_INJECTION_ENABLED;
 import static datadog.trace.api.config.TraceInstrumentationConfig.OSGI_SEARCH_DEPTH;
+import static datadog.trace.api.config.TraceInstrumentationConfig.RESOLVER_PERSISTENT_CACHE_DIR;
+import static datadog.trace.api.config.TraceInstrumentationConfig.RESOLVER_PERSISTENT_CACHE_ENABLED;
 import static datadog.trace.api.config.TraceInstrumentationConfig.RESOLVER_USE_LOADCLASS;
+import static datadog.trace.api.config.TraceInstrumentationConfig.RETRANSFORM_PARALLELISM;
+import static datadog.trace.api.config.TraceInstrumentationConfig.RETRANSFORM_PARALLEL_ENABLED;
 import static datadog.trace.api.config.TraceInstrumentationConfig.RUNTIME_CONTEXT_FIELD_INJECTION;
 import static datadog.trace.api.config.TraceInstrumentationConfig.SERIALVERSIONUID_FIELD_INJECTION;
 import static datadog.trace.api.config.TraceInstrumentationConfig.SERVLET_ASYNC_TIMEOUT_ERROR;
@@ -149,6 +177,7 @@ import static datadog.trace.api.config.TracerConfig.HTTP_CLIENT_ERROR_STATUSES;
 import static datadog.trace.api.config.TracerConfig.HTTP_SERVER_ERROR_STATUSES;
 import static datadog.trace.api.config.TracerConfig.ID_GENERATION_STRATEGY;
 import static datadog.trace.api.config.TracerConfig.PARTIAL_FLUSH_MIN_SPANS;
+import static datadog.trace.api.config.TracerConfig.PENDING_TRACE_BUFFER_SIZE;
 import static datadog.trace.api.config.TracerConfig.PRIORITY_SAMPLING;
 import static datadog.trace.api.config.TracerConfig.PRIORITY_SAMPLING_FORCE;
 import static datadog.trace.api.config.TracerConfig.PROPAGATION_STYLE_EXTRACT;
@@ -156,19 +185,30 @@ import static datadog.trace.api.config.TracerConfig.PROPAGATION_STYLE_INJECT;
 import static datadog.trace.api.config.TracerConfig.PROXY_NO_PROXY;
 import static datadog.trace.api.config.TracerConfig.SCOPE_DEPTH_LIMIT;
 import static datadog.trace.api.config.TracerConfig.SCOPE_INHERIT_ASYNC_PROPAGATION;
+import static datadog.trace.api.config.TracerConfig.SCOPE_POOLING_ENABLED;
 import static datadog.trace.api.config.TracerConfig.SCOPE_STRICT_MODE;
 import static datadog.trace.api.config.TracerConfig.SERVICE_MAPPING;
 import static datadog.trace.api.config.TracerConfig.SPAN_TAGS;
 import static datadog.trace.api.config.TracerConfig.SPLIT_BY_TAGS;
 import static datadog.trace.api.config.TracerConfig.TRACE_AGENT_PORT;
 import static datadog.trace.api.config.TracerConfig.TRACE_AGENT_URL;
+import static datadog.trace.api.config.TracerConfig.TRACE_AGENT_V05_RETAINED_BYTES;
 import static datadog.trace.api.config.TracerConfig.TRACE_ANALYTICS_ENABLED;
+import static datadog.trace.api.config.TracerConfig.TRACE_COMPLETION_ASYNC_ENABLED;
+import static datadog.trace.api.config.TracerConfig.TRACE_COMPLETION_QUEUE_SIZE;
+import static datadog.trace.api.config.TracerConfig.TRACE_COMPLETION_WORKERS;
+import static datadog.trace.api.config.TracerConfig.TRACE_EARLY_SAMPLING_ENABLED;
 import static datadog.trace.api.config.TracerConfig.TRACE_RATE_LIMIT;
 import static datadog.trace.api.config.TracerConfig.TRACE_REPORT_HOSTNAME;
 import static datadog.trace.api.config.TracerConfig.TRACE_RESOLVER_ENABLED;
 import static datadog.trace.api.config.TracerConfig.TRACE_SAMPLE_RATE;
 import static datadog.trace.api.config.TracerConfig.TRACE_SAMPLING_OPERATION_RULES;
 import static datadog.trace.api.config.TracerConfig.TRACE_SAMPLING_SERVICE_RULES;
+import static datadog.trace.api.config.TracerConfig.TRACE_SENDER_MAX_IN_FLIGHT;
+import static datadog.trace.api.config.TracerConfig.TRACE_SENDER_MAX_RETRIES;
+import static datadog.trace.api.config.TracerConfig.TRACE_SERIALIZATION_SHARDS;
+import static datadog.trace.api.config.TracerConfig.TRACE_SPAN_RECYCLING_DEBUG;
+import static datadog.trace.api.config.TracerConfig.TRACE_SPAN_RECYCLING_ENABLED;
 import static datadog.trace.api.config.TracerConfig.TRACE_STRICT_WRITES_ENABLED;
 import static datadog.trace.api.config.TracerConfig.WRITER_TYPE;
 import static datadog.trace.util.CollectionUtils.immutableSet;
@@ -282,8 +322,10 @@ public class Config {
   private final int scopeDepthLimit;
   private final boolean scopeStrictMode;
   private final boolean scopeInheritAsyncPropagation;
+  private final boolean scopePoolingEnabled;
   private final int partialFlushMinSpans;
   private final boolean traceStrictWritesEnabled;
+  private final int pendingTraceBufferSize;
   private final boolean runtimeContextFieldInjection;
   private final boolean serialVersionUIDFieldInjection;
   private final Set<PropagationStyle> propagationStylesToExtract;
@@ -306,9 +348,16 @@ public class Config {
   private final boolean perfMetricsEnabled;
 
   private final boolean tracerMetricsEnabled;
+  private final boolean traceEarlySamplingEnabled;
+  private final boolean traceSpanRecyclingEnabled;
+  private final boolean traceSpanRecyclingDebug;
+  private final boolean traceCompletionAsyncEnabled;
+  private final int traceCompletionWorkers;
+  private final int traceCompletionQueueSize;
   private final boolean tracerMetricsBufferingEnabled;
   private final int tracerMetricsMaxAggregates;
   private final int tracerMetricsMaxPending;
+  private final int tracerMetricsMaxMemoryBytes;
 
   private final boolean logsInjectionEnabled;
   private final boolean logsMDCTagsInjectionEnabled;
@@ -338,6 +387,9 @@ public class Config {
   private final String profilingTemplateOverrideFile;
   private final int profilingUploadTimeout;
   private final String profilingUploadCompression;
+  private final double profilingUploadCompressionCpuBudget;
+  private final int profilingUploadMaxInFlightBytes;
+  private final int profilingUploadMaxQueuedRecordings;
   private final String profilingProxyHost;
   private final int profilingProxyPort;
   private final String profilingProxyUsername;
@@ -346,6 +398,7 @@ public class Config {
   private final int profilingExceptionHistogramTopItems;
   private final int profilingExceptionHistogramMaxCollectionSize;
   private final boolean profilingExcludeAgentThreads;
+  private final String profilingScopeMode;
 
   private final boolean kafkaClientPropagationEnabled;
   private final boolean kafkaClientBase64DecodingEnabled;
@@ -361,6 +414,10 @@ public class Config {
   private final boolean tempJarsCleanOnBoot;
 
   private final boolean traceAgentV05Enabled;
+  private final int traceAgentV05RetainedBytes;
+  private final int traceSerializationShards;
+  private final int traceSenderMaxInFlight;
+  private final int traceSenderMaxRetries;
 
   private final boolean debugEnabled;
   private final String configFile;
@@ -370,6 +427,10 @@ public class Config {
   private final boolean internalExitOnFailure;
 
   private final boolean resolverUseLoadClassEnabled;
+  private final boolean resolverPersistentCacheEnabled;
+  private final String resolverPersistentCacheDir;
+  private final boolean retransformParallelEnabled;
+  private final int retransformParallelism;
 
   private final String jdbcPreparedStatementClassName;
   private final String jdbcConnectionClassName;
@@ -558,11 +619,16 @@ public class Config {
 
     scopeInheritAsyncPropagation = configProvider.getBoolean(SCOPE_INHERIT_ASYNC_PROPAGATION, true);
 
+    scopePoolingEnabled = configProvider.getBoolean(SCOPE_POOLING_ENABLED, false);
+
     partialFlushMinSpans =
         configProvider.getInteger(PARTIAL_FLUSH_MIN_SPANS, DEFAULT_PARTIAL_FLUSH_MIN_SPANS);
 
     traceStrictWritesEnabled = configProvider.getBoolean(TRACE_STRICT_WRITES_ENABLED, false);
 
+    pendingTraceBufferSize =
+        configProvider.getInteger(PENDING_TRACE_BUFFER_SIZE, DEFAULT_PENDING_TRACE_BUFFER_SIZE);
+
     runtimeContextFieldInjection =
         configProvider.getBoolean(
             RUNTIME_CONTEXT_FIELD_INJECTION, DEFAULT_RUNTIME_CONTEXT_FIELD_INJECTION);
@@ -608,10 +674,28 @@ public class Config {
 
     tracerMetricsEnabled =
         isJavaVersionAtLeast(8) && configProvider.getBoolean(TRACER_METRICS_ENABLED, false);
+    traceEarlySamplingEnabled =
+        configProvider.getBoolean(
+            TRACE_EARLY_SAMPLING_ENABLED, DEFAULT_TRACE_EARLY_SAMPLING_ENABLED);
+    traceSpanRecyclingEnabled =
+        configProvider.getBoolean(
+            TRACE_SPAN_RECYCLING_ENABLED, DEFAULT_TRACE_SPAN_RECYCLING_ENABLED);
+    traceSpanRecyclingDebug =
+        configProvider.getBoolean(TRACE_SPAN_RECYCLING_DEBUG, DEFAULT_TRACE_SPAN_RECYCLING_DEBUG);
+    traceCompletionAsyncEnabled =
+        configProvider.getBoolean(
+            TRACE_COMPLETION_ASYNC_ENABLED, DEFAULT_TRACE_COMPLETION_ASYNC_ENABLED);
+    traceCompletionWorkers =
+        configProvider.getInteger(TRACE_COMPLETION_WORKERS, DEFAULT_TRACE_COMPLETION_WORKERS);
+    traceCompletionQueueSize =
+        configProvider.getInteger(TRACE_COMPLETION_QUEUE_SIZE, DEFAULT_TRACE_COMPLETION_QUEUE_SIZE);
     tracerMetricsBufferingEnabled =
         configProvider.getBoolean(TRACER_METRICS_BUFFERING_ENABLED, false);
     tracerMetricsMaxAggregates = configProvider.getInteger(TRACER_METRICS_MAX_AGGREGATES, 2048);
     tracerMetricsMaxPending = configProvider.getInteger(TRACER_METRICS_MAX_PENDING, 2048);
+    tracerMetricsMaxMemoryBytes =
+        configProvider.getInteger(
+            TRACER_METRICS_MAX_MEMORY_BYTES, DEFAULT_TRACER_METRICS_MAX_MEMORY_BYTES);
 
     logsInjectionEnabled =
         configProvider.getBoolean(LOGS_INJECTION_ENABLED, DEFAULT_LOGS_INJECTION_ENABLED);
@@ -622,6 +706,19 @@ public class Config {
     traceAgentV05Enabled =
         configProvider.getBoolean(ENABLE_TRACE_AGENT_V05, DEFAULT_TRACE_AGENT_V05_ENABLED);
 
+    traceAgentV05RetainedBytes =
+        configProvider.getInteger(
+            TRACE_AGENT_V05_RETAINED_BYTES, DEFAULT_TRACE_AGENT_V05_RETAINED_BYTES);
+
+    traceSerializationShards =
+        configProvider.getInteger(TRACE_SERIALIZATION_SHARDS, DEFAULT_TRACE_SERIALIZATION_SHARDS);
+
+    traceSenderMaxInFlight =
+        configProvider.getInteger(TRACE_SENDER_MAX_IN_FLIGHT, DEFAULT_TRACE_SENDER_MAX_IN_FLIGHT);
+
+    traceSenderMaxRetries =
+        configProvider.getInteger(TRACE_SENDER_MAX_RETRIES, DEFAULT_TRACE_SENDER_MAX_RETRIES);
+
     traceAnnotations = configProvider.getString(TRACE_ANNOTATIONS, DEFAULT_TRACE_ANNOTATIONS);
 
     traceMethods = configProvider.getString(TRACE_METHODS, DEFAULT_TRACE_METHODS);
@@ -687,6 +784,16 @@ public class Config {
     profilingUploadCompression =
         configProvider.getString(
             PROFILING_UPLOAD_COMPRESSION, DEFAULT_PROFILING_UPLOAD_COMPRESSION);
+    profilingUploadCompressionCpuBudget =
+        configProvider.getDouble(
+            PROFILING_UPLOAD_COMPRESSION_CPU_BUDGET,
+            DEFAULT_PROFILING_UPLOAD_COMPRESSION_CPU_BUDGET);
+    profilingUploadMaxInFlightBytes =
+        configProvider.getInteger(
+            PROFILING_UPLOAD_MAX_IN_FLIGHT_BYTES, DEFAULT_PROFILING_UPLOAD_MAX_IN_FLIGHT_BYTES);
+    profilingUploadMaxQueuedRecordings =
+        configProvider.getInteger(
+            PROFILING_UPLOAD_MAX_QUEUED_RECORDINGS, DEFAULT_PROFILING_UPLOAD_MAX_QUEUED_RECORDINGS);
     profilingProxyHost = configProvider.getString(PROFILING_PROXY_HOST);
     profilingProxyPort =
         configProvider.getInteger(PROFILING_PROXY_PORT, DEFAULT_PROFILING_PROXY_PORT);
@@ -707,6 +814,9 @@ public class Config {
 
     profilingExcludeAgentThreads = configProvider.getBoolean(PROFILING_EXCLUDE_AGENT_THREADS, true);
 
+    profilingScopeMode =
+        configProvider.getString(PROFILING_SCOPE_MODE, DEFAULT_PROFILING_SCOPE_MODE);
+
     jdbcPreparedStatementClassName =
         configProvider.getString(JDBC_PREPARED_STATEMENT_CLASS_NAME, "");
 
@@ -739,6 +849,15 @@ public class Config {
     internalExitOnFailure = configProvider.getBoolean(INTERNAL_EXIT_ON_FAILURE, false);
 
     resolverUseLoadClassEnabled = configProvider.getBoolean(RESOLVER_USE_LOADCLASS, true);
+    resolverPersistentCacheEnabled =
+        configProvider.getBoolean(
+            RESOLVER_PERSISTENT_CACHE_ENABLED, DEFAULT_RESOLVER_PERSISTENT_CACHE_ENABLED);
+    resolverPersistentCacheDir = configProvider.getString(RESOLVER_PERSISTENT_CACHE_DIR);
+    retransformParallelEnabled =
+        configProvider.getBoolean(
+            RETRANSFORM_PARALLEL_ENABLED, DEFAULT_RETRANSFORM_PARALLEL_ENABLED);
+    retransformParallelism =
+        configProvider.getInteger(RETRANSFORM_PARALLELISM, DEFAULT_RETRANSFORM_PARALLELISM);
 
     // Setting this last because we have a few places where this can come from
     apiKey = tmpApiKey;
@@ -879,6 +998,10 @@ public class Config {
     return scopeInheritAsyncPropagation;
   }
 
+  public boolean isScopePoolingEnabled() {
+    return scopePoolingEnabled;
+  }
+
   public int getPartialFlushMinSpans() {
     return partialFlushMinSpans;
   }
@@ -887,6 +1010,10 @@ public class Config {
     return traceStrictWritesEnabled;
   }
 
+  public int getPendingTraceBufferSize() {
+    return pendingTraceBufferSize;
+  }
+
   public boolean isRuntimeContextFieldInjection() {
     return runtimeContextFieldInjection;
   }
@@ -959,6 +1086,30 @@ public class Config {
     return tracerMetricsEnabled;
   }
 
+  public boolean isTraceEarlySamplingEnabled() {
+    return traceEarlySamplingEnabled;
+  }
+
+  public boolean isTraceSpanRecyclingEnabled() {
+    return traceSpanRecyclingEnabled;
+  }
+
+  public boolean isTraceSpanRecyclingDebug() {
+    return traceSpanRecyclingDebug;
+  }
+
+  public boolean isTraceCompletionAsyncEnabled() {
+    return traceCompletionAsyncEnabled;
+  }
+
+  public int getTraceCompletionWorkers() {
+    return traceCompletionWorkers;
+  }
+
+  public int getTraceCompletionQueueSize() {
+    return traceCompletionQueueSize;
+  }
+
   public boolean isTracerMetricsBufferingEnabled() {
     return tracerMetricsBufferingEnabled;
   }
@@ -971,6 +1122,10 @@ public class Config {
     return tracerMetricsMaxPending;
   }
 
+  public int getTracerMetricsMaxMemoryBytes() {
+    return tracerMetricsMaxMemoryBytes;
+  }
+
   public boolean isLogsInjectionEnabled() {
     return logsInjectionEnabled;
   }
@@ -1051,6 +1206,18 @@ public class Config {
     return profilingUploadCompression;
   }
 
+  public double getProfilingUploadCompressionCpuBudget() {
+    return profilingUploadCompressionCpuBudget;
+  }
+
+  public int getProfilingUploadMaxInFlightBytes() {
+    return profilingUploadMaxInFlightBytes;
+  }
+
+  public int getProfilingUploadMaxQueuedRecordings() {
+    return profilingUploadMaxQueuedRecordings;
+  }
+
   public String getProfilingProxyHost() {
     return profilingProxyHost;
   }
@@ -1083,6 +1250,10 @@ public class Config {
     return profilingExcludeAgentThreads;
   }
 
+  public String getProfilingScopeMode() {
+    return profilingScopeMode;
+  }
+
   public boolean isKafkaClientPropagationEnabled() {
     return kafkaClientPropagationEnabled;
   }
@@ -1119,6 +1290,22 @@ public class Config {
     return traceAgentV05Enabled;
   }
 
+  public int getTraceAgentV05RetainedBytes() {
+    return traceAgentV05RetainedBytes;
+  }
+
+  public int getTraceSerializationShards() {
+    return traceSerializationShards;
+  }
+
+  public int getTraceSenderMaxInFlight() {
+    return traceSenderMaxInFlight;
+  }
+
+  public int getTraceSenderMaxRetries() {
+    return traceSenderMaxRetries;
+  }
+
   public boolean isDebugEnabled() {
     return debugEnabled;
   }
@@ -1139,6 +1326,22 @@ public class Config {
     return resolverUseLoadClassEnabled;
   }
 
+  public boolean isResolverPersistentCacheEnabled() {
+    return resolverPersistentCacheEnabled;
+  }
+
+  public String getResolverPersistentCacheDir() {
+    return resolverPersistentCacheDir;
+  }
+
+  public boolean isRetransformParallelEnabled() {
+    return retransformParallelEnabled;
+  }
+
+  public int getRetransformParallelism() {
+    return retransformParallelism;
+  }
+
   public String getJdbcPreparedStatementClassName() {
     return jdbcPreparedStatementClassName;
   }
@@ -1660,10 +1863,14 @@ public class Config {
         + scopeStrictMode
         + ", scopeInheritAsyncPropagation="
         + scopeInheritAsyncPropagation
+        + ", scopePoolingEnabled="
+        + scopePoolingEnabled
         + ", partialFlushMinSpans="
         + partialFlushMinSpans
         + ", traceStrictWritesEnabled="
         + traceStrictWritesEnabled
+        + ", pendingTraceBufferSize="
+        + pendingTraceBufferSize
         + ", runtimeContextFieldInjection="
         + runtimeContextFieldInjection
         + ", serialVersionUIDFieldInjection="
@@ -1703,12 +1910,26 @@ public class Config {
         + perfMetricsEnabled
         + ", tracerMetricsEnabled="
         + tracerMetricsEnabled
+        + ", traceEarlySamplingEnabled="
+        + traceEarlySamplingEnabled
+        + ", traceSpanRecyclingEnabled="
+        + traceSpanRecyclingEnabled
+        + ", traceSpanRecyclingDebug="
+        + traceSpanRecyclingDebug
+        + ", traceCompletionAsyncEnabled="
+        + traceCompletionAsyncEnabled
+        + ", traceCompletionWorkers="
+        + traceCompletionWorkers
+        + ", traceCompletionQueueSize="
+        + traceCompletionQueueSize
         + ", tracerMetricsBufferingEnabled="
         + tracerMetricsBufferingEnabled
         + ", tracerMetricsMaxAggregates="
         + tracerMetricsMaxAggregates
         + ", tracerMetricsMaxPending="
         + tracerMetricsMaxPending
+        + ", tracerMetricsMaxMemoryBytes="
+        + tracerMetricsMaxMemoryBytes
         + ", logsInjectionEnabled="
         + logsInjectionEnabled
         + ", logsMDCTagsInjectionEnabled="
@@ -1758,6 +1979,12 @@ public class Config {
         + ", profilingUploadCompression='"
         + profilingUploadCompression
         + '\''
+        + ", profilingUploadCompressionCpuBudget="
+        + profilingUploadCompressionCpuBudget
+        + ", profilingUploadMaxInFlightBytes="
+        + profilingUploadMaxInFlightBytes
+        + ", profilingUploadMaxQueuedRecordings="
+        + profilingUploadMaxQueuedRecordings
         + ", profilingProxyHost='"
         + profilingProxyHost
         + '\''
@@ -1776,6 +2003,9 @@ public class Config {
         + profilingExceptionHistogramMaxCollectionSize
         + ", profilingExcludeAgentThreads="
         + profilingExcludeAgentThreads
+        + ", profilingScopeMode='"
+        + profilingScopeMode
+        + '\''
         + ", kafkaClientPropagationEnabled="
         + kafkaClientPropagationEnabled
         + ", kafkaClientBase64DecodingEnabled="
@@ -1794,6 +2024,14 @@ public class Config {
         + tempJarsCleanOnBoot
         + ", traceAgentV05Enabled="
         + traceAgentV05Enabled
+        + ", traceAgentV05RetainedBytes="
+        + traceAgentV05RetainedBytes
+        + ", traceSerializationShards="
+        + traceSerializationShards
+        + ", traceSenderMaxInFlight="
+        + traceSenderMaxInFlight
+        + ", traceSenderMaxRetries="
+        + traceSenderMaxRetries
         + ", debugEnabled="
         + debugEnabled
         + ", configFile='"
@@ -1805,6 +2043,15 @@ public class Config {
         + internalExitOnFailure
         + ", resolverUseLoadClassEnabled="
         + resolverUseLoadClassEnabled
+        + ", resolverPersistentCacheEnabled="
+        + resolverPersistentCacheEnabled
+        + ", resolverPersistentCacheDir='"
+        + resolverPersistentCacheDir
+        + '\''
+        + ", retransformParallelEnabled="
+        + retransformParallelEnabled
+        + ", retransformParallelism="
+        + retransformParallelism
         + ", jdbcPreparedStatementClassName='"
         + jdbcPreparedStatementClassName
         + '\''
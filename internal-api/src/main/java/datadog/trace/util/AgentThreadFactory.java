@@ -15,9 +15,13 @@ public final class AgentThreadFactory implements ThreadFactory {
 
     TRACE_STARTUP("dd-agent-startup-datadog-tracer"),
     TRACE_MONITOR("dd-trace-monitor"),
+    TRACE_COMPLETION("dd-trace-completion"),
     TRACE_PROCESSOR("dd-trace-processor"),
+    TRACE_SENDER("dd-trace-sender"),
     TRACE_CASSANDRA_ASYNC_SESSION("dd-cassandra-session-executor"),
 
+    RETRANSFORM_MATCHER("dd-retransform-matcher"),
+
     METRICS_AGGREGATOR("dd-metrics-aggregator"),
 
     JMX_STARTUP("dd-agent-startup-jmxfetch"),
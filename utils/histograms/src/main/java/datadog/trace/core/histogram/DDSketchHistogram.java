@@ -25,6 +25,11 @@ public final class DDSketchHistogram implements Histogram, HistogramFactory {
     sketch.accept(value);
   }
 
+  @Override
+  public void accept(long value, long count) {
+    sketch.accept(value, count);
+  }
+
   @Override
   public double valueAtQuantile(double quantile) {
     if (sketch.isEmpty()) {
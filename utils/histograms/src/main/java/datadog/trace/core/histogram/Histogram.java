@@ -6,6 +6,9 @@ public interface Histogram {
 
   void accept(long value);
 
+  /** Records the value as many times as the count. */
+  void accept(long value, long count);
+
   double valueAtQuantile(double quantile);
 
   double max();
@@ -8,6 +8,9 @@ public class StubHistogram implements Histogram, HistogramFactory {
   @Override
   public void accept(long value) {}
 
+  @Override
+  public void accept(long value, long count) {}
+
   @Override
   public double valueAtQuantile(double quantile) {
     return 0;
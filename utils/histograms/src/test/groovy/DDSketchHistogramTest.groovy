@@ -107,6 +107,24 @@ class DDSketchHistogramTest extends DDSpecification {
     (int)sketch.getMaxValue() == 3
   }
 
+  def "weighted values are counted as repeated values"() {
+    setup:
+    Histogram weighted = Histograms.newHistogramFactory().newHistogram()
+    Histogram repeated = Histograms.newHistogramFactory().newHistogram()
+
+    when:
+    weighted.accept(10, 3)
+    weighted.accept(1000, 1)
+    3.times { repeated.accept(10) }
+    repeated.accept(1000)
+
+    then:
+    for (double quantile : quantiles) {
+      assert weighted.valueAtQuantile(quantile) == repeated.valueAtQuantile(quantile)
+    }
+    weighted.serialize() == repeated.serialize()
+  }
+
   def validateQuantiles(Histogram histogram, long[] data) {
     for (double quantile : quantiles) {
       double relativeError = relativeError(histogram.valueAtQuantile(quantile), empiricalQuantile(data, quantile))